@@ -84,6 +84,19 @@ public class Baseline {
         orbitHeading = 0.0;     // tmp for now NOT USED
     }
 
+    /**
+     * Baseline with given model coefficients, in the order of polyVal, and the default normalization.
+     */
+    Baseline(final double[] bperpCoeffs, final double[] bparCoeffs,
+             final double[] thetaCoeffs, final double[] thetaIncCoeffs) {
+        this();
+        this.bperpCoeffs = new DoubleMatrix(bperpCoeffs);
+        this.bparCoeffs = new DoubleMatrix(bparCoeffs);
+        this.thetaCoeffs = new DoubleMatrix(thetaCoeffs);
+        this.thetaIncCoeffs = new DoubleMatrix(thetaIncCoeffs);
+        isInitialized = true;
+    }
+
     /**
      * --- B(l,p,h) = a000 +
      * a100*l   + a010*p   + a001*h   +
@@ -530,6 +543,146 @@ public class Baseline {
         return h_amb;
     }
 
+    // Batched evaluation
+    // ----------------------------------------------------------------
+
+    /**
+     * Evaluates the modeled baseline over a grid of lines and pixels, at one height.
+     * <p/>
+     * Results are stored row-major, at index line * pixels.length + pixel. Any output array may be null, then that
+     * component is not stored. Per line, the polynomials reduce to quadratics in pixel, which are shared by all
+     * components. No objects are allocated, concurrent calls are safe.
+     *
+     * @param lines  line coordinates of the grid
+     * @param pixels pixel coordinates of the grid
+     * @param height height of the grid
+     * @param bperp  perpendicular baseline, or null
+     * @param bpar   parallel baseline, or null
+     * @param bhor   horizontal baseline, or null
+     * @param bvert  vertical baseline, or null
+     * @param theta  look angle [rad], or null
+     */
+    public void getBaselineGrid(final double[] lines, final double[] pixels, final double height,
+                                final double[] bperp, final double[] bpar,
+                                final double[] bhor, final double[] bvert, final double[] theta) {
+
+        checkInitialized();
+
+        final double[] cPerp = bperpCoeffs.data;
+        final double[] cPar = bparCoeffs.data;
+        final double[] cTheta = thetaCoeffs.data;
+        final boolean needTheta = theta != null || bhor != null || bvert != null;
+
+        final double h = normalize2(height, hMin, hMax);
+        final double hh = h * h;
+
+        for (int i = 0; i < lines.length; i++) {
+
+            final double l = normalize2(lines[i], linMin, linMax);
+            final double ll = l * l;
+            final double lh = l * h;
+
+            // B(l,p,h) = a + b*p + c*p^2 along the line
+            final double aPerp = cPerp[0] + cPerp[1] * l + cPerp[3] * h + cPerp[5] * lh + cPerp[7] * ll + cPerp[9] * hh;
+            final double bPerp = cPerp[2] + cPerp[4] * l + cPerp[6] * h;
+            final double aPar = cPar[0] + cPar[1] * l + cPar[3] * h + cPar[5] * lh + cPar[7] * ll + cPar[9] * hh;
+            final double bPar = cPar[2] + cPar[4] * l + cPar[6] * h;
+            final double aTheta = cTheta[0] + cTheta[1] * l + cTheta[3] * h + cTheta[5] * lh + cTheta[7] * ll + cTheta[9] * hh;
+            final double bTheta = cTheta[2] + cTheta[4] * l + cTheta[6] * h;
+
+            final int offset = i * pixels.length;
+            for (int j = 0; j < pixels.length; j++) {
+                final double p = normalize2(pixels[j], pixMin, pixMax);
+                final double valuePerp = aPerp + p * (bPerp + p * cPerp[8]);
+                final double valuePar = aPar + p * (bPar + p * cPar[8]);
+                final double valueTheta = needTheta ? aTheta + p * (bTheta + p * cTheta[8]) : 0.0;
+                store(offset + j, valuePerp, valuePar, valueTheta, bperp, bpar, bhor, bvert, theta);
+            }
+        }
+    }
+
+    /**
+     * Evaluates the modeled baseline at arbitrary points.
+     * <p/>
+     * Any output array may be null, then that component is not stored. The normalized coordinates and their
+     * products are shared by all components. No objects are allocated, concurrent calls are safe.
+     *
+     * @param lines   line coordinates of the points
+     * @param pixels  pixel coordinates of the points
+     * @param heights heights of the points
+     * @param bperp   perpendicular baseline, or null
+     * @param bpar    parallel baseline, or null
+     * @param bhor    horizontal baseline, or null
+     * @param bvert   vertical baseline, or null
+     * @param theta   look angle [rad], or null
+     */
+    public void getBaselinePoints(final double[] lines, final double[] pixels, final double[] heights,
+                                  final double[] bperp, final double[] bpar,
+                                  final double[] bhor, final double[] bvert, final double[] theta) {
+
+        checkInitialized();
+
+        final double[] cPerp = bperpCoeffs.data;
+        final double[] cPar = bparCoeffs.data;
+        final double[] cTheta = thetaCoeffs.data;
+        final boolean needTheta = theta != null || bhor != null || bvert != null;
+
+        for (int i = 0; i < lines.length; i++) {
+
+            final double l = normalize2(lines[i], linMin, linMax);
+            final double p = normalize2(pixels[i], pixMin, pixMax);
+            final double h = normalize2(heights[i], hMin, hMax);
+            final double lp = l * p;
+            final double lh = l * h;
+            final double ph = p * h;
+            final double ll = l * l;
+            final double pp = p * p;
+            final double hh = h * h;
+
+            final double valuePerp = cPerp[0] + cPerp[1] * l + cPerp[2] * p + cPerp[3] * h +
+                    cPerp[4] * lp + cPerp[5] * lh + cPerp[6] * ph + cPerp[7] * ll + cPerp[8] * pp + cPerp[9] * hh;
+            final double valuePar = cPar[0] + cPar[1] * l + cPar[2] * p + cPar[3] * h +
+                    cPar[4] * lp + cPar[5] * lh + cPar[6] * ph + cPar[7] * ll + cPar[8] * pp + cPar[9] * hh;
+            final double valueTheta = !needTheta ? 0.0 : cTheta[0] + cTheta[1] * l + cTheta[2] * p + cTheta[3] * h +
+                    cTheta[4] * lp + cTheta[5] * lh + cTheta[6] * ph + cTheta[7] * ll + cTheta[8] * pp + cTheta[9] * hh;
+
+            store(i, valuePerp, valuePar, valueTheta, bperp, bpar, bhor, bvert, theta);
+        }
+    }
+
+    private void checkInitialized() {
+        if (!isInitialized) {
+            throw new IllegalStateException("Baseline is not modeled");
+        }
+    }
+
+    private static void store(final int index, final double valuePerp, final double valuePar, final double valueTheta,
+                              final double[] bperp, final double[] bpar,
+                              final double[] bhor, final double[] bvert, final double[] theta) {
+
+        if (bperp != null) {
+            bperp[index] = valuePerp;
+        }
+        if (bpar != null) {
+            bpar[index] = valuePar;
+        }
+        if (theta != null) {
+            theta[index] = valueTheta;
+        }
+        if (bhor != null || bvert != null) {
+            // B*cos(alpha) and B*sin(alpha), with alpha = theta - atan2(Bpar, Bperp), expanded
+            final boolean undefined = valuePar == 0 && valuePerp == 0;
+            final double cosTheta = FastMath.cos(valueTheta);
+            final double sinTheta = FastMath.sin(valueTheta);
+            if (bhor != null) {
+                bhor[index] = undefined ? Double.NaN : cosTheta * valuePerp + sinTheta * valuePar;
+            }
+            if (bvert != null) {
+                bvert[index] = undefined ? Double.NaN : sinTheta * valuePerp - cosTheta * valuePar;
+            }
+        }
+    }
+
     // Return orbit convergence to user
     // public double get_orb_conv(final double line, final double pixel, final double height=0.0) const
     //      {
@@ -560,9 +560,13 @@ public final class SLCImage {
             return f_DC_const;
         }
 
-//        public void setF_DC_const(boolean f_DC_const) {
-//            this.f_DC_const_bool = f_DC_const;
-//        }
+        /**
+         * Sets a constant Doppler centroid [Hz], as computed by checkConstant for metadata with a constant Doppler.
+         */
+        public void setF_DC_const(final double f_DC_const) {
+            this.f_DC_const_bool = true;
+            this.f_DC_const = f_DC_const;
+        }
 
         /*--- DOPPLER HELPER FUNCTIONS ---*/
 
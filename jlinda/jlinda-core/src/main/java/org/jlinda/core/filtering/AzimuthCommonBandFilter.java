@@ -0,0 +1,129 @@
+package org.jlinda.core.filtering;
+
+import org.jlinda.core.utils.WeightWindows;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Azimuth common band filtering of a tile with constant Doppler centroids, on a flat row-major buffer of interleaved
+ * (real, imaginary) samples.
+ * <p>
+ * This is the constant filter of {@link AzimuthFilter}: the spectrum of every column is de-weighted with the Hamming
+ * window centred at the Doppler centroid of the image, and re-weighted with a Hamming window of the common bandwidth
+ * centred at the mean Doppler centroid of the image and the other image. The columns are transformed with one FFT
+ * plan and the filter is applied as a weight per spectrum line. Filters are cached by Doppler centroids and FFT
+ * length.
+ * <p>
+ * A filter is thread safe.
+ */
+public final class AzimuthCommonBandFilter {
+
+    private final double PRF;
+    private final double ABW;
+    private final double hammingAlpha;
+
+    private final ConcurrentHashMap<String, double[]> filterCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param PRF          pulse repetition frequency [Hz]
+     * @param ABW          azimuth bandwidth [Hz]
+     * @param hammingAlpha weight of the Hamming window
+     */
+    public AzimuthCommonBandFilter(final double PRF, final double ABW, final double hammingAlpha) {
+        this.PRF = PRF;
+        this.ABW = ABW;
+        this.hammingAlpha = hammingAlpha;
+    }
+
+    /**
+     * Filters a tile in place.
+     *
+     * @param data     the tile
+     * @param nRows    the number of lines, which is the FFT length
+     * @param nCols    the number of pixels
+     * @param fDC      the Doppler centroid of the image [Hz]
+     * @param fDCOther the Doppler centroid of the other image [Hz]
+     */
+    public void filter(final double[] data, final int nRows, final int nCols, final double fDC, final double fDCOther) {
+
+        final double[] filterVector = getFilterVector(nRows, fDC, fDCOther);
+
+        ComplexTileFFT.fftColumns(data, nRows, nCols, false);
+
+        for (int y = 0; y < nRows; ++y) {
+            final double weight = filterVector[y];
+            final int offset = 2 * y * nCols;
+            for (int i = offset; i < offset + 2 * nCols; ++i) {
+                data[i] *= weight;
+            }
+        }
+
+        ComplexTileFFT.fftColumns(data, nRows, nCols, true);
+    }
+
+    /**
+     * Gets the filter of the spectrum lines.
+     *
+     * @param nRows    the FFT length
+     * @param fDC      the Doppler centroid of the image [Hz]
+     * @param fDCOther the Doppler centroid of the other image [Hz]
+     * @return the weight of every line of the column spectra, as returned by the FFT
+     */
+    public double[] getFilterVector(final int nRows, final double fDC, final double fDCOther) {
+        final String key = nRows + "_" + fDC + '_' + fDCOther;
+        return filterCache.computeIfAbsent(key, k -> createFilterVector(nRows, fDC, fDCOther));
+    }
+
+    private double[] createFilterVector(final int nRows, final double fDC_m, final double fDC_s) {
+
+        // rounded to float as in AzimuthFilter, the axis itself is computed in double
+        final double deltaF = (float) (PRF / nRows);
+        final double freq = (float) (-PRF / 2.0);
+
+        final double fDC_mean = 0.5 * (fDC_m + fDC_s);   // mean doppler centroid freq.
+        final double ABW_new = Math.max(1.0, 2.0 * (0.5 * ABW - Math.abs(fDC_m - fDC_mean)));  // new bandwidth>1.0
+
+        final double[] freqAxis = new double[nRows];
+        for (int i = 0; i < nRows; ++i) {
+            freqAxis[i] = freq + (i * deltaF); // [-fr:df:fr-df]
+        }
+
+        final double offset = 0.5;
+        final double[] inverseHamming = WeightWindows.inverseHamming(freqAxis, ABW, PRF, hammingAlpha);
+
+        // shift this circular by myshift pixels
+        long myShift = (long) (Math.rint(((long) nRows * fDC_m / PRF) + offset)); // round
+        wshift(inverseHamming, (int) -myShift);    // center at fDC_m
+
+        // newhamming is scaled and centered around new mean
+        myShift = (long) (Math.rint(((long) nRows * fDC_mean / PRF) + offset));   // round
+        final double[] filterVector = WeightWindows.hamming(freqAxis, ABW_new, PRF, hammingAlpha); // fftshifted
+        wshift(filterVector, (int) -myShift);      // center at fDC_mean
+        for (int i = 0; i < nRows; ++i) {
+            filterVector[i] *= inverseHamming[i];
+        }
+
+        return RangeCommonBandFilter.ifftshift(filterVector);
+    }
+
+    /**
+     * Circular shift to the left by n, as LinearAlgebraUtils.wshift_inplace.
+     */
+    private static void wshift(final double[] vector, int n) {
+
+        if (n >= vector.length) {
+            throw new IllegalArgumentException("wshift: shift larger than matrix not implemented.");
+        }
+        if (n == 0) {
+            return;
+        }
+        if (n < 0) {
+            n += vector.length;
+        }
+
+        final double[] result = new double[vector.length];
+        System.arraycopy(vector, n, result, 0, vector.length - n);
+        System.arraycopy(vector, 0, result, vector.length - n, n);
+        System.arraycopy(result, 0, vector, 0, vector.length);
+    }
+}
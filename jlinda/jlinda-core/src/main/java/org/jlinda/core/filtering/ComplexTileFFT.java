@@ -0,0 +1,98 @@
+package org.jlinda.core.filtering;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Row and column FFTs of a complex tile held in a flat row-major buffer of interleaved (real, imaginary) samples.
+ * <p>
+ * Element (x, y) of a tile of width cols has its real part at [2 * (y * cols + x)] and its imaginary part at the next
+ * index. FFT plans are cached by length and, with the column buffer, held per thread. Inverse transforms are scaled,
+ * as in SpectralUtils.
+ */
+final class ComplexTileFFT {
+
+    private static final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+
+    private ComplexTileFFT() {
+    }
+
+    /**
+     * Transforms every row of a tile in place.
+     *
+     * @param data    the tile buffer
+     * @param rows    the number of rows
+     * @param cols    the number of columns
+     * @param inverse true for the inverse transform
+     */
+    static void fftRows(final double[] data, final int rows, final int cols, final boolean inverse) {
+
+        final DoubleFFT_1D fft = workspace.get().getFFT(cols);
+        for (int y = 0; y < rows; ++y) {
+            if (inverse) {
+                fft.complexInverse(data, 2 * y * cols, true);
+            } else {
+                fft.complexForward(data, 2 * y * cols);
+            }
+        }
+    }
+
+    /**
+     * Transforms every column of a tile in place.
+     *
+     * @param data    the tile buffer
+     * @param rows    the number of rows
+     * @param cols    the number of columns
+     * @param inverse true for the inverse transform
+     */
+    static void fftColumns(final double[] data, final int rows, final int cols, final boolean inverse) {
+
+        final Workspace ws = workspace.get();
+        final DoubleFFT_1D fft = ws.getFFT(rows);
+        final double[] col = ws.getColumn(2 * rows);
+
+        for (int x = 0; x < cols; ++x) {
+            int k = 2 * x;
+            for (int y = 0; y < rows; ++y) {
+                col[2 * y] = data[k];
+                col[2 * y + 1] = data[k + 1];
+                k += 2 * cols;
+            }
+
+            if (inverse) {
+                fft.complexInverse(col, true);
+            } else {
+                fft.complexForward(col);
+            }
+
+            k = 2 * x;
+            for (int y = 0; y < rows; ++y) {
+                data[k] = col[2 * y];
+                data[k + 1] = col[2 * y + 1];
+                k += 2 * cols;
+            }
+        }
+    }
+
+    /**
+     * Per thread FFT plans and column buffer, grown on demand.
+     */
+    private static final class Workspace {
+
+        private final Map<Integer, DoubleFFT_1D> plans = new HashMap<>();
+        private double[] column = new double[0];
+
+        DoubleFFT_1D getFFT(final int n) {
+            return plans.computeIfAbsent(n, DoubleFFT_1D::new);
+        }
+
+        double[] getColumn(final int size) {
+            if (column.length != size) {
+                column = new double[size];
+            }
+            return column;
+        }
+    }
+}
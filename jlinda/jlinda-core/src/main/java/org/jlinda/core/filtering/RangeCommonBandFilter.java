@@ -0,0 +1,318 @@
+package org.jlinda.core.filtering;
+
+import org.apache.commons.math3.util.FastMath;
+import org.jlinda.core.utils.MathUtils;
+import org.jlinda.core.utils.WeightWindows;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Range common band filtering of a master and slave tile, on flat row-major buffers of interleaved (real, imaginary)
+ * samples.
+ * <p>
+ * This is the algorithm of {@link RangeFilter}: the fringe frequency of every line is the peak of the walking mean
+ * power spectrum of the interferogram, and master and slave are filtered with a band pass window shifted by half that
+ * frequency, the slave with the mirrored window. Both images are transformed in the same pass, with FFT plans reused
+ * for all rows. The filter windows depend only on the tile width and the fringe frequency shift, and are cached.
+ * <p>
+ * A filter is thread safe.
+ */
+public final class RangeCommonBandFilter {
+
+    private final double RSR;
+    private final double RBW;
+    private final double alphaHamming;
+    private final int nlMean;
+    private final int ovsFactor;
+    private final boolean doWeightCorrelFlag;
+    private final boolean doHamming;
+
+    // master and slave filter windows, keyed by tile width, shift and sign of shift
+    private final ConcurrentHashMap<Long, double[][]> filterCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param RSR                range sampling rate [Hz]
+     * @param RBW                range bandwidth [Hz]
+     * @param alphaHamming       weight of the Hamming window, 1 for a rectangular window
+     * @param nlMean             number of lines of the walking mean, odd
+     * @param ovsFactor          range oversampling factor of the interferogram, power of 2
+     * @param doWeightCorrelFlag true to de-weight the power spectrum
+     */
+    public RangeCommonBandFilter(final double RSR, final double RBW, final double alphaHamming, final int nlMean,
+                                 final int ovsFactor, final boolean doWeightCorrelFlag) {
+
+        if (!MathUtils.isOdd(nlMean)) {
+            throw new IllegalArgumentException("nlMean has to be odd.");
+        }
+        if (!MathUtils.isPower2(ovsFactor)) {
+            throw new IllegalArgumentException("oversample factor (FFT) has to be power of 2.");
+        }
+
+        this.RSR = RSR;
+        this.RBW = RBW;
+        this.alphaHamming = alphaHamming;
+        this.nlMean = nlMean;
+        this.ovsFactor = ovsFactor;
+        this.doWeightCorrelFlag = doWeightCorrelFlag;
+        this.doHamming = (alphaHamming < 0.9999);
+    }
+
+    /**
+     * Filters a master and slave tile in place.
+     *
+     * @param master       the master tile, not changed unless filterMaster is set
+     * @param slave        the slave tile
+     * @param nRows        the number of lines
+     * @param nCols        the number of pixels, power of 2
+     * @param filterMaster true to filter the master as well as the slave
+     */
+    public void filter(final double[] master, final double[] slave, final int nRows, final int nCols,
+                       final boolean filterMaster) {
+
+        if (!MathUtils.isPower2(nCols)) {
+            throw new IllegalArgumentException("numPixels (FFT) has to be power of 2.");
+        }
+
+        final double[][][] filterRows = defineFilter(master, slave, nRows, nCols);
+
+        if (filterMaster) {
+            ComplexTileFFT.fftRows(master, nRows, nCols, false);
+        }
+        ComplexTileFFT.fftRows(slave, nRows, nCols, false);
+
+        for (int y = 0; y < nRows; ++y) {
+            final double[][] windows = filterRows[y];
+            if (windows == null) {
+                // lines outside the walking mean keep a unit filter
+                continue;
+            }
+            if (filterMaster) {
+                multiplyRow(master, y, nCols, windows[0]);
+            }
+            multiplyRow(slave, y, nCols, windows[1]);
+        }
+
+        if (filterMaster) {
+            ComplexTileFFT.fftRows(master, nRows, nCols, true);
+        }
+        ComplexTileFFT.fftRows(slave, nRows, nCols, true);
+    }
+
+    /**
+     * Defines the master and slave filter window of every line.
+     *
+     * @return per line the master and slave window, null for a unit filter
+     */
+    private double[][][] defineFilter(final double[] master, final double[] slave, final int nRows, final int nCols) {
+
+        final double[] power = computePower(master, slave, nRows, nCols);
+        final int fftLength = nCols * ovsFactor;
+
+        if (doWeightCorrelFlag) {
+            doWeightCorrel(RSR, RBW, nRows, fftLength, power);
+        }
+
+        final int outputLines = nRows - nlMean + 1;
+        final int firstLine = ((nlMean - 1) / 2);
+        final int lastLine = firstLine + outputLines - 1;
+
+        // walking mean of the power spectrum
+        final double[] nlMeanPower = new double[fftLength];
+        for (int j = 0; j < fftLength; ++j) {
+            double sum = 0.0;
+            for (int i = 0; i < nlMean; ++i) {
+                sum += power[i * fftLength + j];
+            }
+            nlMeanPower[j] = sum;
+        }
+
+        final double[][][] filterRows = new double[nRows][][];
+        for (int outLine = firstLine; outLine <= lastLine; ++outLine) {
+
+            // peak of the walking mean power
+            double maxValue = Double.NEGATIVE_INFINITY;
+            int shift = -1;
+            for (int j = 0; j < fftLength; ++j) {
+                if (nlMeanPower[j] > maxValue) {
+                    maxValue = nlMeanPower[j];
+                    shift = j;
+                }
+            }
+
+            // check for negative shift
+            boolean negShift = false;
+            if (shift > (fftLength / 2)) {
+                shift = fftLength - shift;
+                negShift = true;
+            }
+
+            filterRows[outLine] = getFilterWindows(nCols, shift, negShift);
+
+            // update walking mean
+            if (outLine != lastLine) {
+                final int line1 = (outLine - firstLine) * fftLength;
+                final int lineN = (outLine - firstLine + nlMean) * fftLength;
+                for (int j = 0; j < fftLength; ++j) {
+                    nlMeanPower[j] += power[lineN + j] - power[line1 + j];
+                }
+            }
+        }
+        return filterRows;
+    }
+
+    private double[][] getFilterWindows(final int nCols, final int shift, final boolean negShift) {
+        final long key = ((long) nCols << 32) | ((shift & 0x7fffffffL) << 1) | (negShift ? 1L : 0L);
+        return filterCache.computeIfAbsent(key, k -> createFilterWindows(nCols, shift, negShift));
+    }
+
+    private double[][] createFilterWindows(final int nCols, final int shift, final boolean negShift) {
+
+        final double deltaF = RSR / nCols;
+        final double[] freqAxis = defineFrequencyAxis(nCols, RSR);
+
+        final double[] shiftedAxis = new double[nCols];
+        for (int i = 0; i < nCols; ++i) {
+            shiftedAxis[i] = freqAxis[i] - 0.5 * shift * deltaF;
+        }
+
+        double[] filterVector;
+        if (doHamming) {
+            // newhamming is scaled and centered around new mean : filter is fftshifted
+            final double[] inverseHamming = WeightWindows.inverseHamming(freqAxis, RBW, RSR, alphaHamming);
+            filterVector = WeightWindows.hamming(shiftedAxis, RBW - (shift * deltaF), RSR, alphaHamming);
+            for (int i = 0; i < nCols; ++i) {
+                filterVector[i] *= inverseHamming[i];
+            }
+        } else {
+            // no weighting of spectra
+            final double bandwidth = RBW - shift * deltaF;
+            for (int i = 0; i < nCols; ++i) {
+                shiftedAxis[i] /= bandwidth;
+            }
+            filterVector = WeightWindows.rect(shiftedAxis);
+        }
+
+        // use freq. as returned by fft
+        filterVector = ifftshift(filterVector);
+        if (negShift) {
+            fliplr(filterVector);
+        }
+
+        // the slave is filtered with the mirrored master filter
+        final double[] slaveVector = filterVector.clone();
+        fliplr(slaveVector);
+        return new double[][]{filterVector, slaveVector};
+    }
+
+    /**
+     * Computes the power spectrum over the rows of the interferogram, oversampled in range if requested.
+     */
+    private double[] computePower(final double[] master, final double[] slave, final int nRows, final int nCols) {
+
+        final double[] m = ovsFactor != 1 ? oversampleRows(master, nRows, nCols, ovsFactor) : master;
+        final double[] s = ovsFactor != 1 ? oversampleRows(slave, nRows, nCols, ovsFactor) : slave;
+        final int fftLength = nCols * ovsFactor;
+
+        final double[] ifg = new double[2 * nRows * fftLength];
+        for (int i = 0; i < ifg.length; i += 2) {
+            // master * conj(slave)
+            final double mr = m[i], mi = m[i + 1];
+            final double sr = s[i], si = -s[i + 1];
+            ifg[i] = mr * sr - mi * si;
+            ifg[i + 1] = mr * si + mi * sr;
+        }
+        ComplexTileFFT.fftRows(ifg, nRows, fftLength, false);
+
+        final double[] power = new double[nRows * fftLength];
+        for (int i = 0; i < power.length; ++i) {
+            final double re = ifg[2 * i];
+            final double im = ifg[2 * i + 1];
+            power[i] = re * re + im * im;
+        }
+        return power;
+    }
+
+    /**
+     * Oversamples the rows of a tile by zero padding of their spectra, as SarUtils.oversample.
+     */
+    static double[] oversampleRows(final double[] data, final int nRows, final int nCols, final int factor) {
+
+        final int halfP = nCols / 2;
+        final int P2 = factor * nCols;
+
+        final double[] spectrum = Arrays.copyOf(data, 2 * nRows * nCols);
+        ComplexTileFFT.fftRows(spectrum, nRows, nCols, false);
+
+        final double[] result = new double[2 * nRows * P2];
+        for (int y = 0; y < nRows; ++y) {
+            final int src = 2 * y * nCols;
+            final int dst = 2 * y * P2;
+
+            // divide by 2 because even fftlength
+            spectrum[src + 2 * halfP] *= 0.5;
+            spectrum[src + 2 * halfP + 1] *= 0.5;
+
+            System.arraycopy(spectrum, src, result, dst, 2 * (halfP + 1));
+            System.arraycopy(spectrum, src + 2 * halfP, result, dst + 2 * (P2 - halfP), 2 * (nCols - halfP));
+        }
+        ComplexTileFFT.fftRows(result, nRows, P2, true);
+
+        for (int i = 0; i < result.length; ++i) {
+            result[i] *= factor;
+        }
+        return result;
+    }
+
+    // EXPERIMENTAL function: not recommended with oversampling
+    private static void doWeightCorrel(final double RSR, final double RBW, final int numLines, final long numPixels,
+                                       final double[] data) {
+
+        // weigth = numpoints in spectral convolution for fft squared for power...
+        final int indexNoPeak = (int) ((1. - (RBW / RSR)) * numPixels);
+        for (int j = 0; j < numPixels; ++j) {
+
+            final long nPnts = Math.abs(numPixels - j);
+            final double weight = (nPnts < indexNoPeak) ? FastMath.pow(numPixels, 2) : FastMath.pow(nPnts, 2);
+
+            for (int i = 0; i < numLines; ++i) {
+                data[(int) (i * numPixels + j)] /= weight;
+            }
+        }
+    }
+
+    private static void multiplyRow(final double[] data, final int y, final int nCols, final double[] window) {
+        final int offset = 2 * y * nCols;
+        for (int x = 0; x < nCols; ++x) {
+            data[offset + 2 * x] *= window[x];
+            data[offset + 2 * x + 1] *= window[x];
+        }
+    }
+
+    private static double[] defineFrequencyAxis(final int numPixs, final double RSR) {
+        final double deltaF = RSR / numPixs;
+        final double freq = -RSR / 2.;
+        final double[] freqAxis = new double[numPixs];
+        for (int i = 0; i < numPixs; ++i) {
+            freqAxis[i] = freq + (i * deltaF);
+        }
+        return freqAxis;
+    }
+
+    static double[] ifftshift(final double[] vector) {
+        final double[] result = new double[vector.length];
+        final int start = vector.length / 2;
+        System.arraycopy(vector, start, result, 0, vector.length - start);
+        System.arraycopy(vector, 0, result, vector.length - start, start);
+        return result;
+    }
+
+    private static void fliplr(final double[] vector) {
+        final int length = vector.length;
+        for (int i = 0; i < length / 2; i++) {
+            final double tmp = vector[i];
+            vector[i] = vector[length - i - 1];
+            vector[length - i - 1] = tmp;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.jlinda.core.Orbit;
 import org.jlinda.core.SLCImage;
 import org.jlinda.core.Window;
 import org.jlinda.core.utils.MathUtils;
+import org.jlinda.core.utils.PhaseRotation;
 import org.jlinda.core.utils.PolyUtils;
 
 /**
@@ -281,6 +282,41 @@ public class DInSAR {
         defoData.muli(ratioBaselinesCplx);
     }
 
+    /**
+     * Subtracts the scaled topographic phase from a tile of the deformation pair, in place.
+     *
+     * @param tileWindow the window of the tile in master coordinates
+     * @param defoData   the deformation pair, row-major, interleaved (real, imaginary)
+     * @param topoData   the unwrapped topographic phase, row-major
+     */
+    public void applyDInSAR(final Window tileWindow, final double[] defoData, final double[] topoData) {
+
+        final int lines = (int) tileWindow.lines();
+        final int pixels = (int) tileWindow.pixels();
+
+        final double[] azimuthAxisNormalize = new double[lines];
+        for (int i = 0; i < lines; i++) {
+            azimuthAxisNormalize[i] = PolyUtils.normalize2(tileWindow.linelo + i, dataWindow.linelo, dataWindow.linehi);
+        }
+
+        final double[] rangeAxisNormalize = new double[pixels];
+        for (int i = 0; i < pixels; i++) {
+            rangeAxisNormalize[i] = PolyUtils.normalize2(tileWindow.pixlo + i, dataWindow.pixlo, dataWindow.pixhi);
+        }
+
+        final double[][] ratio = PolyUtils.polyval(azimuthAxisNormalize, rangeAxisNormalize, rhs.toArray(),
+                PolyUtils.degreeFromCoefficients(rhs.length));
+
+        final double[] scaledTopo = new double[lines * pixels];
+        for (int line = 0; line < lines; line++) {
+            for (int pixel = 0; pixel < pixels; pixel++) {
+                scaledTopo[line * pixels + pixel] = topoData[line * pixels + pixel] * ratio[line][pixel];
+            }
+        }
+
+        PhaseRotation.rotate(defoData, scaledTopo);
+    }
+
     public static double[] linspace(final int lower, final int upper, final int size) {
         double[] result = new double[size];
         for (int i = 0; i < size; i++) {
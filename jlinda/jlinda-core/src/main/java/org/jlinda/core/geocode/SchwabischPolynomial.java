@@ -0,0 +1,111 @@
+package org.jlinda.core.geocode;
+
+import org.jlinda.core.Window;
+
+/**
+ * Fitted Schwabisch height polynomial h = f(l, p, phi): a 1D polynomial in the normalized unwrapped phase, whose
+ * coefficients are 2D polynomials in the normalized line and pixel.
+ * <p>
+ * The 2D coefficients are rearranged per pixel power into polynomials in line, so that per line these reduce to
+ * polynomials in pixel, and per pixel to the 1D polynomial in phase. All three are evaluated with Horner's scheme.
+ * Instances are immutable and can be shared by concurrent tiles.
+ */
+final class SchwabischPolynomial {
+
+    private final int degree1D;
+    private final int degree2D;
+
+    // lineCoeffs[k][b][a] : coefficient of l^a * p^b of the k-th 1D coefficient
+    private final double[][][] lineCoeffs;
+
+    private final double minPhi;
+    private final double maxPhi;
+    private final Window dataWindow;
+
+    /**
+     * @param betas      per 1D coefficient, the 2D polynomial coefficients in the order of PolyUtils.polyval:
+     *                   B00 B10 B01 B20 B11 B02 ..., with the first index the power of line
+     * @param degree1D   degree of the polynomial in phase
+     * @param degree2D   degree of the polynomials in line and pixel
+     * @param minPhi     minimum reference phase, for normalization
+     * @param maxPhi     maximum reference phase, for normalization
+     * @param dataWindow window for normalization of line and pixel
+     */
+    SchwabischPolynomial(final double[][] betas, final int degree1D, final int degree2D,
+                         final double minPhi, final double maxPhi, final Window dataWindow) {
+
+        this.degree1D = degree1D;
+        this.degree2D = degree2D;
+        this.minPhi = minPhi;
+        this.maxPhi = maxPhi;
+        this.dataWindow = new Window(dataWindow);
+
+        lineCoeffs = new double[degree1D + 1][degree2D + 1][];
+        for (int k = 0; k <= degree1D; k++) {
+            for (int b = 0; b <= degree2D; b++) {
+                lineCoeffs[k][b] = new double[degree2D - b + 1];
+            }
+            int index = 0;
+            for (int j = 0; j <= degree2D; j++) {
+                for (int b = 0; b <= j; b++) {
+                    lineCoeffs[k][b][j - b] = betas[k][index++];
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts a tile of unwrapped phase to height in place.
+     *
+     * @param tileWindow the window of the tile in master coordinates
+     * @param data       the tile, row-major
+     */
+    void evaluate(final Window tileWindow, final double[] data) {
+
+        final int lines = (int) tileWindow.lines();
+        final int pixels = (int) tileWindow.pixels();
+
+        // pixel dependent basis: normalized pixel axis of the tile
+        final double[] pAxis = new double[pixels];
+        for (int i = 0; i < pixels; i++) {
+            pAxis[i] = normalize(tileWindow.pixlo + i, dataWindow.pixlo, dataWindow.pixhi);
+        }
+
+        // line dependent basis: per line the coefficients of the polynomials in pixel
+        final double[][] pixelCoeffs = new double[degree1D + 1][degree2D + 1];
+        final double[] alpha = new double[degree1D + 1];
+
+        for (int line = 0; line < lines; line++) {
+
+            final double l = normalize(tileWindow.linelo + line, dataWindow.linelo, dataWindow.linehi);
+            for (int k = 0; k <= degree1D; k++) {
+                for (int b = 0; b <= degree2D; b++) {
+                    pixelCoeffs[k][b] = horner(lineCoeffs[k][b], l);
+                }
+            }
+
+            final int offset = line * pixels;
+            for (int pixel = 0; pixel < pixels; pixel++) {
+                final double p = pAxis[pixel];
+                for (int k = 0; k <= degree1D; k++) {
+                    alpha[k] = horner(pixelCoeffs[k], p);
+                }
+                // NaN phase gives NaN height
+                final int index = offset + pixel;
+                data[index] = horner(alpha, normalize(data[index], minPhi, maxPhi));
+            }
+        }
+    }
+
+    private static double horner(final double[] coeffs, final double x) {
+        double sum = 0.0;
+        for (int d = coeffs.length - 1; d >= 0; --d) {
+            sum = sum * x + coeffs[d];
+        }
+        return sum;
+    }
+
+    private static double normalize(final double data, final double min, final double max) {
+        return (data - 0.5 * (min + max)) / (0.25 * (max - min));
+    }
+}
@@ -46,6 +46,9 @@ public class Slant2Height {
     private double minPhi;
     private double maxPhi;
 
+    // fitted by schwabisch(), shared by all tiles
+    private SchwabischPolynomial polynomial;
+
     // TODO: clean-it-up and move helper methods in util classes
 
     /*
@@ -79,11 +82,11 @@ public class Slant2Height {
 
     }
 
-    public synchronized void setTile(DoubleMatrix tile) {
+    public void setTile(DoubleMatrix tile) {
         this.tile = tile;
     }
 
-    public synchronized void setTileWindow(Window window) {
+    public void setTileWindow(Window window) {
         this.tileWindow = window;
     }
 
@@ -260,79 +263,57 @@ public class Slant2Height {
             logger.warning("slant2h: possibly wrong solution. deviation from unity AtA*inv(AtA) = {"+maxdev+"} > 0.01");
         }
 
-
+        // 2D coefficients per 1D coefficient, solution stored in rhs
+        final double[][] betas = new double[degree1D + 1][Nunk];
+        for (int k = 0; k <= degree1D; k++) {
+            for (int l = 0; l < Nunk; l++) {
+                betas[k][l] = rhs.get(l, k);
+            }
+        }
+        polynomial = new SchwabischPolynomial(betas, degree1D, degree2D, minPhi, maxPhi, dataWindow);
     }
 
 
-    public void applySchwabisch(final Window tileWindow, DoubleMatrix tile) {
+    /**
+     * Converts a tile of unwrapped phase to height in place, with the polynomial fitted by {@link #schwabisch()}.
+     * Thread safe: concurrent tiles share only the fitted polynomial.
+     *
+     * @param tileWindow the window of the tile in master coordinates
+     * @param tile       the tile, row-major
+     */
+    public void applySchwabisch(final Window tileWindow, final double[] tile) {
 
         /** ----------------------------------------------------------------------------*/
         /** -- STEP 4 : compute height for all pixels in N points for nHeights ---------*/
         /** ----------------------------------------------------------------------------*/
 
-        double minP = dataWindow.pixlo;
-        double maxP = dataWindow.pixhi;
-        double minL = dataWindow.linelo;
-        double maxL = dataWindow.linehi;
+        if (polynomial == null) {
+            throw new IllegalStateException("slant2h: schwabisch() has to be called before applySchwabisch()");
+        }
 
         logger.fine("S2H: schwabisch: STEP4: compute height for all pixels.");
-        // Evaluate for all points interferogram h=f(l,p,refPhase)
-        //  .....recon with multilook, degree1D, degree2D free
-        //  .....Multilook factors
-        double mlFacL = 1;//unwrappedinterf.multilookL;
-        double mlFacP = 1;//unwrappedinterf.multilookP;
-
-        // Number of lines/pixels of multilooked unwrapped interferogram
-        int mlLines = (int) (Math.floor((tileWindow.linehi - tileWindow.linelo + 1) / mlFacL));
-        int mlPixels = (int) (Math.floor((tileWindow.pixhi - tileWindow.pixlo + 1) / mlFacP));
-
-        // Line/pixel of first point in original master coordinates
-        double firstLine = (double) (tileWindow.linelo) + (mlFacL - 1.) / 2.;
-        double firstPixel = (double) (tileWindow.pixlo) + (mlFacP - 1.) / 2.;
+        polynomial.evaluate(tileWindow, tile);
+    }
 
-        // ant axis of pixel coordinates ______
-        DoubleMatrix p_axis = new DoubleMatrix(mlPixels, 1);
-        for (int i = 0; i < tileWindow.pixels(); i++) {
-            p_axis.put(i, 0, firstPixel + i * mlFacP);
-        }
-        normalize(p_axis, minP, maxP);
+    public void applySchwabisch(final Window tileWindow, DoubleMatrix tile) {
 
-        // ant axis for azimuth coordinates ______
-        DoubleMatrix l_axis = new DoubleMatrix(mlLines, 1);
-        for (int k = 0; k < tileWindow.lines(); k++) {
-            l_axis.put(k, 0, firstLine + k * mlFacL);
-        }
-        normalize(l_axis, minL, maxL);
+        final int lines = (int) tileWindow.lines();
+        final int pixels = (int) tileWindow.pixels();
 
-        // ---> Lookup table because not known in advance what degree1D is
-        DoubleMatrix[] pntALPHA = new DoubleMatrix[TEN];
-        for (int k = 0; k <= degree1D; k++) {
-            DoubleMatrix beta = new DoubleMatrix(PolyUtils.numberOfCoefficients(degree2D), 1);
-            for (int l = 0; l < PolyUtils.numberOfCoefficients(degree2D); l++) {
-                beta.put(l, 0, rhs.get(l, k)); // solution stored in rhs
+        final double[] data = new double[lines * pixels];
+        for (int line = 0; line < lines; line++) {
+            for (int pixel = 0; pixel < pixels; pixel++) {
+                data[line * pixels + pixel] = tile.get(line, pixel);
             }
-            pntALPHA[k] = PolyUtils.polyval(l_axis, p_axis, beta, degree2D);
         }
 
-        // Evaluate h=f(l,p,phi) for all points in grid in BUFFER
-        double[] coeffThisPoint = new double[degree1D + 1]; //DoubleMatrix(degree1D + 1, 1);
+        applySchwabisch(tileWindow, data);
 
-        for (int line = 0; line < mlLines; line++) {
-            for (int pixel = 0; pixel < mlPixels; pixel++) {
-                // Check if unwrapped ok, else compute h
-                if (tile.get(line, pixel) != Double.NaN) // else leave NaN
-                {
-                    for (int k = 0; k < degree1D + 1; k++) {
-                        coeffThisPoint[k] = pntALPHA[k].get(line, pixel);
-                    }
-                    double data = tile.get(line, pixel);
-                    double x = PolyUtils.normalize2(data, minPhi, maxPhi);
-                    double value = PolyUtils.polyVal1D(x, coeffThisPoint);
-                    tile.put(line, pixel, value);
-                }
+        for (int line = 0; line < lines; line++) {
+            for (int pixel = 0; pixel < pixels; pixel++) {
+                tile.put(line, pixel, data[line * pixels + pixel]);
             }
         }
-
     }
 
     // This is prototype implementation: to be removed in next cleanup....
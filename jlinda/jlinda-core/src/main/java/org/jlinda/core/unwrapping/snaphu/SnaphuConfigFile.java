@@ -22,6 +22,7 @@ public class SnaphuConfigFile {
     private Orbit masterOrbit;
     private Orbit slaveOrbit;
     private Window dataWindow;
+    private Point referencePoint = null; // geometry reference, by default the middle of the data window
 
     private SnaphuParameters parameters;
 
@@ -64,6 +65,16 @@ public class SnaphuConfigFile {
     }
 
 
+    /**
+     * Sets the point at which the geometry parameters are evaluated, instead of the middle of the data window.
+     *
+     * @param line  the line of the point
+     * @param pixel the pixel of the point
+     */
+    public void setReferencePoint(final double line, final double pixel) {
+        this.referencePoint = new Point(pixel, line, 0);
+    }
+
     public StringBuffer getConfigFileBuffer() {
         return configFileBuffer;
     }
@@ -74,7 +85,7 @@ public class SnaphuConfigFile {
         final double lineMid = 0.5d * dataWindow.lines() + 0.5;
         final double pixelMid = 0.5d * dataWindow.pixels() + 0.5;
 
-        Point pointSAR = new Point(pixelMid, lineMid, 0);
+        Point pointSAR = referencePoint != null ? referencePoint : new Point(pixelMid, lineMid, 0);
 
         final double earthRadius = masterOrbit.computeEarthRadius(pointSAR, masterSLC);
         final double orbitRadius = masterOrbit.computeOrbitRadius(pointSAR, masterSLC);
@@ -0,0 +1,111 @@
+package org.jlinda.core.utils;
+
+/**
+ * Multiplication of complex tiles by exp(-i*phase), in place on flat row-major buffers of interleaved
+ * (real, imaginary) samples.
+ * <p>
+ * Sine and cosine come from a table at 2*PI/1024 steps, corrected with a Taylor expansion of the residual angle.
+ * The residual is reduced with a two part step, so the error of sine and cosine stays below {@link #MAX_ERROR} for
+ * phases up to {@link #MAX_PHASE} in magnitude; beyond that it grows with the rounding of the phase itself, as for
+ * Math.sin. NaN phases give NaN samples.
+ */
+public final class PhaseRotation {
+
+    /**
+     * Bound of the absolute error of sine and cosine, for |phase| <= MAX_PHASE.
+     */
+    public static final double MAX_ERROR = 1e-15;
+
+    /**
+     * Phase up to which MAX_ERROR holds [rad].
+     */
+    public static final double MAX_PHASE = 1e4;
+
+    private static final int TABLE_BITS = 10;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+
+    private static final double STEP = 2.0 * Math.PI / TABLE_SIZE;
+    private static final double INV_STEP = TABLE_SIZE / (2.0 * Math.PI);
+
+    // STEP split in a part with 32 significant bits, exact when multiplied by the table index, the rest of STEP,
+    // and the rounding error of Math.PI
+    private static final double STEP_HI = Double.longBitsToDouble(Double.doubleToLongBits(STEP) & 0xFFFFFFFF00000000L);
+    private static final double STEP_MID = STEP - STEP_HI;
+    private static final double STEP_LO = 2.0 * 1.2246467991473532e-16 / TABLE_SIZE;
+
+    private static final double[] SIN = new double[TABLE_SIZE];
+    private static final double[] COS = new double[TABLE_SIZE];
+
+    static {
+        for (int j = 0; j < TABLE_SIZE; j++) {
+            SIN[j] = Math.sin(j * STEP);
+            COS[j] = Math.cos(j * STEP);
+        }
+    }
+
+    private PhaseRotation() {
+    }
+
+    /**
+     * Multiplies a tile by exp(-i*phase) in place.
+     *
+     * @param data  the tile, row-major, interleaved (real, imaginary)
+     * @param phase the phase per sample [rad], as [line][pixel]
+     */
+    public static void rotate(final double[] data, final double[][] phase) {
+        int k = 0;
+        for (final double[] line : phase) {
+            for (final double value : line) {
+                rotate(data, k, value);
+                k += 2;
+            }
+        }
+    }
+
+    /**
+     * Multiplies a tile by exp(-i*phase) in place.
+     *
+     * @param data  the tile, row-major, interleaved (real, imaginary)
+     * @param phase the phase per sample [rad], row-major
+     */
+    public static void rotate(final double[] data, final double[] phase) {
+        for (int i = 0, k = 0; i < phase.length; i++, k += 2) {
+            rotate(data, k, phase[i]);
+        }
+    }
+
+    private static void rotate(final double[] data, final int k, final double phase) {
+
+        final double n = Math.rint(phase * INV_STEP);
+        final double d = ((phase - n * STEP_HI) - n * STEP_MID) - n * STEP_LO;
+        final int j = (int) ((long) n & TABLE_MASK);
+
+        final double d2 = d * d;
+        final double sinD = d * (1.0 - d2 * (1.0 / 6.0 - d2 * (1.0 / 120.0)));
+        final double cosD = 1.0 - d2 * (0.5 - d2 * (1.0 / 24.0));
+
+        final double sin = SIN[j] * cosD + COS[j] * sinD;
+        final double cos = COS[j] * cosD - SIN[j] * sinD;
+
+        // (re + i*im) * (cos - i*sin)
+        final double re = data[k];
+        final double im = data[k + 1];
+        data[k] = re * cos + im * sin;
+        data[k + 1] = im * cos - re * sin;
+    }
+
+    /**
+     * Computes sine and cosine as used by the rotation.
+     *
+     * @param phase  the angle [rad]
+     * @param result sine at index 0, cosine at index 1
+     */
+    static void sinCos(final double phase, final double[] result) {
+        final double[] sample = {0.0, -1.0};
+        rotate(sample, 0, phase);
+        // (0 - i) * (cos - i*sin) = -sin - i*cos
+        result[0] = -sample[0];
+        result[1] = -sample[1];
+    }
+}
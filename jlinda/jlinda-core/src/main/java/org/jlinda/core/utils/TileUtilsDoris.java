@@ -50,6 +50,25 @@ public class TileUtilsDoris {
         return result;
     }
 
+    /**
+     * Pulls a complex tile into a flat row-major array of interleaved (real, imaginary) samples.
+     */
+    public static double[] pullComplexDoubleArray(final Tile tile1, final Tile tile2) {
+
+        final int height = tile1.getHeight();
+        final int width = tile1.getWidth();
+        final double[] result = new double[2 * width * height];
+
+        final ProductData samples1 = tile1.getRawSamples();
+        final ProductData samples2 = tile2.getRawSamples();
+
+        for (int i = 0; i < width * height; i++) {
+            result[2 * i] = samples1.getElemDoubleAt(i);
+            result[2 * i + 1] = samples2.getElemDoubleAt(i);
+        }
+        return result;
+    }
+
     // see javadoc for Tile (interface)
     public static DoubleMatrix pullDoubleMatrix(final Tile tile) {
 
@@ -203,6 +222,35 @@ public class TileUtilsDoris {
 
     }
 
+    /**
+     * Pushes a complex array of interleaved (real, imaginary) samples to the rectangle of a pair of float tiles.
+     *
+     * @param data      flat row-major array of interleaved samples
+     * @param dataWidth the number of samples per row of the array
+     * @param x0        the array column of the first rectangle column
+     * @param y0        the array row of the first rectangle row
+     */
+    public static void pushComplexFloatArray(final double[] data, final int dataWidth, final int x0, final int y0,
+                                             final Tile tileI, final Tile tileQ, final Rectangle rect) {
+
+        final int maxX = rect.x + rect.width;
+        final int maxY = rect.y + rect.height;
+
+        final ProductData samplesReal = tileI.getDataBuffer();
+        final ProductData samplesImag = tileQ.getDataBuffer();
+
+        final TileIndex tgtIndex = new TileIndex(tileI);
+        for (int y = rect.y; y < maxY; y++) {
+            tgtIndex.calculateStride(y);
+            int k = 2 * ((y - rect.y + y0) * dataWidth + x0);
+            for (int x = rect.x; x < maxX; x++) {
+                final int index = tgtIndex.getIndex(x);
+                samplesReal.setElemFloatAt(index, (float) data[k++]);
+                samplesImag.setElemFloatAt(index, (float) data[k++]);
+            }
+        }
+    }
+
     public static void pushComplexDoubleMatrix(
             final ComplexDoubleMatrix data, final Tile tileI, final Tile tileQ, final Rectangle rect) {
 
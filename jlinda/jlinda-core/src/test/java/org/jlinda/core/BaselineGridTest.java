@@ -0,0 +1,113 @@
+package org.jlinda.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compares the batched baseline evaluation with the scalar getters.
+ */
+public class BaselineGridTest {
+
+    private static final double DELTA = 1E-09;
+
+    private static final double[] coefsBperp = {204.74050207594073, -2.7063284843940423, -1.9654577172930068,
+            -0.27148088892527183, 0.030015539873059084, 0.003901118977445924, 0.0080319706424803669,
+            -0.00083710155801050546, 0.048297024687486617, 0.00022254770283325342};
+
+    private static final double[] coefsBpar = {71.32452968484221, 4.317668533069082, 7.13951125217136,
+            0.81103032885585, -0.349171075969934, 0.067867560964078, 0.078749942709692, 0.0291650750441477,
+            -0.414975934196264, 0.0455982447601855};
+
+    private static final double[] coefsTheta = {0.32414820624445345, 0.00015379892489823, 0.0252370536198059,
+            0.0036500192659581, -1.42495787566161e-05, -1.935767562796e-06, -0.00031942016518191,
+            4.2553531406e-08, -0.0013919825696454, -2.1149557759e-05};
+
+    private static final double[] coefsThetaInc = {0.40558607743544728, 0.00017662145797751834,
+            0.031877260903327521, 0.0042347405518766267, -1.663109333748815e-05, -2.0041823944575398e-06,
+            -0.00039875628636387874, 4.9802404835401393e-08, -0.0016622888200150845, -2.4034772290448813e-05};
+
+    private static final Baseline baseline = new Baseline(coefsBperp, coefsBpar, coefsTheta, coefsThetaInc);
+
+    @Test
+    public void testGridEqualsScalar() throws Exception {
+
+        final double[] lines = {0, 111, 11111, 22222, 25000, 31000};
+        final double[] pixels = {-10, 1, 111, 2222, 5000};
+
+        for (double height : new double[]{0, 1234.5}) {
+            final int size = lines.length * pixels.length;
+            final double[] bperp = new double[size];
+            final double[] bpar = new double[size];
+            final double[] bhor = new double[size];
+            final double[] bvert = new double[size];
+            final double[] theta = new double[size];
+
+            baseline.getBaselineGrid(lines, pixels, height, bperp, bpar, bhor, bvert, theta);
+
+            for (int i = 0; i < lines.length; i++) {
+                for (int j = 0; j < pixels.length; j++) {
+                    final int k = i * pixels.length + j;
+                    assertScalar(lines[i], pixels[j], height, bperp[k], bpar[k], bhor[k], bvert[k], theta[k]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPointsEqualsScalar() throws Exception {
+
+        final int size = 500;
+        final Random random = new Random(7);
+        final double[] lines = new double[size];
+        final double[] pixels = new double[size];
+        final double[] heights = new double[size];
+        for (int i = 0; i < size; i++) {
+            lines[i] = 26000 * random.nextDouble();
+            pixels[i] = 5200 * random.nextDouble();
+            heights[i] = 4000 * random.nextDouble() - 100;
+        }
+
+        final double[] bperp = new double[size];
+        final double[] bpar = new double[size];
+        final double[] bhor = new double[size];
+        final double[] bvert = new double[size];
+        final double[] theta = new double[size];
+
+        baseline.getBaselinePoints(lines, pixels, heights, bperp, bpar, bhor, bvert, theta);
+
+        for (int i = 0; i < size; i++) {
+            assertScalar(lines[i], pixels[i], heights[i], bperp[i], bpar[i], bhor[i], bvert[i], theta[i]);
+        }
+    }
+
+    @Test
+    public void testSomeOutputs() throws Exception {
+
+        final double[] lines = {11111, 22222};
+        final double[] pixels = {111, 2222};
+        final double[] bvert = new double[4];
+
+        baseline.getBaselineGrid(lines, pixels, 0, null, null, null, bvert, null);
+
+        Assert.assertEquals(baseline.getBvert(lines[0], pixels[0], 0), bvert[0], DELTA);
+        Assert.assertEquals(baseline.getBvert(lines[1], pixels[1], 0), bvert[3], DELTA);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNotModeled() {
+        new Baseline().getBaselineGrid(new double[1], new double[1], 0, new double[1], null, null, null, null);
+    }
+
+    private static void assertScalar(final double line, final double pixel, final double height,
+                                     final double bperp, final double bpar, final double bhor, final double bvert,
+                                     final double theta) throws Exception {
+
+        Assert.assertEquals(baseline.getBperp(line, pixel, height), bperp, DELTA);
+        Assert.assertEquals(baseline.getBpar(line, pixel, height), bpar, DELTA);
+        Assert.assertEquals(baseline.getBhor(line, pixel, height), bhor, DELTA);
+        Assert.assertEquals(baseline.getBvert(line, pixel, height), bvert, DELTA);
+        Assert.assertEquals(baseline.getTheta(line, pixel, height), theta, DELTA);
+    }
+}
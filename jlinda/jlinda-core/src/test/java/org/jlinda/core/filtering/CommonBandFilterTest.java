@@ -0,0 +1,156 @@
+package org.jlinda.core.filtering;
+
+import org.jblas.ComplexDouble;
+import org.jblas.ComplexDoubleMatrix;
+import org.jlinda.core.Constants;
+import org.jlinda.core.SLCImage;
+import org.jlinda.core.Window;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compares the array based common band filters with the matrix based RangeFilter and AzimuthFilter.
+ */
+public class CommonBandFilterTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static final int nRows = 64;
+    private static final int nCols = 128;
+
+    @Test
+    public void testRangeFilterHamming() throws Exception {
+        compareRangeFilter(0.75, 1, true);
+    }
+
+    @Test
+    public void testRangeFilterRect() throws Exception {
+        compareRangeFilter(1.0, 1, true);
+    }
+
+    @Test
+    public void testRangeFilterSlaveOnly() throws Exception {
+        compareRangeFilter(0.75, 1, false);
+    }
+
+    @Test
+    public void testRangeFilterOversampled() throws Exception {
+        compareRangeFilter(0.75, 2, true);
+    }
+
+    @Test
+    public void testAzimuthFilter() throws Exception {
+
+        // different Doppler centroids shift the inverse and the common band windows apart
+        final SLCImage masterMetadata = new SLCImage();
+        masterMetadata.doppler.setF_DC_const(210.0);
+        final SLCImage slaveMetadata = new SLCImage();
+        slaveMetadata.doppler.setF_DC_const(-95.0);
+        final double[] data = createData(1, 0.0);
+
+        final AzimuthFilter azimuthFilter = new AzimuthFilter();
+        azimuthFilter.setHammingAlpha(0.75);
+        azimuthFilter.setMetadata(masterMetadata);
+        azimuthFilter.setMetadata1(slaveMetadata);
+        azimuthFilter.setVariableFilter(false);
+        azimuthFilter.setTile(new Window(0, nRows - 1, 0, nCols - 1));
+        azimuthFilter.setData(toMatrix(data));
+        azimuthFilter.defineParameters();
+        azimuthFilter.defineFilter();
+        azimuthFilter.applyFilter();
+
+        final AzimuthCommonBandFilter filter = new AzimuthCommonBandFilter(
+                masterMetadata.getPRF(), masterMetadata.getAzimuthBandwidth(), 0.75);
+        filter.filter(data, nRows, nCols, masterMetadata.doppler.getF_DC_const(),
+                slaveMetadata.doppler.getF_DC_const());
+
+        assertEquals(azimuthFilter.getData(), data);
+    }
+
+    @Test
+    public void testAzimuthFilterVectorIsCached() {
+        final AzimuthCommonBandFilter filter = new AzimuthCommonBandFilter(1679.902, 1378.0, 0.75);
+        Assert.assertSame(filter.getFilterVector(128, 210.0, 190.0), filter.getFilterVector(128, 210.0, 190.0));
+        Assert.assertNotSame(filter.getFilterVector(128, 210.0, 190.0), filter.getFilterVector(128, 190.0, 210.0));
+    }
+
+    private static void compareRangeFilter(final double alphaHamming, final int ovsFactor,
+                                           final boolean filterMaster) throws Exception {
+
+        // range bandwidth in MHz, as read from the product metadata
+        final SLCImage masterMetadata = new SLCImage();
+        masterMetadata.setRangeBandwidth(15.55);
+        final SLCImage slaveMetadata = new SLCImage();
+        slaveMetadata.setRangeBandwidth(15.55);
+        final double[] master = createData(3, 0.0);
+        final double[] slave = createData(3, 0.4);
+
+        final RangeFilter rangeFilter = new RangeFilter();
+        rangeFilter.setAlphaHamming(alphaHamming);
+        rangeFilter.setOvsFactor(ovsFactor);
+        rangeFilter.setNlMean(15);
+        rangeFilter.setMetadata(masterMetadata);
+        rangeFilter.setData(toMatrix(master));
+        rangeFilter.setMetadata1(slaveMetadata);
+        rangeFilter.setData1(toMatrix(slave));
+        rangeFilter.defineParameters();
+        rangeFilter.defineFilter();
+        if (filterMaster) {
+            rangeFilter.applyFilter();
+        } else {
+            rangeFilter.applyFilterSlave();
+        }
+
+        final RangeCommonBandFilter filter = new RangeCommonBandFilter(0.5 * masterMetadata.getRsr2x(),
+                masterMetadata.getRangeBandwidth() * Constants.MEGA, alphaHamming, 15, ovsFactor, false);
+        final double[] unfilteredMaster = master.clone();
+        filter.filter(master, slave, nRows, nCols, filterMaster);
+
+        assertEquals(filterMaster ? rangeFilter.getData() : toMatrix(unfilteredMaster), master);
+        assertEquals(rangeFilter.getData1(), slave);
+    }
+
+    /**
+     * Random speckle with a fringe frequency which varies along the lines.
+     */
+    private static double[] createData(final long seed, final double fringeRate) {
+        final Random random = new Random(42);
+        final Random noise = new Random(seed);
+        final double[] data = new double[2 * nRows * nCols];
+        for (int y = 0; y < nRows; y++) {
+            for (int x = 0; x < nCols; x++) {
+                final double re = random.nextGaussian();
+                final double im = random.nextGaussian();
+                final double phase = fringeRate * (1.0 + 0.01 * y) * x;
+                final int k = 2 * (y * nCols + x);
+                data[k] = re * Math.cos(phase) - im * Math.sin(phase) + 0.1 * noise.nextGaussian();
+                data[k + 1] = re * Math.sin(phase) + im * Math.cos(phase) + 0.1 * noise.nextGaussian();
+            }
+        }
+        return data;
+    }
+
+    private static ComplexDoubleMatrix toMatrix(final double[] data) {
+        final ComplexDoubleMatrix matrix = new ComplexDoubleMatrix(nRows, nCols);
+        for (int y = 0; y < nRows; y++) {
+            for (int x = 0; x < nCols; x++) {
+                final int k = 2 * (y * nCols + x);
+                matrix.put(y, x, new ComplexDouble(data[k], data[k + 1]));
+            }
+        }
+        return matrix;
+    }
+
+    private static void assertEquals(final ComplexDoubleMatrix expected, final double[] actual) {
+        for (int y = 0; y < nRows; y++) {
+            for (int x = 0; x < nCols; x++) {
+                final int k = 2 * (y * nCols + x);
+                final ComplexDouble value = expected.get(y, x);
+                Assert.assertEquals(value.real(), actual[k], DELTA);
+                Assert.assertEquals(value.imag(), actual[k + 1], DELTA);
+            }
+        }
+    }
+}
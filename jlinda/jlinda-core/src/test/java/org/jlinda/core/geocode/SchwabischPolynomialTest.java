@@ -0,0 +1,115 @@
+package org.jlinda.core.geocode;
+
+import org.jlinda.core.Window;
+import org.jlinda.core.utils.PolyUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compares the Horner evaluation of the Schwabisch polynomial with the grid evaluation of PolyUtils.
+ */
+public class SchwabischPolynomialTest {
+
+    private static final Window dataWindow = new Window(0, 26897, 0, 5167);
+    private static final Window tileWindow = new Window(15000, 15063, 3000, 3127);
+
+    private static final double minPhi = -12.3;
+    private static final double maxPhi = 87.1;
+
+    @Test
+    public void testDegree2D_5() {
+        compare(2, 5);
+    }
+
+    @Test
+    public void testDegree2D_3() {
+        compare(3, 3);
+    }
+
+    @Test
+    public void testDegree2D_7() {
+        compare(1, 7);
+    }
+
+    @Test
+    public void testNaNIsKept() {
+        final SchwabischPolynomial polynomial = new SchwabischPolynomial(createBetas(2, 5), 2, 5, minPhi, maxPhi, dataWindow);
+        final double[] data = createPhase();
+        data[10] = Double.NaN;
+        polynomial.evaluate(tileWindow, data);
+        Assert.assertTrue(Double.isNaN(data[10]));
+        Assert.assertFalse(Double.isNaN(data[11]));
+    }
+
+    private static void compare(final int degree1D, final int degree2D) {
+
+        final double[][] betas = createBetas(degree1D, degree2D);
+        final double[] data = createPhase();
+        final double[] expected = evaluateOnGrid(betas, degree1D, degree2D, data);
+
+        new SchwabischPolynomial(betas, degree1D, degree2D, minPhi, maxPhi, dataWindow).evaluate(tileWindow, data);
+
+        for (int i = 0; i < data.length; i++) {
+            Assert.assertEquals(expected[i], data[i], 1e-9 * Math.max(1.0, Math.abs(expected[i])));
+        }
+    }
+
+    /**
+     * Step 4 of Slant2Height.schwabisch as evaluated per 1D coefficient on the tile grid.
+     */
+    private static double[] evaluateOnGrid(final double[][] betas, final int degree1D, final int degree2D,
+                                           final double[] phase) {
+
+        final int lines = (int) tileWindow.lines();
+        final int pixels = (int) tileWindow.pixels();
+
+        final double[] lAxis = new double[lines];
+        for (int k = 0; k < lines; k++) {
+            lAxis[k] = PolyUtils.normalize2((double) (tileWindow.linelo + k), dataWindow.linelo, dataWindow.linehi);
+        }
+        final double[] pAxis = new double[pixels];
+        for (int i = 0; i < pixels; i++) {
+            pAxis[i] = PolyUtils.normalize2((double) (tileWindow.pixlo + i), dataWindow.pixlo, dataWindow.pixhi);
+        }
+
+        final double[][][] pntAlpha = new double[degree1D + 1][][];
+        for (int k = 0; k <= degree1D; k++) {
+            pntAlpha[k] = PolyUtils.polyval(lAxis, pAxis, betas[k], degree2D);
+        }
+
+        final double[] result = new double[phase.length];
+        final double[] coeffThisPoint = new double[degree1D + 1];
+        for (int line = 0; line < lines; line++) {
+            for (int pixel = 0; pixel < pixels; pixel++) {
+                for (int k = 0; k <= degree1D; k++) {
+                    coeffThisPoint[k] = pntAlpha[k][line][pixel];
+                }
+                final double x = PolyUtils.normalize2(phase[line * pixels + pixel], minPhi, maxPhi);
+                result[line * pixels + pixel] = PolyUtils.polyVal1D(x, coeffThisPoint);
+            }
+        }
+        return result;
+    }
+
+    private static double[][] createBetas(final int degree1D, final int degree2D) {
+        final Random random = new Random(11);
+        final double[][] betas = new double[degree1D + 1][PolyUtils.numberOfCoefficients(degree2D)];
+        for (int k = 0; k <= degree1D; k++) {
+            for (int l = 0; l < betas[k].length; l++) {
+                betas[k][l] = 1000.0 * random.nextGaussian() / (l + 1);
+            }
+        }
+        return betas;
+    }
+
+    private static double[] createPhase() {
+        final Random random = new Random(5);
+        final double[] phase = new double[(int) (tileWindow.lines() * tileWindow.pixels())];
+        for (int i = 0; i < phase.length; i++) {
+            phase[i] = minPhi + (maxPhi - minPhi) * random.nextDouble();
+        }
+        return phase;
+    }
+}
@@ -0,0 +1,83 @@
+package org.jlinda.core.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PhaseRotationTest {
+
+    @Test
+    public void testSinCosErrorBound() {
+
+        final Random random = new Random(17);
+        final double[] sinCos = new double[2];
+
+        double maxError = 0.0;
+        for (int i = 0; i < 1000000; i++) {
+            // small and large phases, and the ends of the range
+            final double phase;
+            if (i < 4) {
+                phase = (i % 2 == 0 ? 1 : -1) * (i < 2 ? PhaseRotation.MAX_PHASE : 0.0);
+            } else {
+                phase = (2.0 * random.nextDouble() - 1.0) * (i % 2 == 0 ? 10.0 : PhaseRotation.MAX_PHASE);
+            }
+
+            PhaseRotation.sinCos(phase, sinCos);
+            maxError = Math.max(maxError, Math.abs(sinCos[0] - StrictMath.sin(phase)));
+            maxError = Math.max(maxError, Math.abs(sinCos[1] - StrictMath.cos(phase)));
+        }
+        Assert.assertTrue("max error " + maxError, maxError <= PhaseRotation.MAX_ERROR);
+    }
+
+    @Test
+    public void testRotate() {
+
+        final int nRows = 16;
+        final int nCols = 32;
+        final Random random = new Random(3);
+
+        final double[][] phase = new double[nRows][nCols];
+        final double[] data = new double[2 * nRows * nCols];
+        for (int y = 0; y < nRows; y++) {
+            for (int x = 0; x < nCols; x++) {
+                phase[y][x] = 250.0 * random.nextGaussian();
+                data[2 * (y * nCols + x)] = random.nextGaussian();
+                data[2 * (y * nCols + x) + 1] = random.nextGaussian();
+            }
+        }
+        final double[] expected = data.clone();
+        final double[] flatData = data.clone();
+        final double[] flatPhase = new double[nRows * nCols];
+
+        PhaseRotation.rotate(data, phase);
+
+        for (int y = 0; y < nRows; y++) {
+            for (int x = 0; x < nCols; x++) {
+                // ifg * conj(exp(i*phase))
+                final int k = 2 * (y * nCols + x);
+                final double cos = Math.cos(phase[y][x]);
+                final double sin = Math.sin(phase[y][x]);
+                final double re = expected[k];
+                final double im = expected[k + 1];
+                final double bound = 2 * PhaseRotation.MAX_ERROR * (Math.abs(re) + Math.abs(im)) + 1e-15;
+                Assert.assertEquals(re * cos + im * sin, data[k], bound);
+                Assert.assertEquals(im * cos - re * sin, data[k + 1], bound);
+                flatPhase[y * nCols + x] = phase[y][x];
+            }
+        }
+
+        PhaseRotation.rotate(flatData, flatPhase);
+        Assert.assertArrayEquals(data, flatData, 0.0);
+    }
+
+    @Test
+    public void testNaNPhase() {
+        final double[] data = {1.0, 2.0, 3.0, 4.0};
+        PhaseRotation.rotate(data, new double[]{Double.NaN, 0.0});
+        Assert.assertTrue(Double.isNaN(data[0]));
+        Assert.assertTrue(Double.isNaN(data[1]));
+        Assert.assertEquals(3.0, data[2], 0.0);
+        Assert.assertEquals(4.0, data[3], 0.0);
+    }
+}
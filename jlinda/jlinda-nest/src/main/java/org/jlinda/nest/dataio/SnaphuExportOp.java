@@ -86,6 +86,20 @@ public class SnaphuExportOp extends Operator {
             defaultValue = "500", label = "Tile Cost Threshold")
     private int tileCostThreshold = 500;
 
+    @Parameter(description = "Divide the image into separate SNAPHU problems, each with its own config and input files," +
+            " to be unwrapped independently. Set to 1 for a single problem.",
+            defaultValue = "1", label = "Number of Partition Rows")
+    private int numberOfPartitionRows = 1;
+
+    @Parameter(description = "Divide the image into separate SNAPHU problems, each with its own config and input files," +
+            " to be unwrapped independently. Set to 1 for a single problem.",
+            defaultValue = "1", label = "Number of Partition Columns")
+    private int numberOfPartitionCols = 1;
+
+    @Parameter(description = "Overlap, in pixels, added on each side of a partition.",
+            defaultValue = "200", label = "Partition Overlap")
+    private int partitionOverlap = 200;
+
     private SubsetInfo subsetInfo;
     private String formatName = "snaphu";
 
@@ -141,6 +155,15 @@ public class SnaphuExportOp extends Operator {
 
                 AbstractMetadata.addAbstractedAttribute(absTgt, "snaphu_tileCostThreshold", ProductData.TYPE_INT32, "", "Snaphu parameter");
                 AbstractMetadata.setAttribute(absTgt, "snaphu_tileCostThreshold", tileCostThreshold);
+
+                AbstractMetadata.addAbstractedAttribute(absTgt, "snaphu_numberOfPartitionRows", ProductData.TYPE_INT32, "", "Snaphu parameter");
+                AbstractMetadata.setAttribute(absTgt, "snaphu_numberOfPartitionRows", numberOfPartitionRows);
+
+                AbstractMetadata.addAbstractedAttribute(absTgt, "snaphu_numberOfPartitionCols", ProductData.TYPE_INT32, "", "Snaphu parameter");
+                AbstractMetadata.setAttribute(absTgt, "snaphu_numberOfPartitionCols", numberOfPartitionCols);
+
+                AbstractMetadata.addAbstractedAttribute(absTgt, "snaphu_partitionOverlap", ProductData.TYPE_INT32, "", "Snaphu parameter");
+                AbstractMetadata.setAttribute(absTgt, "snaphu_partitionOverlap", partitionOverlap);
             } catch (Throwable e){
                 OperatorUtils.catchOperatorException(getId() + "Metadata of input product is not in the format compatible for SNAPHU export.", e);
             }
@@ -182,14 +205,17 @@ public class SnaphuExportOp extends Operator {
     }
 
     @Override
-    public synchronized void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+    public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
         try {
-            writeHeader(subsetInfo);
+            if (!subsetInfo.written) {
+                writeHeader(subsetInfo);
+            }
 
             final Rectangle trgRect = targetTile.getRectangle();
             final Tile sourceTile = getSourceTile(sourceProduct.getBand(targetBand.getName()), trgRect);
             final ProductData rawSamples = sourceTile.getRawSamples();
 
+            // the writer puts each tile at its own file positions, tiles are written concurrently
             subsetInfo.productWriter.writeBandRasterData(targetBand,
                     trgRect.x, trgRect.y, trgRect.width, trgRect.height, rawSamples, ProgressMonitor.NULL);
         } catch (Exception e) {
@@ -226,7 +252,7 @@ public class SnaphuExportOp extends Operator {
         Product subsetProduct;
         File file;
         ProductWriter productWriter;
-        boolean written = false;
+        volatile boolean written = false;
     }
 
     public static class Spi extends OperatorSpi {
@@ -0,0 +1,120 @@
+package org.jlinda.nest.dataio;
+
+import org.esa.snap.core.datamodel.ProductData;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A region of the interferogram exported as a separate SNAPHU problem, with its own input files and config file.
+ * <p>
+ * The image is divided into a grid of partitions which overlap their neighbours by a number of pixels on each side.
+ * A single partition covers the whole image and is written to the output folder itself, otherwise each partition
+ * has a sub-folder.
+ */
+final class SnaphuPartition {
+
+    final int row;
+    final int col;
+    final Rectangle rectangle;
+    final File outputDir;
+
+    private SnaphuPartition(final int row, final int col, final Rectangle rectangle, final File outputDir) {
+        this.row = row;
+        this.col = col;
+        this.rectangle = rectangle;
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * Divides an image into partitions.
+     *
+     * @param width     the image width
+     * @param height    the image height
+     * @param rows      the number of partition rows
+     * @param cols      the number of partition columns
+     * @param overlap   the overlap in pixels added on each side of a partition
+     * @param outputDir the output folder
+     * @return the partitions, row by row
+     */
+    static SnaphuPartition[] createPartitions(final int width, final int height, final int rows, final int cols,
+                                              final int overlap, final File outputDir) {
+
+        final int numRows = Math.max(1, Math.min(rows, height));
+        final int numCols = Math.max(1, Math.min(cols, width));
+        if (numRows == 1 && numCols == 1) {
+            return new SnaphuPartition[]{
+                    new SnaphuPartition(0, 0, new Rectangle(0, 0, width, height), outputDir)};
+        }
+
+        final SnaphuPartition[] partitions = new SnaphuPartition[numRows * numCols];
+        for (int r = 0; r < numRows; r++) {
+            final int y0 = Math.max(0, (int) ((long) r * height / numRows) - overlap);
+            final int y1 = Math.min(height, (int) ((long) (r + 1) * height / numRows) + overlap);
+            for (int c = 0; c < numCols; c++) {
+                final int x0 = Math.max(0, (int) ((long) c * width / numCols) - overlap);
+                final int x1 = Math.min(width, (int) ((long) (c + 1) * width / numCols) + overlap);
+                partitions[r * numCols + c] = new SnaphuPartition(r, c, new Rectangle(x0, y0, x1 - x0, y1 - y0),
+                        new File(outputDir, "partition_" + (r + 1) + '_' + (c + 1)));
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Writes the part of a region of band samples inside the partition to the partition file of the band. Rows are
+     * written at absolute file positions, so regions may be written concurrently.
+     *
+     * @param channel   the partition file of the band
+     * @param region    the image region of the samples
+     * @param data      the samples of the region, row-major
+     * @param byteOrder the file byte order
+     * @throws IOException on failure
+     */
+    void write(final FileChannel channel, final Rectangle region, final ProductData data,
+               final ByteOrder byteOrder) throws IOException {
+
+        final Rectangle r = rectangle.intersection(region);
+        if (r.isEmpty()) {
+            return;
+        }
+
+        final int elemSize = data.getElemSize();
+        final ByteBuffer buffer = ByteBuffer.allocate(r.width * elemSize).order(byteOrder);
+        for (int y = r.y; y < r.y + r.height; y++) {
+            buffer.clear();
+            putElems(data, (y - region.y) * region.width + r.x - region.x, r.width, buffer);
+            buffer.flip();
+
+            long position = ((long) (y - rectangle.y) * rectangle.width + r.x - rectangle.x) * elemSize;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+
+    private static void putElems(final ProductData data, final int offset, final int count, final ByteBuffer buffer) {
+        final Object elems = data.getElems();
+        if (elems instanceof float[]) {
+            buffer.asFloatBuffer().put((float[]) elems, offset, count);
+        } else if (elems instanceof double[]) {
+            buffer.asDoubleBuffer().put((double[]) elems, offset, count);
+        } else if (elems instanceof int[]) {
+            buffer.asIntBuffer().put((int[]) elems, offset, count);
+        } else if (elems instanceof short[]) {
+            buffer.asShortBuffer().put((short[]) elems, offset, count);
+        } else if (elems instanceof byte[]) {
+            buffer.put((byte[]) elems, offset, count);
+            return;
+        } else if (elems instanceof long[]) {
+            buffer.asLongBuffer().put((long[]) elems, offset, count);
+        } else {
+            throw new IllegalArgumentException("Unsupported data type " + data.getTypeString());
+        }
+        buffer.position(count * data.getElemSize());
+    }
+}
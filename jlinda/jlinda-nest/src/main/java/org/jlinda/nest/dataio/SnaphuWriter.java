@@ -1,7 +1,6 @@
 package org.jlinda.nest.dataio;
 
 import com.bc.ceres.core.ProgressMonitor;
-import org.esa.s1tbx.commons.io.FileImageOutputStreamExtImpl;
 import org.esa.snap.core.dataio.AbstractProductWriter;
 import org.esa.snap.core.dataio.ProductReader;
 import org.esa.snap.core.dataio.ProductWriterPlugIn;
@@ -21,11 +20,12 @@ import org.jlinda.core.Window;
 import org.jlinda.core.unwrapping.snaphu.SnaphuConfigFile;
 import org.jlinda.core.unwrapping.snaphu.SnaphuParameters;
 
-import javax.imageio.stream.ImageOutputStream;
+import java.awt.Rectangle;
 import java.io.*;
 import java.nio.ByteOrder;
-import java.util.HashMap;
+import java.nio.channels.FileChannel;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The SNAPHU product writer based on ENVI products writer.
@@ -36,8 +36,9 @@ public class SnaphuWriter extends AbstractProductWriter {
 
     private File _outputDir;
     private File _outputFile;
-    private Map _bandOutputStreams;
+    private final Map<Band, FileChannel[]> _bandOutputChannels = new ConcurrentHashMap<>();
     private boolean _incremental = true;
+    private SnaphuPartition[] partitions;
 
     public static final String SNAPHU_HEADER_EXTENSION = ".snaphu"+EnviHeader.FILE_EXTENSION;
     public static final String SNAPHU_IMAGE_EXTENSION = ".snaphu"+DimapProductConstants.IMAGE_FILE_EXTENSION;
@@ -79,7 +80,20 @@ public class SnaphuWriter extends AbstractProductWriter {
         ensureNamingConvention();
         Product sourceProduct = getSourceProduct();
 
-        writeUnwrappedBandHeader(sourceProduct);
+        final MetadataElement absRoot = AbstractMetadata.getAbstractedMetadata(sourceProduct);
+        partitions = SnaphuPartition.createPartitions(
+                sourceProduct.getSceneRasterWidth(), sourceProduct.getSceneRasterHeight(),
+                absRoot.getAttributeInt("snaphu_numberOfPartitionRows", 1),
+                absRoot.getAttributeInt("snaphu_numberOfPartitionCols", 1),
+                absRoot.getAttributeInt("snaphu_partitionOverlap", 0),
+                _outputDir);
+
+        for (SnaphuPartition partition : partitions) {
+            if (!partition.outputDir.exists() && !partition.outputDir.mkdirs()) {
+                SystemUtils.LOG.severe("Unable to create folders in " + partition.outputDir);
+            }
+            writeUnwrappedBandHeader(sourceProduct, partition);
+        }
 
         // set up product writer
         sourceProduct.setProductWriter(this);
@@ -90,7 +104,8 @@ public class SnaphuWriter extends AbstractProductWriter {
 
     }
 
-    private void writeUnwrappedBandHeader(final Product sourceProduct) throws IOException {
+    private void writeUnwrappedBandHeader(final Product sourceProduct, final SnaphuPartition partition)
+            throws IOException {
         Band phaseBand = null;
         for (Band band : sourceProduct.getBands()) {
             if (band.getUnit()!= null && band.getUnit().contains(Unit.PHASE)) {
@@ -103,10 +118,10 @@ public class SnaphuWriter extends AbstractProductWriter {
         }
 
         String bandName = UNWRAPPED_PREFIX + phaseBand.getName() + SNAPHU_HEADER_EXTENSION;
-        File unwrappedHeaderFile = new File(_outputDir, bandName);
+        File unwrappedHeaderFile = new File(partition.outputDir, bandName);
 
         Band newBand = new Band(UNWRAPPED_PREFIX+phaseBand.getName(), phaseBand.getDataType(),
-                phaseBand.getRasterWidth(), phaseBand.getRasterHeight());
+                partition.rectangle.width, partition.rectangle.height);
         newBand.setDescription("Unwrapped "+phaseBand.getDescription());
 
         EnviHeader.createPhysicalFile(unwrappedHeaderFile,
@@ -145,6 +160,8 @@ public class SnaphuWriter extends AbstractProductWriter {
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Rows are written at absolute file positions, so tiles may be written concurrently.
      */
     public void writeBandRasterData(Band sourceBand,
                                     int sourceOffsetX, int sourceOffsetY,
@@ -158,14 +175,12 @@ public class SnaphuWriter extends AbstractProductWriter {
         final int sourceBandHeight = sourceBand.getRasterHeight();
         checkSourceRegionInsideBandRegion(sourceWidth, sourceBandWidth, sourceHeight, sourceBandHeight, sourceOffsetX,
                 sourceOffsetY);
-        final ImageOutputStream outputStream = getOrCreateImageOutputStream(sourceBand);
-        long outputPos = sourceOffsetY * sourceBandWidth + sourceOffsetX;
+        final FileChannel[] channels = getOrCreateOutputChannels(sourceBand);
+        final Rectangle region = new Rectangle(sourceOffsetX, sourceOffsetY, sourceWidth, sourceHeight);
         pm.beginTask("Writing band '" + sourceBand.getName() + "'...", 1);//sourceHeight);
         try {
-            final long max = sourceHeight * sourceWidth;
-            for (int sourcePos = 0; sourcePos < max; sourcePos += sourceWidth) {
-                sourceBuffer.writeTo(sourcePos, sourceWidth, outputStream, outputPos);
-                outputPos += sourceBandWidth;
+            for (int i = 0; i < partitions.length; i++) {
+                partitions[i].write(channels[i], region, sourceBuffer, byteOrder);
             }
             pm.worked(1);
         } finally {
@@ -205,12 +220,9 @@ public class SnaphuWriter extends AbstractProductWriter {
      * @throws java.io.IOException on failure
      */
     public void flush() throws IOException {
-        if (_bandOutputStreams == null) {
+        if (_bandOutputChannels.isEmpty()) {
             return;
         }
-        for (Object o : _bandOutputStreams.values()) {
-            ((ImageOutputStream) o).flush();
-        }
 
         // at the very end also save SnaphuConfig file
         try {
@@ -225,83 +237,66 @@ public class SnaphuWriter extends AbstractProductWriter {
      *
      * @throws java.io.IOException on failure
      */
-    public void close() throws IOException {
-        if (_bandOutputStreams == null) {
-            return;
-        }
-        for (Object o : _bandOutputStreams.values()) {
-            ((ImageOutputStream) o).close();
+    public synchronized void close() throws IOException {
+        for (FileChannel[] channels : _bandOutputChannels.values()) {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
         }
-        _bandOutputStreams.clear();
-        _bandOutputStreams = null;
+        _bandOutputChannels.clear();
     }
 
     /**
-     * Returns the data output stream associated with the given <code>Band</code>. If no stream exists, one is created
-     * and fed into the hash map
+     * Returns the partition files associated with the given <code>Band</code>. If they are not open yet, they are
+     * created and fed into the hash map
      */
-    private ImageOutputStream getOrCreateImageOutputStream(Band band) throws IOException {
-        ImageOutputStream outputStream = getImageOutputStream(band);
-        if (outputStream == null) {
-            outputStream = createImageOutputStream(band);
-            if (_bandOutputStreams == null) {
-                _bandOutputStreams = new HashMap();
+    private FileChannel[] getOrCreateOutputChannels(Band band) throws IOException {
+        FileChannel[] channels = _bandOutputChannels.get(band);
+        if (channels == null) {
+            synchronized (this) {
+                channels = _bandOutputChannels.get(band);
+                if (channels == null) {
+                    channels = new FileChannel[partitions.length];
+                    for (int i = 0; i < partitions.length; i++) {
+                        channels[i] = new RandomAccessFile(getValidImageFile(band, partitions[i]), "rw").getChannel();
+                    }
+                    _bandOutputChannels.put(band, channels);
+                }
             }
-
-            outputStream.setByteOrder(byteOrder);
-            _bandOutputStreams.put(band, outputStream);
-        }
-        return outputStream;
-    }
-
-    private ImageOutputStream getImageOutputStream(Band band) {
-        if (_bandOutputStreams != null) {
-            return (ImageOutputStream) _bandOutputStreams.get(band);
         }
-        return null;
+        return channels;
     }
 
     /**
-     * Returns a file associated with the given <code>Band</code>. The method ensures that the file exists and have the
-     * right size. Also ensures a recreate if the file not exists or the file have a different file size. A new envi
-     * header file was written every call.
+     * Returns the file associated with the given <code>Band</code> in a partition. The method ensures that the file
+     * exists and have the right size. Also ensures a recreate if the file not exists or the file have a different
+     * file size. A new envi header file was written every call.
      */
-    private File getValidImageFile(Band band) throws IOException {
-        writeEnviHeader(band); // always (re-)write ENVI header
-        final File file = getImageFile(band);
+    private File getValidImageFile(Band band, SnaphuPartition partition) throws IOException {
+        writeEnviHeader(band, partition); // always (re-)write ENVI header
+        final File file = new File(partition.outputDir, createImageFilename(band));
+        final long fileSize = getImageFileSize(band, partition);
         if (file.exists()) {
-            if (file.length() != getImageFileSize(band)) {
-                createPhysicalImageFile(band, file);
+            if (file.length() != fileSize) {
+                createPhysicalFile(file, fileSize);
             }
         } else {
-            createPhysicalImageFile(band, file);
+            createPhysicalFile(file, fileSize);
         }
         return file;
     }
 
-    private static void createPhysicalImageFile(Band band, File file) throws IOException {
-        createPhysicalFile(file, getImageFileSize(band));
-    }
-
-    private void writeEnviHeader(Band band) throws IOException {
-        EnviHeader.createPhysicalFile(getEnviHeaderFile(band),
+    private static void writeEnviHeader(Band band, SnaphuPartition partition) throws IOException {
+        EnviHeader.createPhysicalFile(new File(partition.outputDir, createEnviHeaderFilename(band)),
                 band,
-                band.getRasterWidth(),
-                band.getRasterHeight());
-    }
-
-    private ImageOutputStream createImageOutputStream(Band band) throws IOException {
-        return new FileImageOutputStreamExtImpl(getValidImageFile(band));
+                partition.rectangle.width,
+                partition.rectangle.height);
     }
 
-    private static long getImageFileSize(RasterDataNode band) {
+    private static long getImageFileSize(RasterDataNode band, SnaphuPartition partition) {
         return (long) ProductData.getElemSize(band.getDataType()) *
-                (long) band.getRasterWidth() *
-                (long) band.getRasterHeight();
-    }
-
-    private File getEnviHeaderFile(Band band) {
-        return new File(_outputDir, createEnviHeaderFilename(band));
+                (long) partition.rectangle.width *
+                (long) partition.rectangle.height;
     }
 
     private static String createEnviHeaderFilename(Band band) {
@@ -411,6 +406,12 @@ public class SnaphuWriter extends AbstractProductWriter {
     }
 
     private void createSnaphuConfFile() throws IOException {
+        for (SnaphuPartition partition : partitions) {
+            createSnaphuConfFile(partition);
+        }
+    }
+
+    private void createSnaphuConfFile(final SnaphuPartition partition) throws IOException {
 
         final Product sourceProduct = getSourceProduct();
 
@@ -464,10 +465,19 @@ public class SnaphuWriter extends AbstractProductWriter {
         parameters.setOutFileName(UNWRAPPED_PREFIX + phaseName + SNAPHU_IMAGE_EXTENSION);
 
         Window dataWindow = new Window(masterMetadata.getCurrentWindow());
+        if (partitions.length > 1) {
+            final Rectangle r = partition.rectangle;
+            dataWindow = new Window(dataWindow.linelo + r.y, dataWindow.linelo + r.y + r.height,
+                    dataWindow.pixlo + r.x, dataWindow.pixlo + r.x + r.width);
+        }
 
         /// initiate snaphuconfig
         try {
             snaphuConfigFile = new SnaphuConfigFile(masterMetadata, slaveMetadata, masterOrbit, slaveOrbit, dataWindow, parameters);
+            if (partitions.length > 1) {
+                final Rectangle r = partition.rectangle;
+                snaphuConfigFile.setReferencePoint(r.y + 0.5d * r.height + 0.5, r.x + 0.5d * r.width + 0.5);
+            }
             snaphuConfigFile.buildConfFile();
         } catch (Exception e) {
             e.printStackTrace();
@@ -475,7 +485,7 @@ public class SnaphuWriter extends AbstractProductWriter {
 
         // write snaphu.conf file to the target directory
         try {
-            BufferedWriter out = new BufferedWriter(new FileWriter(_outputDir + "/" + SNAPHU_CONFIG_FILE));
+            BufferedWriter out = new BufferedWriter(new FileWriter(partition.outputDir + "/" + SNAPHU_CONFIG_FILE));
             out.write(snaphuConfigFile.getConfigFileBuffer().toString());
             out.close();
         } catch (IOException e) {
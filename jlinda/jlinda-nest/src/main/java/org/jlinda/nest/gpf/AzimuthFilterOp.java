@@ -18,11 +18,9 @@ import org.esa.snap.engine_utilities.datamodel.AbstractMetadata;
 import org.esa.snap.engine_utilities.gpf.InputProductValidator;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.ReaderUtils;
-import org.jblas.ComplexDoubleMatrix;
 import org.jlinda.core.Orbit;
 import org.jlinda.core.SLCImage;
-import org.jlinda.core.Window;
-import org.jlinda.core.filtering.AzimuthFilter;
+import org.jlinda.core.filtering.AzimuthCommonBandFilter;
 import org.jlinda.core.utils.*;
 
 import javax.media.jai.BorderExtender;
@@ -70,6 +68,9 @@ public class AzimuthFilterOp extends Operator {
     // target
     private LinkedHashMap<String, ProductContainer> targetMap = new LinkedHashMap<String, ProductContainer>();
 
+    // filters with cached filter vectors, per product
+    private final Map<String, AzimuthCommonBandFilter> azimuthFilters = new HashMap<>();
+
     private static final int ORBIT_DEGREE = 3; // hardcoded
     private static final boolean CREATE_VIRTUAL_BAND = true;
 
@@ -105,6 +106,7 @@ public class AzimuthFilterOp extends Operator {
             checkUserInput();
             constructSourceMetadata();
             constructTargetMetadata();
+            constructFilters();
 
             // getSourceImageGeocodings();
             // estimateFlatEarthPolynomial();
@@ -182,6 +184,14 @@ public class AzimuthFilterOp extends Operator {
 
     }
 
+    private void constructFilters() {
+
+        for (String key : targetMap.keySet()) {
+            final SLCImage meta = targetMap.get(key).sourceMaster.metaData;
+            azimuthFilters.put(key, new AzimuthCommonBandFilter(meta.getPRF(), meta.getAzimuthBandwidth(), alphaHamming));
+        }
+    }
+
     private void constructSourceMetadata() throws Exception {
 
         // define sourceMaster/sourceSlave name tags
@@ -361,67 +371,33 @@ public class AzimuthFilterOp extends Operator {
 //            System.out.println("x0 = " + rect.x + ", y0 = " + rect.y + ", w = " + rect.width + ", h = " + rect.height);
 //            System.out.println("------");
 
-            // target
-            Band targetBand;
-
             final BorderExtender border = BorderExtender.createInstance(BorderExtender.BORDER_ZERO);
 
+            // offset of the target rectangle in the adjusted rectangle
+            final int offsetX = rectAdjusted ? rect.width - targetRectangle.width : 0;
+            final int offsetY = rectAdjusted ? rect.height - targetRectangle.height : 0;
+
             // loop over ifg(product)Container : both master and slave defined in container
-            for (ProductContainer product : targetMap.values()) {
+            for (String key : targetMap.keySet()) {
 
-                // check out from source
-                Tile tileRealMaster = getSourceTile(product.sourceMaster.realBand, rect, border);
-                Tile tileImagMaster = getSourceTile(product.sourceMaster.imagBand, rect, border);
-                final ComplexDoubleMatrix dataMaster = TileUtilsDoris.pullComplexDoubleMatrix(tileRealMaster, tileImagMaster);
+                final ProductContainer product = targetMap.get(key);
 
-                // construct azimuthfilter
-                final AzimuthFilter azimuthMaster = new AzimuthFilter();
+                // check out from source
+                final double[] data = TileUtilsDoris.pullComplexDoubleArray(
+                        getSourceTile(product.sourceMaster.realBand, rect, border),
+                        getSourceTile(product.sourceMaster.imagBand, rect, border));
 
-                // set filtering parameters
-                azimuthMaster.setHammingAlpha(alphaHamming);
-                azimuthMaster.setMetadata(product.sourceMaster.metaData);
-                azimuthMaster.setMetadata1(product.sourceSlave.metaData);
+                // filter with constant dopplers
                 // TODO: variable constant hard-coded, further testing needed
-                azimuthMaster.setVariableFilter(false); // hardcoded to const filtering!
-                azimuthMaster.setTile(new Window(rect));
-
-                // set data for filtering
-                azimuthMaster.setData(dataMaster);
-
-                // define parameters and filter
-                azimuthMaster.defineParameters();
-                azimuthMaster.defineFilter();
-                azimuthMaster.applyFilter();
-
-                ComplexDoubleMatrix filteredData;
-                if (rectAdjusted) {
-
-                    final int offsetX = rect.width - targetRectangle.width;
-                    final int offsetY = rect.height - targetRectangle.height;
-
-                    filteredData = new ComplexDoubleMatrix(targetRectangle.height, targetRectangle.width);
-
-                    LinearAlgebraUtils.setdata(filteredData,
-                            new Window(0, (long) (targetRectangle.height - 1),
-                                    0, (long) (targetRectangle.width - 1)),
-                            azimuthMaster.getData(),
-                            new Window(offsetY, rect.height - 1, offsetX, rect.width - 1));
-
-                } else {
-                    filteredData = azimuthMaster.getData();
-                }
-
-                // get data from filter
-                // commit real() to target
-                targetBand = targetProduct.getBand(product.targetBandName_I);
-                tileRealMaster = targetTileMap.get(targetBand);
-                TileUtilsDoris.pushFloatMatrix(filteredData.real(), tileRealMaster, targetRectangle);
-
-                // commit imag() to target
-                targetBand = targetProduct.getBand(product.targetBandName_Q);
-                tileImagMaster = targetTileMap.get(targetBand);
-                TileUtilsDoris.pushFloatMatrix(filteredData.imag(), tileImagMaster, targetRectangle);
-
+                azimuthFilters.get(key).filter(data, rect.height, rect.width,
+                        product.sourceMaster.metaData.doppler.getF_DC_const(),
+                        product.sourceSlave.metaData.doppler.getF_DC_const());
+
+                // commit to target
+                TileUtilsDoris.pushComplexFloatArray(data, rect.width, offsetX, offsetY,
+                        targetTileMap.get(targetProduct.getBand(product.targetBandName_I)),
+                        targetTileMap.get(targetProduct.getBand(product.targetBandName_Q)),
+                        targetRectangle);
             }
         } catch (Throwable e) {
             OperatorUtils.catchOperatorException(getId(), e);
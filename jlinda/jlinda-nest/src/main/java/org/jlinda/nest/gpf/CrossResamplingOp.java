@@ -23,12 +23,9 @@ import org.jlinda.core.coregistration.LUT;
 import org.jlinda.core.coregistration.SimpleLUT;
 import org.jlinda.core.coregistration.cross.CrossGeometry;
 
-import javax.media.jai.*;
+import javax.media.jai.WarpGeneralPolynomial;
+import javax.media.jai.WarpPolynomial;
 import java.awt.*;
-import java.awt.geom.Point2D;
-import java.awt.image.DataBuffer;
-import java.awt.image.RenderedImage;
-import java.awt.image.renderable.ParameterBlock;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -63,7 +60,7 @@ public class CrossResamplingOp extends Operator {
     @Parameter(valueSet = {"ERS", "Envisat ASAR"}, defaultValue = "ERS", label = "Target Geometry")
     private String targetGeometry = "ERS";
 
-    private InterpolationTable interpTable = null;
+    private PolynomialWarp warp = null;
 
     // Processing Variables
     // target
@@ -76,7 +73,6 @@ public class CrossResamplingOp extends Operator {
     private SLCImage slcMetadata = null;
 
     private WarpPolynomial warpPolynomial;
-    private WarpPolynomial reverseWarpPolynomial;
 
     // ERS NOMINAL PRF and RSR
     private final static double ERS_PRF_NOMINAL = 1679.902;  // [Hz]
@@ -169,8 +165,7 @@ public class CrossResamplingOp extends Operator {
             }
 
             constructPolynomial();
-            constructReversePolynomial();
-            constructInterpolationTable(interpolationMethod);
+            constructWarp(interpolationMethod);
             createTargetProduct();
 
         } catch (Throwable e) {
@@ -213,64 +208,15 @@ public class CrossResamplingOp extends Operator {
 
     }
 
-    private void constructReversePolynomial() {
-
-        CrossGeometry crossReverseGeometry = new CrossGeometry();
-
-        crossReverseGeometry.setPrfOriginal(targetPRF);
-        crossReverseGeometry.setRsrOriginal(targetRSR);
-        crossReverseGeometry.setPrfTarget(sourcePRF);
-        crossReverseGeometry.setRsrTarget(sourceRSR);
-
-        crossReverseGeometry.setDataWindow(slcMetadata.getOriginalWindow());
-
-        crossReverseGeometry.setPolyDegree(warpPolynomialOrder);
-        crossReverseGeometry.setNormalizeFlag(false);
-
-        // use grids for computing polynomial using JAI Warp
-        crossReverseGeometry.computeCoeffsFromCoords_JAI();
-
-        // cast coefficients to floats
-        double[] xCoeffsDouble = crossReverseGeometry.getCoeffsRg();
-        double[] yCoeffsDouble = crossReverseGeometry.getCoeffsAz();
-        float[] xCoeffsFloat = new float[xCoeffsDouble.length];
-        float[] yCoeffsFloat = new float[yCoeffsDouble.length];
-        for (int i = 0; i < xCoeffsFloat.length; i++) {
-            yCoeffsFloat[i] = (float) yCoeffsDouble[i];
-            xCoeffsFloat[i] = (float) xCoeffsDouble[i];
-        }
-        // show polynomials
-        logger.info("coeffsY : {}"+ ArrayUtils.toString(yCoeffsDouble));
-        logger.info("coeffsX : {}"+ ArrayUtils.toString(xCoeffsDouble));
-
-        // construct polynomial
-        reverseWarpPolynomial = new WarpGeneralPolynomial(yCoeffsFloat, xCoeffsFloat);
-
-    }
-
-
-    private void constructInterpolationTable(String interpolationMethod) {
+    private void constructWarp(String interpolationMethod) {
 
         // construct interpolation LUT
         SimpleLUT lut = new SimpleLUT(interpolationMethod);
         lut.constructLUT();
 
-        int kernelLength = lut.getKernelLength();
-
-        // get LUT and cast it to float for JAI
-        double[] lutArrayDoubles = lut.getKernelAsArray();
-        float lutArrayFloats[] = new float[lutArrayDoubles.length];
-        int i = 0;
-        for (double lutElement : lutArrayDoubles) {
-            lutArrayFloats[i++] = (float) lutElement;
-        }
-
-        // construct interpolation table for JAI resampling
-        final int subsampleBits = 7;
-        final int precisionBits = 32;
-        int padding = kernelLength / 2 - 1;
-
-        interpTable = new InterpolationTable(padding, kernelLength, subsampleBits, precisionBits, lutArrayFloats);
+        // resample with the kernel table directly instead of a JAI InterpolationTable
+        warp = new PolynomialWarp(warpPolynomial.getXCoeffs(), warpPolynomial.getYCoeffs(),
+                lut.getKernelAsArray(), lut.getKernelLength());
 
     }
 
@@ -459,39 +405,26 @@ public class CrossResamplingOp extends Operator {
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
 
         final Rectangle targetRectangle = targetTile.getRectangle();
-        final int x0 = targetRectangle.x;
-        final int y0 = targetRectangle.y;
-        final int w = targetRectangle.width;
-        final int h = targetRectangle.height;
-        System.out.println("Target Rectangle: x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
-
-        final Rectangle sourceRectangle = getSourceRectangle(targetRectangle);
-        System.out.println("Source Rectangle: x0 = " + sourceRectangle.x + ", y0 = " + sourceRectangle.y + ", w = " + sourceRectangle.width + ", h = " + sourceRectangle.height);
-
-        System.out.println("------");
-        
-        
-        final BorderExtender borderExtender = BorderExtender.createInstance(BorderExtender.BORDER_ZERO);
 
         try {
 
             final Band srcBand = sourceRasterMap.get(targetBand);
 
-            final Tile sourceRaster = getSourceTile(srcBand, targetRectangle, borderExtender);
+            // source tile plus kernel halo of the warped target rectangle
+            final double[] sourcePositions = warp.getSourcePositions(targetRectangle);
+            final Rectangle sourceRectangle = warp.getSourceRectangle(sourcePositions, sourceImageWidth, sourceImageHeight);
+
+            float[] sourceSamples = null;
+            if (!sourceRectangle.isEmpty()) {
+                final Tile sourceRaster = getSourceTile(srcBand, sourceRectangle);
+                sourceSamples = sourceRaster.getSamplesFloat();
+            }
 
             if (pm.isCanceled())
                 return;
 
-            // get source image
-            final RenderedImage srcImage = sourceRaster.getRasterDataNode().getSourceImage();
-
-            // get warped image
-            final RenderedOp warpedImage = createWarpImage(warpPolynomial, srcImage);
-
-            // copy warped image data to target
-            float[] dataArray = warpedImage.getData(targetRectangle).getSamples(x0, y0, w, h, 0, (float[]) null);
-
             // set samples in target
+            final float[] dataArray = warp.resample(sourcePositions, sourceSamples, sourceRectangle);
             targetTile.setRawSamples(ProductData.createInstance(dataArray));
 
         } catch (Throwable e) {
@@ -501,49 +434,6 @@ public class CrossResamplingOp extends Operator {
         }
     }
 
-    /**
-     * Create warped image.
-     *
-     * @param warp     The WARP polynomial.
-     * @param srcImage The source image.
-     * @return The warped image.
-     */
-    private RenderedOp createWarpImage(WarpPolynomial warp, final RenderedImage srcImage) {
-
-        // reformat source image by casting pixel values from ushort to float
-        final ParameterBlock pb1 = new ParameterBlock();
-        pb1.addSource(srcImage);
-        pb1.add(DataBuffer.TYPE_FLOAT);
-        final RenderedImage srcImageFloat = JAI.create("format", pb1);
-
-        // get warped image
-        final ParameterBlock pb2 = new ParameterBlock();
-
-        pb2.addSource(srcImageFloat);
-        pb2.add(warp);
-        pb2.add(interpTable);
-
-        RenderedOp warpOutput = JAI.create("warp", pb2);
-
-        return warpOutput;
-    }
-
-    private Rectangle getSourceRectangle(Rectangle rect) {
-
-        Point2D lowerLeftSrc = new Point2D.Double(rect.x, rect.y);
-        Point2D upperRightSrc = new Point2D.Double(rect.x + rect.width - 1, rect.y + rect.height - 1);
-
-        Point2D lowerLeftTgt = reverseWarpPolynomial.mapDestPoint(lowerLeftSrc);
-        Point2D upperRightTgt = reverseWarpPolynomial.mapDestPoint(upperRightSrc);
-
-        int x = (int) Math.ceil(lowerLeftTgt.getX());
-        int y = (int) Math.ceil(lowerLeftTgt.getY());
-        int w = (int) Math.ceil(upperRightTgt.getX() - lowerLeftTgt.getX() + 1);
-        int h = (int) Math.ceil(upperRightTgt.getY() - lowerLeftTgt.getY() + 1);
-
-        return new Rectangle(x, y, w, h);
-    }
-
     /**
      * The SPI is used to register this operator in the graph processing framework
      * via the SPI configuration file
@@ -19,8 +19,6 @@ import org.esa.snap.engine_utilities.datamodel.Unit;
 import org.esa.snap.engine_utilities.gpf.InputProductValidator;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.ReaderUtils;
-import org.jblas.ComplexDoubleMatrix;
-import org.jblas.DoubleMatrix;
 import org.jlinda.core.Orbit;
 import org.jlinda.core.SLCImage;
 import org.jlinda.core.Window;
@@ -357,8 +355,8 @@ public class DInSAROp extends Operator {
 
             Band targetBand_I;
             Band targetBand_Q;
-            ComplexDoubleMatrix complexDefoPair = null;
-            DoubleMatrix doubleTopoPair = null;
+            double[] complexDefoPair = null;
+            double[] doubleTopoPair = null;
 
             ProductContainer product = null;
             for (String ifgKey : targetMap.keySet()) {
@@ -368,7 +366,7 @@ public class DInSAROp extends Operator {
                 /// check out results from source ///
                 Tile tileReal = getSourceTile(product.sourceMaster.realBand, targetRectangle);
                 Tile tileImag = getSourceTile(product.sourceMaster.imagBand, targetRectangle);
-                complexDefoPair = TileUtilsDoris.pullComplexDoubleMatrix(tileReal, tileImag);
+                complexDefoPair = TileUtilsDoris.pullComplexDoubleArray(tileReal, tileImag);
 
             }
 
@@ -377,7 +375,7 @@ public class DInSAROp extends Operator {
                 if (band.getName().contains("unw") || band.getUnit().contains(Unit.ABS_PHASE)) {
                     /// check out results from source ///
                     Tile tileReal = getSourceTile(band, targetRectangle);
-                    doubleTopoPair = TileUtilsDoris.pullDoubleMatrix(tileReal);
+                    doubleTopoPair = tileReal.getSamplesDouble();
                 }
             }
 
@@ -386,11 +384,10 @@ public class DInSAROp extends Operator {
             /// commit complexDefoPair back to target ///
             targetBand_I = targetProduct.getBand(product.targetBandName_I);
             Tile tileOutReal = targetTileMap.get(targetBand_I);
-            TileUtilsDoris.pushDoubleMatrix(complexDefoPair.real(), tileOutReal, targetRectangle);
-
             targetBand_Q = targetProduct.getBand(product.targetBandName_Q);
             Tile tileOutImag = targetTileMap.get(targetBand_Q);
-            TileUtilsDoris.pushDoubleMatrix(complexDefoPair.imag(), tileOutImag, targetRectangle);
+            TileUtilsDoris.pushComplexFloatArray(complexDefoPair, targetRectangle.width, 0, 0,
+                    tileOutReal, tileOutImag, targetRectangle);
 
         } catch (Throwable e) {
             OperatorUtils.catchOperatorException(getId(), e);
@@ -0,0 +1,155 @@
+package org.jlinda.nest.gpf;
+
+import java.awt.Rectangle;
+
+/**
+ * Polynomial warp of a source image, resampled with a tabulated separable interpolation kernel.
+ * <p>
+ * The warp follows the conventions of the JAI "warp" operation with a WarpGeneralPolynomial and an InterpolationTable:
+ * the polynomials map the centre of a target pixel to a source position, the kernel is taken from the table row of
+ * the subsample interval of the fractional position, and target pixels whose kernel support is not inside the source
+ * samples are set to zero.
+ */
+final class PolynomialWarp {
+
+    private final float[] xCoeffs;
+    private final float[] yCoeffs;
+    private final int degree;
+
+    private final double[] kernel;
+    private final int kernelLength;
+    private final int padding;
+    private final int numSubsamples;
+
+    /**
+     * @param xCoeffs      coefficients of the source x polynomial, ordered 1, x, y, x^2, xy, y^2, ...
+     * @param yCoeffs      coefficients of the source y polynomial, in the same order
+     * @param kernel       the kernel table, one row of kernelLength weights per subsample interval
+     * @param kernelLength the number of kernel points
+     */
+    PolynomialWarp(final float[] xCoeffs, final float[] yCoeffs, final double[] kernel, final int kernelLength) {
+        this.xCoeffs = xCoeffs;
+        this.yCoeffs = yCoeffs;
+        this.degree = (int) Math.round((Math.sqrt(8.0 * xCoeffs.length + 1.0) - 3.0) / 2.0);
+        this.kernel = kernel;
+        this.kernelLength = kernelLength;
+        this.padding = kernelLength / 2 - 1;
+        this.numSubsamples = kernel.length / kernelLength;
+    }
+
+    /**
+     * Maps the pixels of a target rectangle to source positions.
+     *
+     * @param targetRectangle the target rectangle
+     * @return the source x and y of every target pixel, interleaved, row by row
+     */
+    double[] getSourcePositions(final Rectangle targetRectangle) {
+
+        final double[] positions = new double[2 * targetRectangle.width * targetRectangle.height];
+        final double[] xPow = new double[degree + 1];
+        final double[] yPow = new double[degree + 1];
+        xPow[0] = 1.0;
+        yPow[0] = 1.0;
+
+        int k = 0;
+        for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
+            for (int i = 1; i <= degree; i++) {
+                yPow[i] = yPow[i - 1] * (y + 0.5);
+            }
+            for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
+                for (int i = 1; i <= degree; i++) {
+                    xPow[i] = xPow[i - 1] * (x + 0.5);
+                }
+                positions[k++] = evaluate(xCoeffs, xPow, yPow) - 0.5;
+                positions[k++] = evaluate(yCoeffs, xPow, yPow) - 0.5;
+            }
+        }
+        return positions;
+    }
+
+    private double evaluate(final float[] coeffs, final double[] xPow, final double[] yPow) {
+        double sum = 0.0;
+        int c = 0;
+        for (int i = 0; i <= degree; i++) {
+            for (int j = 0; j <= i; j++) {
+                sum += coeffs[c++] * xPow[i - j] * yPow[j];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Gets the source rectangle covering the kernel support of all source positions whose support is inside the
+     * source image.
+     *
+     * @param positions    the source positions of the target pixels
+     * @param sourceWidth  the source image width
+     * @param sourceHeight the source image height
+     * @return the source rectangle, empty if no target pixel can be interpolated
+     */
+    Rectangle getSourceRectangle(final double[] positions, final int sourceWidth, final int sourceHeight) {
+
+        int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+        int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+        for (int k = 0; k < positions.length; k += 2) {
+            final int x0 = (int) Math.floor(positions[k]) - padding;
+            final int y0 = (int) Math.floor(positions[k + 1]) - padding;
+            if (x0 < 0 || y0 < 0 || x0 + kernelLength > sourceWidth || y0 + kernelLength > sourceHeight) {
+                continue;
+            }
+            xMin = Math.min(xMin, x0);
+            yMin = Math.min(yMin, y0);
+            xMax = Math.max(xMax, x0 + kernelLength);
+            yMax = Math.max(yMax, y0 + kernelLength);
+        }
+
+        if (xMin > xMax) {
+            return new Rectangle();
+        }
+        return new Rectangle(xMin, yMin, xMax - xMin, yMax - yMin);
+    }
+
+    /**
+     * Interpolates the source samples at the source positions of the target pixels.
+     *
+     * @param positions       the source positions of the target pixels
+     * @param sourceSamples   the samples of the source rectangle, row by row
+     * @param sourceRectangle the source rectangle
+     * @return the target samples, zero where the kernel support is not inside the source rectangle
+     */
+    float[] resample(final double[] positions, final float[] sourceSamples, final Rectangle sourceRectangle) {
+
+        final float[] target = new float[positions.length / 2];
+        final int sx0 = sourceRectangle.x;
+        final int sy0 = sourceRectangle.y;
+        final int sw = sourceRectangle.width;
+        final int sh = sourceRectangle.height;
+
+        for (int t = 0, k = 0; t < target.length; t++, k += 2) {
+            final double sx = positions[k];
+            final double sy = positions[k + 1];
+            final int xInt = (int) Math.floor(sx);
+            final int yInt = (int) Math.floor(sy);
+            final int x0 = xInt - padding - sx0;
+            final int y0 = yInt - padding - sy0;
+            if (x0 < 0 || y0 < 0 || x0 + kernelLength > sw || y0 + kernelLength > sh) {
+                continue;
+            }
+
+            final int xKernel = Math.min((int) ((sx - xInt) * numSubsamples), numSubsamples - 1) * kernelLength;
+            final int yKernel = Math.min((int) ((sy - yInt) * numSubsamples), numSubsamples - 1) * kernelLength;
+
+            double sum = 0.0;
+            for (int j = 0; j < kernelLength; j++) {
+                final int offset = (y0 + j) * sw + x0;
+                double rowSum = 0.0;
+                for (int i = 0; i < kernelLength; i++) {
+                    rowSum += kernel[xKernel + i] * sourceSamples[offset + i];
+                }
+                sum += kernel[yKernel + j] * rowSum;
+            }
+            target[t] = (float) sum;
+        }
+        return target;
+    }
+}
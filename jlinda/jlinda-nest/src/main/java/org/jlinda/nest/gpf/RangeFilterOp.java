@@ -19,10 +19,10 @@ import org.esa.snap.engine_utilities.datamodel.AbstractMetadata;
 import org.esa.snap.engine_utilities.gpf.InputProductValidator;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.ReaderUtils;
-import org.jblas.ComplexDoubleMatrix;
+import org.jlinda.core.Constants;
 import org.jlinda.core.Orbit;
 import org.jlinda.core.SLCImage;
-import org.jlinda.core.filtering.RangeFilter;
+import org.jlinda.core.filtering.RangeCommonBandFilter;
 import org.jlinda.core.utils.*;
 
 import javax.media.jai.BorderExtender;
@@ -93,6 +93,10 @@ public class RangeFilterOp extends Operator {
     // target
     private HashMap<String, ProductContainer> targetMap = new HashMap<String, ProductContainer>();
 
+    // filters with cached filter windows, per ifg(product)Container
+    private final Map<String, RangeCommonBandFilter> rangeFilters = new HashMap<>();
+    private boolean doFilterMaster = true;
+
     private static final int ORBIT_DEGREE = 3; // hardcoded
     private static final boolean CREATE_VIRTUAL_BAND = true;
 
@@ -127,6 +131,7 @@ public class RangeFilterOp extends Operator {
             checkUserInput();
             constructSourceMetadata();
             constructTargetMetadata();
+            constructFilters();
 
             // getSourceImageGeocodings();
             // estimateFlatEarthPolynomial();
@@ -181,6 +186,19 @@ public class RangeFilterOp extends Operator {
 
     }
 
+    private void constructFilters() {
+
+        for (String ifgTag : targetMap.keySet()) {
+            final SLCImage masterMeta = targetMap.get(ifgTag).sourceMaster.metaData;
+            final double RSR = 0.5 * masterMeta.getRsr2x();
+            final double RBW = masterMeta.getRangeBandwidth() * Constants.MEGA;
+            rangeFilters.put(ifgTag, new RangeCommonBandFilter(RSR, RBW, alphaHamming, nlMean, ovsmpFactor, doWeightCorrel));
+        }
+
+        // with more than one master only the slaves are filtered
+        doFilterMaster = masterMap.size() <= 1;
+    }
+
     private void constructSourceMetadata() throws Exception {
 
         // define sourceMaster/sourceSlave name tags
@@ -346,100 +364,38 @@ public class RangeFilterOp extends Operator {
 //                targetRectangle.width = value;
             }
 
-            // target
-            Band targetBand;
-
             final BorderExtender border = BorderExtender.createInstance(BorderExtender.BORDER_ZERO);
 
             final Rectangle rect = new Rectangle(targetRectangle);
             rect.width += (TILE_OVERLAP_X + extraRange);
             rect.height += TILE_OVERLAP_Y;
-            //System.out.println("x0 = " + rect.x + ", y0 = " + rect.y + ", w = " + rect.width + ", h = " + rect.height);
-
-            boolean doFilterMaster = true;
-            if (masterMap.keySet().toArray().length > 1) {
-                doFilterMaster = false;
-            }
 
             // loop over ifg(product)Container
             for (String ifgTag : targetMap.keySet()) {
 
-                final RangeFilter rangeFilter = new RangeFilter();
-
-                rangeFilter.setAlphaHamming(alphaHamming);
-                rangeFilter.setDoWeightCorrelFlag(doWeightCorrel);
-                rangeFilter.setOvsFactor(ovsmpFactor);
-                rangeFilter.setFftLength(fftLength);
-                rangeFilter.setNlMean(nlMean);
-                rangeFilter.setSNRthreshold(snrThresh);
-
                 // get ifgContainer from pool
                 final ProductContainer ifg = targetMap.get(ifgTag);
 
                 // check out from source
-                Tile tileRealMaster = getSourceTile(ifg.sourceMaster.realBand, rect, border);
-                Tile tileImagMaster = getSourceTile(ifg.sourceMaster.imagBand, rect, border);
-                final ComplexDoubleMatrix masterMatrix = TileUtilsDoris.pullComplexDoubleMatrix(tileRealMaster, tileImagMaster);
-
-                // check out from source
-                Tile tileRealSlave = getSourceTile(ifg.sourceSlave.realBand, rect, border);
-                Tile tileImagSlave = getSourceTile(ifg.sourceSlave.imagBand, rect, border);
-                final ComplexDoubleMatrix slaveMatrix = TileUtilsDoris.pullComplexDoubleMatrix(tileRealSlave, tileImagSlave);
-
-                rangeFilter.setMetadata(ifg.sourceMaster.metaData);
-                rangeFilter.setData(masterMatrix);
-
-                rangeFilter.setMetadata1(ifg.sourceSlave.metaData);
-                rangeFilter.setData1(slaveMatrix);
-
-                // compute
-                rangeFilter.defineParameters();
-                rangeFilter.defineFilter();
-
-                if (doFilterMaster) {
-                    rangeFilter.applyFilter();
-                } else {
-                    // apply only on slave data!
-                    rangeFilter.applyFilterSlave();
-                }
-
-                /// MASTER
-                ComplexDoubleMatrix filteredMaster;
-                if (doFilterMaster) {
-                    filteredMaster = rangeFilter.getData();
-                } else {
-                    filteredMaster = masterMatrix;
-                }
-
-                // commit real() to target
-                targetBand = targetProduct.getBand(ifg.masterSubProduct.targetBandName_I);
-                tileRealMaster = targetTileMap.get(targetBand);
-                TileUtilsDoris.pushFloatMatrix(filteredMaster.real(), tileRealMaster, targetRectangle);
-
-                // commit imag() to target
-                targetBand = targetProduct.getBand(ifg.masterSubProduct.targetBandName_Q);
-                tileImagMaster = targetTileMap.get(targetBand);
-                TileUtilsDoris.pushFloatMatrix(filteredMaster.imag(), tileImagMaster, targetRectangle);
-
-                /// SLAVE
-                final ComplexDoubleMatrix filteredSlave = rangeFilter.getData1();
-                // commit real() to target
-                targetBand = targetProduct.getBand(ifg.slaveSubProduct.targetBandName_I);
-                tileRealSlave = targetTileMap.get(targetBand);
-                TileUtilsDoris.pushFloatMatrix(filteredSlave.real(), tileRealSlave, targetRectangle);
-
-                // commit imag() to target
-                targetBand = targetProduct.getBand(ifg.slaveSubProduct.targetBandName_Q);
-                tileImagSlave = targetTileMap.get(targetBand);
-                TileUtilsDoris.pushFloatMatrix(filteredSlave.imag(), tileImagSlave, targetRectangle);
-
-//                // save imag band of computation : this is somehow too slow?
-//                targetBand = targetProduct.getBand(ifg.targetBandName_Q);
-//                tileReal = targetTileMap.get(targetBand);
-//                targetBand = targetProduct.getBand(ifg.targetBandName_I);
-//                tileImag = targetTileMap.get(targetBand);
-//                TileUtilsDoris.pushComplexFloatMatrix(cplxIfg, tileReal, tileImag, targetRectangle);
-
+                final double[] master = TileUtilsDoris.pullComplexDoubleArray(
+                        getSourceTile(ifg.sourceMaster.realBand, rect, border),
+                        getSourceTile(ifg.sourceMaster.imagBand, rect, border));
+                final double[] slave = TileUtilsDoris.pullComplexDoubleArray(
+                        getSourceTile(ifg.sourceSlave.realBand, rect, border),
+                        getSourceTile(ifg.sourceSlave.imagBand, rect, border));
+
+                // filter master and slave in one pass, or only the slave
+                rangeFilters.get(ifgTag).filter(master, slave, rect.height, rect.width, doFilterMaster);
+
+                // commit to target
+                TileUtilsDoris.pushComplexFloatArray(master, rect.width, 0, 0,
+                        targetTileMap.get(targetProduct.getBand(ifg.masterSubProduct.targetBandName_I)),
+                        targetTileMap.get(targetProduct.getBand(ifg.masterSubProduct.targetBandName_Q)),
+                        targetRectangle);
+                TileUtilsDoris.pushComplexFloatArray(slave, rect.width, 0, 0,
+                        targetTileMap.get(targetProduct.getBand(ifg.slaveSubProduct.targetBandName_I)),
+                        targetTileMap.get(targetProduct.getBand(ifg.slaveSubProduct.targetBandName_Q)),
+                        targetRectangle);
             }
 
         } catch (Throwable e) {
@@ -20,7 +20,6 @@ import org.esa.snap.engine_utilities.datamodel.AbstractMetadata;
 import org.esa.snap.engine_utilities.datamodel.Unit;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.ReaderUtils;
-import org.jblas.ComplexDoubleMatrix;
 import org.jlinda.core.*;
 import org.jlinda.core.Window;
 import org.jlinda.core.geom.DemTile;
@@ -389,16 +388,15 @@ public final class SimulateAmplitudeOp extends Operator {
                 /// check out results from source ///
                 Tile tileReal = getSourceTile(product.sourceMaster.realBand, targetRectangle);
                 Tile tileImag = getSourceTile(product.sourceMaster.imagBand, targetRectangle);
-                ComplexDoubleMatrix complexIfg = TileUtilsDoris.pullComplexDoubleMatrix(tileReal, tileImag);
+                final double[] complexIfg = TileUtilsDoris.pullComplexDoubleArray(tileReal, tileImag);
 
                 /// commit to target ///
                 targetBand_I = targetProduct.getBand(product.targetBandName_I);
                 Tile tileOutReal = targetTileMap.get(targetBand_I);
-                TileUtilsDoris.pushDoubleMatrix(complexIfg.real(), tileOutReal, targetRectangle);
-
                 targetBand_Q = targetProduct.getBand(product.targetBandName_Q);
                 Tile tileOutImag = targetTileMap.get(targetBand_Q);
-                TileUtilsDoris.pushDoubleMatrix(complexIfg.imag(), tileOutImag, targetRectangle);
+                TileUtilsDoris.pushComplexFloatArray(complexIfg, targetRectangle.width, 0, 0,
+                        tileOutReal, tileOutImag, targetRectangle);
 
                 // check in also simulated amplitude
                 simAmplitudeBand = targetProduct.getBand(product.masterSubProduct.targetBandName_I);
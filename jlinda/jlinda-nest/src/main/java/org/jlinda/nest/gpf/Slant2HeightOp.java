@@ -17,7 +17,6 @@ import org.esa.snap.core.util.ProductUtils;
 import org.esa.snap.engine_utilities.datamodel.AbstractMetadata;
 import org.esa.snap.engine_utilities.datamodel.Unit;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
-import org.jblas.DoubleMatrix;
 import org.jlinda.core.Orbit;
 import org.jlinda.core.SLCImage;
 import org.jlinda.core.Window;
@@ -25,7 +24,6 @@ import org.jlinda.core.geocode.Slant2Height;
 import org.jlinda.core.utils.BandUtilsDoris;
 import org.jlinda.core.utils.CplxContainer;
 import org.jlinda.core.utils.ProductContainer;
-import org.jlinda.core.utils.TileUtilsDoris;
 
 import java.awt.*;
 import java.util.HashMap;
@@ -262,14 +260,13 @@ public class Slant2HeightOp extends Operator {
                 if (targetBand.getName().equals(product.targetBandName_I)) {
 
                     // check out from source
-                    Tile tileRealMaster = getSourceTile(product.sourceMaster.realBand, rect);
-                    final DoubleMatrix dataMaster = TileUtilsDoris.pullDoubleMatrix(tileRealMaster);// check out from source
+                    final double[] data = getSourceTile(product.sourceMaster.realBand, rect).getSamplesDouble();
 
-                    // get class for this slave from the map
+                    // get class for this slave from the map : fitted in initialize, shared by all tiles
                     Slant2Height slant2Height = slant2HeightMap.get(product.sourceSlave.date);
-                    slant2Height.applySchwabisch(tileWindow, dataMaster);
+                    slant2Height.applySchwabisch(tileWindow, data);
 
-                    TileUtilsDoris.pushDoubleMatrix(dataMaster, targetTile, targetTile.getRectangle());
+                    targetTile.setSamples(data);
                 }
             }
 
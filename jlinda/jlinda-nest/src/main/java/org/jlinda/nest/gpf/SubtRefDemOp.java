@@ -22,9 +22,6 @@ import org.esa.snap.engine_utilities.gpf.InputProductValidator;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.ReaderUtils;
 import org.esa.snap.engine_utilities.gpf.StackUtils;
-import org.jblas.ComplexDoubleMatrix;
-import org.jblas.DoubleMatrix;
-import org.jblas.MatrixFunctions;
 import org.jlinda.core.Constants;
 import org.jlinda.core.Orbit;
 import org.jlinda.core.SLCImage;
@@ -33,6 +30,7 @@ import org.jlinda.core.geom.DemTile;
 import org.jlinda.core.geom.TopoPhase;
 import org.jlinda.core.utils.BandUtilsDoris;
 import org.jlinda.core.utils.CplxContainer;
+import org.jlinda.core.utils.PhaseRotation;
 import org.jlinda.core.utils.ProductContainer;
 import org.jlinda.core.utils.TileUtilsDoris;
 
@@ -498,21 +496,17 @@ public final class SubtRefDemOp extends Operator {
 
                 Tile tileReal = getSourceTile(product.sourceSlave.realBand, targetRectangle);
                 Tile tileImag = getSourceTile(product.sourceSlave.imagBand, targetRectangle);
-                ComplexDoubleMatrix complexIfg = TileUtilsDoris.pullComplexDoubleMatrix(tileReal, tileImag);
+                final double[] complexIfg = TileUtilsDoris.pullComplexDoubleArray(tileReal, tileImag);
 
-                final ComplexDoubleMatrix cplxTopoPhase = new ComplexDoubleMatrix(
-                        MatrixFunctions.cos(new DoubleMatrix(topoPhase.demPhase)),
-                        MatrixFunctions.sin(new DoubleMatrix(topoPhase.demPhase)));
-
-                complexIfg.muli(cplxTopoPhase.conji());
+                // ifg * conj(exp(i*topoPhase))
+                PhaseRotation.rotate(complexIfg, topoPhase.demPhase);
 
                 targetBand_I = targetProduct.getBand(product.getBandName(Unit.REAL));
                 Tile tileOutReal = targetTileMap.get(targetBand_I);
-                TileUtilsDoris.pushDoubleMatrix(complexIfg.real(), tileOutReal, targetRectangle);
-
                 targetBand_Q = targetProduct.getBand(product.getBandName(Unit.IMAGINARY));
                 Tile tileOutImag = targetTileMap.get(targetBand_Q);
-                TileUtilsDoris.pushDoubleMatrix(complexIfg.imag(), tileOutImag, targetRectangle);
+                TileUtilsDoris.pushComplexFloatArray(complexIfg, targetRectangle.width, 0, 0,
+                        tileOutReal, tileOutImag, targetRectangle);
 
                 if(outputTopoPhaseBand) {
                     topoPhaseBand = targetProduct.getBand(product.getBandName(Unit.PHASE));
@@ -0,0 +1,176 @@
+package org.jlinda.nest.dataio;
+
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.Test;
+
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the concurrent partitioned export of SnaphuWriter with the serial export through an image output stream.
+ */
+public class TestSnaphuPartition {
+
+    private static final int WIDTH = 301;
+    private static final int HEIGHT = 197;
+    private static final int TILE_SIZE = 64;
+
+    @Test
+    public void testSinglePartitionIsIdenticalToSerialExport() throws Exception {
+        final File dir = Files.createTempDirectory("snaphu").toFile();
+        try {
+            final float[] image = createImage();
+
+            final File serialFile = new File(dir, "serial.img");
+            writeSerial(image, serialFile);
+
+            final SnaphuPartition[] partitions = SnaphuPartition.createPartitions(WIDTH, HEIGHT, 1, 1, 200, dir);
+            assertEquals(1, partitions.length);
+            assertEquals(dir, partitions[0].outputDir);
+            assertEquals(new Rectangle(0, 0, WIDTH, HEIGHT), partitions[0].rectangle);
+
+            final File concurrentFile = new File(dir, "concurrent.img");
+            writeConcurrent(image, partitions[0], concurrentFile);
+
+            assertArrayEquals(Files.readAllBytes(serialFile.toPath()), Files.readAllBytes(concurrentFile.toPath()));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testPartitionsHoldTheirRegion() throws Exception {
+        final File dir = Files.createTempDirectory("snaphu").toFile();
+        try {
+            final float[] image = createImage();
+            final int overlap = 10;
+            final SnaphuPartition[] partitions = SnaphuPartition.createPartitions(WIDTH, HEIGHT, 2, 3, overlap, dir);
+            assertEquals(6, partitions.length);
+
+            for (SnaphuPartition partition : partitions) {
+                final Rectangle r = partition.rectangle;
+                final File file = new File(dir, "partition_" + partition.row + '_' + partition.col + ".img");
+                writeConcurrent(image, partition, file);
+
+                final float[] region = new float[r.width * r.height];
+                for (int y = 0; y < r.height; y++) {
+                    System.arraycopy(image, (r.y + y) * WIDTH + r.x, region, y * r.width, r.width);
+                }
+                final File expectedFile = new File(dir, "expected_" + partition.row + '_' + partition.col + ".img");
+                writeSerial(region, r.width, r.height, expectedFile);
+                assertArrayEquals(Files.readAllBytes(expectedFile.toPath()), Files.readAllBytes(file.toPath()));
+
+                // interior partition edges overlap their neighbours
+                if (partition.row > 0) {
+                    assertEquals(partition.row * HEIGHT / 2 - overlap, r.y);
+                }
+                if (partition.col < 2) {
+                    assertEquals((partition.col + 1) * WIDTH / 3 + overlap, r.x + r.width);
+                }
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static float[] createImage() {
+        final Random random = new Random(3);
+        final float[] image = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = (float) (Math.PI * (2.0 * random.nextDouble() - 1.0));
+        }
+        return image;
+    }
+
+    private static List<Rectangle> getTiles() {
+        final List<Rectangle> tiles = new ArrayList<>();
+        for (int y = 0; y < HEIGHT; y += TILE_SIZE) {
+            for (int x = 0; x < WIDTH; x += TILE_SIZE) {
+                tiles.add(new Rectangle(x, y, Math.min(TILE_SIZE, WIDTH - x), Math.min(TILE_SIZE, HEIGHT - y)));
+            }
+        }
+        return tiles;
+    }
+
+    private static ProductData getTileData(final float[] image, final Rectangle tile) {
+        final float[] samples = new float[tile.width * tile.height];
+        for (int y = 0; y < tile.height; y++) {
+            System.arraycopy(image, (tile.y + y) * WIDTH + tile.x, samples, y * tile.width, tile.width);
+        }
+        return ProductData.createInstance(samples);
+    }
+
+    private static void writeSerial(final float[] image, final File file) throws IOException {
+        try (ImageOutputStream outputStream = new FileImageOutputStream(file)) {
+            outputStream.setByteOrder(ByteOrder.nativeOrder());
+            for (Rectangle tile : getTiles()) {
+                final ProductData data = getTileData(image, tile);
+                long outputPos = tile.y * WIDTH + tile.x;
+                for (int sourcePos = 0; sourcePos < tile.width * tile.height; sourcePos += tile.width) {
+                    data.writeTo(sourcePos, tile.width, outputStream, outputPos);
+                    outputPos += WIDTH;
+                }
+            }
+        }
+    }
+
+    private static void writeSerial(final float[] region, final int width, final int height, final File file)
+            throws IOException {
+        try (ImageOutputStream outputStream = new FileImageOutputStream(file)) {
+            outputStream.setByteOrder(ByteOrder.nativeOrder());
+            outputStream.writeFloats(region, 0, width * height);
+        }
+    }
+
+    private static void writeConcurrent(final float[] image, final SnaphuPartition partition, final File file)
+            throws Exception {
+        final List<Rectangle> tiles = getTiles();
+        Collections.shuffle(tiles, new Random(5));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(4L * partition.rectangle.width * partition.rectangle.height);
+            final FileChannel channel = raf.getChannel();
+
+            final List<Future<?>> futures = new ArrayList<>();
+            for (Rectangle tile : tiles) {
+                futures.add(executor.submit(() -> {
+                    partition.write(channel, tile, getTileData(image, tile), ByteOrder.nativeOrder());
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void delete(final File dir) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
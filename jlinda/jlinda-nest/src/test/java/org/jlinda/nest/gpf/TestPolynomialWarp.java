@@ -0,0 +1,237 @@
+package org.jlinda.nest.gpf;
+
+import org.jlinda.core.coregistration.LUT;
+import org.jlinda.core.coregistration.SimpleLUT;
+import org.junit.Test;
+
+import javax.media.jai.InterpolationTable;
+import javax.media.jai.JAI;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.WarpGeneralPolynomial;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.awt.image.renderable.ParameterBlock;
+import java.util.Hashtable;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the tile-local polynomial warp used by CrossResamplingOp, and compares it with the JAI "warp" operation it
+ * replaced.
+ */
+public class TestPolynomialWarp {
+
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 90;
+    private static final int NUM_SUBSAMPLES = 128;
+
+    // second order polynomials, scaled like a cross interferometry resampling
+    private static final float[] X_COEFFS = {1.75f, 0.985f, 0.002f, 1.0e-5f, -2.0e-6f, 3.0e-6f};
+    private static final float[] Y_COEFFS = {-0.6f, 0.001f, 1.0165f, 0.0f, 1.0e-6f, -4.0e-6f};
+
+    @Test
+    public void testIntegerShiftCopiesSource() {
+        final float[] source = createImage();
+        final PolynomialWarp warp = new PolynomialWarp(
+                new float[]{3.0f, 1.0f, 0.0f}, new float[]{-2.0f, 0.0f, 1.0f}, createCubicKernel(), 4);
+
+        final Rectangle target = new Rectangle(10, 20, 40, 30);
+        final float[] result = resampleFullImage(warp, source, target);
+        for (int y = 0; y < target.height; y++) {
+            for (int x = 0; x < target.width; x++) {
+                final float expected = source[(target.y + y - 2) * WIDTH + target.x + x + 3];
+                assertEquals(expected, result[y * target.width + x], 1.0e-5f);
+            }
+        }
+    }
+
+    @Test
+    public void testLinearRampIsReproduced() {
+        final float[] ramp = new float[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                ramp[y * WIDTH + x] = 2.0f * x - 3.0f * y;
+            }
+        }
+        final PolynomialWarp warp = new PolynomialWarp(X_COEFFS, Y_COEFFS, createCubicKernel(), 4);
+
+        final Rectangle target = new Rectangle(5, 5, 60, 50);
+        final double[] positions = warp.getSourcePositions(target);
+        final float[] result = resampleFullImage(warp, ramp, target);
+        for (int i = 0; i < result.length; i++) {
+            // the kernel is taken at the start of the subsample interval of the fractional position
+            final double sx = Math.floor(positions[2 * i] * NUM_SUBSAMPLES) / NUM_SUBSAMPLES;
+            final double sy = Math.floor(positions[2 * i + 1] * NUM_SUBSAMPLES) / NUM_SUBSAMPLES;
+            assertEquals(2.0 * sx - 3.0 * sy, result[i], 1.0e-3);
+        }
+    }
+
+    @Test
+    public void testTileLocalSourceMatchesFullImage() {
+        final float[] source = createImage();
+        final PolynomialWarp warp = new PolynomialWarp(X_COEFFS, Y_COEFFS, createCubicKernel(), 4);
+
+        for (int ty = 0; ty < HEIGHT; ty += 32) {
+            for (int tx = 0; tx < WIDTH; tx += 32) {
+                final Rectangle target = new Rectangle(tx, ty, Math.min(32, WIDTH - tx), Math.min(32, HEIGHT - ty));
+                final double[] positions = warp.getSourcePositions(target);
+                final Rectangle sourceRectangle = warp.getSourceRectangle(positions, WIDTH, HEIGHT);
+                assertTrue(new Rectangle(0, 0, WIDTH, HEIGHT).contains(sourceRectangle));
+
+                final float[] expected = resampleFullImage(warp, source, target);
+                final float[] result = warp.resample(positions, getSamples(source, sourceRectangle), sourceRectangle);
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(expected[i], result[i], 0.0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOutsideSourceIsZero() {
+        final float[] source = createImage();
+        final PolynomialWarp warp = new PolynomialWarp(
+                new float[]{0.5f, 1.0f, 0.0f}, new float[]{0.0f, 0.0f, 1.0f}, createCubicKernel(), 4);
+
+        // a target tile beyond the source image needs no source samples
+        final Rectangle outside = new Rectangle(WIDTH + 10, 0, 20, 20);
+        final double[] positions = warp.getSourcePositions(outside);
+        final Rectangle sourceRectangle = warp.getSourceRectangle(positions, WIDTH, HEIGHT);
+        assertTrue(sourceRectangle.isEmpty());
+        for (float value : warp.resample(positions, null, sourceRectangle)) {
+            assertEquals(0.0f, value, 0.0f);
+        }
+
+        // the first column and the last two columns lack kernel support
+        final Rectangle target = new Rectangle(0, 10, WIDTH, 1);
+        final float[] result = resampleFullImage(warp, source, target);
+        assertEquals(0.0f, result[0], 0.0f);
+        assertTrue(result[1] != 0.0f);
+        assertTrue(result[WIDTH - 3] != 0.0f);
+        assertEquals(0.0f, result[WIDTH - 2], 0.0f);
+        assertEquals(0.0f, result[WIDTH - 1], 0.0f);
+    }
+
+    @Test
+    public void testMatchesJAIWarpCubicConvolution() {
+        compareWithJAIWarp(LUT.CC4P);
+    }
+
+    @Test
+    public void testMatchesJAIWarpTruncatedSinc() {
+        compareWithJAIWarp(LUT.TS6P);
+    }
+
+    /**
+     * Warps a synthetic image as CrossResamplingOp did before, with JAI, a WarpGeneralPolynomial and an
+     * InterpolationTable of the SimpleLUT kernel in float, and compares it with PolynomialWarp.
+     */
+    private static void compareWithJAIWarp(final String method) {
+        final SimpleLUT lut = new SimpleLUT(method);
+        lut.constructLUT();
+        final int kernelLength = lut.getKernelLength();
+        final double[] kernel = lut.getKernelAsArray();
+        final float[] kernelFloats = new float[kernel.length];
+        for (int i = 0; i < kernel.length; i++) {
+            kernelFloats[i] = (float) kernel[i];
+        }
+
+        final WarpGeneralPolynomial jaiWarp = new WarpGeneralPolynomial(X_COEFFS, Y_COEFFS);
+        final InterpolationTable interpTable = new InterpolationTable(kernelLength / 2 - 1, kernelLength, 7, 32,
+                                                                      kernelFloats);
+
+        final float[] source = createImage();
+        final ParameterBlock pb = new ParameterBlock();
+        pb.addSource(createRenderedImage(source));
+        pb.add(jaiWarp);
+        pb.add(interpTable);
+        final float[] expected = JAI.create("warp", pb).getData().getSamples(0, 0, WIDTH, HEIGHT, 0, (float[]) null);
+
+        final PolynomialWarp warp = new PolynomialWarp(jaiWarp.getXCoeffs(), jaiWarp.getYCoeffs(), kernel,
+                                                       kernelLength);
+        final Rectangle target = new Rectangle(0, 0, WIDTH, HEIGHT);
+
+        // the source positions agree to float precision, JAI maps in float
+        final double[] positions = warp.getSourcePositions(target);
+        final float[] jaiPositions = jaiWarp.warpRect(0, 0, WIDTH, HEIGHT, null);
+        for (int k = 0; k < positions.length; k++) {
+            assertEquals(jaiPositions[k], positions[k], 1.0e-3);
+        }
+
+        // at the positions of JAI the same kernel rows and source samples are taken, JAI sums in float
+        final double[] jaiSourcePositions = new double[jaiPositions.length];
+        for (int k = 0; k < jaiPositions.length; k++) {
+            jaiSourcePositions[k] = jaiPositions[k];
+        }
+        final float[] result = warp.resample(jaiSourcePositions, source, target);
+        int numZero = 0;
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], result[i], 0.05f);
+            if (result[i] == 0.0f) {
+                assertEquals(0.0f, expected[i], 0.0f);
+                numZero++;
+            }
+        }
+        // the border without kernel support is set to zero by both
+        assertTrue(numZero > 0 && numZero < expected.length / 4);
+    }
+
+    private static RenderedImage createRenderedImage(final float[] image) {
+        final SampleModel sampleModel = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, WIDTH, HEIGHT, 1);
+        final WritableRaster raster = RasterFactory.createWritableRaster(
+                sampleModel, new DataBufferFloat(image, image.length), new java.awt.Point(0, 0));
+        return new BufferedImage(PlanarImage.createColorModel(sampleModel), raster, false, new Hashtable());
+    }
+
+    private static float[] resampleFullImage(final PolynomialWarp warp, final float[] source, final Rectangle target) {
+        return warp.resample(warp.getSourcePositions(target), source, new Rectangle(0, 0, WIDTH, HEIGHT));
+    }
+
+    private static float[] createImage() {
+        final Random random = new Random(7);
+        final float[] image = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = (float) (1000.0 * random.nextGaussian());
+        }
+        return image;
+    }
+
+    private static float[] getSamples(final float[] image, final Rectangle r) {
+        final float[] samples = new float[r.width * r.height];
+        for (int y = 0; y < r.height; y++) {
+            System.arraycopy(image, (r.y + y) * WIDTH + r.x, samples, y * r.width, r.width);
+        }
+        return samples;
+    }
+
+    /**
+     * Cubic convolution kernel with a = -0.5 at the axis [-1 0 1 2], which reproduces linear functions.
+     */
+    private static double[] createCubicKernel() {
+        final double[] kernel = new double[NUM_SUBSAMPLES * 4];
+        for (int s = 0; s < NUM_SUBSAMPLES; s++) {
+            final double frac = (double) s / NUM_SUBSAMPLES;
+            for (int i = 0; i < 4; i++) {
+                kernel[s * 4 + i] = cubic(Math.abs(i - 1 - frac));
+            }
+        }
+        return kernel;
+    }
+
+    private static double cubic(final double d) {
+        if (d < 1.0) {
+            return 1.5 * d * d * d - 2.5 * d * d + 1.0;
+        } else if (d < 2.0) {
+            return -0.5 * d * d * d + 2.5 * d * d - 4.0 * d + 2.0;
+        }
+        return 0.0;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.commons.io;
+
+import org.esa.snap.core.datamodel.ProductData;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes raster regions to a raw binary file with positional writes, so that tiles can be written concurrently
+ * from any thread without a lock. Each region is converted to the file byte order in bulk on a reusable direct
+ * buffer of the calling thread and then written row by row at the file positions given by the caller.
+ * <p>
+ * The bytes written are the same as those written by {@link ProductData#writeTo} to an image output stream of the
+ * same byte order.
+ */
+public final class RasterFileChannel implements Closeable {
+
+    private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    private final FileChannel channel;
+    private final ByteOrder byteOrder;
+
+    public RasterFileChannel(final File file, final ByteOrder byteOrder) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.byteOrder = byteOrder;
+    }
+
+    /**
+     * Writes a region of samples.
+     *
+     * @param data      the samples of the region, row by row
+     * @param width     the region width
+     * @param height    the region height
+     * @param position  the file position of the first sample in bytes
+     * @param rowStride the distance between the file positions of two consecutive region rows in bytes
+     * @throws IOException on failure
+     */
+    public void write(final ProductData data, final int width, final int height,
+                      final long position, final long rowStride) throws IOException {
+
+        final int n = width * height;
+        final ByteBuffer buffer = scratch.get().getBuffer(n * data.getElemSize(), byteOrder);
+        final Object elems = data.getElems();
+
+        switch (data.getType()) {
+            case ProductData.TYPE_INT8:
+            case ProductData.TYPE_UINT8:
+                buffer.put((byte[]) elems, 0, n);
+                break;
+            case ProductData.TYPE_INT16:
+            case ProductData.TYPE_UINT16:
+                buffer.asShortBuffer().put((short[]) elems, 0, n);
+                break;
+            case ProductData.TYPE_INT32:
+            case ProductData.TYPE_UINT32:
+                buffer.asIntBuffer().put((int[]) elems, 0, n);
+                break;
+            case ProductData.TYPE_FLOAT32:
+                buffer.asFloatBuffer().put((float[]) elems, 0, n);
+                break;
+            case ProductData.TYPE_FLOAT64:
+                buffer.asDoubleBuffer().put((double[]) elems, 0, n);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported data type " + data.getTypeString());
+        }
+
+        writeRows(buffer, width * data.getElemSize(), height, position, rowStride);
+    }
+
+    /**
+     * Writes a region of complex samples with interleaved I and Q components.
+     *
+     * @param iData     the I samples of the region, row by row
+     * @param qData     the Q samples of the region, row by row
+     * @param dataType  the file data type of a component, either {@link ProductData#TYPE_FLOAT32} or
+     *                  {@link ProductData#TYPE_INT16}. Components are converted as by a cast of
+     *                  {@link ProductData#getElemFloatAt}.
+     * @param width     the region width
+     * @param height    the region height
+     * @param position  the file position of the first I sample in bytes
+     * @param rowStride the distance between the file positions of two consecutive region rows in bytes
+     * @throws IOException on failure
+     */
+    public void writeInterleaved(final ProductData iData, final ProductData qData, final int dataType,
+                                 final int width, final int height,
+                                 final long position, final long rowStride) throws IOException {
+
+        final int n = width * height;
+        final Scratch s = scratch.get();
+        final ByteBuffer buffer;
+
+        if (dataType == ProductData.TYPE_FLOAT32) {
+            final float[] interleaved = s.getFloats(2 * n);
+            if (iData.getType() == ProductData.TYPE_FLOAT32 && qData.getType() == ProductData.TYPE_FLOAT32) {
+                final float[] iArray = (float[]) iData.getElems();
+                final float[] qArray = (float[]) qData.getElems();
+                for (int k = 0; k < n; ++k) {
+                    interleaved[2 * k] = iArray[k];
+                    interleaved[2 * k + 1] = qArray[k];
+                }
+            } else {
+                for (int k = 0; k < n; ++k) {
+                    interleaved[2 * k] = iData.getElemFloatAt(k);
+                    interleaved[2 * k + 1] = qData.getElemFloatAt(k);
+                }
+            }
+            buffer = s.getBuffer(8 * n, byteOrder);
+            buffer.asFloatBuffer().put(interleaved, 0, 2 * n);
+            writeRows(buffer, 8 * width, height, position, rowStride);
+
+        } else if (dataType == ProductData.TYPE_INT16) {
+            final short[] interleaved = s.getShorts(2 * n);
+            if (iData.getType() == ProductData.TYPE_INT16 && qData.getType() == ProductData.TYPE_INT16) {
+                final short[] iArray = (short[]) iData.getElems();
+                final short[] qArray = (short[]) qData.getElems();
+                for (int k = 0; k < n; ++k) {
+                    interleaved[2 * k] = iArray[k];
+                    interleaved[2 * k + 1] = qArray[k];
+                }
+            } else {
+                for (int k = 0; k < n; ++k) {
+                    interleaved[2 * k] = (short) iData.getElemFloatAt(k);
+                    interleaved[2 * k + 1] = (short) qData.getElemFloatAt(k);
+                }
+            }
+            buffer = s.getBuffer(4 * n, byteOrder);
+            buffer.asShortBuffer().put(interleaved, 0, 2 * n);
+            writeRows(buffer, 4 * width, height, position, rowStride);
+
+        } else {
+            throw new IllegalArgumentException("Unsupported data type " + ProductData.getTypeString(dataType));
+        }
+    }
+
+    private void writeRows(final ByteBuffer buffer, final int rowBytes, final int height,
+                           final long position, final long rowStride) throws IOException {
+
+        if (rowStride == rowBytes) {
+            // contiguous in the file
+            buffer.limit(rowBytes * height);
+            buffer.position(0);
+            writeFully(buffer, position);
+            return;
+        }
+
+        for (int y = 0; y < height; ++y) {
+            buffer.limit((y + 1) * rowBytes);
+            buffer.position(y * rowBytes);
+            writeFully(buffer, position + y * rowStride);
+        }
+    }
+
+    private void writeFully(final ByteBuffer buffer, final long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+    }
+
+    /**
+     * Forces written data to the storage device.
+     *
+     * @throws IOException on failure
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Per thread conversion buffers, grown on demand.
+     */
+    private static final class Scratch {
+
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(0);
+        private float[] floats = new float[0];
+        private short[] shorts = new short[0];
+
+        ByteBuffer getBuffer(final int size, final ByteOrder order) {
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(size);
+            }
+            buffer.clear();
+            buffer.order(order);
+            return buffer;
+        }
+
+        float[] getFloats(final int size) {
+            if (floats.length < size) {
+                floats = new float[size];
+            }
+            return floats;
+        }
+
+        short[] getShorts(final int size) {
+            if (shorts.length < size) {
+                shorts = new short[size];
+            }
+            return shorts;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.commons.test;
+
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.Assert;
+
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Utilities for unit tests of raw raster writers: random band data, tiles written in random order from several
+ * threads, and the row by row image output stream writes the writers used to do.
+ */
+public class TileWriteTests {
+
+    private static final int NUM_THREADS = 4;
+
+    public interface TileWriter {
+        void write(Rectangle tile) throws IOException;
+    }
+
+    public static ProductData createRandomData(final int type, final int numElems, final Random random) {
+        final ProductData data = ProductData.createInstance(type, numElems);
+        for (int i = 0; i < numElems; i++) {
+            if (type == ProductData.TYPE_FLOAT32 || type == ProductData.TYPE_FLOAT64) {
+                data.setElemDoubleAt(i, 1000.0 * random.nextGaussian());
+            } else {
+                data.setElemIntAt(i, random.nextInt());
+            }
+        }
+        return data;
+    }
+
+    /**
+     * @return the tiles covering the image, including partial tiles at the right and bottom edges, in random order
+     */
+    public static List<Rectangle> createShuffledTiles(final int width, final int height,
+                                                      final int tileWidth, final int tileHeight,
+                                                      final Random random) {
+        final List<Rectangle> tiles = new ArrayList<>();
+        for (int y = 0; y < height; y += tileHeight) {
+            for (int x = 0; x < width; x += tileWidth) {
+                tiles.add(new Rectangle(x, y, Math.min(tileWidth, width - x), Math.min(tileHeight, height - y)));
+            }
+        }
+        Collections.shuffle(tiles, random);
+        return tiles;
+    }
+
+    /**
+     * @return the samples of the tile cut out of the samples of an image of the given width
+     */
+    public static ProductData getTileData(final ProductData data, final int width, final Rectangle tile) {
+        final ProductData tileData = ProductData.createInstance(data.getType(), tile.width * tile.height);
+        for (int y = 0; y < tile.height; y++) {
+            System.arraycopy(data.getElems(), (tile.y + y) * width + tile.x,
+                             tileData.getElems(), y * tile.width, tile.width);
+        }
+        return tileData;
+    }
+
+    /**
+     * Writes the tiles in their order from a pool of threads and waits for all of them.
+     */
+    public static void writeConcurrently(final List<Rectangle> tiles, final TileWriter writer) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (Rectangle tile : tiles) {
+                futures.add(executor.submit(() -> {
+                    writer.write(tile);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Writes the rows of a tile with {@link ProductData#writeTo}, the way the stream based writers did.
+     *
+     * @param position   the stream position of the first tile sample in elements
+     * @param lineLength the distance between the stream positions of two consecutive tile rows in elements
+     */
+    public static void writeRows(final ImageOutputStream stream, final ProductData tileData, final Rectangle tile,
+                                 final long position, final long lineLength) throws IOException {
+        long outputPos = position;
+        for (int sourcePos = 0; sourcePos < tile.width * tile.height; sourcePos += tile.width) {
+            tileData.writeTo(sourcePos, tile.width, stream, outputPos);
+            outputPos += lineLength;
+        }
+    }
+
+    /**
+     * Writes the I and Q samples of a tile interleaved as float or short, row by row, the way the GAMMA writer did.
+     *
+     * @param fileType the file data type of a component, either float32 or int16
+     * @param width    the image width
+     */
+    public static void writeInterleavedRows(final ImageOutputStream stream, final int fileType,
+                                            final ProductData iData, final ProductData qData,
+                                            final Rectangle tile, final int width) throws IOException {
+        final int elemSize = ProductData.getElemSize(fileType);
+        int srcCnt = 0;
+        for (long y = tile.y; y < tile.y + tile.height; ++y) {
+            stream.seek(elemSize * (y * width + tile.x) * 2);
+            if (fileType == ProductData.TYPE_FLOAT32) {
+                final float[] destBuffer = new float[2 * tile.width];
+                for (int x = 0; x < tile.width; ++x, ++srcCnt) {
+                    destBuffer[2 * x] = iData.getElemFloatAt(srcCnt);
+                    destBuffer[2 * x + 1] = qData.getElemFloatAt(srcCnt);
+                }
+                stream.writeFloats(destBuffer, 0, destBuffer.length);
+            } else {
+                final short[] destBuffer = new short[2 * tile.width];
+                for (int x = 0; x < tile.width; ++x, ++srcCnt) {
+                    destBuffer[2 * x] = (short) iData.getElemFloatAt(srcCnt);
+                    destBuffer[2 * x + 1] = (short) qData.getElemFloatAt(srcCnt);
+                }
+                stream.writeShorts(destBuffer, 0, destBuffer.length);
+            }
+        }
+    }
+
+    public static void assertSameBytes(final File expected, final File actual) throws IOException {
+        final byte[] expectedBytes = Files.readAllBytes(expected.toPath());
+        final byte[] actualBytes = Files.readAllBytes(actual.toPath());
+        Assert.assertTrue(expectedBytes.length > 0);
+        Assert.assertArrayEquals(expectedBytes, actualBytes);
+    }
+}
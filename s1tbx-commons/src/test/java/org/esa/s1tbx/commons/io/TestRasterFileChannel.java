@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.commons.io;
+
+import org.esa.s1tbx.commons.test.TileWriteTests;
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares tiles written concurrently in random order through RasterFileChannel with the same tiles written in
+ * order through an image output stream.
+ */
+public class TestRasterFileChannel {
+
+    private static final int WIDTH = 53;
+    private static final int HEIGHT = 37;
+    private static final int TILE = 16;
+
+    private static final ByteOrder[] BYTE_ORDERS = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+    private static final int[] TYPES = {
+            ProductData.TYPE_INT8, ProductData.TYPE_UINT8, ProductData.TYPE_INT16, ProductData.TYPE_UINT16,
+            ProductData.TYPE_INT32, ProductData.TYPE_UINT32, ProductData.TYPE_FLOAT32, ProductData.TYPE_FLOAT64
+    };
+
+    private final Random random = new Random(42);
+    private File expectedFile;
+    private File actualFile;
+
+    @Before
+    public void setUp() throws IOException {
+        expectedFile = File.createTempFile("TestRasterFileChannel", ".expected");
+        actualFile = File.createTempFile("TestRasterFileChannel", ".actual");
+    }
+
+    @After
+    public void tearDown() {
+        expectedFile.delete();
+        actualFile.delete();
+    }
+
+    @Test
+    public void testWriteMatchesImageOutputStream() throws Exception {
+        for (ByteOrder byteOrder : BYTE_ORDERS) {
+            for (int type : TYPES) {
+                // narrow tiles written row by row, full width tiles written in one call
+                for (int tileWidth : new int[]{TILE, WIDTH}) {
+                    final ProductData data = TileWriteTests.createRandomData(type, WIDTH * HEIGHT, random);
+                    final List<Rectangle> tiles = TileWriteTests.createShuffledTiles(WIDTH, HEIGHT, tileWidth, TILE,
+                                                                                     random);
+
+                    expectedFile.delete();
+                    try (ImageOutputStream stream = new FileImageOutputStream(expectedFile)) {
+                        stream.setByteOrder(byteOrder);
+                        for (Rectangle tile : tiles) {
+                            TileWriteTests.writeRows(stream, TileWriteTests.getTileData(data, WIDTH, tile), tile,
+                                                     (long) tile.y * WIDTH + tile.x, WIDTH);
+                        }
+                    }
+
+                    actualFile.delete();
+                    final int elemSize = data.getElemSize();
+                    try (RasterFileChannel channel = new RasterFileChannel(actualFile, byteOrder)) {
+                        TileWriteTests.writeConcurrently(tiles, tile -> channel.write(
+                                TileWriteTests.getTileData(data, WIDTH, tile), tile.width, tile.height,
+                                (long) elemSize * (tile.y * WIDTH + tile.x), (long) elemSize * WIDTH));
+                    }
+
+                    TileWriteTests.assertSameBytes(expectedFile, actualFile);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWriteInterleavedMatchesImageOutputStream() throws Exception {
+        // float and short sources take the bulk path for a file type of the same type
+        final int[] sourceTypes = {ProductData.TYPE_FLOAT32, ProductData.TYPE_INT16, ProductData.TYPE_INT32};
+
+        for (ByteOrder byteOrder : BYTE_ORDERS) {
+            for (int fileType : new int[]{ProductData.TYPE_FLOAT32, ProductData.TYPE_INT16}) {
+                for (int sourceType : sourceTypes) {
+                    final ProductData iData = createComponentData(sourceType);
+                    final ProductData qData = createComponentData(sourceType);
+                    final List<Rectangle> tiles = TileWriteTests.createShuffledTiles(WIDTH, HEIGHT, TILE, TILE,
+                                                                                     random);
+                    final int elemSize = ProductData.getElemSize(fileType);
+
+                    expectedFile.delete();
+                    try (ImageOutputStream stream = new FileImageOutputStream(expectedFile)) {
+                        stream.setByteOrder(byteOrder);
+                        for (Rectangle tile : tiles) {
+                            TileWriteTests.writeInterleavedRows(stream, fileType,
+                                                                TileWriteTests.getTileData(iData, WIDTH, tile),
+                                                                TileWriteTests.getTileData(qData, WIDTH, tile),
+                                                                tile, WIDTH);
+                        }
+                    }
+
+                    actualFile.delete();
+                    try (RasterFileChannel channel = new RasterFileChannel(actualFile, byteOrder)) {
+                        TileWriteTests.writeConcurrently(tiles, tile -> channel.writeInterleaved(
+                                TileWriteTests.getTileData(iData, WIDTH, tile),
+                                TileWriteTests.getTileData(qData, WIDTH, tile), fileType, tile.width, tile.height,
+                                2L * elemSize * (tile.y * WIDTH + tile.x), 2L * elemSize * WIDTH));
+                    }
+
+                    TileWriteTests.assertSameBytes(expectedFile, actualFile);
+                }
+            }
+        }
+    }
+
+    private ProductData createComponentData(final int type) {
+        // within the short range so that the short conversion of every source type is exact
+        final ProductData data = ProductData.createInstance(type, WIDTH * HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            data.setElemIntAt(i, random.nextInt(65536) - 32768);
+        }
+        return data;
+    }
+}
@@ -17,7 +17,7 @@ package org.esa.s1tbx.io.gamma;
 
 import com.bc.ceres.core.ProgressMonitor;
 import com.bc.ceres.glevel.MultiLevelImage;
-import org.esa.s1tbx.commons.io.FileImageOutputStreamExtImpl;
+import org.esa.s1tbx.commons.io.RasterFileChannel;
 import org.esa.s1tbx.io.gamma.header.GammaConstants;
 import org.esa.s1tbx.io.gamma.header.HeaderDEMWriter;
 import org.esa.s1tbx.io.gamma.header.HeaderDiffWriter;
@@ -30,15 +30,14 @@ import org.esa.snap.core.gpf.internal.TileImpl;
 import org.esa.snap.core.util.Guardian;
 import org.esa.snap.engine_utilities.datamodel.Unit;
 
-import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The product writer for Gamma products.
@@ -48,7 +47,7 @@ public class GammaProductWriter extends AbstractProductWriter {
     private File outputDir;
     private File outputFile;
     private Product srcProduct;
-    private Map<Band, ImageOutputStream> bandOutputStreams;
+    private final Map<Band, RasterFileChannel> bandChannels = new ConcurrentHashMap<>();
     private HeaderWriter headerWriter;
 
     public GammaProductWriter(final ProductWriterPlugIn writerPlugIn) {
@@ -89,74 +88,38 @@ public class GammaProductWriter extends AbstractProductWriter {
         headerWriter.writeParFile();
     }
 
-    private ImageOutputStream createImageOutputStream(final Band band) throws IOException {
-        final ImageOutputStream out = new FileImageOutputStreamExtImpl(getValidImageFile(band));
-        out.setByteOrder(ByteOrder.BIG_ENDIAN);
-        return out;
-    }
-
     /**
      * {@inheritDoc}
      */
-    public synchronized void writeBandRasterData(Band sourceBand,
-                                                 int sourceOffsetX, int sourceOffsetY,
-                                                 int sourceWidth, int sourceHeight,
-                                                 ProductData sourceBuffer,
-                                                 ProgressMonitor pm) throws IOException {
+    public void writeBandRasterData(Band sourceBand,
+                                    int sourceOffsetX, int sourceOffsetY,
+                                    int sourceWidth, int sourceHeight,
+                                    ProductData sourceBuffer,
+                                    ProgressMonitor pm) throws IOException {
         Guardian.assertNotNull("sourceBand", sourceBand);
         Guardian.assertNotNull("sourceBuffer", sourceBuffer);
-        final int sourceBandWidth = sourceBand.getRasterWidth();
+        final long sourceBandWidth = sourceBand.getRasterWidth();
         final int elemSize = headerWriter.getHighestElemSize();
 
-        final ImageOutputStream outputStream = getOrCreateImageOutputStream(sourceBand);
+        final RasterFileChannel channel = getOrCreateChannel(sourceBand);
         pm.beginTask("Writing band '" + sourceBand.getName() + "'...", sourceHeight);
         try {
             if (isComplex(sourceBand)) {
-                int numInterleaved = 2;
+                final int numInterleaved = 2;
                 final Rectangle rect = new Rectangle(sourceOffsetX, sourceOffsetY, sourceWidth, sourceHeight);
                 final Tile sourceTile = getSourceTile(getComplexSrcBand(sourceBand), rect);
                 final ProductData qSourceBuffer = sourceTile.getRawSamples();
-                int srcCnt = 0;
-
-                if (elemSize >= 4) {
-                    final float[] destBuffer = new float[sourceWidth * numInterleaved];
-                    for (long y = sourceOffsetY; y < sourceOffsetY + sourceHeight; ++y) {
-                        int dstCnt = 0;
-                        for (int x = sourceOffsetX; x < sourceOffsetX + sourceWidth; ++x) {
-
-                            destBuffer[dstCnt++] = sourceBuffer.getElemFloatAt(srcCnt);
-                            destBuffer[dstCnt++] = qSourceBuffer.getElemFloatAt(srcCnt);
-                            srcCnt++;
-                        }
-
-                        outputStream.seek(elemSize * (y * sourceBandWidth + sourceOffsetX) * numInterleaved);
-                        outputStream.writeFloats(destBuffer, 0, destBuffer.length);
-                    }
-                } else {
-                    final short[] destBuffer = new short[sourceWidth * numInterleaved];
-                    for (long y = sourceOffsetY; y < sourceOffsetY + sourceHeight; ++y) {
-                        int dstCnt = 0;
-                        for (int x = sourceOffsetX; x < sourceOffsetX + sourceWidth; ++x) {
-
-                            destBuffer[dstCnt++] = (short) sourceBuffer.getElemFloatAt(srcCnt);
-                            destBuffer[dstCnt++] = (short) qSourceBuffer.getElemFloatAt(srcCnt);
-                            srcCnt++;
-                        }
-
-                        outputStream.seek(elemSize * (y * sourceBandWidth + sourceOffsetX) * numInterleaved);
-                        outputStream.writeShorts(destBuffer, 0, destBuffer.length);
-                    }
-                }
 
-                //System.out.println(rect.toString());
+                // components are written as float or short at the position of the highest element size
+                final int dataType = elemSize >= 4 ? ProductData.TYPE_FLOAT32 : ProductData.TYPE_INT16;
+                final long position = elemSize * (sourceOffsetY * sourceBandWidth + sourceOffsetX) * numInterleaved;
+                final long rowStride = elemSize * sourceBandWidth * numInterleaved;
+                channel.writeInterleaved(sourceBuffer, qSourceBuffer, dataType, sourceWidth, sourceHeight,
+                                         position, rowStride);
             } else {
-                //todo
-                long outputPos = (long) sourceOffsetY * (long) sourceBandWidth + sourceOffsetX;
-                final long max = sourceHeight * sourceWidth;
-                for (int sourcePos = 0; sourcePos < max; sourcePos += sourceWidth) {
-                    sourceBuffer.writeTo(sourcePos, sourceWidth, outputStream, outputPos);
-                    outputPos += sourceBandWidth;
-                }
+                final int sourceElemSize = sourceBuffer.getElemSize();
+                final long position = sourceElemSize * (sourceOffsetY * sourceBandWidth + sourceOffsetX);
+                channel.write(sourceBuffer, sourceWidth, sourceHeight, position, sourceElemSize * sourceBandWidth);
             }
             pm.worked(1);
         } finally {
@@ -188,12 +151,7 @@ public class GammaProductWriter extends AbstractProductWriter {
      * @throws java.io.IOException on failure
      */
     public void flush() throws IOException {
-        if (bandOutputStreams == null) {
-            return;
-        }
-        for (Object o : bandOutputStreams.values()) {
-            ((ImageOutputStream) o).flush();
-        }
+        // positional writes are not buffered
     }
 
     /**
@@ -201,15 +159,11 @@ public class GammaProductWriter extends AbstractProductWriter {
      *
      * @throws java.io.IOException on failure
      */
-    public void close() throws IOException {
-        if (bandOutputStreams == null) {
-            return;
-        }
-        for (Object o : bandOutputStreams.values()) {
-            ((ImageOutputStream) o).close();
+    public synchronized void close() throws IOException {
+        for (RasterFileChannel channel : bandChannels.values()) {
+            channel.close();
         }
-        bandOutputStreams.clear();
-        bandOutputStreams = null;
+        bandChannels.clear();
     }
 
     /**
@@ -224,26 +178,21 @@ public class GammaProductWriter extends AbstractProductWriter {
     }
 
     /**
-     * Returns the data output stream associated with the given <code>Band</code>. If no stream exists, one is created
-     * and fed into the hash map
+     * Returns the file channel associated with the given <code>Band</code>. If no channel exists, the image file is
+     * created and opened.
      */
-    private ImageOutputStream getOrCreateImageOutputStream(final Band band) throws IOException {
-        ImageOutputStream outputStream = getImageOutputStream(band);
-        if (outputStream == null) {
-            outputStream = createImageOutputStream(band);
-            if (bandOutputStreams == null) {
-                bandOutputStreams = new HashMap<>();
+    private RasterFileChannel getOrCreateChannel(final Band band) throws IOException {
+        RasterFileChannel channel = bandChannels.get(band);
+        if (channel == null) {
+            synchronized (this) {
+                channel = bandChannels.get(band);
+                if (channel == null) {
+                    channel = new RasterFileChannel(getValidImageFile(band), ByteOrder.BIG_ENDIAN);
+                    bandChannels.put(band, channel);
+                }
             }
-            bandOutputStreams.put(band, outputStream);
-        }
-        return outputStream;
-    }
-
-    private ImageOutputStream getImageOutputStream(final Band band) {
-        if (bandOutputStreams != null) {
-            return bandOutputStreams.get(band);
         }
-        return null;
+        return channel;
     }
 
     @Override
@@ -16,6 +16,7 @@
 package org.esa.s1tbx.io.generic;
 
 import com.bc.ceres.core.ProgressMonitor;
+import org.esa.s1tbx.commons.io.RasterFileChannel;
 import org.esa.snap.core.dataio.AbstractProductWriter;
 import org.esa.snap.core.dataio.ProductWriterPlugIn;
 import org.esa.snap.core.datamodel.Band;
@@ -27,19 +28,18 @@ import org.esa.snap.core.util.Guardian;
 import org.esa.snap.engine_utilities.datamodel.AbstractMetadata;
 import org.esa.snap.engine_utilities.datamodel.metadata.AbstractMetadataIO;
 
-import javax.imageio.stream.FileImageOutputStream;
-import javax.imageio.stream.ImageOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
 
 
 public class GenericBSQWriter extends AbstractProductWriter {
 
-    private ImageOutputStream _outputStream = null;
+    private RasterFileChannel _outputChannel = null;
 
-    private String bandName = null;
-    private int bandCounter = 0;
+    private final Map<Band, Integer> bandIndexMap = new HashMap<>(); // order of the written bands in a line
     private int numOfWriteBands = 0; // number of bands that are written (no virtual bands)
 
     /**
@@ -70,9 +70,8 @@ public class GenericBSQWriter extends AbstractProductWriter {
             file = (File) getOutput();
         }
 
-        _outputStream = new FileImageOutputStream(file);
         // Default to nativeOrder
-        _outputStream.setByteOrder(ByteOrder.nativeOrder());
+        _outputChannel = new RasterFileChannel(file, ByteOrder.nativeOrder());
 
         final MetadataElement absRoot = AbstractMetadata.getAbstractedMetadata(getSourceProduct());
         AbstractMetadataIO.saveExternalMetadata(getSourceProduct(), absRoot, file);
@@ -80,7 +79,9 @@ public class GenericBSQWriter extends AbstractProductWriter {
         // Get number of Real (not Virtual) bands
         final int numOfBands = getSourceProduct().getNumBands();
         for (int i = 0; i < numOfBands; i++) {
-            if (!(getSourceProduct().getBandAt(i) instanceof VirtualBand)) {
+            final Band band = getSourceProduct().getBandAt(i);
+            if (!(band instanceof VirtualBand)) {
+                bandIndexMap.put(band, numOfWriteBands);
                 numOfWriteBands++;
             }
         }
@@ -108,22 +109,18 @@ public class GenericBSQWriter extends AbstractProductWriter {
         checkSourceRegionInsideBandRegion(sourceWidth, sourceBandWidth, sourceHeight, sourceBandHeight, sourceOffsetX, sourceOffsetY);
 
         // Define order number of Band that is being saved
-        if (bandName == null) {
-            bandName = sourceBand.getName();
-        } else if (!bandName.equals(sourceBand.getName())) {
-            bandName = sourceBand.getName();
-            bandCounter++;
+        final Integer bandIndex = bandIndexMap.get(sourceBand);
+        if (bandIndex == null) {
+            throw new IOException("Band " + sourceBand.getName() + " is not part of the written product");
         }
 
         // Write all source NOT VIRTUAL bands in BSQ : Band Sequential Format
-        long outputPos = sourceOffsetY * (numOfWriteBands * sourceBandWidth) + sourceOffsetX + (bandCounter * sourceBandWidth);
+        final long lineLength = (long) numOfWriteBands * sourceBandWidth;
+        final long outputPos = sourceOffsetY * lineLength + sourceOffsetX + (bandIndex * (long) sourceBandWidth);
+        final int elemSize = sourceBuffer.getElemSize();
         pm.beginTask("Writing band '" + sourceBand.getName() + "'...", sourceHeight);
         try {
-            final long max = sourceHeight * sourceWidth;
-            for (int sourcePos = 0; sourcePos < max; sourcePos += sourceWidth) {
-                sourceBuffer.writeTo(sourcePos, sourceWidth, _outputStream, outputPos);
-                outputPos += (numOfWriteBands * sourceBandWidth);
-            }
+            _outputChannel.write(sourceBuffer, sourceWidth, sourceHeight, outputPos * elemSize, lineLength * elemSize);
             pm.worked(1);
         } finally {
             pm.done();
@@ -162,9 +159,7 @@ public class GenericBSQWriter extends AbstractProductWriter {
      * @throws java.io.IOException on failure
      */
     public void flush() throws IOException {
-        if (_outputStream != null) {
-            _outputStream.flush();
-        }
+        // positional writes are not buffered
     }
 
     /**
@@ -173,10 +168,9 @@ public class GenericBSQWriter extends AbstractProductWriter {
      * @throws java.io.IOException on failure
      */
     public void close() throws IOException {
-        if (_outputStream != null) {
-            _outputStream.flush();
-            _outputStream.close();
-            _outputStream = null;
+        if (_outputChannel != null) {
+            _outputChannel.close();
+            _outputChannel = null;
         }
     }
 
@@ -28,28 +28,48 @@ import org.esa.snap.core.datamodel.ProductNode;
 import org.esa.snap.core.datamodel.TiePointGeoCoding;
 import org.esa.snap.core.datamodel.TiePointGrid;
 import org.esa.snap.core.datamodel.VirtualBand;
+import org.esa.snap.core.image.ImageManager;
 import org.esa.snap.core.util.StringUtils;
+import org.esa.snap.core.util.SystemUtils;
 import org.esa.snap.core.util.io.FileUtils;
 import ucar.ma2.Array;
-import ucar.ma2.ArrayDouble;
 import ucar.ma2.DataType;
-import ucar.ma2.Index;
 import ucar.ma2.InvalidRangeException;
 import ucar.nc2.Attribute;
 import ucar.nc2.Dimension;
 import ucar.nc2.Group;
-import ucar.nc2.NetcdfFileWriteable;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+import ucar.nc2.jni.netcdf.Nc4Iosp;
+import ucar.nc2.write.Nc4Chunking;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
+/**
+ * Writes bands in their native data type. By default a NetCDF-3 file is written. NetCDF-4 output, which is
+ * chunked to the preferred tile size of the product and may be compressed, is selected with the system properties
+ * <code>[context].netcdf.writer.netcdf4</code>, <code>[context].netcdf.writer.deflate.level</code> (0-9) and
+ * <code>[context].netcdf.writer.shuffle</code>. It requires the native NetCDF-4 library.
+ */
 public class NetCDFWriter extends AbstractProductWriter {
 
+    private static final String PROPERTY_PREFIX = SystemUtils.getApplicationContextId() + ".netcdf.writer.";
+    private static final String UNSIGNED = "_Unsigned";
+
     private File outputFile = null;
-    private NetcdfFileWriteable netCDFWriteable = null;
+    private NetcdfFileWriter netCDFWriter = null;
+    private final Map<Band, Variable> bandVariableMap = new HashMap<>();
+
+    private boolean useNetCDF4 = Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "netcdf4", "false"));
+    private int deflateLevel = Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "deflate.level", "0"));
+    private boolean shuffle = Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "shuffle", "false"));
 
     /**
      * Construct a new instance of a product writer for the given product writer plug-in.
@@ -60,6 +80,21 @@ public class NetCDFWriter extends AbstractProductWriter {
         super(writerPlugIn);
     }
 
+    /**
+     * Selects NetCDF-4 output. Must be called before the product nodes are written.
+     *
+     * @param deflateLevel the deflate level from 0 (no compression) to 9
+     * @param shuffle      apply the shuffle filter before compression
+     */
+    public void setNetCDF4(final int deflateLevel, final boolean shuffle) {
+        if (deflateLevel < 0 || deflateLevel > 9) {
+            throw new IllegalArgumentException("deflate level must be in [0, 9]");
+        }
+        this.useNetCDF4 = true;
+        this.deflateLevel = deflateLevel;
+        this.shuffle = shuffle;
+    }
+
     private static float[] getLonData(final Product product, final String lonGridName) {
         final int size = product.getSceneRasterWidth();
         final TiePointGrid lonGrid = product.getTiePointGrid(lonGridName);
@@ -113,47 +148,49 @@ public class NetCDFWriter extends AbstractProductWriter {
 
         final Product product = getSourceProduct();
 
-        netCDFWriteable = NetcdfFileWriteable.createNew(outputFile.getAbsolutePath(), true);
-
+        netCDFWriter = createNetCDFWriter(product, outputFile);
+        bandVariableMap.clear();
 
-        netCDFWriteable.addDimension(NetcdfConstants.LON_VAR_NAMES[0], product.getSceneRasterWidth());
-        netCDFWriteable.addDimension(NetcdfConstants.LAT_VAR_NAMES[0], product.getSceneRasterHeight());
+        final Dimension lonDim = netCDFWriter.addDimension(null, NetcdfConstants.LON_VAR_NAMES[0],
+                                                          product.getSceneRasterWidth());
+        final Dimension latDim = netCDFWriter.addDimension(null, NetcdfConstants.LAT_VAR_NAMES[0],
+                                                          product.getSceneRasterHeight());
 
-        final Group rootGroup = netCDFWriteable.getRootGroup();
-        netCDFWriteable.addVariable(NetcdfConstants.LAT_VAR_NAMES[0], DataType.FLOAT,
-                new Dimension[]{rootGroup.findDimension(NetcdfConstants.LAT_VAR_NAMES[0])});
-        netCDFWriteable.addVariableAttribute(NetcdfConstants.LAT_VAR_NAMES[0], "units", "degrees_north (+N/-S)");
-        netCDFWriteable.addVariable(NetcdfConstants.LON_VAR_NAMES[0], DataType.FLOAT,
-                new Dimension[]{rootGroup.findDimension(NetcdfConstants.LON_VAR_NAMES[0])});
-        netCDFWriteable.addVariableAttribute(NetcdfConstants.LON_VAR_NAMES[0], "units", "degrees_east (+E/-W)");
+        final Variable latVar = netCDFWriter.addVariable(null, NetcdfConstants.LAT_VAR_NAMES[0], DataType.FLOAT,
+                                                         Arrays.asList(latDim));
+        netCDFWriter.addVariableAttribute(latVar, new Attribute("units", "degrees_north (+N/-S)"));
+        final Variable lonVar = netCDFWriter.addVariable(null, NetcdfConstants.LON_VAR_NAMES[0], DataType.FLOAT,
+                                                         Arrays.asList(lonDim));
+        netCDFWriter.addVariableAttribute(lonVar, new Attribute("units", "degrees_east (+E/-W)"));
 
+        final List<Dimension> rasterDims = Arrays.asList(latDim, lonDim);
         for (Band band : product.getBands()) {
             final String name = StringUtils.createValidName(band.getName(), new char[]{'_'}, '_');
-            netCDFWriteable.addVariable(name, DataType.DOUBLE,
-                    new Dimension[]{rootGroup.findDimension(NetcdfConstants.LAT_VAR_NAMES[0]),
-                            rootGroup.findDimension(NetcdfConstants.LON_VAR_NAMES[0])}
-            );
+            final Variable variable = netCDFWriter.addVariable(null, name, getNetCDFDataType(band.getDataType()),
+                                                               rasterDims);
+            if (isUnsigned(band.getDataType()))
+                netCDFWriter.addVariableAttribute(variable, new Attribute(UNSIGNED, "true"));
             if (band.getDescription() != null)
-                netCDFWriteable.addVariableAttribute(name, "description", band.getDescription());
+                netCDFWriter.addVariableAttribute(variable, new Attribute("description", band.getDescription()));
             if (band.getUnit() != null)
-                netCDFWriteable.addVariableAttribute(name, "unit", band.getUnit());
+                netCDFWriter.addVariableAttribute(variable, new Attribute("unit", band.getUnit()));
+            bandVariableMap.put(band, variable);
         }
 
         for (TiePointGrid tpg : product.getTiePointGrids()) {
             final String name = tpg.getName();
-            netCDFWriteable.addDimension(name + 'x', tpg.getGridWidth());
-            netCDFWriteable.addDimension(name + 'y', tpg.getGridHeight());
-            netCDFWriteable.addVariable(name, DataType.FLOAT,
-                    new Dimension[]{rootGroup.findDimension(name + 'y'), rootGroup.findDimension(name + 'x')});
+            final Dimension tpgX = netCDFWriter.addDimension(null, name + 'x', tpg.getGridWidth());
+            final Dimension tpgY = netCDFWriter.addDimension(null, name + 'y', tpg.getGridHeight());
+            final Variable variable = netCDFWriter.addVariable(null, name, DataType.FLOAT, Arrays.asList(tpgY, tpgX));
             if (tpg.getDescription() != null)
-                netCDFWriteable.addVariableAttribute(name, "description", tpg.getDescription());
+                netCDFWriter.addVariableAttribute(variable, new Attribute("description", tpg.getDescription()));
             if (tpg.getUnit() != null)
-                netCDFWriteable.addVariableAttribute(name, "unit", tpg.getUnit());
+                netCDFWriter.addVariableAttribute(variable, new Attribute("unit", tpg.getUnit()));
         }
 
         addMetadata(product);
 
-        netCDFWriteable.create();
+        netCDFWriter.create();
 
 
         final GeoCoding sourceGeoCoding = product.getSceneGeoCoding();
@@ -172,20 +209,65 @@ public class NetCDFWriter extends AbstractProductWriter {
             final Array lonNcArray = Array.factory(lonData);
 
             try {
-                netCDFWriteable.write(NetcdfConstants.LAT_VAR_NAMES[0], latNcArray);
-                netCDFWriteable.write(NetcdfConstants.LON_VAR_NAMES[0], lonNcArray);
+                netCDFWriter.write(latVar, latNcArray);
+                netCDFWriter.write(lonVar, lonNcArray);
 
                 for (TiePointGrid tpg : product.getTiePointGrids()) {
                     final Array tpgArray = Array.factory(getTiePointGridData(tpg));
-                    netCDFWriteable.write(tpg.getName(), tpgArray);
+                    netCDFWriter.write(netCDFWriter.findVariable(tpg.getName()), tpgArray);
                 }
             } catch (InvalidRangeException rangeE) {
-                rangeE.printStackTrace();
-                throw new RuntimeException(rangeE);
+                throw new IOException(rangeE);
             }
         }
     }
 
+    private NetcdfFileWriter createNetCDFWriter(final Product product, final File file) throws IOException {
+
+        if (useNetCDF4 && !Nc4Iosp.isClibraryPresent()) {
+            SystemUtils.LOG.warning("NetCDF-4 library not found. Writing " + file.getName() + " as NetCDF-3");
+            useNetCDF4 = false;
+        }
+
+        final NetcdfFileWriter writer;
+        if (useNetCDF4) {
+            final java.awt.Dimension tileSize = product.getPreferredTileSize() != null ?
+                    product.getPreferredTileSize() : ImageManager.getPreferredTileSize(product);
+            writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf4, file.getAbsolutePath(),
+                                                new TileChunking(tileSize, deflateLevel, shuffle));
+        } else {
+            writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, file.getAbsolutePath());
+        }
+        writer.setFill(true);
+        return writer;
+    }
+
+    private static DataType getNetCDFDataType(final int productDataType) {
+        switch (productDataType) {
+            case ProductData.TYPE_INT8:
+            case ProductData.TYPE_UINT8:
+                return DataType.BYTE;
+            case ProductData.TYPE_INT16:
+            case ProductData.TYPE_UINT16:
+                return DataType.SHORT;
+            case ProductData.TYPE_INT32:
+            case ProductData.TYPE_UINT32:
+                return DataType.INT;
+            case ProductData.TYPE_FLOAT32:
+                return DataType.FLOAT;
+            case ProductData.TYPE_FLOAT64:
+                return DataType.DOUBLE;
+            default:
+                throw new IllegalArgumentException("Unsupported band data type " +
+                                                           ProductData.getTypeString(productDataType));
+        }
+    }
+
+    private static boolean isUnsigned(final int productDataType) {
+        return productDataType == ProductData.TYPE_UINT8 || productDataType == ProductData.TYPE_UINT16 ||
+                productDataType == ProductData.TYPE_UINT32;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -197,30 +279,25 @@ public class NetCDFWriter extends AbstractProductWriter {
                                     final ProductData regionData,
                                     ProgressMonitor pm) throws IOException {
 
-        final int[] origin = new int[2];
-        origin[1] = regionX;
-        origin[0] = regionY;
-        try {
+        final Variable variable = bandVariableMap.get(sourceBand);
+        if (variable == null) {
+            throw new IOException("Band " + sourceBand.getName() + " is not part of the written product");
+        }
 
-            final ArrayDouble dataTemp = new ArrayDouble.D2(regionHeight, regionWidth);
-            final Index index = dataTemp.getIndex();
+        final int[] origin = {regionY, regionX};
 
-            int i = 0;
-            for (int y = 0; y < regionHeight; ++y) {
-                for (int x = 0; x < regionWidth; ++x) {
-                    index.set(y, x);
-                    dataTemp.set(index, regionData.getElemDoubleAt(i));
-                    ++i;
-                }
+        // the region is written as one hyperslab backed by the band's own buffer; unsigned types keep their bits
+        final Array array = Array.factory(variable.getDataType(), new int[]{regionHeight, regionWidth},
+                                          regionData.getElems());
+        try {
+            synchronized (netCDFWriter) {
+                netCDFWriter.write(variable, origin, array);
             }
-
-            netCDFWriteable.write(sourceBand.getName(), origin, dataTemp);
-
-            pm.worked(1);
-
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
+        } catch (InvalidRangeException e) {
+            throw new IOException("Unable to write " + sourceBand.getName() + ": " + e.getMessage(), e);
         }
+
+        pm.worked(1);
     }
 
     /**
@@ -238,7 +315,11 @@ public class NetCDFWriter extends AbstractProductWriter {
      * @throws java.io.IOException on failure
      */
     public void close() throws IOException {
-        netCDFWriteable.close();
+        if (netCDFWriter == null) {
+            return;
+        }
+        netCDFWriter.close();
+        netCDFWriter = null;
     }
 
     /**
@@ -247,10 +328,10 @@ public class NetCDFWriter extends AbstractProductWriter {
      * @throws IOException on failure
      */
     public void flush() throws IOException {
-        if (netCDFWriteable == null) {
+        if (netCDFWriter == null) {
             return;
         }
-        netCDFWriteable.flush();
+        netCDFWriter.flush();
     }
 
     /**
@@ -267,7 +348,7 @@ public class NetCDFWriter extends AbstractProductWriter {
     private void addMetadata(final Product product) {
 
         final MetadataElement rootElem = product.getMetadataRoot();
-        final Group rootGroup = netCDFWriteable.getRootGroup();
+        final Group rootGroup = netCDFWriter.getNetcdfFile().getRootGroup();
 
         addElements(rootElem, rootGroup);
         addAttributes(rootElem, rootGroup);
@@ -301,12 +382,13 @@ public class NetCDFWriter extends AbstractProductWriter {
                 subElement.setName(subElement.getName() + "." + cnt);
             }
 
-            final Group newGroup = new Group(netCDFWriteable, parentGroup, subElement.getName());
+            final NetcdfFile ncFile = netCDFWriter.getNetcdfFile();
+            final Group newGroup = new Group(ncFile, parentGroup, subElement.getName());
             addAttributes(subElement, newGroup);
             // recurse
             addElements(subElement, newGroup);
 
-            netCDFWriteable.addGroup(parentGroup, newGroup);
+            ncFile.addGroup(parentGroup, newGroup);
         }
     }
 
@@ -350,4 +432,48 @@ public class NetCDFWriter extends AbstractProductWriter {
             }
         }
     }
+
+    /**
+     * Chunks the raster variables to the tile size so that every tile written is one chunk.
+     */
+    private static class TileChunking implements Nc4Chunking {
+
+        private final java.awt.Dimension tileSize;
+        private final int deflateLevel;
+        private final boolean shuffle;
+
+        TileChunking(final java.awt.Dimension tileSize, final int deflateLevel, final boolean shuffle) {
+            this.tileSize = tileSize;
+            this.deflateLevel = deflateLevel;
+            this.shuffle = shuffle;
+        }
+
+        @Override
+        public boolean isChunked(final Variable v) {
+            return v.getRank() == 2;
+        }
+
+        @Override
+        public long[] computeChunking(final Variable v) {
+            final int[] shape = v.getShape();
+            if (shape.length != 2) {
+                final long[] chunks = new long[shape.length];
+                for (int i = 0; i < shape.length; i++) {
+                    chunks[i] = shape[i];
+                }
+                return chunks;
+            }
+            return new long[]{Math.min(tileSize.height, shape[0]), Math.min(tileSize.width, shape[1])};
+        }
+
+        @Override
+        public int getDeflateLevel(final Variable v) {
+            return deflateLevel;
+        }
+
+        @Override
+        public boolean isShuffle(final Variable v) {
+            return shuffle;
+        }
+    }
 }
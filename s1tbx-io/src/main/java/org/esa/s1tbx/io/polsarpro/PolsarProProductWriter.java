@@ -15,24 +15,28 @@
  */
 package org.esa.s1tbx.io.polsarpro;
 
-import org.esa.s1tbx.commons.io.FileImageOutputStreamExtImpl;
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.s1tbx.commons.io.RasterFileChannel;
 import org.esa.s1tbx.commons.polsar.PolBandUtils;
 import org.esa.snap.core.dataio.ProductWriterPlugIn;
 import org.esa.snap.core.dataio.dimap.EnviHeader;
 import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.MetadataElement;
 import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.util.Guardian;
 import org.esa.snap.core.util.SystemUtils;
 import org.esa.snap.dataio.envi.EnviProductWriter;
 import org.esa.snap.engine_utilities.datamodel.AbstractMetadata;
 import org.esa.snap.engine_utilities.datamodel.metadata.AbstractMetadataIO;
 
-import javax.imageio.stream.ImageOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The product writer for PolSARPro products.
@@ -41,6 +45,8 @@ public class PolsarProProductWriter extends EnviProductWriter {
 
     private final static String BIN_EXTENSION = ".bin";
 
+    private final Map<Band, RasterFileChannel> bandChannels = new ConcurrentHashMap<>();
+
     /**
      * Construct a new instance of a product writer for the given ENVI product writer plug-in.
      *
@@ -74,10 +80,80 @@ public class PolsarProProductWriter extends EnviProductWriter {
                 band.getRasterHeight(), 0);
     }
 
-    protected ImageOutputStream createImageOutputStream(Band band) throws IOException {
-        final ImageOutputStream out = new FileImageOutputStreamExtImpl(getValidImageFile(band));
-        out.setByteOrder(ByteOrder.LITTLE_ENDIAN);
-        return out;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeBandRasterData(final Band sourceBand,
+                                    final int sourceOffsetX, final int sourceOffsetY,
+                                    final int sourceWidth, final int sourceHeight,
+                                    final ProductData sourceBuffer,
+                                    final ProgressMonitor pm) throws IOException {
+        Guardian.assertNotNull("sourceBand", sourceBand);
+        Guardian.assertNotNull("sourceBuffer", sourceBuffer);
+        Guardian.assertEquals("sourceWidth * sourceHeight", sourceBuffer.getNumElems(), sourceWidth * sourceHeight);
+        checkSourceRegionInsideBandRegion(sourceWidth, sourceBand.getRasterWidth(), sourceHeight,
+                                          sourceBand.getRasterHeight(), sourceOffsetX, sourceOffsetY);
+
+        final long sourceBandWidth = sourceBand.getRasterWidth();
+        final int elemSize = sourceBuffer.getElemSize();
+        final RasterFileChannel channel = getOrCreateChannel(sourceBand);
+
+        pm.beginTask("Writing band '" + sourceBand.getName() + "'...", sourceHeight);
+        try {
+            channel.write(sourceBuffer, sourceWidth, sourceHeight,
+                          elemSize * (sourceOffsetY * sourceBandWidth + sourceOffsetX), elemSize * sourceBandWidth);
+            pm.worked(sourceHeight);
+        } finally {
+            pm.done();
+        }
+    }
+
+    private static void checkSourceRegionInsideBandRegion(int sourceWidth, final int sourceBandWidth, int sourceHeight,
+                                                          final int sourceBandHeight, int sourceOffsetX,
+                                                          int sourceOffsetY) {
+        Guardian.assertWithinRange("sourceWidth", sourceWidth, 1, sourceBandWidth);
+        Guardian.assertWithinRange("sourceHeight", sourceHeight, 1, sourceBandHeight);
+        Guardian.assertWithinRange("sourceOffsetX", sourceOffsetX, 0, sourceBandWidth - sourceWidth);
+        Guardian.assertWithinRange("sourceOffsetY", sourceOffsetY, 0, sourceBandHeight - sourceHeight);
+    }
+
+    private RasterFileChannel getOrCreateChannel(final Band band) throws IOException {
+        RasterFileChannel channel = bandChannels.get(band);
+        if (channel == null) {
+            synchronized (this) {
+                channel = bandChannels.get(band);
+                if (channel == null) {
+                    channel = new RasterFileChannel(getValidImageFile(band), ByteOrder.LITTLE_ENDIAN);
+                    bandChannels.put(band, channel);
+                }
+            }
+        }
+        return channel;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (RasterFileChannel channel : bandChannels.values()) {
+            channel.close();
+        }
+        bandChannels.clear();
+        super.close();
+    }
+
+    @Override
+    public void removeBand(final Band band) {
+        if (band != null) {
+            final RasterFileChannel channel = bandChannels.remove(band);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    SystemUtils.LOG.warning("Unable to close " + band.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+        super.removeBand(band);
     }
 
     /**
@@ -414,9 +414,17 @@ public class Sentinel1OCNReader {
 
         final GeometryFactory geometryFactory = new GeometryFactory();
 
-        final int xStepSize = rasterW / shapeSideLen;
-        final int yStepSize = rasterH / shapeSideLen;
+        final int xStepSize = Math.max(1, rasterW / shapeSideLen);
+        final int yStepSize = Math.max(1, rasterH / shapeSideLen);
         //System.out.println("Sentinel1OCNReader.addWindToVectorNodes: xStepSize = " + xStepSize + " yStepSize = " + yStepSize);
+
+        // read each wind variable once instead of one read per cell
+        final ProductData[] windData = new ProductData[windBands.size()];
+        for (int k = 0; k < windData.length; k++) {
+            windData[k] = windBands.get(k).createCompatibleProductData(rasterW * rasterH);
+            readData(0, 0, rasterW, rasterH, 1, 1, windBands.get(k), 0, 0, rasterW, rasterH, windData[k]);
+        }
+
         int i = 0;
         for (int x = 0; x < rasterW; x += xStepSize) {
             for (int y = 0; y < rasterH; y += yStepSize) {
@@ -436,13 +444,10 @@ public class Sentinel1OCNReader {
                 sfb.set(PlainFeatureFactory.ATTRIB_NAME_GEOMETRY, p);
                 final SimpleFeature feature = sfb.buildFeature( componentName + "_wind_data_pt_" + i++);
 
-                for (Band b : windBands) {
-
-                    ProductData productData = b.createCompatibleProductData(1);
-                    readData(x, y, 1, 1, 1, 1, b, 0, 0, 1, 1, productData);
-                    double val = productData.getElemDoubleAt(0);
-
-                    feature.setAttribute(bandToAttributeName.get(b), val);
+                final int idx = y * rasterW + x;
+                for (int k = 0; k < windData.length; k++) {
+                    final double val = windData[k].getElemDoubleAt(idx);
+                    feature.setAttribute(bandToAttributeName.get(windBands.get(k)), val);
                 }
 
                 collection.add(feature);
@@ -569,22 +574,33 @@ public class Sentinel1OCNReader {
         switch (var.getRank()) {
             case 2:
                 readDataForRank2Variable(sourceOffsetX, sourceOffsetY, sourceWidth, sourceHeight,
-                        sourceStepX, sourceStepY, var, destWidth, destHeight, destBuffer);
+                        sourceStepX, sourceStepY, netcdfFile, var, destWidth, destHeight, destBuffer);
                 break;
             case 3:
                 readDataForRank3Variable(bandName, sourceOffsetX, sourceOffsetY, sourceWidth, sourceHeight,
-                        sourceStepX, sourceStepY, var, destWidth, destHeight, destBuffer);
+                        sourceStepX, sourceStepY, netcdfFile, var, destWidth, destHeight, destBuffer);
                 break;
             case 4:
                 readDataForRank4Variable(sourceOffsetX, sourceOffsetY, sourceWidth, sourceHeight,
-                        sourceStepX, sourceStepY, var, destWidth, destHeight, destBuffer);
+                        sourceStepX, sourceStepY, netcdfFile, var, destWidth, destHeight, destBuffer);
                 break;
         }
     }
 
-    public synchronized void readDataForRank2Variable(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
-                                         int sourceStepX, int sourceStepY, Variable var,
-                                         int destWidth, int destHeight, ProductData destBuffer) {
+    /**
+     * Reads a section of a variable. A NetcdfFile is not thread safe, so reads are serialised per MDS file only;
+     * bands of different files are read concurrently and the conversion into the destination buffer is not locked.
+     */
+    private static Array readSection(final NetcdfFile netcdfFile, final Variable var,
+                                     final int[] origin, final int[] shape) throws IOException, InvalidRangeException {
+        synchronized (netcdfFile) {
+            return var.read(origin, shape);
+        }
+    }
+
+    private void readDataForRank2Variable(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
+                                          int sourceStepX, int sourceStepY, NetcdfFile netcdfFile, Variable var,
+                                          int destWidth, int destHeight, ProductData destBuffer) {
 
         final int[] origin = {sourceOffsetY, sourceOffsetX};
         final int[] shape = {sourceHeight, sourceWidth};
@@ -597,7 +613,7 @@ public class Sentinel1OCNReader {
 
         try {
 
-            final Array srcArray = var.read(origin, shape);
+            final Array srcArray = readSection(netcdfFile, var, origin, shape);
 
             for (int i = 0; i < destHeight; i++) {
                 final int srcStride = i * sourceWidth;
@@ -619,11 +635,11 @@ public class Sentinel1OCNReader {
         }
     }
 
-    private synchronized void readDataForRank3Variable(final String bandName,
-                                                       int sourceOffsetX, int sourceOffsetY,
-                                                       int sourceWidth, int sourceHeight,
-                                                      int sourceStepX, int sourceStepY, Variable var,
-                                                      int destWidth, int destHeight, ProductData destBuffer) {
+    private void readDataForRank3Variable(final String bandName,
+                                          int sourceOffsetX, int sourceOffsetY,
+                                          int sourceWidth, int sourceHeight,
+                                          int sourceStepX, int sourceStepY, NetcdfFile netcdfFile, Variable var,
+                                          int destWidth, int destHeight, ProductData destBuffer) {
 
         final int swath = getSwathNumber(bandName);
 
@@ -642,7 +658,7 @@ public class Sentinel1OCNReader {
         final int[] shape = {outerYEnd - origin[0] + 1, outerXEnd - origin[1] + 1, 1};
 
         try {
-            final Array srcArray = var.read(origin, shape);
+            final Array srcArray = readSection(netcdfFile, var, origin, shape);
 
             final int length = destBuffer.getNumElems();
             for(int i=0; i< length; ++i) {
@@ -669,8 +685,8 @@ public class Sentinel1OCNReader {
         return 0;
     }
 
-    private synchronized void readDataForRank4Variable(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
-                                          int sourceStepX, int sourceStepY, Variable var,
+    private void readDataForRank4Variable(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
+                                          int sourceStepX, int sourceStepY, NetcdfFile netcdfFile, Variable var,
                                           int destWidth, int destHeight, ProductData destBuffer) {
 
         final int[] shape0 = var.getShape();
@@ -695,7 +711,7 @@ public class Sentinel1OCNReader {
 
         try {
 
-            final Array srcArray = var.read(origin, shape);
+            final Array srcArray = readSection(netcdfFile, var, origin, shape);
             final int[] idx = new int[4];
 
             for (int i = 0; i < destHeight; i++) {
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.gamma;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.s1tbx.commons.test.TileWriteTests;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.util.io.FileUtils;
+import org.esa.snap.engine_utilities.datamodel.Unit;
+import org.esa.snap.engine_utilities.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the image files of the GAMMA writer, with tiles written concurrently in random order, with the same tiles
+ * written in order through an image output stream.
+ */
+public class TestGammaProductWriter {
+
+    private static final int WIDTH = 53;
+    private static final int HEIGHT = 37;
+    private static final int TILE = 16;
+
+    private final Random random = new Random(42);
+    private File outputDir;
+
+    @Before
+    public void setUp() throws IOException {
+        outputDir = File.createTempFile("TestGammaProductWriter", "");
+        outputDir.delete();
+        outputDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteTree(outputDir);
+    }
+
+    @Test
+    public void testFloatComplexAndRealBands() throws Exception {
+        testWriteMatchesImageOutputStream(ProductData.TYPE_FLOAT32);
+    }
+
+    @Test
+    public void testShortComplexAndRealBands() throws Exception {
+        testWriteMatchesImageOutputStream(ProductData.TYPE_INT16);
+    }
+
+    private void testWriteMatchesImageOutputStream(final int type) throws Exception {
+        final Product product = TestUtils.createProduct("type", WIDTH, HEIGHT);
+        final Band iBand = addBand(product, "i_VV", type, Unit.REAL);
+        addBand(product, "q_VV", type, Unit.IMAGINARY);
+        final Band realBand = addBand(product, "Amplitude_VV", type, Unit.AMPLITUDE);
+
+        final GammaProductWriter writer = new GammaProductWriter(new GammaProductWriterPlugIn());
+        writer.writeProductNodes(product, new File(outputDir, "test"));
+        try {
+            for (Band band : new Band[]{iBand, realBand}) {
+                final ProductData data = band.getData();
+                TileWriteTests.writeConcurrently(createTiles(), tile -> writer.writeBandRasterData(
+                        band, tile.x, tile.y, tile.width, tile.height,
+                        TileWriteTests.getTileData(data, WIDTH, tile), ProgressMonitor.NULL));
+            }
+        } finally {
+            writer.close();
+        }
+
+        // complex components are written as float or short, big endian, interleaved in the file of the i band
+        final File expectedComplexFile = new File(outputDir, "expected_VV");
+        try (ImageOutputStream stream = new FileImageOutputStream(expectedComplexFile)) {
+            stream.setByteOrder(ByteOrder.BIG_ENDIAN);
+            final ProductData iData = iBand.getData();
+            final ProductData qData = product.getBand("q_VV").getData();
+            for (Rectangle tile : createTiles()) {
+                TileWriteTests.writeInterleavedRows(stream, type, TileWriteTests.getTileData(iData, WIDTH, tile),
+                                                    TileWriteTests.getTileData(qData, WIDTH, tile), tile, WIDTH);
+            }
+        }
+        TileWriteTests.assertSameBytes(expectedComplexFile, new File(outputDir, "VV.rslc"));
+
+        final File expectedRealFile = new File(outputDir, "expected_Amplitude_VV");
+        try (ImageOutputStream stream = new FileImageOutputStream(expectedRealFile)) {
+            stream.setByteOrder(ByteOrder.BIG_ENDIAN);
+            final ProductData data = realBand.getData();
+            for (Rectangle tile : createTiles()) {
+                TileWriteTests.writeRows(stream, TileWriteTests.getTileData(data, WIDTH, tile), tile,
+                                         (long) tile.y * WIDTH + tile.x, WIDTH);
+            }
+        }
+        TileWriteTests.assertSameBytes(expectedRealFile, new File(outputDir, "Amplitude_VV.rslc"));
+    }
+
+    private Band addBand(final Product product, final String name, final int type, final String unit) {
+        final Band band = product.addBand(name, type);
+        band.setUnit(unit);
+        band.setData(TileWriteTests.createRandomData(type, WIDTH * HEIGHT, random));
+        return band;
+    }
+
+    private List<Rectangle> createTiles() {
+        return TileWriteTests.createShuffledTiles(WIDTH, HEIGHT, TILE, TILE, random);
+    }
+}
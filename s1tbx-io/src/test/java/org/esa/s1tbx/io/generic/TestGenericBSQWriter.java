@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.generic;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.s1tbx.commons.test.TileWriteTests;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.datamodel.VirtualBand;
+import org.esa.snap.core.util.io.FileUtils;
+import org.esa.snap.engine_utilities.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Compares the band sequential file of the generic writer, with tiles written concurrently in random order, with
+ * the same tiles written band after band through an image output stream.
+ */
+public class TestGenericBSQWriter {
+
+    private static final int WIDTH = 53;
+    private static final int HEIGHT = 37;
+    private static final int TILE = 16;
+    private static final int NUM_BANDS = 3;
+
+    private final Random random = new Random(42);
+    private File outputDir;
+
+    @Before
+    public void setUp() throws IOException {
+        outputDir = File.createTempFile("TestGenericBSQWriter", "");
+        outputDir.delete();
+        outputDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteTree(outputDir);
+    }
+
+    @Test
+    public void testFloatBands() throws Exception {
+        testWriteMatchesImageOutputStream(ProductData.TYPE_FLOAT32);
+    }
+
+    @Test
+    public void testShortBands() throws Exception {
+        testWriteMatchesImageOutputStream(ProductData.TYPE_INT16);
+    }
+
+    private void testWriteMatchesImageOutputStream(final int type) throws Exception {
+        final Product product = TestUtils.createProduct("type", WIDTH, HEIGHT);
+        final Band[] bands = new Band[NUM_BANDS];
+        for (int b = 0; b < NUM_BANDS; b++) {
+            bands[b] = product.addBand("band_" + b, type);
+            bands[b].setData(TileWriteTests.createRandomData(type, WIDTH * HEIGHT, random));
+            if (b == 0) {
+                // virtual bands are not written and do not take a place in the line
+                product.addBand(new VirtualBand("virtual", type, WIDTH, HEIGHT, "band_0 + 1"));
+            }
+        }
+
+        final File file = new File(outputDir, "test.bin");
+        final GenericBSQWriter writer = new GenericBSQWriter(new GenericBSQWriterPlugIn());
+        writer.writeProductNodes(product, file);
+        try {
+            for (Band band : bands) {
+                final ProductData data = band.getData();
+                TileWriteTests.writeConcurrently(
+                        TileWriteTests.createShuffledTiles(WIDTH, HEIGHT, TILE, TILE, random),
+                        tile -> writer.writeBandRasterData(band, tile.x, tile.y, tile.width, tile.height,
+                                                           TileWriteTests.getTileData(data, WIDTH, tile),
+                                                           ProgressMonitor.NULL));
+            }
+        } finally {
+            writer.close();
+        }
+
+        final File expectedFile = new File(outputDir, "expected.bin");
+        try (ImageOutputStream stream = new FileImageOutputStream(expectedFile)) {
+            stream.setByteOrder(ByteOrder.nativeOrder());
+            final long lineLength = (long) NUM_BANDS * WIDTH;
+            for (int b = 0; b < NUM_BANDS; b++) {
+                final ProductData data = bands[b].getData();
+                for (Rectangle tile : TileWriteTests.createShuffledTiles(WIDTH, HEIGHT, TILE, TILE, random)) {
+                    TileWriteTests.writeRows(stream, TileWriteTests.getTileData(data, WIDTH, tile), tile,
+                                             tile.y * lineLength + tile.x + b * WIDTH, lineLength);
+                }
+            }
+        }
+        TileWriteTests.assertSameBytes(expectedFile, file);
+    }
+}
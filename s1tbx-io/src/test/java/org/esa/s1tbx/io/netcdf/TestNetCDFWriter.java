@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.netcdf;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trip of band data through the NetCDF writer.
+ */
+public class TestNetCDFWriter {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+    private static final int TILE = 16;
+
+    private static final int[] TYPES = {
+            ProductData.TYPE_INT8, ProductData.TYPE_UINT8, ProductData.TYPE_INT16, ProductData.TYPE_UINT16,
+            ProductData.TYPE_INT32, ProductData.TYPE_UINT32, ProductData.TYPE_FLOAT32, ProductData.TYPE_FLOAT64
+    };
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("TestNetCDFWriter", ".nc");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testRoundTripIsBitIdentical() throws Exception {
+
+        final Product product = new Product("test", "test", WIDTH, HEIGHT);
+        final Random random = new Random(42);
+        final ProductData[] data = new ProductData[TYPES.length];
+        for (int b = 0; b < TYPES.length; b++) {
+            final Band band = product.addBand("band_" + b, TYPES[b]);
+            data[b] = createRandomData(TYPES[b], random);
+            band.setData(data[b]);
+        }
+
+        final NetCDFWriter writer = new NetCDFWriter(new NetCDFWriterPlugIn());
+        writer.writeProductNodes(product, file);
+        for (int b = 0; b < TYPES.length; b++) {
+            final Band band = product.getBandAt(b);
+            // write in tiles, including partial tiles at the right and bottom edges
+            for (int y = 0; y < HEIGHT; y += TILE) {
+                for (int x = 0; x < WIDTH; x += TILE) {
+                    final int w = Math.min(TILE, WIDTH - x);
+                    final int h = Math.min(TILE, HEIGHT - y);
+                    final ProductData tile = ProductData.createInstance(TYPES[b], w * h);
+                    for (int yy = 0; yy < h; yy++) {
+                        for (int xx = 0; xx < w; xx++) {
+                            tile.setElemDoubleAt(yy * w + xx, data[b].getElemDoubleAt((y + yy) * WIDTH + x + xx));
+                        }
+                    }
+                    writer.writeBandRasterData(band, x, y, w, h, tile, ProgressMonitor.NULL);
+                }
+            }
+        }
+        writer.close();
+
+        try (NetcdfFile ncFile = NetcdfFile.open(file.getAbsolutePath())) {
+            for (int b = 0; b < TYPES.length; b++) {
+                final Variable variable = ncFile.findVariable("band_" + b);
+                assertNotNull(variable);
+                assertEquals(TYPES[b] == ProductData.TYPE_UINT8 || TYPES[b] == ProductData.TYPE_UINT16 ||
+                                     TYPES[b] == ProductData.TYPE_UINT32, variable.isUnsigned());
+
+                final Array array = variable.read();
+                assertEquals(WIDTH * HEIGHT, array.getSize());
+                assertBitIdentical(data[b], array);
+            }
+        }
+    }
+
+    @Test
+    public void testNativeDataTypes() throws Exception {
+
+        final Product product = new Product("test", "test", WIDTH, HEIGHT);
+        product.addBand("int16", ProductData.TYPE_INT16);
+        product.addBand("float32", ProductData.TYPE_FLOAT32);
+
+        final NetCDFWriter writer = new NetCDFWriter(new NetCDFWriterPlugIn());
+        writer.writeProductNodes(product, file);
+        writer.close();
+
+        try (NetcdfFile ncFile = NetcdfFile.open(file.getAbsolutePath())) {
+            assertEquals(DataType.SHORT, ncFile.findVariable("int16").getDataType());
+            assertEquals(DataType.FLOAT, ncFile.findVariable("float32").getDataType());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteOutsideRasterFails() throws Exception {
+
+        final Product product = new Product("test", "test", WIDTH, HEIGHT);
+        final Band band = product.addBand("float32", ProductData.TYPE_FLOAT32);
+
+        final NetCDFWriter writer = new NetCDFWriter(new NetCDFWriterPlugIn());
+        writer.writeProductNodes(product, file);
+        try {
+            writer.writeBandRasterData(band, WIDTH - 2, 0, 4, 1, ProductData.createInstance(new float[4]),
+                                       ProgressMonitor.NULL);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static ProductData createRandomData(final int type, final Random random) {
+        final ProductData data = ProductData.createInstance(type, WIDTH * HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            switch (type) {
+                case ProductData.TYPE_FLOAT32:
+                    data.setElemFloatAt(i, i == 0 ? Float.NaN : (float) random.nextGaussian() * 1e3f);
+                    break;
+                case ProductData.TYPE_FLOAT64:
+                    data.setElemDoubleAt(i, i == 0 ? Double.NaN : random.nextGaussian() * 1e6);
+                    break;
+                default:
+                    // full range of the type, including values that only fit unsigned
+                    data.setElemUIntAt(i, random.nextInt());
+                    break;
+            }
+        }
+        return data;
+    }
+
+    private static void assertBitIdentical(final ProductData expected, final Array actual) {
+        final int n = expected.getNumElems();
+        final Object storage = actual.get1DJavaArray(actual.getElementType());
+        for (int i = 0; i < n; i++) {
+            final long expectedBits;
+            final long actualBits;
+            if (storage instanceof byte[]) {
+                expectedBits = ((byte[]) expected.getElems())[i];
+                actualBits = ((byte[]) storage)[i];
+            } else if (storage instanceof short[]) {
+                expectedBits = ((short[]) expected.getElems())[i];
+                actualBits = ((short[]) storage)[i];
+            } else if (storage instanceof int[]) {
+                expectedBits = ((int[]) expected.getElems())[i];
+                actualBits = ((int[]) storage)[i];
+            } else if (storage instanceof float[]) {
+                expectedBits = Float.floatToRawIntBits(((float[]) expected.getElems())[i]);
+                actualBits = Float.floatToRawIntBits(((float[]) storage)[i]);
+            } else {
+                assertTrue(storage instanceof double[]);
+                expectedBits = Double.doubleToRawLongBits(((double[]) expected.getElems())[i]);
+                actualBits = Double.doubleToRawLongBits(((double[]) storage)[i]);
+            }
+            assertEquals("element " + i, expectedBits, actualBits);
+        }
+    }
+}
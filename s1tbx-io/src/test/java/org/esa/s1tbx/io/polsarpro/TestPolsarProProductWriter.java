@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.io.polsarpro;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.s1tbx.commons.test.TileWriteTests;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.util.io.FileUtils;
+import org.esa.snap.engine_utilities.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares the band files of the PolSARPro writer, with tiles written concurrently in random order, with the same
+ * tiles written in order through a little endian image output stream.
+ */
+public class TestPolsarProProductWriter {
+
+    private static final int WIDTH = 53;
+    private static final int HEIGHT = 37;
+    private static final int TILE = 16;
+
+    private static final String[] T3_BANDS = {
+            "T11", "T12_real", "T12_imag", "T13_real", "T13_imag", "T22", "T23_real", "T23_imag", "T33"
+    };
+
+    private final Random random = new Random(42);
+    private File outputDir;
+
+    @Before
+    public void setUp() throws IOException {
+        outputDir = File.createTempFile("TestPolsarProProductWriter", "");
+        outputDir.delete();
+        outputDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteTree(outputDir);
+    }
+
+    @Test
+    public void testFloatBands() throws Exception {
+        testWriteMatchesImageOutputStream(ProductData.TYPE_FLOAT32);
+    }
+
+    @Test
+    public void testShortBands() throws Exception {
+        testWriteMatchesImageOutputStream(ProductData.TYPE_INT16);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteOutsideRasterFails() throws Exception {
+        final Product product = TestUtils.createProduct("type", WIDTH, HEIGHT);
+        final Band band = product.addBand("T11", ProductData.TYPE_FLOAT32);
+
+        final PolsarProProductWriter writer = new PolsarProProductWriter(new PolsarProProductWriterPlugIn());
+        writer.writeProductNodes(product, new File(outputDir, "test"));
+        try {
+            writer.writeBandRasterData(band, WIDTH - 2, 0, 4, 1, ProductData.createInstance(new float[4]),
+                                       ProgressMonitor.NULL);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void testWriteMatchesImageOutputStream(final int type) throws Exception {
+        final Product product = TestUtils.createProduct("type", WIDTH, HEIGHT);
+        for (String name : T3_BANDS) {
+            product.addBand(name, type).setData(TileWriteTests.createRandomData(type, WIDTH * HEIGHT, random));
+        }
+
+        final PolsarProProductWriter writer = new PolsarProProductWriter(new PolsarProProductWriterPlugIn());
+        writer.writeProductNodes(product, new File(outputDir, "test"));
+        try {
+            for (Band band : product.getBands()) {
+                final ProductData data = band.getData();
+                TileWriteTests.writeConcurrently(
+                        TileWriteTests.createShuffledTiles(WIDTH, HEIGHT, TILE, TILE, random),
+                        tile -> writer.writeBandRasterData(band, tile.x, tile.y, tile.width, tile.height,
+                                                           TileWriteTests.getTileData(data, WIDTH, tile),
+                                                           ProgressMonitor.NULL));
+            }
+        } finally {
+            writer.close();
+        }
+
+        for (Band band : product.getBands()) {
+            final File expectedFile = new File(outputDir, "expected_" + band.getName());
+            try (ImageOutputStream stream = new FileImageOutputStream(expectedFile)) {
+                stream.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+                final ProductData data = band.getData();
+                for (Rectangle tile : TileWriteTests.createShuffledTiles(WIDTH, HEIGHT, TILE, TILE, random)) {
+                    TileWriteTests.writeRows(stream, TileWriteTests.getTileData(data, WIDTH, tile), tile,
+                                             (long) tile.y * WIDTH + tile.x, WIDTH);
+                }
+            }
+
+            final File file = findFile(outputDir, band.getName() + ".bin");
+            assertNotNull(band.getName(), file);
+            TileWriteTests.assertSameBytes(expectedFile, file);
+        }
+    }
+
+    private static File findFile(final File dir, final String name) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    final File found = findFile(file, name);
+                    if (found != null) {
+                        return found;
+                    }
+                } else if (file.getName().equals(name)) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.fex.gpf.oceantools;
+
+import Jama.Matrix;
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_2D;
+import org.esa.snap.engine_utilities.eo.Constants;
+
+/**
+ * Estimates the wind direction of an imagette from the wind rolls in its spectrum [2].
+ * <p>
+ * 1. The imagette is flattened by dividing it by its 11x11 local mean.
+ * <p>
+ * 2. Four spectra of 2/3 of the window size, overlapping by 50%, are computed with a 2-D FFT and averaged.
+ * Only the central (2 * n3 + 1) x (2 * n3 + 1) samples of the shifted spectrum, the wave lengths above 2.5 km,
+ * are kept.
+ * <p>
+ * 3. An annulus removes the wave lengths above 15 km and a 3x3 median filter removes noise. As with the JAI
+ * median filter without a border extender, the border samples are left at zero.
+ * <p>
+ * 4. A 2D polynomial is fit to the resulting spectral samples and the direction through the origin which has the
+ * largest quadratic term (i.e. the widest extent) is determined. The wind direction is then assumed to be 90 degree
+ * from this direction.
+ * <p>
+ * The annulus is computed once. The FFT plan and all work arrays are held per thread and reused for every
+ * imagette estimated on that thread.
+ */
+final class WindDirectionEstimator {
+
+    private static final int DC_FILTER_SIZE = 11;
+
+    private final int windowSize;
+    private final int fftSize;
+    private final int n3;
+    private final int length;
+    private final boolean[] annulus;
+
+    private final ThreadLocal<Workspace> workspace;
+
+    /**
+     * @param windowSize     the imagette size in pixels
+     * @param windowSizeInKm the imagette size in km
+     */
+    WindDirectionEstimator(final int windowSize, final double windowSizeInKm) {
+        this.windowSize = windowSize;
+
+        int size = windowSize * 2 / 3;
+        if (size % 2 == 0) {
+            size++;
+        }
+        fftSize = size;
+
+        final double delta_k = 1.0 / (windowSizeInKm * 1000.0 * 2.0 / 3.0); // 1 / window_size_in_m
+        n3 = Math.min((int) (Constants.TWO_PI / (2500.0 * delta_k)), fftSize / 2);
+        length = 2 * n3 + 1;
+
+        int n15 = (int) (Constants.TWO_PI / (15000.0 * delta_k));
+        if (n15 >= fftSize / 2) {
+            n15 = 1;
+        }
+        annulus = new boolean[length * length];
+        for (int r = 0; r < length; r++) {
+            for (int c = 0; c < length; c++) {
+                annulus[r * length + c] = Math.abs(r - n3) > n15 || Math.abs(c - n3) > n15;
+            }
+        }
+
+        workspace = ThreadLocal.withInitial(Workspace::new);
+    }
+
+    /**
+     * @return the imagette buffer of the current thread, windowSize x windowSize samples row-major
+     */
+    double[] getImagette() {
+        return workspace.get().imagette;
+    }
+
+    /**
+     * Estimates the wind direction of the imagette in the buffer of the current thread.
+     *
+     * @param direction set to the wind direction (dx, dy)
+     * @return the ratio of the minor semi axes over the major semi axes of the 2D polynomial
+     */
+    double estimate(final double[] direction) {
+
+        final Workspace ws = workspace.get();
+        removeDCComponent(ws);
+        computeSpectrum(ws);
+
+        final double[] spec = ws.spec;
+        for (int k = 0; k < spec.length; k++) {
+            if (!annulus[k]) {
+                spec[k] = 0.0;
+            }
+        }
+
+        final double peakValue = medianFilter(spec, ws.filtered, ws.window);
+        return getDirection(ws.filtered, peakValue, n3, direction);
+    }
+
+    /**
+     * Divide each sample by the mean of the 11x11 window around it, clipped to the imagette, computed with
+     * separable box sums.
+     */
+    private void removeDCComponent(final Workspace ws) {
+
+        final int half = DC_FILTER_SIZE / 2;
+        final double[] imagette = ws.imagette;
+        final double[] rowSum = ws.dcRemoved;
+
+        for (int r = 0; r < windowSize; r++) {
+            final int offset = r * windowSize;
+            double sum = 0.0;
+            for (int c = 0; c <= Math.min(half, windowSize - 1); c++) {
+                sum += imagette[offset + c];
+            }
+            for (int c = 0; c < windowSize; c++) {
+                rowSum[offset + c] = sum;
+                if (c + half + 1 < windowSize) {
+                    sum += imagette[offset + c + half + 1];
+                }
+                if (c - half >= 0) {
+                    sum -= imagette[offset + c - half];
+                }
+            }
+        }
+
+        final double[] colSum = ws.colSum;
+        for (int c = 0; c < windowSize; c++) {
+            double sum = 0.0;
+            for (int r = 0; r <= Math.min(half, windowSize - 1); r++) {
+                sum += rowSum[r * windowSize + c];
+            }
+            for (int r = 0; r < windowSize; r++) {
+                colSum[r] = sum;
+                if (r + half + 1 < windowSize) {
+                    sum += rowSum[(r + half + 1) * windowSize + c];
+                }
+                if (r - half >= 0) {
+                    sum -= rowSum[(r - half) * windowSize + c];
+                }
+            }
+            final int cn = Math.min(c + half, windowSize - 1) - Math.max(c - half, 0) + 1;
+            for (int r = 0; r < windowSize; r++) {
+                final int rn = Math.min(r + half, windowSize - 1) - Math.max(r - half, 0) + 1;
+                ws.column[r] = colSum[r] / (rn * cn);
+            }
+            // rowSum is no longer needed for column c, the flattened image takes its place
+            for (int r = 0; r < windowSize; r++) {
+                rowSum[r * windowSize + c] = imagette[r * windowSize + c] / ws.column[r];
+            }
+        }
+    }
+
+    /**
+     * Average of the power spectra of the four corner sub-windows, shifted so that the zero frequency is at the
+     * centre, keeping the central length x length samples.
+     */
+    private void computeSpectrum(final Workspace ws) {
+
+        final double[] src = ws.dcRemoved;
+        final double[] data = ws.data;
+        final double[] spec = ws.spec;
+        java.util.Arrays.fill(spec, 0.0);
+
+        final int offset = windowSize - fftSize;
+        final int[][] corners = {{0, 0}, {0, offset}, {offset, 0}, {offset, offset}};
+        final int halfFFTSize = fftSize / 2;
+
+        for (int[] corner : corners) {
+            final int x0 = corner[0];
+            final int y0 = corner[1];
+            int k = 0;
+            for (int y = y0; y < y0 + fftSize; y++) {
+                final int rowOffset = y * windowSize;
+                for (int x = x0; x < x0 + fftSize; x++) {
+                    data[k++] = src[rowOffset + x];
+                    data[k++] = 0.0;
+                }
+            }
+
+            ws.fft.complexForward(data);
+
+            for (int rr = 0; rr < length; rr++) {
+                // row of the unshifted spectrum for row halfFFTSize - n3 + rr of the shifted one
+                final int r = (rr - n3 + fftSize) % fftSize;
+                for (int cc = 0; cc < length; cc++) {
+                    final int c = (cc - n3 + fftSize) % fftSize;
+                    final int i = 2 * (r * fftSize + c);
+                    spec[rr * length + cc] += data[i] * data[i] + data[i + 1] * data[i + 1];
+                }
+            }
+        }
+
+        for (int k = 0; k < spec.length; k++) {
+            spec[k] /= 4.0;
+        }
+    }
+
+    /**
+     * 3x3 median filter of the samples which have all their neighbours, the border samples are set to zero.
+     *
+     * @return the peak of the filtered spectrum
+     */
+    private double medianFilter(final double[] spec, final double[] filtered, final double[] window) {
+
+        java.util.Arrays.fill(filtered, 0.0);
+        double peakValue = 0.0;
+        for (int y = 1; y < length - 1; y++) {
+            for (int x = 1; x < length - 1; x++) {
+                int n = 0;
+                for (int dy = -1; dy <= 1; dy++) {
+                    final int rowOffset = (y + dy) * length;
+                    for (int dx = -1; dx <= 1; dx++) {
+                        // insertion into the sorted window
+                        final double v = spec[rowOffset + x + dx];
+                        int i = n++;
+                        while (i > 0 && window[i - 1] > v) {
+                            window[i] = window[i - 1];
+                            i--;
+                        }
+                        window[i] = v;
+                    }
+                }
+                final double median = window[4];
+                filtered[y * length + x] = median;
+                if (peakValue < median) {
+                    peakValue = median;
+                }
+            }
+        }
+        return peakValue;
+    }
+
+    /**
+     * Compute wind direction by performing 2D polynomial fitting to the spectral samples.
+     *
+     * @param array     Array holding the spectrum samples, row-major.
+     * @param peakValue The peak spectrum sample.
+     * @param n3        Spectrum size is 2*n3+1.
+     * @param direction Wind direction (dx, dy).
+     * @return The ratio of the minor semi axes over the major semi axes of the 2D polynomial.
+     */
+    static double getDirection(final double[] array, final double peakValue,
+                               final int n3, final double[] direction) {
+
+        double m00 = 0.0, m01 = 0.0, m02 = 0.0;
+        double m10 = 0.0, m11 = 0.0, m12 = 0.0;
+        double m20 = 0.0, m21 = 0.0, m22 = 0.0;
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0;
+
+        final int length = 2 * n3 + 1;
+        for (int y = 0; y < length; y++) {
+            final int yy = y - n3;
+            for (int x = 0; x < length; x++) {
+                final int xx = x - n3;
+                final double v = array[y * length + x] - peakValue;
+                m00 += xx * xx * xx * xx;
+                m01 += xx * xx * yy * yy;
+                m02 += xx * xx * xx * yy;
+                m11 += yy * yy * yy * yy;
+                m12 += xx * yy * yy * yy;
+                s0 += xx * xx * v;
+                s1 += yy * yy * v;
+                s2 += xx * yy * v;
+            }
+        }
+
+        m10 = m01;
+        m20 = m02;
+        m21 = m12;
+        m22 = m01;
+
+        final Matrix M = new Matrix(3, 3);
+        M.set(0, 0, m00);
+        M.set(0, 1, m01);
+        M.set(0, 2, m02);
+        M.set(1, 0, m10);
+        M.set(1, 1, m11);
+        M.set(1, 2, m12);
+        M.set(2, 0, m20);
+        M.set(2, 1, m21);
+        M.set(2, 2, m22);
+
+        final Matrix s = new Matrix(3, 1);
+        s.set(0, 0, s0);
+        s.set(1, 0, s1);
+        s.set(2, 0, s2);
+
+        final Matrix c = M.solve(s);
+        final double c0 = c.get(0, 0); // c0*x^2 + c1*y^2 + c2*x*y
+        final double c1 = c.get(1, 0);
+        final double c2 = -c.get(2, 0); // flip y axis pointing up
+
+        double d = Math.sqrt((c0 - c1) * (c0 - c1) + c2 * c2);
+        double d2 = 2.0 * d;
+        double tmp = Math.abs(c0 - c1);
+        double cos_theta_2 = (d + tmp) / d2;
+        double sin_theta_2 = (d - tmp) / d2;
+        double sin_cos = c2 * tmp / ((c0 - c1) * d2);
+        double a = (c0 * (d + tmp) + c1 * (d - tmp) + c2 * c2 * tmp / (c0 - c1)) / d2;
+        double b = (c0 * (d - tmp) + c1 * (d + tmp) - c2 * c2 * tmp / (c0 - c1)) / d2;
+
+        if (cos_theta_2 == 0.0) {
+            if (Math.abs(a) > Math.abs(b)) {
+                direction[0] = 1.0;
+                direction[1] = 0.0;
+            } else {
+                direction[0] = 0.0;
+                direction[1] = 1.0;
+            }
+        } else if (sin_theta_2 == 0.0) {
+            if (Math.abs(a) > Math.abs(b)) {
+                direction[0] = 0.0;
+                direction[1] = 1.0;
+            } else {
+                direction[0] = 1.0;
+                direction[1] = 0.0;
+            }
+        } else {
+            double k = (sin_cos / Math.abs(sin_cos)) * Math.sqrt(sin_theta_2 / cos_theta_2);
+            if (k > 0) {
+                if (Math.abs(a) > Math.abs(b)) {
+                    direction[0] = -k / Math.sqrt(1 + k * k);
+                    direction[1] = 1 / Math.sqrt(1 + k * k);
+                } else {
+                    direction[0] = 1 / Math.sqrt(1 + k * k);
+                    direction[1] = k / Math.sqrt(1 + k * k);
+                }
+            } else { // k < 0
+                if (Math.abs(a) > Math.abs(b)) {
+                    direction[0] = -k / Math.sqrt(1 + k * k);
+                    direction[1] = 1 / Math.sqrt(1 + k * k);
+                } else {
+                    direction[0] = -1 / Math.sqrt(1 + k * k);
+                    direction[1] = -k / Math.sqrt(1 + k * k);
+                }
+            }
+        }
+
+        // wind direction is 90 degree from this direction
+        tmp = direction[0];
+        direction[0] = -direction[1];
+        direction[1] = tmp;
+
+        return Math.min(Math.abs(a), Math.abs(b)) / Math.max(Math.abs(a), Math.abs(b));
+    }
+
+    /**
+     * Per thread FFT plan and work arrays.
+     */
+    private final class Workspace {
+
+        final DoubleFFT_2D fft = new DoubleFFT_2D(fftSize, fftSize);
+        final double[] imagette = new double[windowSize * windowSize];
+        final double[] dcRemoved = new double[windowSize * windowSize];
+        final double[] colSum = new double[windowSize];
+        final double[] column = new double[windowSize];
+        final double[] data = new double[2 * fftSize * fftSize];
+        final double[] spec = new double[length * length];
+        final double[] filtered = new double[length * length];
+        final double[] window = new double[9];
+    }
+}
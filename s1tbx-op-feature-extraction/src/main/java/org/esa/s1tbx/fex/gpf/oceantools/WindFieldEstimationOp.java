@@ -15,11 +15,9 @@
  */
 package org.esa.s1tbx.fex.gpf.oceantools;
 
-import Jama.Matrix;
 import com.bc.ceres.core.ProgressMonitor;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.GeometryFactory;
-import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
 import org.apache.commons.collections.list.SynchronizedList;
 import org.apache.commons.math3.util.FastMath;
 import org.esa.snap.core.datamodel.Band;
@@ -28,6 +26,7 @@ import org.esa.snap.core.datamodel.GeoPos;
 import org.esa.snap.core.datamodel.MetadataElement;
 import org.esa.snap.core.datamodel.PixelPos;
 import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.datamodel.TiePointGrid;
 import org.esa.snap.core.datamodel.VectorDataNode;
 import org.esa.snap.core.dataop.downloadable.XMLSupport;
@@ -47,6 +46,7 @@ import org.esa.snap.engine_utilities.eo.Constants;
 import org.esa.snap.engine_utilities.eo.GeoUtils;
 import org.esa.snap.engine_utilities.gpf.InputProductValidator;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
+import org.esa.snap.engine_utilities.gpf.TileIndex;
 import org.esa.snap.engine_utilities.util.ResourceUtils;
 import org.esa.snap.engine_utilities.util.VectorUtils;
 import org.geotools.feature.DefaultFeatureCollection;
@@ -57,26 +57,11 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 
-import javax.media.jai.JAI;
-import javax.media.jai.PlanarImage;
-import javax.media.jai.RasterFactory;
-import javax.media.jai.operator.MedianFilterDescriptor;
-import javax.media.jai.operator.MedianFilterShape;
 import java.awt.Rectangle;
-import java.awt.image.BufferedImage;
-import java.awt.image.ColorModel;
-import java.awt.image.DataBuffer;
-import java.awt.image.DataBufferDouble;
-import java.awt.image.Raster;
-import java.awt.image.RenderedImage;
-import java.awt.image.SampleModel;
-import java.awt.image.WritableRaster;
-import java.awt.image.renderable.ParameterBlock;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Hashtable;
 import java.util.List;
 
 /**
@@ -133,6 +118,7 @@ public class WindFieldEstimationOp extends Operator {
     private boolean windFieldEstimated = false;
     private final HashMap<String, List<WindFieldRecord>> bandWindFieldRecord = new HashMap<>();
     private SimpleFeatureType windFeatureType;
+    private WindDirectionEstimator windDirectionEstimator = null;
 
     private static final String VECTOR_NODE_NAME = "WindField";
     private static final String STYLE_FORMAT = "fill:#0000ff; fill-opacity:0.2; stroke:#ff0000; stroke-opacity:1.0; stroke-width:1.0; symbol:star";
@@ -196,6 +182,7 @@ public class WindFieldEstimationOp extends Operator {
     private void computeWindowSize() {
         windowSize = (int) (windowSizeInKm * 1000 / Math.min(rangeSpacing, azimuthSpacing));
         halfWindowSize = windowSize / 2;
+        windDirectionEstimator = new WindDirectionEstimator(windowSize, windowSizeInKm);
     }
 
     /**
@@ -285,7 +272,6 @@ public class WindFieldEstimationOp extends Operator {
         final Band sourceBand = sourceProduct.getBand(targetBandName);
         final double noDataValue = sourceBand.getNoDataValue();
         final String pol = OperatorUtils.getBandPolarization(targetBandName, absRoot);
-        Tile sourceTile;
 
         if (pol != null && !pol.contains("hh") && !pol.contains("vv")) {
             throw new OperatorException("Polarization " + pol + " is not supported. Please select HH or VV.");
@@ -314,46 +300,19 @@ public class WindFieldEstimationOp extends Operator {
 
         final int maxY = ty0 + th;
         final int maxX = tx0 + tw;
-        final int halfWindowArea = windowSize * windowSize / 2;
-        final int arrowSize = halfWindowSize * 2 / 3;
+        // frames are estimated one after the other so that the FFT workspace of this tile thread is reused
         for (int y = yStart; y < maxY; y += windowSize) {
             for (int x = xStart; x < maxX; x += windowSize) {
-
-                // get source data for the frame
-                final Rectangle sourceTileRectangle = getSourceRectangle(x, y);
-                if (sourceTileRectangle == null) {
+                checkForCancellation();
+                if (getSourceRectangle(x, y) == null) {
                     continue;
                 }
 
-                final double lat = latitudeTPG.getPixelDouble(x, y);
-                final double lon = longitudeTPG.getPixelDouble(x, y);
-                final double theta = incidenceAngle.getPixelDouble(x, y);
-
-                sourceTile = getSourceTile(sourceBand, sourceTileRectangle);
-                final int numLandPixels = getNumLandPixels(sourceTile, noDataValue);
-                if (numLandPixels >= halfWindowArea) {
-                    continue;
+                final WindFieldRecord record = estimateWindField(
+                        sourceBand, bandUnit, noDataValue, normlizeSigma, new int[]{x, y});
+                if (record != null) {
+                    windFieldRecordList.add(record);
                 }
-
-                final double nrcs = getNormalizedRadarCrossSection(sourceTile, bandUnit, x, y, normlizeSigma, theta);
-
-                // estimate wind direction for the frame
-                final double[] direction = {0.0, 0.0};
-                double ratio = estimateWindDirection(sourceTile, numLandPixels, noDataValue, direction);
-                /*
-                if (ratio < 0.2 || ratio > 0.8) { 
-                    continue;
-                }
-                */
-                // estimate wind speed for the frame
-                final double speed = estimateWindSpeed(nrcs, direction, theta);
-
-                // save wind field info
-                final WindFieldRecord record =
-                        new WindFieldRecord(x, y, lat, lon, speed,
-                                arrowSize * direction[0], arrowSize * direction[1], ratio);
-
-                windFieldRecordList.add(record);
             }
         }
 
@@ -365,6 +324,54 @@ public class WindFieldEstimationOp extends Operator {
         windFieldEstimated = true;
     }
 
+    /**
+     * Estimate wind speed and direction for the frame centered at a given point.
+     *
+     * @param sourceBand    The source band.
+     * @param bandUnit      The source band unit.
+     * @param noDataValue   Source band No Data Value.
+     * @param normlizeSigma True if the sigma0 is to be normalized for HH polarization.
+     * @param centre        The (x, y) coordinates of the frame centre.
+     * @return The wind field record, or null if the frame is mostly land.
+     */
+    private WindFieldRecord estimateWindField(final Band sourceBand, final Unit.UnitType bandUnit,
+                                              final double noDataValue, final boolean normlizeSigma,
+                                              final int[] centre) {
+
+        final int x = centre[0];
+        final int y = centre[1];
+        final int halfWindowArea = windowSize * windowSize / 2;
+        final int arrowSize = halfWindowSize * 2 / 3;
+
+        // get source data for the frame
+        final Tile sourceTile = getSourceTile(sourceBand, getSourceRectangle(x, y));
+        final int numLandPixels = getNumLandPixels(sourceTile, noDataValue);
+        if (numLandPixels >= halfWindowArea) {
+            return null;
+        }
+
+        final double lat = latitudeTPG.getPixelDouble(x, y);
+        final double lon = longitudeTPG.getPixelDouble(x, y);
+        final double theta = incidenceAngle.getPixelDouble(x, y);
+
+        final double nrcs = getNormalizedRadarCrossSection(sourceTile, bandUnit, x, y, normlizeSigma, theta);
+
+        // estimate wind direction for the frame
+        final double[] direction = {0.0, 0.0};
+        final double ratio = estimateWindDirection(sourceTile, numLandPixels, noDataValue, direction);
+        /*
+        if (ratio < 0.2 || ratio > 0.8) {
+            return null;
+        }
+        */
+        // estimate wind speed for the frame
+        final double speed = estimateWindSpeed(nrcs, direction, theta);
+
+        // save wind field info
+        return new WindFieldRecord(x, y, lat, lon, speed,
+                arrowSize * direction[0], arrowSize * direction[1], ratio);
+    }
+
     /**
      * Get the source tile rectangle centered at a given point.
      *
@@ -463,7 +470,7 @@ public class WindFieldEstimationOp extends Operator {
         // 2. Each window is flattened by applying a large average filter, then dividing by the filtered image.
         //    The filter size for this implementation is set to 11x11.
         //
-        // 3. The FFT�s are applied and the four resulting spectra are averaged.
+        // 3. The FFT's are applied and the four resulting spectra are averaged.
         //
         // 4. An annulus is applied to the spectrum to zero out any energy outside of a wavenumber region.
         //    The limits of the annulus are set to wave lengths of 3 km to 15 km.
@@ -474,34 +481,13 @@ public class WindFieldEstimationOp extends Operator {
         //    which has the largest quadratic term (i.e. the widest extent) is determined. The wind direction
         //    is then assumed to be 90 degree from this direction.
 
-        final double[][] imagette = new double[windowSize][windowSize];
-        getImagette(sourceTile, numLandPixels, noDataValue, imagette);
-
-        final double[][] dcRemovedImage = new double[windowSize][windowSize];
-        removeDCComponent(imagette, dcRemovedImage);
-
-        int fftSize = windowSize * 2 / 3;
-        if (fftSize % 2 == 0) {
-            fftSize++;
-        }
-
-        final double[][] spec = new double[fftSize][fftSize];
-        computeSpectrum(dcRemovedImage, fftSize, spec);
-
-        final double delta_k = 1.0 / (windowSizeInKm * 1000.0 * 2.0 / 3.0); // 1 / window_size_in_m
-        final int n3 = Math.min((int) (Constants.TWO_PI / (2500.0 * delta_k)), fftSize / 2);
-        final RenderedImage annulusAppliedSpec = applyAnnulusToSpec(spec, fftSize, n3, delta_k);
+        getImagette(sourceTile, numLandPixels, noDataValue, windDirectionEstimator.getImagette());
 
-        final RenderedImage filteredImage = medianFilteringSpec(annulusAppliedSpec);
-
-        final double[][] array = new double[2 * n3 + 1][2 * n3 + 1];
-        final double peakValue = getPeakSpectrumValue(filteredImage, array, n3);
-
-        return getDirection(array, peakValue, n3, direction);
+        return windDirectionEstimator.estimate(direction);
     }
 
     private void getImagette(final Tile sourceTile, final int numLandPixels,
-                             final Double noDataValue, final double[][] imagette) {
+                             final double noDataValue, final double[] imagette) {
 
         final Rectangle sourceTileRectangle = sourceTile.getRectangle();
         final int x0 = sourceTileRectangle.x;
@@ -512,355 +498,36 @@ public class WindFieldEstimationOp extends Operator {
             throw new OperatorException("Source tile size does not match window size.");
         }
 
+        final ProductData srcData = sourceTile.getDataBuffer();
+        final TileIndex srcIndex = new TileIndex(sourceTile);
         final int maxY = y0 + windowSize;
         final int maxX = x0 + windowSize;
-        if (numLandPixels > 0) {
-
-            double mean = 0.0;
-            for (int y = y0; y < maxY; y++) {
-                for (int x = x0; x < maxX; x++) {
-                    final double v = sourceTile.getDataBuffer().getElemDoubleAt(sourceTile.getDataBufferIndex(x, y));
-                    if (!noDataValue.equals(v)) {
-                        mean += v;
-                    }
-                }
-            }
-            mean /= windowSize * windowSize - numLandPixels;
-
-            for (int y = y0; y < maxY; y++) {
-                for (int x = x0; x < maxX; x++) {
-                    final double v = sourceTile.getDataBuffer().getElemDoubleAt(sourceTile.getDataBufferIndex(x, y));
-                    if (noDataValue.equals(v)) {
-                        imagette[y - y0][x - x0] = mean;
-                    } else {
-                        imagette[y - y0][x - x0] = v;
-                    }
-                }
-            }
-
-        } else {
-
-            for (int y = y0; y < maxY; y++) {
-                for (int x = x0; x < maxX; x++) {
-                    imagette[y - y0][x - x0] = sourceTile.getDataBuffer().getElemDoubleAt(sourceTile.getDataBufferIndex(x, y));
-                }
-            }
-        }
-
-        /*
-        // generate simulated data for test
-        Random generator = new Random();
-        for (int y = y0; y < y0 + windowSize; y++) {
-            int r = y - y0;
-            for (int x = x0; x < x0 + windowSize; x++) {
-                int c = x - x0;
-//                if (r == 30 || r == 60) {
-//                if (c == 30 || c == 60) {
-                if (c == r) {
-//                if (c == windowSize - 1 - r) {
-                    imagette[r][c] = 20*generator.nextDouble();
-                } else {
-                    imagette[r][c] = generator.nextDouble();
-                }
-            }
-        }
-        */
-//        dumpData("Imagette", imagette);
-    }
-
-    private void removeDCComponent(final double[][] imagette, final double[][] dcRemovedImage) {
-
-        final int filter_size = 11;
-        final int half_filter_size = filter_size / 2;
-        for (int r = 0; r < windowSize; r++) {
-            final int rMin = Math.max(r - half_filter_size, 0);
-            final int rMax = Math.min(r + half_filter_size, windowSize - 1);
-            for (int c = 0; c < windowSize; c++) {
-                final int cMin = Math.max(c - half_filter_size, 0);
-                final int cMax = Math.min(c + half_filter_size, windowSize - 1);
-                dcRemovedImage[r][c] = imagette[r][c] / getMean(imagette, rMin, rMax, cMin, cMax);
-            }
-        }
-    }
-
-    private static double getMean(final double[][] imagette,
-                                  final int rMin, final int rMax, final int cMin, final int cMax) {
-
-        double mean = 0.0;
-        for (int r = rMin; r <= rMax; r++) {
-            for (int c = cMin; c <= cMax; c++) {
-                mean += imagette[r][c];
-            }
-        }
-        return mean / ((rMax - rMin + 1) * (cMax - cMin + 1));
-    }
-
-    private void computeSpectrum(final double[][] srcImage, final int fftSize, final double[][] spec) {
-
-        final double[][] F1 = new double[fftSize][fftSize];
-        final double[][] F2 = new double[fftSize][fftSize];
-        final double[][] F3 = new double[fftSize][fftSize];
-        final double[][] F4 = new double[fftSize][fftSize];
-        perform2DFFT(srcImage, 0, fftSize - 1, 0, fftSize - 1, F1);
-        perform2DFFT(srcImage, 0, fftSize - 1, windowSize - fftSize, windowSize - 1, F2);
-        perform2DFFT(srcImage, windowSize - fftSize, windowSize - 1, 0, fftSize - 1, F3);
-        perform2DFFT(srcImage, windowSize - fftSize, windowSize - 1, windowSize - fftSize, windowSize - 1, F4);
-
-        for (int r = 0; r < fftSize; r++) {
-            for (int c = 0; c < fftSize; c++) {
-                spec[r][c] = (F1[r][c] + F2[r][c] + F3[r][c] + F4[r][c]) / 4.0;
-            }
-        }
-    }
-
-    private static void perform2DFFT(final double[][] srcImage, final int xMin, final int xMax,
-                                     final int yMin, final int yMax, final double[][] spec) {
-
-        // perform 1-D FFT to each row
-        final int rowFFTSize = xMax - xMin + 1;
-        final int colFFTSize = yMax - yMin + 1;
-        final DoubleFFT_1D row_fft = new DoubleFFT_1D(rowFFTSize);
-        final double[][] complexDataI = new double[colFFTSize][rowFFTSize];
-        final double[][] complexDataQ = new double[colFFTSize][rowFFTSize];
-        final double[] rowArray = new double[2 * rowFFTSize];
-        for (int y = yMin; y <= yMax; y++) {
-            int k = 0;
-            for (int x = xMin; x <= xMax; x++) {
-                rowArray[k++] = srcImage[y][x];
-                rowArray[k++] = 0.0;
-            }
-            row_fft.complexForward(rowArray);
-            for (int c = 0; c < rowFFTSize; c++) {
-                complexDataI[y - yMin][c] = rowArray[c + c];
-                complexDataQ[y - yMin][c] = rowArray[c + c + 1];
-            }
-        }
-        // dumpData("complexDataI after row FFT", complexDataI);
-        // dumpData("complexDataQ after row FFT", complexDataQ);
-
-        // perform 1-D FFT to each column
-        final DoubleFFT_1D col_fft = new DoubleFFT_1D(colFFTSize);
-        final double[] colArray = new double[2 * colFFTSize];
-        for (int x = xMin; x <= xMax; x++) {
-            int k = 0;
-            for (int y = yMin; y <= yMax; y++) {
-                colArray[k++] = complexDataI[y - yMin][x - xMin];
-                colArray[k++] = complexDataQ[y - yMin][x - xMin];
-            }
-            col_fft.complexForward(colArray);
-            for (int r = 0; r < colFFTSize; r++) {
-                complexDataI[r][x - xMin] = colArray[r + r];
-                complexDataQ[r][x - xMin] = colArray[r + r + 1];
-            }
-        }
-        // dumpData("complexDataI after col FFT", complexDataI);
-        // dumpData("complexDataQ after col FFT", complexDataQ);
-
-        // get spectrum magnitude and perform fftshift
-        final int secondHalfColFFTSize = colFFTSize / 2;
-        final int firstHalfColFFTSize = colFFTSize - secondHalfColFFTSize;
-        final int secondHalfRowFFTSize = rowFFTSize / 2;
-        final int firstHalfRowFFTSize = rowFFTSize - secondHalfRowFFTSize;
-        int rr, cc;
-        for (int y = yMin; y <= yMax; y++) {
-            int r = y - yMin;
-            if (r < firstHalfColFFTSize) {
-                rr = r + secondHalfColFFTSize;
-            } else {
-                rr = r - firstHalfColFFTSize;
-            }
-
-            for (int x = xMin; x <= xMax; x++) {
-                int c = x - xMin;
-                if (c < firstHalfRowFFTSize) {
-                    cc = c + secondHalfRowFFTSize;
-                } else {
-                    cc = c - firstHalfRowFFTSize;
-                }
-                spec[rr][cc] = complexDataI[r][c] * complexDataI[r][c] + complexDataQ[r][c] * complexDataQ[r][c];
-            }
-        }
-        // dumpData("spec", spec);
-    }
-
-    private static RenderedImage createRenderedImage(double[] array, int width, int height) {
 
-        // create rendered image with dimension being width by height
-        final SampleModel sampleModel = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_DOUBLE, width, height, 1);
-        final ColorModel colourModel = PlanarImage.createColorModel(sampleModel);
-        final DataBufferDouble dataBuffer = new DataBufferDouble(array, array.length);
-        final WritableRaster raster = RasterFactory.createWritableRaster(sampleModel, dataBuffer, new java.awt.Point(0, 0));
-        return new BufferedImage(colourModel, raster, false, new Hashtable());
-    }
-
-    private static RenderedImage applyAnnulusToSpec(
-            final double[][] spec, final int fftSize, final int n3, final double delta_k) {
-
-        final int halfFFTSize = fftSize / 2;
-        int n15 = (int) (Constants.TWO_PI / (15000.0 * delta_k));
-        if (n15 >= halfFFTSize) {
-            n15 = 1;
-        }
-        final double[] array = new double[(2 * n3 + 1) * (2 * n3 + 1)];
         int k = 0;
-        for (int r = halfFFTSize - n3; r < halfFFTSize + n3 + 1; r++) {
-            for (int c = halfFFTSize - n3; c < halfFFTSize + n3 + 1; c++) {
-                if (r >= halfFFTSize - n15 && r <= halfFFTSize + n15 && c >= halfFFTSize - n15 && c <= halfFFTSize + n15) {
-                    array[k++] = 0.0;
-                } else {
-                    array[k++] = spec[r][c];
-                }
+        for (int y = y0; y < maxY; y++) {
+            srcIndex.calculateStride(y);
+            for (int x = x0; x < maxX; x++) {
+                imagette[k++] = srcData.getElemDoubleAt(srcIndex.getIndex(x));
             }
         }
-//        dumpData("before median filtering:", spec);
 
-        return createRenderedImage(array, 2 * n3 + 1, 2 * n3 + 1);
-    }
-
-    private static RenderedImage medianFilteringSpec(final RenderedImage annulusAppliedSpec) {
-
-        final int size = 3;
-        final MedianFilterShape shape = MedianFilterDescriptor.MEDIAN_MASK_SQUARE;
-        final ParameterBlock pb = new ParameterBlock();
-        pb.addSource(annulusAppliedSpec);
-        pb.add(shape);
-        pb.add(size);
-        return JAI.create("medianfilter", pb);
-    }
-
-    private static double getPeakSpectrumValue(final RenderedImage filteredImage, final double[][] array, final int n3) {
-
-        final Raster data = filteredImage.getData();
-        double peakValue = 0.0;
-        final int length = 2 * n3 + 1;
-        for (int y = 0; y < length; y++) {
-            for (int x = 0; x < length; x++) {
-                array[y][x] = data.getSampleDouble(x, y, 0);
-                if (peakValue < array[y][x]) {
-                    peakValue = array[y][x];
+        if (numLandPixels > 0) {
+            double mean = 0.0;
+            for (double v : imagette) {
+                if (Double.compare(v, noDataValue) != 0) {
+                    mean += v;
                 }
             }
-        }
-        return peakValue;
-    }
-
-    /**
-     * Compute wind direction by performing 2D polynomial fitting to the spectral samples.
-     *
-     * @param array     Array holding the spectrum samples.
-     * @param peakValue The peak spectrum sample.
-     * @param n3        Spectrum size is 2*n3+1.
-     * @param direction Wind direction (dx, dy).
-     * @return The ratio of the minor semi axes over the major semi axes of the 2D polynomial.
-     */
-    private static double getDirection(final double[][] array, final double peakValue,
-                                       final int n3, final double[] direction) {
-
-//        dumpData("spec", array);
-
-        double m00 = 0.0, m01 = 0.0, m02 = 0.0;
-        double m10 = 0.0, m11 = 0.0, m12 = 0.0;
-        double m20 = 0.0, m21 = 0.0, m22 = 0.0;
-        double s0 = 0.0, s1 = 0.0, s2 = 0.0;
-
-        final int length = 2 * n3 + 1;
-        for (int y = 0; y < length; y++) {
-            final int yy = y - n3;
-            for (int x = 0; x < length; x++) {
-                final int xx = x - n3;
-                final double v = array[y][x] - peakValue;
-                m00 += xx * xx * xx * xx;
-                m01 += xx * xx * yy * yy;
-                m02 += xx * xx * xx * yy;
-                m11 += yy * yy * yy * yy;
-                m12 += xx * yy * yy * yy;
-                s0 += xx * xx * v;
-                s1 += yy * yy * v;
-                s2 += xx * yy * v;
-            }
-        }
+            mean /= windowSize * windowSize - numLandPixels;
 
-        m10 = m01;
-        m20 = m02;
-        m21 = m12;
-        m22 = m01;
-
-        final Matrix M = new Matrix(3, 3);
-        M.set(0, 0, m00);
-        M.set(0, 1, m01);
-        M.set(0, 2, m02);
-        M.set(1, 0, m10);
-        M.set(1, 1, m11);
-        M.set(1, 2, m12);
-        M.set(2, 0, m20);
-        M.set(2, 1, m21);
-        M.set(2, 2, m22);
-
-        final Matrix s = new Matrix(3, 1);
-        s.set(0, 0, s0);
-        s.set(1, 0, s1);
-        s.set(2, 0, s2);
-
-        final Matrix c = M.solve(s);
-        final double c0 = c.get(0, 0); // c0*x^2 + c1*y^2 + c2*x*y
-        final double c1 = c.get(1, 0);
-        final double c2 = -c.get(2, 0); // flip y axis pointing up
-
-        double d = Math.sqrt((c0 - c1) * (c0 - c1) + c2 * c2);
-        double d2 = 2.0 * d;
-        double tmp = Math.abs(c0 - c1);
-        double cos_theta_2 = (d + tmp) / d2;
-        double sin_theta_2 = (d - tmp) / d2;
-        double sin_cos = c2 * tmp / ((c0 - c1) * d2);
-        double a = (c0 * (d + tmp) + c1 * (d - tmp) + c2 * c2 * tmp / (c0 - c1)) / d2;
-        double b = (c0 * (d - tmp) + c1 * (d + tmp) - c2 * c2 * tmp / (c0 - c1)) / d2;
-
-        if (cos_theta_2 == 0.0) {
-            if (Math.abs(a) > Math.abs(b)) {
-                direction[0] = 1.0;
-                direction[1] = 0.0;
-            } else {
-                direction[0] = 0.0;
-                direction[1] = 1.0;
-            }
-        } else if (sin_theta_2 == 0.0) {
-            if (Math.abs(a) > Math.abs(b)) {
-                direction[0] = 0.0;
-                direction[1] = 1.0;
-            } else {
-                direction[0] = 1.0;
-                direction[1] = 0.0;
-            }
-        } else {
-            double k = (sin_cos / Math.abs(sin_cos)) * Math.sqrt(sin_theta_2 / cos_theta_2);
-            if (k > 0) {
-                if (Math.abs(a) > Math.abs(b)) {
-                    direction[0] = -k / Math.sqrt(1 + k * k);
-                    direction[1] = 1 / Math.sqrt(1 + k * k);
-                } else {
-                    direction[0] = 1 / Math.sqrt(1 + k * k);
-                    direction[1] = k / Math.sqrt(1 + k * k);
-                }
-            } else { // k < 0
-                if (Math.abs(a) > Math.abs(b)) {
-                    direction[0] = -k / Math.sqrt(1 + k * k);
-                    direction[1] = 1 / Math.sqrt(1 + k * k);
-                } else {
-                    direction[0] = -1 / Math.sqrt(1 + k * k);
-                    direction[1] = -k / Math.sqrt(1 + k * k);
+            for (int i = 0; i < imagette.length; i++) {
+                if (Double.compare(imagette[i], noDataValue) == 0) {
+                    imagette[i] = mean;
                 }
             }
         }
-
-        // wind direction is 90 degree from this direction
-        tmp = direction[0];
-        direction[0] = -direction[1];
-        direction[1] = tmp;
-
-        return Math.min(Math.abs(a), Math.abs(b)) / Math.max(Math.abs(a), Math.abs(b));
     }
 
-
     /**
      * Dump data. This function is for debugging use only.
      *
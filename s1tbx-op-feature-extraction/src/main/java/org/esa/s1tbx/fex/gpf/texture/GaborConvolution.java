@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.fex.gpf.texture;
+
+import Jama.Matrix;
+import Jama.SingularValueDecomposition;
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_2D;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Convolution of a raster region with a bank of real kernels, such as the Gabor kernels created by
+ * {@link GaborFilter#createGarborFilter}. Kernels are indexed [x][y] and centred; kernels of different sizes are
+ * zero padded to the size of the largest.
+ * <p>
+ * One of three methods is chosen for the whole bank from an estimate of the number of multiplications per pixel:
+ * <ul>
+ * <li>DIRECT: the kernel taps are applied directly.</li>
+ * <li>SEPARABLE: each kernel is decomposed by SVD into a sum of outer products of a column and a row vector,
+ * keeping the fewest terms whose discarded singular values have a root sum of squares of at most
+ * {@link #RANK_TOLERANCE} times the Frobenius norm of the kernel. Each term is a horizontal followed by a vertical
+ * pass. Axis aligned Gabor kernels have rank one or two.</li>
+ * <li>FFT: overlap-save convolution in power of two blocks. The forward transform of each source block is shared
+ * by all kernels of the bank and two kernels are applied per inverse transform, one in the real and one in the
+ * imaginary part, since the source and kernels are real.</li>
+ * </ul>
+ * Compared to the direct convolution, the absolute error of an output pixel is at most
+ * RANK_TOLERANCE * ||kernel|| * ||window|| for SEPARABLE, where ||.|| is the Frobenius norm and window is the source
+ * window under the kernel, and of the order of 1e-12 times sum |kernel| * max |source| from round-off for FFT.
+ * <p>
+ * The kernel spectra are computed once per block size and shared. FFT plans and work buffers are held per thread,
+ * so one instance can be used by all tile computations.
+ */
+final class GaborConvolution {
+
+    enum Method {DIRECT, SEPARABLE, FFT}
+
+    static final double RANK_TOLERANCE = 1e-6;
+
+    /**
+     * Multiplications per pixel and kernel above which the FFT is used
+     */
+    static final int FFT_THRESHOLD = 64;
+
+    private static final int MAX_BLOCK_SIZE = 256;
+
+    private final int numKernels;
+    private final int kw, kh;
+    private final int haloX, haloY;
+    private final Method method;
+
+    // kernels flipped for correlation, row-major [y][x]
+    private final double[][] flipped;
+
+    // separable terms per kernel, horizontal vectors scaled by the singular value
+    private final double[][][] colTerms;
+    private final double[][][] rowTerms;
+
+    // spectra of kernel pairs per block size
+    private final Map<Long, double[][]> spectra = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+
+    GaborConvolution(final double[][]... kernels) {
+        this(null, kernels);
+    }
+
+    /**
+     * @param method  the method to use or null to choose one from the cost estimate
+     * @param kernels the kernels, indexed [x][y]
+     */
+    GaborConvolution(final Method method, final double[][]... kernels) {
+
+        numKernels = kernels.length;
+        int maxHaloX = 0, maxHaloY = 0;
+        for (double[][] kernel : kernels) {
+            maxHaloX = Math.max(maxHaloX, kernel.length / 2);
+            maxHaloY = Math.max(maxHaloY, kernel[0].length / 2);
+        }
+        haloX = maxHaloX;
+        haloY = maxHaloY;
+        kw = 2 * haloX + 1;
+        kh = 2 * haloY + 1;
+
+        flipped = new double[numKernels][kw * kh];
+        for (int k = 0; k < numKernels; ++k) {
+            final double[][] kernel = kernels[k];
+            final int offX = haloX - kernel.length / 2;
+            final int offY = haloY - kernel[0].length / 2;
+            for (int x = 0; x < kernel.length; ++x) {
+                for (int y = 0; y < kernel[0].length; ++y) {
+                    flipped[k][(kh - 1 - offY - y) * kw + kw - 1 - offX - x] = kernel[x][y];
+                }
+            }
+        }
+
+        colTerms = new double[numKernels][][];
+        rowTerms = new double[numKernels][][];
+        int directCost = 0, separableCost = 0;
+        for (int k = 0; k < numKernels; ++k) {
+            decompose(k);
+            directCost += kw * kh;
+            separableCost += colTerms[k].length * (kw + kh);
+        }
+
+        if (method != null) {
+            this.method = method;
+        } else if (Math.min(directCost, separableCost) > FFT_THRESHOLD * numKernels) {
+            this.method = Method.FFT;
+        } else {
+            this.method = separableCost < directCost ? Method.SEPARABLE : Method.DIRECT;
+        }
+    }
+
+    int getHaloX() {
+        return haloX;
+    }
+
+    int getHaloY() {
+        return haloY;
+    }
+
+    int getNumKernels() {
+        return numKernels;
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Low rank decomposition of a flipped kernel into column (y) and row (x) vectors.
+     */
+    private void decompose(final int k) {
+
+        final double[][] a = new double[Math.max(kw, kh)][Math.min(kw, kh)];
+        final boolean transposed = kw < kh;
+        double norm2 = 0;
+        for (int y = 0; y < kh; ++y) {
+            for (int x = 0; x < kw; ++x) {
+                final double v = flipped[k][y * kw + x];
+                if (transposed) {
+                    a[y][x] = v;
+                } else {
+                    a[x][y] = v;
+                }
+                norm2 += v * v;
+            }
+        }
+
+        // Jama requires at least as many rows as columns
+        final SingularValueDecomposition svd = new Matrix(a).svd();
+        final double[] s = svd.getSingularValues();
+        final double[][] u = svd.getU().getArray();
+        final double[][] v = svd.getV().getArray();
+
+        final double maxDiscarded2 = RANK_TOLERANCE * RANK_TOLERANCE * norm2;
+        int rank = s.length;
+        double discarded2 = 0;
+        while (rank > 0 && discarded2 + s[rank - 1] * s[rank - 1] <= maxDiscarded2) {
+            discarded2 += s[rank - 1] * s[rank - 1];
+            --rank;
+        }
+
+        colTerms[k] = new double[rank][kh];
+        rowTerms[k] = new double[rank][kw];
+        for (int r = 0; r < rank; ++r) {
+            for (int x = 0; x < kw; ++x) {
+                rowTerms[k][r][x] = s[r] * (transposed ? v[x][r] : u[x][r]);
+            }
+            for (int y = 0; y < kh; ++y) {
+                colTerms[k][r][y] = transposed ? u[y][r] : v[y][r];
+            }
+        }
+    }
+
+    /**
+     * Convolves a region with each kernel of the bank.
+     *
+     * @param src    the source region of (w + 2 * haloX) x (h + 2 * haloY) samples, row-major, with zeros outside the
+     *               image
+     * @param w      the output width
+     * @param h      the output height
+     * @param output one row-major array of w x h samples per kernel
+     */
+    void convolve(final double[] src, final int w, final int h, final double[][] output) {
+        switch (method) {
+            case DIRECT:
+                convolveDirect(src, w, h, output);
+                break;
+            case SEPARABLE:
+                convolveSeparable(src, w, h, output);
+                break;
+            default:
+                convolveFFT(src, w, h, output);
+        }
+    }
+
+    private void convolveDirect(final double[] src, final int w, final int h, final double[][] output) {
+        final int sw = w + kw - 1;
+        for (int k = 0; k < numKernels; ++k) {
+            final double[] kernel = flipped[k];
+            final double[] out = output[k];
+            for (int j = 0; j < h; ++j) {
+                for (int i = 0; i < w; ++i) {
+                    double sum = 0;
+                    for (int b = 0; b < kh; ++b) {
+                        final int srcOffset = (j + b) * sw + i;
+                        final int kernelOffset = b * kw;
+                        for (int a = 0; a < kw; ++a) {
+                            sum += kernel[kernelOffset + a] * src[srcOffset + a];
+                        }
+                    }
+                    out[j * w + i] = sum;
+                }
+            }
+        }
+    }
+
+    private void convolveSeparable(final double[] src, final int w, final int h, final double[][] output) {
+        final int sw = w + kw - 1;
+        final int sh = h + kh - 1;
+        final double[] tmp = workspace.get().getBuffer(w * sh);
+
+        for (int k = 0; k < numKernels; ++k) {
+            final double[] out = output[k];
+            Arrays.fill(out, 0, w * h, 0.0);
+
+            for (int r = 0; r < colTerms[k].length; ++r) {
+                final double[] row = rowTerms[k][r];
+                final double[] col = colTerms[k][r];
+
+                for (int y = 0; y < sh; ++y) {
+                    final int srcOffset = y * sw;
+                    final int tmpOffset = y * w;
+                    for (int i = 0; i < w; ++i) {
+                        double sum = 0;
+                        for (int a = 0; a < kw; ++a) {
+                            sum += row[a] * src[srcOffset + i + a];
+                        }
+                        tmp[tmpOffset + i] = sum;
+                    }
+                }
+
+                for (int j = 0; j < h; ++j) {
+                    final int outOffset = j * w;
+                    for (int b = 0; b < kh; ++b) {
+                        final double c = col[b];
+                        final int tmpOffset = (j + b) * w;
+                        for (int i = 0; i < w; ++i) {
+                            out[outOffset + i] += c * tmp[tmpOffset + i];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void convolveFFT(final double[] src, final int w, final int h, final double[][] output) {
+
+        final int sw = w + kw - 1;
+        final int sh = h + kh - 1;
+        final int nx = getBlockSize(sw, kw);
+        final int ny = getBlockSize(sh, kh);
+        final int stepX = nx - kw + 1;
+        final int stepY = ny - kh + 1;
+
+        final double[][] kernelSpectra = getKernelSpectra(nx, ny);
+        final Workspace ws = workspace.get();
+        final DoubleFFT_2D fft = ws.getFFT(nx, ny);
+        final double[] block = ws.getBuffer(2 * nx * ny);
+        final double[] product = ws.getProduct(2 * nx * ny);
+
+        for (int by = 0; by < h; by += stepY) {
+            final int bh = Math.min(stepY, h - by);
+            for (int bx = 0; bx < w; bx += stepX) {
+                final int bw = Math.min(stepX, w - bx);
+
+                // source block starting at output (bx, by), zero beyond the region
+                Arrays.fill(block, 0, 2 * nx * ny, 0.0);
+                final int rows = Math.min(ny, sh - by);
+                final int cols = Math.min(nx, sw - bx);
+                for (int y = 0; y < rows; ++y) {
+                    final int srcOffset = (by + y) * sw + bx;
+                    final int blockOffset = 2 * y * nx;
+                    for (int x = 0; x < cols; ++x) {
+                        block[blockOffset + 2 * x] = src[srcOffset + x];
+                    }
+                }
+                fft.complexForward(block);
+
+                for (int p = 0; p < kernelSpectra.length; ++p) {
+                    final double[] spectrum = kernelSpectra[p];
+                    for (int n = 0; n < 2 * nx * ny; n += 2) {
+                        final double re = block[n], im = block[n + 1];
+                        final double kre = spectrum[n], kim = spectrum[n + 1];
+                        product[n] = re * kre - im * kim;
+                        product[n + 1] = re * kim + im * kre;
+                    }
+                    fft.complexInverse(product, true);
+
+                    // the full convolution at (kw - 1, kh - 1) is the output at (bx, by)
+                    final int k0 = 2 * p;
+                    final boolean hasSecond = k0 + 1 < numKernels;
+                    for (int y = 0; y < bh; ++y) {
+                        final int productOffset = 2 * ((kh - 1 + y) * nx + kw - 1);
+                        final int outOffset = (by + y) * w + bx;
+                        for (int x = 0; x < bw; ++x) {
+                            output[k0][outOffset + x] = product[productOffset + 2 * x];
+                            if (hasSecond) {
+                                output[k0 + 1][outOffset + x] = product[productOffset + 2 * x + 1];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int getBlockSize(final int regionSize, final int kernelSize) {
+        int n = 1;
+        while (n < Math.max(2 * kernelSize, Math.min(regionSize, MAX_BLOCK_SIZE))) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    /**
+     * Spectra of the kernels (not flipped) in pairs, the first of a pair in the real and the second in the imaginary
+     * part, for a block of nx x ny.
+     */
+    private double[][] getKernelSpectra(final int nx, final int ny) {
+        return spectra.computeIfAbsent(((long) nx << 32) | ny, key -> {
+            final DoubleFFT_2D fft = new DoubleFFT_2D(ny, nx);
+            final double[][] pairs = new double[(numKernels + 1) / 2][];
+            for (int p = 0; p < pairs.length; ++p) {
+                final double[] spectrum = new double[2 * nx * ny];
+                for (int part = 0; part < 2 && 2 * p + part < numKernels; ++part) {
+                    final double[] kernel = flipped[2 * p + part];
+                    for (int y = 0; y < kh; ++y) {
+                        for (int x = 0; x < kw; ++x) {
+                            spectrum[2 * (y * nx + x) + part] = kernel[(kh - 1 - y) * kw + kw - 1 - x];
+                        }
+                    }
+                }
+                fft.complexForward(spectrum);
+                pairs[p] = spectrum;
+            }
+            return pairs;
+        });
+    }
+
+    /**
+     * Per thread FFT plans and work buffers, grown on demand.
+     */
+    private static final class Workspace {
+
+        private final Map<Long, DoubleFFT_2D> plans = new HashMap<>();
+        private double[] buffer = new double[0];
+        private double[] product = new double[0];
+
+        DoubleFFT_2D getFFT(final int nx, final int ny) {
+            return plans.computeIfAbsent(((long) nx << 32) | ny, key -> new DoubleFFT_2D(ny, nx));
+        }
+
+        double[] getBuffer(final int size) {
+            if (buffer.length < size) {
+                buffer = new double[size];
+            }
+            return buffer;
+        }
+
+        double[] getProduct(final int size) {
+            if (product.length < size) {
+                product = new double[size];
+            }
+            return product;
+        }
+    }
+}
@@ -60,6 +60,7 @@ public class GaborFilterOp extends Operator {
     private final HashMap<String, String[]> targetBandNameToSourceBandName = new HashMap<>();
 
     double[][] filter;
+    private GaborConvolution convolution;
 
     /**
      * Default constructor. The graph processing framework
@@ -100,6 +101,7 @@ public class GaborFilterOp extends Operator {
         updateTargetProductMetadata();
 
         filter = GaborFilter.createGarborFilter(4.0, theta, 1.0, 2.0, 0.3);
+        convolution = new GaborConvolution(filter);
     }
 
     /**
@@ -128,50 +130,49 @@ public class GaborFilterOp extends Operator {
     @Override
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
 
-        final int x0 = targetTile.getRectangle().x;
-        final int y0 = targetTile.getRectangle().y;
-        final int w = targetTile.getRectangle().width;
-        final int h = targetTile.getRectangle().height;
-        //System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
-
-        final int xmax = (int) Math.floor(filter.length / 2.0);
-        final int ymax = (int) Math.floor(filter[0].length / 2.0);
-        final String[] srcBandName = targetBandNameToSourceBandName.get(targetBand.getName());
-        final Band srcBand = sourceProduct.getBand(srcBandName[0]);
-        final int minBoundx = Math.max(0, x0 - xmax);
-        final int minBoundy = Math.max(0, y0 - ymax);
-        final int boundW = Math.min(w + minBoundx + xmax, srcBand.getRasterWidth() - x0);
-        final int boundH = Math.min(h + minBoundy + ymax, srcBand.getRasterHeight() - y0);
-        final Rectangle srcRect = new Rectangle(minBoundx, minBoundy, boundW, boundH);
-
-        final Tile sourceTile = getSourceTile(srcBand, srcRect);
-        final ProductData trgData = targetTile.getDataBuffer();
-        final ProductData srcData = sourceTile.getDataBuffer();
-        final TileIndex trgIndex = new TileIndex(targetTile);
-        final TileIndex srcIndex = new TileIndex(sourceTile);
-        int maxIndex = srcData.getNumElems();
-
-        for (int y = y0; y < y0 + h; y++) {
-            trgIndex.calculateStride(y);
-            for (int x = x0; x < x0 + w; x++) {
-
-                double sum = 0;
-                for (int yf = -ymax; yf <= ymax; yf++) {
-                    final int yy = y - yf;
-                    if (yy >= minBoundy && yy < y0 + boundH) {
-                        srcIndex.calculateStride(yy);
-                        for (int xf = -xmax; xf <= xmax; xf++) {
-                            final int xx = x - xf;
-                            if (xx >= minBoundx && xx < x0 + boundW) {
-                                final int idx = srcIndex.getIndex(xx);
-                                if (idx < maxIndex)   //todo something not right here
-                                    sum += filter[xf + xmax][yf + ymax] * srcData.getElemDoubleAt(idx);
-                            }
-                        }
-                    }
+        try {
+            final Rectangle targetRect = targetTile.getRectangle();
+            final int x0 = targetRect.x;
+            final int y0 = targetRect.y;
+            final int w = targetRect.width;
+            final int h = targetRect.height;
+
+            final int haloX = convolution.getHaloX();
+            final int haloY = convolution.getHaloY();
+            final String[] srcBandName = targetBandNameToSourceBandName.get(targetBand.getName());
+            final Band srcBand = sourceProduct.getBand(srcBandName[0]);
+            final Rectangle srcRect = new Rectangle(x0 - haloX, y0 - haloY, w + 2 * haloX, h + 2 * haloY).intersection(
+                    new Rectangle(0, 0, srcBand.getRasterWidth(), srcBand.getRasterHeight()));
+
+            final Tile sourceTile = getSourceTile(srcBand, srcRect);
+            final ProductData srcData = sourceTile.getDataBuffer();
+            final TileIndex srcIndex = new TileIndex(sourceTile);
+
+            // source window under the kernel for every target pixel, zero outside the image
+            final int sw = w + 2 * haloX;
+            final double[] src = new double[sw * (h + 2 * haloY)];
+            for (int y = srcRect.y; y < srcRect.y + srcRect.height; y++) {
+                srcIndex.calculateStride(y);
+                final int offset = (y - y0 + haloY) * sw - x0 + haloX;
+                for (int x = srcRect.x; x < srcRect.x + srcRect.width; x++) {
+                    src[offset + x] = srcData.getElemDoubleAt(srcIndex.getIndex(x));
                 }
-                trgData.setElemDoubleAt(trgIndex.getIndex(x), sum);
             }
+
+            final double[][] output = {new double[w * h]};
+            convolution.convolve(src, w, h, output);
+
+            final ProductData trgData = targetTile.getDataBuffer();
+            final TileIndex trgIndex = new TileIndex(targetTile);
+            for (int y = y0; y < y0 + h; y++) {
+                trgIndex.calculateStride(y);
+                final int offset = (y - y0) * w - x0;
+                for (int x = x0; x < x0 + w; x++) {
+                    trgData.setElemDoubleAt(trgIndex.getIndex(x), output[0][offset + x]);
+                }
+            }
+        } catch (Throwable e) {
+            OperatorUtils.catchOperatorException(getId(), e);
         }
     }
 
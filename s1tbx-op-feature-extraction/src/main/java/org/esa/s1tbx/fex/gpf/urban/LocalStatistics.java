@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.fex.gpf.urban;
+
+/**
+ * Mean and sample variance of the valid samples of any rectangular window of a region, from summed-area tables of
+ * the count, sum and sum of squares of the samples. The cost of a window is independent of its size.
+ * <p>
+ * Samples are shifted by the mean of all valid samples of the region before summing, so that the sum of squares
+ * does not cancel against the squared sum when the variance is small compared to the squared mean.
+ */
+final class LocalStatistics {
+
+    private final int stride;
+    private final double shift;
+    private final int[] count;
+    private final double[] sum;
+    private final double[] sum2;
+
+    /**
+     * @param samples the samples of the region, row-major, with NaN for samples to be excluded
+     * @param width   the region width
+     * @param height  the region height
+     */
+    LocalStatistics(final double[] samples, final int width, final int height) {
+        this.stride = width + 1;
+
+        double total = 0.0;
+        int n = 0;
+        for (int i = 0; i < width * height; i++) {
+            if (!Double.isNaN(samples[i])) {
+                total += samples[i];
+                n++;
+            }
+        }
+        shift = n > 0 ? total / n : 0.0;
+
+        final int size = stride * (height + 1);
+        count = new int[size];
+        sum = new double[size];
+        sum2 = new double[size];
+
+        for (int y = 0; y < height; y++) {
+            int rowCount = 0;
+            double rowSum = 0.0, rowSum2 = 0.0;
+            final int above = y * stride;
+            final int k = above + stride;
+            for (int x = 0; x < width; x++) {
+                final double v = samples[y * width + x];
+                if (!Double.isNaN(v)) {
+                    final double d = v - shift;
+                    rowCount++;
+                    rowSum += d;
+                    rowSum2 += d * d;
+                }
+                count[k + x + 1] = count[above + x + 1] + rowCount;
+                sum[k + x + 1] = sum[above + x + 1] + rowSum;
+                sum2[k + x + 1] = sum2[above + x + 1] + rowSum2;
+            }
+        }
+    }
+
+    /**
+     * Computes the statistics of a window.
+     *
+     * @param x0     the first column of the window in the region
+     * @param y0     the first row of the window in the region
+     * @param x1     the column after the window
+     * @param y1     the row after the window
+     * @param result set to the number of valid samples, their mean and their sample variance (0 for one sample)
+     * @return the number of valid samples
+     */
+    int getStatistics(final int x0, final int y0, final int x1, final int y1, final double[] result) {
+
+        final int a = y0 * stride + x0;
+        final int b = y0 * stride + x1;
+        final int c = y1 * stride + x0;
+        final int d = y1 * stride + x1;
+
+        final int n = count[d] - count[b] - count[c] + count[a];
+        result[0] = n;
+        if (n == 0) {
+            result[1] = 0.0;
+            result[2] = 0.0;
+            return 0;
+        }
+
+        final double s = sum[d] - sum[b] - sum[c] + sum[a];
+        final double s2 = sum2[d] - sum2[b] - sum2[c] + sum2[a];
+        final double m = s / n;
+        result[1] = m + shift;
+        result[2] = n > 1 ? Math.max(0.0, (s2 - s * m) / (n - 1)) : 0.0;
+        return n;
+    }
+}
@@ -263,16 +263,25 @@ public class SpeckleDivergenceOp extends Operator {
                 maskData = maskTile.getDataBuffer();
             }
 
+            final LocalStatistics statistics = getLocalStatistics(sourceTile, srcData, bandUnit, noDataValue);
+            final int sx0 = sourceTileRectangle.x;
+            final int sy0 = sourceTileRectangle.y;
+            final int sxMax = sx0 + sourceTileRectangle.width;
+            final int syMax = sy0 + sourceTileRectangle.height;
+
             final TileIndex trgIndex = new TileIndex(targetTile);
             final TileIndex srcIndex = new TileIndex(sourceTile);    // src and trg tile are different size
 
             final int maxy = ty0 + th;
             final int maxx = tx0 + tw;
-            final int windowSize = window.getWindowSize();
+            final int halfWindowSize = window.getWindowSize() / 2;
+            final double[] stats = new double[3];
 
             for (int ty = ty0; ty < maxy; ty++) {
                 trgIndex.calculateStride(ty);
                 srcIndex.calculateStride(ty);
+                final int y0 = Math.max(ty - halfWindowSize, sy0) - sy0;
+                final int y1 = Math.min(ty + halfWindowSize + 1, syMax) - sy0;
                 for (int tx = tx0; tx < maxx; tx++) {
                     final int idx = trgIndex.getIndex(tx);
 
@@ -282,8 +291,14 @@ public class SpeckleDivergenceOp extends Operator {
                         continue;
                     }
 
-                    final double cv = computeCoefficientOfVariance(tx, ty, windowSize,
-                                                                   sourceTile, srcData, bandUnit, noDataValue);
+                    final int x0 = Math.max(tx - halfWindowSize, sx0) - sx0;
+                    final int x1 = Math.min(tx + halfWindowSize + 1, sxMax) - sx0;
+                    final double cv;
+                    if (statistics.getStatistics(x0, y0, x1, y1, stats) == 0) {
+                        cv = noDataValue;
+                    } else {
+                        cv = Math.sqrt(stats[2]) / stats[1];
+                    }
                     final double speckleDivergence = cv - c;
                     trgData.setElemFloatAt(idx, (float) speckleDivergence);
                 }
@@ -295,128 +310,37 @@ public class SpeckleDivergenceOp extends Operator {
     }
 
     /**
-     * Compute local coefficient of variance.
+     * Compute the local statistics of the source tile. Intensity samples and squared amplitude samples
+     * greater than 0.4 are used, other samples and no data values are excluded.
      *
-     * @param tx          The x coordinate of the central pixel of the sliding window.
-     * @param ty          The y coordinate of the central pixel of the sliding window.
      * @param sourceTile  The source image tile.
      * @param srcData     The source image data.
      * @param bandUnit    The source band unit.
      * @param noDataValue the place holder for no data
-     * @return The local coefficient of variance.
+     * @return The local statistics.
      */
-    private double computeCoefficientOfVariance(final int tx, final int ty, final int windowSize,
-                                                final Tile sourceTile, final ProductData srcData,
-                                                final Unit.UnitType bandUnit, final double noDataValue) {
-
-        final double[] samples = new double[windowSize * windowSize];
-
-        final int numSamples = getSamples(tx, ty, bandUnit, noDataValue, windowSize/2, sourceTile, srcData, samples);
-
-        if (numSamples == 0) {
-            return noDataValue;
-        }
+    private static LocalStatistics getLocalStatistics(final Tile sourceTile, final ProductData srcData,
+                                                      final Unit.UnitType bandUnit, final double noDataValue) {
 
-        final double mean = getMeanValue(samples, numSamples);
-
-        final double variance = getVarianceValue(samples, numSamples, mean);
-
-        return Math.sqrt(variance) / mean;
-    }
-
-    /**
-     * Get source samples in the sliding window.
-     *
-     * @param tx          The x coordinate of the central pixel of the sliding window.
-     * @param ty          The y coordinate of the central pixel of the sliding window.
-     * @param bandUnit    The source band unit.
-     * @param noDataValue the place holder for no data
-     * @param sourceTile  The source image tile.
-     * @param srcData     The source image data.
-     * @param samples     The sample array.
-     * @return The number of samples.
-     */
-    private int getSamples(final int tx, final int ty, final Unit.UnitType bandUnit, final double noDataValue,
-                           final int halfWindowSize, final Tile sourceTile, final ProductData srcData, final double[] samples) {
-
-
-        final int x0 = Math.max(tx - halfWindowSize, 0);
-        final int y0 = Math.max(ty - halfWindowSize, 0);
-        final int w = Math.min(tx + halfWindowSize, sourceImageWidth - 1) - x0 + 1;
-        final int h = Math.min(ty + halfWindowSize, sourceImageHeight - 1) - y0 + 1;
+        final int x0 = sourceTile.getMinX();
+        final int y0 = sourceTile.getMinY();
+        final int w = sourceTile.getWidth();
+        final int h = sourceTile.getHeight();
+        final boolean isIntensity = bandUnit == Unit.UnitType.INTENSITY;
 
+        final double[] samples = new double[w * h];
         final TileIndex tileIndex = new TileIndex(sourceTile);
-
-        int numSamples = 0;
-        final int maxy = Math.min(y0 + h, sourceTile.getMaxY() - 1);
-        final int maxx = Math.min(x0 + w, sourceTile.getMaxX() - 1);
-
-        if (bandUnit == Unit.UnitType.INTENSITY) {
-
-            for (int y = y0; y < maxy; y++) {
-                tileIndex.calculateStride(y);
-                for (int x = x0; x < maxx; x++) {
-                    final double v = srcData.getElemDoubleAt(tileIndex.getIndex(x));
-                    if (v != noDataValue && v > 0.4) {
-                        samples[numSamples++] = v;
-                    }
-                }
-            }
-
-        } else {
-
-            for (int y = y0; y < maxy; y++) {
-                tileIndex.calculateStride(y);
-                for (int x = x0; x < maxx; x++) {
-                    final double v = srcData.getElemDoubleAt(tileIndex.getIndex(x));
-                    if (v != noDataValue & v * v > 0.4) {
-                        samples[numSamples++] = v * v;
-                    }
-                }
-            }
-        }
-
-        return numSamples;
-    }
-
-    /**
-     * Get the mean value of the samples.
-     *
-     * @param samples    The sample array.
-     * @param numSamples The number of samples.
-     * @return mean The mean value.
-     */
-    private static double getMeanValue(final double[] samples, final int numSamples) {
-
-        double mean = 0.0;
-        for (int i = 0; i < numSamples; i++) {
-            mean += samples[i];
-        }
-        mean /= numSamples;
-
-        return mean;
-    }
-
-    /**
-     * Get the variance of samples.
-     *
-     * @param samples    The sample array.
-     * @param numSamples The number of samples.
-     * @param mean       the mean of samples.
-     * @return var The variance.
-     */
-    private static double getVarianceValue(final double[] samples, final int numSamples, final double mean) {
-
-        double var = 0.0;
-        if (numSamples > 1) {
-            for (int i = 0; i < numSamples; i++) {
-                final double diff = samples[i] - mean;
-                var += diff * diff;
+        int k = 0;
+        for (int y = y0; y < y0 + h; y++) {
+            tileIndex.calculateStride(y);
+            for (int x = x0; x < x0 + w; x++) {
+                final double v = srcData.getElemDoubleAt(tileIndex.getIndex(x));
+                final double s = isIntensity ? v : v * v;
+                samples[k++] = v != noDataValue && s > 0.4 ? s : Double.NaN;
             }
-            var /= (numSamples - 1);
         }
 
-        return var;
+        return new LocalStatistics(samples, w, h);
     }
 
     /**
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.fex.gpf.oceantools;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+import org.esa.snap.engine_utilities.eo.Constants;
+import org.junit.Test;
+
+import javax.media.jai.JAI;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.operator.MedianFilterDescriptor;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.awt.image.renderable.ParameterBlock;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares WindDirectionEstimator with the per imagette row and column transforms and the JAI median filter
+ * previously used by WindFieldEstimationOp.
+ */
+public class TestWindDirectionEstimator {
+
+    private static final int WINDOW_SIZE = 60;
+    private static final double WINDOW_SIZE_IN_KM = 6.0;
+
+    @Test
+    public void testWindRolls() {
+        compare(0.0);
+        compare(0.5);
+        compare(Math.PI / 2);
+        compare(2.3);
+    }
+
+    @Test
+    public void testDirectionIsAcrossRolls() {
+        // rolls along x, wind along y
+        final WindDirectionEstimator estimator = new WindDirectionEstimator(WINDOW_SIZE, WINDOW_SIZE_IN_KM);
+        fillImagette(estimator.getImagette(), Math.PI / 2, 7);
+        final double[] direction = new double[2];
+        estimator.estimate(direction);
+        assertTrue(Math.abs(direction[1]) > Math.abs(direction[0]));
+    }
+
+    @Test
+    public void testImagetteIsHeldPerThread() throws Exception {
+        final WindDirectionEstimator estimator = new WindDirectionEstimator(WINDOW_SIZE, WINDOW_SIZE_IN_KM);
+        final double[] imagette = estimator.getImagette();
+        assertSame(imagette, estimator.getImagette());
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertNotSame(imagette, executor.submit(estimator::getImagette).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testImagettesEstimatedInTurn() {
+        // one estimator on one thread as in WindFieldEstimationOp.computeTile, with a speckle only imagette
+        // between the wind roll imagettes
+        final double[] rollAngles = {0.5, Double.NaN, 2.3, 0.5, Math.PI / 2};
+        final WindDirectionEstimator estimator = new WindDirectionEstimator(WINDOW_SIZE, WINDOW_SIZE_IN_KM);
+
+        for (int i = 0; i < rollAngles.length; i++) {
+            final WindDirectionEstimator newEstimator = new WindDirectionEstimator(WINDOW_SIZE, WINDOW_SIZE_IN_KM);
+            fillImagette(estimator.getImagette(), rollAngles[i], i);
+            System.arraycopy(estimator.getImagette(), 0, newEstimator.getImagette(), 0, WINDOW_SIZE * WINDOW_SIZE);
+
+            final double[] expectedDirection = new double[2];
+            final double expectedRatio = newEstimator.estimate(expectedDirection);
+            final double[] direction = new double[2];
+            final double ratio = estimator.estimate(direction);
+
+            assertEquals(expectedRatio, ratio, 0.0);
+            assertEquals(expectedDirection[0], direction[0], 0.0);
+            assertEquals(expectedDirection[1], direction[1], 0.0);
+        }
+    }
+
+    private static void compare(final double rollAngle) {
+
+        final WindDirectionEstimator estimator = new WindDirectionEstimator(WINDOW_SIZE, WINDOW_SIZE_IN_KM);
+        fillImagette(estimator.getImagette(), rollAngle, 3);
+
+        final double[] expectedDirection = new double[2];
+        final double expectedRatio = referenceEstimate(estimator.getImagette(), expectedDirection);
+
+        final double[] direction = new double[2];
+        final double ratio = estimator.estimate(direction);
+
+        assertEquals(expectedRatio, ratio, 1e-9);
+        assertEquals(expectedDirection[0], direction[0], 1e-9);
+        assertEquals(expectedDirection[1], direction[1], 1e-9);
+    }
+
+    /**
+     * Speckled wind rolls of a wave length of 1/6 of the window across the given angle, speckle only for NaN.
+     */
+    private static void fillImagette(final double[] imagette, final double rollAngle, final long seed) {
+        final Random random = new Random(seed);
+        final double kx = Constants.TWO_PI * 6.0 / WINDOW_SIZE * Math.cos(rollAngle);
+        final double ky = Constants.TWO_PI * 6.0 / WINDOW_SIZE * Math.sin(rollAngle);
+        for (int y = 0; y < WINDOW_SIZE; y++) {
+            for (int x = 0; x < WINDOW_SIZE; x++) {
+                final double roll = Double.isNaN(rollAngle) ? 1.0 : 1.0 + 0.5 * Math.cos(kx * x + ky * y);
+                imagette[y * WINDOW_SIZE + x] = roll * (0.5 + random.nextDouble());
+            }
+        }
+    }
+
+    /**
+     * The direction estimate as computed by WindFieldEstimationOp before the flat buffers.
+     */
+    private static double referenceEstimate(final double[] flatImagette, final double[] direction) {
+
+        final int windowSize = WINDOW_SIZE;
+        final double[][] imagette = new double[windowSize][windowSize];
+        for (int r = 0; r < windowSize; r++) {
+            System.arraycopy(flatImagette, r * windowSize, imagette[r], 0, windowSize);
+        }
+
+        final int halfFilterSize = 5;
+        final double[][] dcRemovedImage = new double[windowSize][windowSize];
+        for (int r = 0; r < windowSize; r++) {
+            final int rMin = Math.max(r - halfFilterSize, 0);
+            final int rMax = Math.min(r + halfFilterSize, windowSize - 1);
+            for (int c = 0; c < windowSize; c++) {
+                final int cMin = Math.max(c - halfFilterSize, 0);
+                final int cMax = Math.min(c + halfFilterSize, windowSize - 1);
+                double mean = 0.0;
+                for (int rr = rMin; rr <= rMax; rr++) {
+                    for (int cc = cMin; cc <= cMax; cc++) {
+                        mean += imagette[rr][cc];
+                    }
+                }
+                mean /= (rMax - rMin + 1) * (cMax - cMin + 1);
+                dcRemovedImage[r][c] = imagette[r][c] / mean;
+            }
+        }
+
+        int fftSize = windowSize * 2 / 3;
+        if (fftSize % 2 == 0) {
+            fftSize++;
+        }
+
+        final double[][] F1 = new double[fftSize][fftSize];
+        final double[][] F2 = new double[fftSize][fftSize];
+        final double[][] F3 = new double[fftSize][fftSize];
+        final double[][] F4 = new double[fftSize][fftSize];
+        perform2DFFT(dcRemovedImage, 0, fftSize - 1, 0, fftSize - 1, F1);
+        perform2DFFT(dcRemovedImage, 0, fftSize - 1, windowSize - fftSize, windowSize - 1, F2);
+        perform2DFFT(dcRemovedImage, windowSize - fftSize, windowSize - 1, 0, fftSize - 1, F3);
+        perform2DFFT(dcRemovedImage, windowSize - fftSize, windowSize - 1, windowSize - fftSize, windowSize - 1, F4);
+        final double[][] spec = new double[fftSize][fftSize];
+        for (int r = 0; r < fftSize; r++) {
+            for (int c = 0; c < fftSize; c++) {
+                spec[r][c] = (F1[r][c] + F2[r][c] + F3[r][c] + F4[r][c]) / 4.0;
+            }
+        }
+
+        final double delta_k = 1.0 / (WINDOW_SIZE_IN_KM * 1000.0 * 2.0 / 3.0);
+        final int n3 = Math.min((int) (Constants.TWO_PI / (2500.0 * delta_k)), fftSize / 2);
+        final int halfFFTSize = fftSize / 2;
+        int n15 = (int) (Constants.TWO_PI / (15000.0 * delta_k));
+        if (n15 >= halfFFTSize) {
+            n15 = 1;
+        }
+        final int length = 2 * n3 + 1;
+        final double[] annulus = new double[length * length];
+        int k = 0;
+        for (int r = halfFFTSize - n3; r < halfFFTSize + n3 + 1; r++) {
+            for (int c = halfFFTSize - n3; c < halfFFTSize + n3 + 1; c++) {
+                if (r >= halfFFTSize - n15 && r <= halfFFTSize + n15 && c >= halfFFTSize - n15 && c <= halfFFTSize + n15) {
+                    annulus[k++] = 0.0;
+                } else {
+                    annulus[k++] = spec[r][c];
+                }
+            }
+        }
+
+        final ParameterBlock pb = new ParameterBlock();
+        pb.addSource(createRenderedImage(annulus, length, length));
+        pb.add(MedianFilterDescriptor.MEDIAN_MASK_SQUARE);
+        pb.add(3);
+        final Raster data = JAI.create("medianfilter", pb).getData();
+
+        final double[] array = new double[length * length];
+        double peakValue = 0.0;
+        for (int y = 0; y < length; y++) {
+            for (int x = 0; x < length; x++) {
+                array[y * length + x] = data.getSampleDouble(x, y, 0);
+                if (peakValue < array[y * length + x]) {
+                    peakValue = array[y * length + x];
+                }
+            }
+        }
+
+        return WindDirectionEstimator.getDirection(array, peakValue, n3, direction);
+    }
+
+    private static void perform2DFFT(final double[][] srcImage, final int xMin, final int xMax,
+                                     final int yMin, final int yMax, final double[][] spec) {
+
+        final int rowFFTSize = xMax - xMin + 1;
+        final int colFFTSize = yMax - yMin + 1;
+        final DoubleFFT_1D row_fft = new DoubleFFT_1D(rowFFTSize);
+        final double[][] complexDataI = new double[colFFTSize][rowFFTSize];
+        final double[][] complexDataQ = new double[colFFTSize][rowFFTSize];
+        final double[] rowArray = new double[2 * rowFFTSize];
+        for (int y = yMin; y <= yMax; y++) {
+            int k = 0;
+            for (int x = xMin; x <= xMax; x++) {
+                rowArray[k++] = srcImage[y][x];
+                rowArray[k++] = 0.0;
+            }
+            row_fft.complexForward(rowArray);
+            for (int c = 0; c < rowFFTSize; c++) {
+                complexDataI[y - yMin][c] = rowArray[c + c];
+                complexDataQ[y - yMin][c] = rowArray[c + c + 1];
+            }
+        }
+
+        final DoubleFFT_1D col_fft = new DoubleFFT_1D(colFFTSize);
+        final double[] colArray = new double[2 * colFFTSize];
+        for (int x = xMin; x <= xMax; x++) {
+            int k = 0;
+            for (int y = yMin; y <= yMax; y++) {
+                colArray[k++] = complexDataI[y - yMin][x - xMin];
+                colArray[k++] = complexDataQ[y - yMin][x - xMin];
+            }
+            col_fft.complexForward(colArray);
+            for (int r = 0; r < colFFTSize; r++) {
+                complexDataI[r][x - xMin] = colArray[r + r];
+                complexDataQ[r][x - xMin] = colArray[r + r + 1];
+            }
+        }
+
+        final int secondHalfColFFTSize = colFFTSize / 2;
+        final int firstHalfColFFTSize = colFFTSize - secondHalfColFFTSize;
+        final int secondHalfRowFFTSize = rowFFTSize / 2;
+        final int firstHalfRowFFTSize = rowFFTSize - secondHalfRowFFTSize;
+        for (int r = 0; r < colFFTSize; r++) {
+            final int rr = r < firstHalfColFFTSize ? r + secondHalfColFFTSize : r - firstHalfColFFTSize;
+            for (int c = 0; c < rowFFTSize; c++) {
+                final int cc = c < firstHalfRowFFTSize ? c + secondHalfRowFFTSize : c - firstHalfRowFFTSize;
+                spec[rr][cc] = complexDataI[r][c] * complexDataI[r][c] + complexDataQ[r][c] * complexDataQ[r][c];
+            }
+        }
+    }
+
+    private static RenderedImage createRenderedImage(final double[] array, final int width, final int height) {
+
+        final SampleModel sampleModel = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_DOUBLE, width, height, 1);
+        final ColorModel colourModel = PlanarImage.createColorModel(sampleModel);
+        final DataBufferDouble dataBuffer = new DataBufferDouble(array, array.length);
+        final WritableRaster raster = RasterFactory.createWritableRaster(sampleModel, dataBuffer, new java.awt.Point(0, 0));
+        return new BufferedImage(colourModel, raster, false, new Hashtable());
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.fex.gpf.texture;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares each GaborConvolution method with the direct convolution of GaborFilterOp.
+ */
+public class TestGaborConvolution {
+
+    private static final double[] THETAS = {0.0, 0.6, Math.PI / 2, 2.1};
+
+    @Test
+    public void testDirect() {
+        compare(GaborConvolution.Method.DIRECT, 37, 23);
+    }
+
+    @Test
+    public void testSeparable() {
+        compare(GaborConvolution.Method.SEPARABLE, 37, 23);
+    }
+
+    @Test
+    public void testFFT() {
+        compare(GaborConvolution.Method.FFT, 37, 23);
+    }
+
+    @Test
+    public void testFFTOverlapSave() {
+        // wider than one block
+        compare(GaborConvolution.Method.FFT, 300, 9);
+    }
+
+    @Test
+    public void testMethodChoice() {
+        final GaborConvolution small = new GaborConvolution(GaborFilter.createGarborFilter(4.0, 0.0, 1.0, 0.5, 1.0));
+        assertEquals(GaborConvolution.Method.SEPARABLE, small.getMethod());
+
+        final GaborConvolution large = new GaborConvolution(GaborFilter.createGarborFilter(4.0, 0.6, 1.0, 2.0, 0.3));
+        assertEquals(GaborConvolution.Method.FFT, large.getMethod());
+    }
+
+    @Test
+    public void testWorkspaceAcrossRegionSizes() {
+        // the per thread buffers grow for the wide region and are then partly used by the small one, which also
+        // takes another FFT block size and kernel spectra
+        final int[][] regions = {{300, 9}, {37, 23}, {300, 9}, {5, 4}};
+        for (GaborConvolution.Method method : new GaborConvolution.Method[]{
+                GaborConvolution.Method.SEPARABLE, GaborConvolution.Method.FFT}) {
+            final GaborConvolution reused = new GaborConvolution(method, createKernels());
+            for (int i = 0; i < regions.length; i++) {
+                final int w = regions[i][0], h = regions[i][1];
+                final double[] src = createSource(reused, w, h, i);
+
+                final double[][] expected = new double[THETAS.length][w * h];
+                new GaborConvolution(method, createKernels()).convolve(src, w, h, expected);
+                final double[][] output = new double[THETAS.length][w * h];
+                reused.convolve(src, w, h, output);
+
+                for (int k = 0; k < THETAS.length; k++) {
+                    assertArrayEquals(expected[k], output[k], 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentRegions() throws Exception {
+        // each thread has its own workspace, the kernel spectra are shared
+        final GaborConvolution convolution = new GaborConvolution(GaborConvolution.Method.FFT, createKernels());
+        final int numRegions = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<double[][]>> results = new ArrayList<>();
+            for (int i = 0; i < numRegions; i++) {
+                final int w = 40 + 30 * i, h = 20 - i;
+                final double[] src = createSource(convolution, w, h, i);
+                results.add(executor.submit(() -> {
+                    final double[][] output = new double[THETAS.length][w * h];
+                    convolution.convolve(src, w, h, output);
+                    return output;
+                }));
+            }
+            for (int i = 0; i < numRegions; i++) {
+                final int w = 40 + 30 * i, h = 20 - i;
+                final double[][] expected = new double[THETAS.length][w * h];
+                new GaborConvolution(GaborConvolution.Method.FFT, createKernels())
+                        .convolve(createSource(convolution, w, h, i), w, h, expected);
+                final double[][] output = results.get(i).get();
+                for (int k = 0; k < THETAS.length; k++) {
+                    assertArrayEquals(expected[k], output[k], 0.0);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static double[][][] createKernels() {
+        final double[][][] kernels = new double[THETAS.length][][];
+        for (int k = 0; k < THETAS.length; k++) {
+            kernels[k] = GaborFilter.createGarborFilter(4.0, THETAS[k], 1.0, 2.0, 0.3);
+        }
+        return kernels;
+    }
+
+    /**
+     * @return a random source region with the halo of the convolution
+     */
+    private static double[] createSource(final GaborConvolution convolution, final int w, final int h,
+                                         final long seed) {
+        final Random random = new Random(seed);
+        final double[] src = new double[(w + 2 * convolution.getHaloX()) * (h + 2 * convolution.getHaloY())];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = 100.0 * random.nextDouble();
+        }
+        return src;
+    }
+
+    private static void compare(final GaborConvolution.Method method, final int w, final int h) {
+
+        final double[][][] kernels = createKernels();
+        final GaborConvolution convolution = new GaborConvolution(method, kernels);
+        assertEquals(method, convolution.getMethod());
+
+        // image region at (5, 3) of a larger image, zero outside
+        final int imageWidth = w + 8, imageHeight = h + 4;
+        final int x0 = 5, y0 = 3;
+        final Random random = new Random(11);
+        final double[] image = new double[imageWidth * imageHeight];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = 100.0 * random.nextDouble();
+        }
+
+        final int haloX = convolution.getHaloX();
+        final int haloY = convolution.getHaloY();
+        final int sw = w + 2 * haloX;
+        final double[] src = new double[sw * (h + 2 * haloY)];
+        for (int y = Math.max(0, y0 - haloY); y < Math.min(imageHeight, y0 + h + haloY); y++) {
+            for (int x = Math.max(0, x0 - haloX); x < Math.min(imageWidth, x0 + w + haloX); x++) {
+                src[(y - y0 + haloY) * sw + x - x0 + haloX] = image[y * imageWidth + x];
+            }
+        }
+
+        final double[][] output = new double[kernels.length][w * h];
+        convolution.convolve(src, w, h, output);
+
+        for (int k = 0; k < kernels.length; k++) {
+            final double[][] kernel = kernels[k];
+            double absSum = 0, norm2 = 0;
+            for (double[] column : kernel) {
+                for (double v : column) {
+                    absSum += Math.abs(v);
+                    norm2 += v * v;
+                }
+            }
+            // documented bounds, with a window of at most all kernel taps at 100
+            final double tolerance = method == GaborConvolution.Method.SEPARABLE ?
+                    GaborConvolution.RANK_TOLERANCE * Math.sqrt(norm2) * 100.0 * Math.sqrt(kernel.length * kernel[0].length) :
+                    1e-9 * absSum * 100.0;
+
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    final double expected = directConvolution(image, imageWidth, imageHeight, kernel, x0 + x, y0 + y);
+                    assertEquals(expected, output[k][y * w + x], tolerance);
+                }
+            }
+        }
+    }
+
+    private static double directConvolution(final double[] image, final int imageWidth, final int imageHeight,
+                                            final double[][] filter, final int x, final int y) {
+        final int xmax = filter.length / 2;
+        final int ymax = filter[0].length / 2;
+        double sum = 0;
+        for (int yf = -ymax; yf <= ymax; yf++) {
+            final int yy = y - yf;
+            for (int xf = -xmax; xf <= xmax; xf++) {
+                final int xx = x - xf;
+                if (xx >= 0 && xx < imageWidth && yy >= 0 && yy < imageHeight) {
+                    sum += filter[xf + xmax][yf + ymax] * image[yy * imageWidth + xx];
+                }
+            }
+        }
+        return sum;
+    }
+}
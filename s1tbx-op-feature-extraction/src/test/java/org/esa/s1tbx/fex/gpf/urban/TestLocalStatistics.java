@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.fex.gpf.urban;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the summed-area table statistics with the two pass mean and variance previously used by
+ * SpeckleDivergenceOp, on speckled scenes with no data holes.
+ */
+public class TestLocalStatistics {
+
+    private static final int WIDTH = 61;
+    private static final int HEIGHT = 47;
+
+    @Test
+    public void testSingleLookScene() {
+        compare(createScene(1, 1.0, 7), 3);
+        compare(createScene(1, 1.0, 7), 15);
+    }
+
+    @Test
+    public void testMultiLookSceneWithLargeMean() {
+        // small variance relative to the squared mean
+        compare(createScene(16, 1.0e4, 11), 5);
+        compare(createScene(16, 1.0e4, 11), 17);
+    }
+
+    private static void compare(final double[] scene, final int windowSize) {
+
+        final LocalStatistics statistics = new LocalStatistics(scene, WIDTH, HEIGHT);
+        final int half = windowSize / 2;
+        final double[] stats = new double[3];
+        final double[] samples = new double[windowSize * windowSize];
+
+        for (int y = 0; y < HEIGHT; y++) {
+            final int y0 = Math.max(y - half, 0);
+            final int y1 = Math.min(y + half + 1, HEIGHT);
+            for (int x = 0; x < WIDTH; x++) {
+                final int x0 = Math.max(x - half, 0);
+                final int x1 = Math.min(x + half + 1, WIDTH);
+
+                int n = 0;
+                for (int yy = y0; yy < y1; yy++) {
+                    for (int xx = x0; xx < x1; xx++) {
+                        final double v = scene[yy * WIDTH + xx];
+                        if (!Double.isNaN(v)) {
+                            samples[n++] = v;
+                        }
+                    }
+                }
+
+                assertEquals(n, statistics.getStatistics(x0, y0, x1, y1, stats));
+                if (n == 0) {
+                    continue;
+                }
+                final double mean = getMeanValue(samples, n);
+                final double variance = getVarianceValue(samples, n, mean);
+                assertEquals(mean, stats[1], 1e-12 * Math.abs(mean));
+                assertEquals(variance, stats[2], 1e-9 * variance + 1e-12 * mean * mean);
+                assertEquals(Math.sqrt(variance) / mean, Math.sqrt(stats[2]) / stats[1], 1e-7);
+            }
+        }
+    }
+
+    /**
+     * Gamma distributed intensity of the given number of looks over a brighter block, with a no data border
+     * and a no data hole.
+     */
+    private static double[] createScene(final int looks, final double mean, final long seed) {
+        final Random random = new Random(seed);
+        final double[] scene = new double[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if (x < 2 || (x > 20 && x < 30 && y > 10 && y < 22)) {
+                    scene[y * WIDTH + x] = Double.NaN;
+                    continue;
+                }
+                double v = 0;
+                for (int l = 0; l < looks; l++) {
+                    v -= Math.log(1.0 - random.nextDouble());
+                }
+                final double reflectivity = x > 40 && y > 30 ? 5.0 * mean : mean;
+                scene[y * WIDTH + x] = reflectivity * v / looks;
+            }
+        }
+        return scene;
+    }
+
+    private static double getMeanValue(final double[] samples, final int numSamples) {
+        double mean = 0.0;
+        for (int i = 0; i < numSamples; i++) {
+            mean += samples[i];
+        }
+        return mean / numSamples;
+    }
+
+    private static double getVarianceValue(final double[] samples, final int numSamples, final double mean) {
+        double var = 0.0;
+        if (numSamples > 1) {
+            for (int i = 0; i < numSamples; i++) {
+                final double diff = samples[i] - mean;
+                var += diff * diff;
+            }
+            var /= (numSamples - 1);
+        }
+        return var;
+    }
+}
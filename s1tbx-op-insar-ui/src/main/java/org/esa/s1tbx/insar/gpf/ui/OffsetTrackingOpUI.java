@@ -62,9 +62,11 @@ public class OffsetTrackingOpUI extends BaseOperatorUI {
     private final JComboBox resamplingType = new JComboBox(ResamplingFactory.resamplingNames);
     final JCheckBox spatialAverageCheckBox = new JCheckBox("Spatial Average");
     final JCheckBox fillHoleCheckBox = new JCheckBox("Fill Holes");
+    final JCheckBox cacheOffsetsCheckBox = new JCheckBox("Cache GCP Offsets");
 
     private Boolean spatialAverage = true;
     private Boolean fillHoles = true;
+    private Boolean cacheOffsets = true;
 
     private final JComboBox vectorsCombo = new JComboBox();
 
@@ -87,6 +89,12 @@ public class OffsetTrackingOpUI extends BaseOperatorUI {
             }
         });
 
+        cacheOffsetsCheckBox.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+                cacheOffsets = (e.getStateChange() == ItemEvent.SELECTED);
+            }
+        });
+
         return new JScrollPane(panel);
     }
 
@@ -132,6 +140,11 @@ public class OffsetTrackingOpUI extends BaseOperatorUI {
             fillHoleCheckBox.setSelected(fillHoles);
         }
 
+        cacheOffsets = (Boolean)paramMap.get("cacheOffsets");
+        if(cacheOffsets != null) {
+            cacheOffsetsCheckBox.setSelected(cacheOffsets);
+        }
+
         vectorsCombo.removeAllItems();
         final String[] geometryNames = getGeometries();
         for (String g : geometryNames) {
@@ -169,6 +182,7 @@ public class OffsetTrackingOpUI extends BaseOperatorUI {
 
         paramMap.put("spatialAverage", spatialAverage);
         paramMap.put("fillHoles", fillHoles);
+        paramMap.put("cacheOffsets", cacheOffsets);
 
         paramMap.put("roiVector", vectorsCombo.getSelectedItem());
     }
@@ -233,6 +247,8 @@ public class OffsetTrackingOpUI extends BaseOperatorUI {
         contentPane.add(spatialAverageCheckBox, gbc);
         gbc.gridy++;
         contentPane.add(fillHoleCheckBox, gbc);
+        gbc.gridy++;
+        contentPane.add(cacheOffsetsCheckBox, gbc);
         gbc.gridx = 0;
         gbc.gridy++;
 
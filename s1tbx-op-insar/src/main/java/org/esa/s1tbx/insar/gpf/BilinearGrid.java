@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf;
+
+import java.awt.Rectangle;
+
+/**
+ * A coarse grid of node values over a tile, bilinearly interpolated to the tile pixels one row at a time.
+ * <p>
+ * Nodes are placed every {@code step} pixels from the first row and column of the tile, plus the last row and
+ * column, so that neighbouring tiles have the same values along their common edges.
+ */
+final class BilinearGrid {
+
+    private final int x0;
+    private final int y0;
+    private final int width;
+    private final int[] xNodes;
+    private final int[] yNodes;
+    private final double[] values;
+
+    /**
+     * @param rectangle the tile rectangle
+     * @param step      the node spacing in pixels
+     */
+    BilinearGrid(final Rectangle rectangle, final int step) {
+        this.x0 = rectangle.x;
+        this.y0 = rectangle.y;
+        this.width = rectangle.width;
+        this.xNodes = createNodes(rectangle.x, rectangle.width, step);
+        this.yNodes = createNodes(rectangle.y, rectangle.height, step);
+        this.values = new double[xNodes.length * yNodes.length];
+    }
+
+    private static int[] createNodes(final int start, final int length, final int step) {
+        final int n = (length - 1 + step - 1) / step + 1;
+        final int[] nodes = new int[n];
+        for (int i = 0; i < n - 1; i++) {
+            nodes[i] = start + i * step;
+        }
+        nodes[n - 1] = start + length - 1;
+        return nodes;
+    }
+
+    /**
+     * @return the image x coordinates of the node columns
+     */
+    int[] getXNodes() {
+        return xNodes;
+    }
+
+    /**
+     * @return the image y coordinates of the node rows
+     */
+    int[] getYNodes() {
+        return yNodes;
+    }
+
+    /**
+     * Sets the value of a node.
+     *
+     * @param row   the node row
+     * @param col   the node column
+     * @param value the value at (getXNodes()[col], getYNodes()[row])
+     */
+    void setValue(final int row, final int col, final double value) {
+        values[row * xNodes.length + col] = value;
+    }
+
+    /**
+     * Interpolates the values of a tile row.
+     *
+     * @param y         the image y coordinate of the row
+     * @param rowValues set to the values of the tile pixels of the row, of length the tile width
+     */
+    void interpolateRow(final int y, final double[] rowValues) {
+
+        final int numCols = xNodes.length;
+        int j = 0;
+        while (j < yNodes.length - 2 && y > yNodes[j + 1]) {
+            j++;
+        }
+
+        final int k0 = j * numCols;
+        final int k1 = yNodes.length > 1 ? k0 + numCols : k0;
+        final double t = yNodes.length > 1 ? (double) (y - yNodes[j]) / (yNodes[j + 1] - yNodes[j]) : 0.0;
+
+        if (numCols == 1) {
+            rowValues[0] = values[k0] + t * (values[k1] - values[k0]);
+            return;
+        }
+
+        double left = values[k0] + t * (values[k1] - values[k0]);
+        for (int i = 0; i < numCols - 1; i++) {
+            final double right = values[k0 + i + 1] + t * (values[k1 + i + 1] - values[k0 + i + 1]);
+            final int xa = xNodes[i];
+            final int xb = xNodes[i + 1];
+            final double slope = (right - left) / (xb - xa);
+            for (int x = xa; x < xb; x++) {
+                rowValues[x - x0] = left + slope * (x - xa);
+            }
+            left = right;
+        }
+        rowValues[width - 1] = left;
+    }
+}
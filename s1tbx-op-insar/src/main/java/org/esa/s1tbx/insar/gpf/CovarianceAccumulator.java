@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2014 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable accumulator of the mean vector and covariance matrix of a multi-band data set.
+ * <p>
+ * Each block of samples is reduced with a two-pass mean/co-moment computation and merged into the running
+ * statistics with the pairwise update of Chan et al., which is the block form of Welford's algorithm. The
+ * accumulator also keeps the per-band minimum and maximum and, for each band, the full sample vectors at which
+ * the band reaches its minimum and maximum. These allow bounding linear projections of the data afterwards.
+ * <p>
+ * An accumulator is not thread safe. Use one per worker and merge them once the workers are finished.
+ */
+public final class CovarianceAccumulator {
+
+    private final int numBands;
+    private long count = 0;
+    private final double[] mean;
+    private final double[][] coMoment; // sum of (x - mean)(x - mean)', lower triangle
+    private final double[] min;
+    private final double[] max;
+    private final double[][] extremeSamples; // [2 * band] sample at band min, [2 * band + 1] sample at band max
+
+    public CovarianceAccumulator(final int numBands) {
+        this.numBands = numBands;
+        this.mean = new double[numBands];
+        this.coMoment = new double[numBands][numBands];
+        this.min = new double[numBands];
+        this.max = new double[numBands];
+        this.extremeSamples = new double[2 * numBands][numBands];
+        Arrays.fill(min, Double.MAX_VALUE);
+        Arrays.fill(max, -Double.MAX_VALUE);
+    }
+
+    /**
+     * Add a block of samples.
+     *
+     * @param values values[band][k] for k in [0, n)
+     * @param n      number of samples per band
+     */
+    public void accumulate(final double[][] values, final int n) {
+
+        if (n == 0) {
+            return;
+        }
+
+        final CovarianceAccumulator block = new CovarianceAccumulator(numBands);
+        block.count = n;
+        for (int i = 0; i < numBands; i++) {
+            final double[] vi = values[i];
+            double s = 0.0;
+            int minIdx = 0, maxIdx = 0;
+            for (int k = 0; k < n; k++) {
+                final double v = vi[k];
+                s += v;
+                if (v < vi[minIdx]) {
+                    minIdx = k;
+                }
+                if (v > vi[maxIdx]) {
+                    maxIdx = k;
+                }
+            }
+            block.mean[i] = s / n;
+            block.min[i] = vi[minIdx];
+            block.max[i] = vi[maxIdx];
+            for (int j = 0; j < numBands; j++) {
+                block.extremeSamples[2 * i][j] = values[j][minIdx];
+                block.extremeSamples[2 * i + 1][j] = values[j][maxIdx];
+            }
+        }
+
+        for (int i = 0; i < numBands; i++) {
+            final double[] vi = values[i];
+            final double mi = block.mean[i];
+            for (int j = 0; j <= i; j++) {
+                final double[] vj = values[j];
+                final double mj = block.mean[j];
+                double c = 0.0;
+                for (int k = 0; k < n; k++) {
+                    c += (vi[k] - mi) * (vj[k] - mj);
+                }
+                block.coMoment[i][j] = c;
+            }
+        }
+
+        merge(block);
+    }
+
+    /**
+     * Merge the statistics of another accumulator into this one.
+     */
+    public void merge(final CovarianceAccumulator other) {
+
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            for (int i = 0; i < numBands; i++) {
+                mean[i] = other.mean[i];
+                System.arraycopy(other.coMoment[i], 0, coMoment[i], 0, i + 1);
+            }
+        } else {
+            final double nA = count;
+            final double nB = other.count;
+            final double n = nA + nB;
+            final double f = nA * nB / n;
+            final double[] delta = new double[numBands];
+            for (int i = 0; i < numBands; i++) {
+                delta[i] = other.mean[i] - mean[i];
+            }
+            for (int i = 0; i < numBands; i++) {
+                for (int j = 0; j <= i; j++) {
+                    coMoment[i][j] += other.coMoment[i][j] + delta[i] * delta[j] * f;
+                }
+                mean[i] += delta[i] * nB / n;
+            }
+            count += other.count;
+        }
+
+        for (int i = 0; i < numBands; i++) {
+            if (other.min[i] < min[i]) {
+                min[i] = other.min[i];
+                System.arraycopy(other.extremeSamples[2 * i], 0, extremeSamples[2 * i], 0, numBands);
+            }
+            if (other.max[i] > max[i]) {
+                max[i] = other.max[i];
+                System.arraycopy(other.extremeSamples[2 * i + 1], 0, extremeSamples[2 * i + 1], 0, numBands);
+            }
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double[] getMean() {
+        return mean.clone();
+    }
+
+    /**
+     * @return the population covariance matrix
+     */
+    public double[][] getCovariance() {
+        final double[][] cov = new double[numBands][numBands];
+        if (count == 0) {
+            return cov;
+        }
+        for (int i = 0; i < numBands; i++) {
+            for (int j = 0; j <= i; j++) {
+                cov[i][j] = coMoment[i][j] / count;
+                cov[j][i] = cov[i][j];
+            }
+        }
+        return cov;
+    }
+
+    /**
+     * Lower bound of the projection of all accumulated samples onto the given vector.
+     */
+    public double getProjectionLowerBound(final double[] vector) {
+        double lb = 0.0;
+        for (int j = 0; j < numBands; j++) {
+            lb += vector[j] >= 0.0 ? vector[j] * min[j] : vector[j] * max[j];
+        }
+        return lb;
+    }
+
+    /**
+     * Minimum projection of the band extreme samples onto the given vector. The extreme samples are actual
+     * samples, so this is an upper bound of the minimum projection of all accumulated samples.
+     */
+    public double getProjectionUpperBound(final double[] vector) {
+        double ub = Double.MAX_VALUE;
+        for (double[] sample : extremeSamples) {
+            double p = 0.0;
+            for (int j = 0; j < numBands; j++) {
+                p += sample[j] * vector[j];
+            }
+            if (p < ub) {
+                ub = p;
+            }
+        }
+        return ub;
+    }
+}
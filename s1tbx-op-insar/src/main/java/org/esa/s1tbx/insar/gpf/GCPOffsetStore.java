@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf;
+
+import org.esa.snap.core.util.SystemUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Store of the raw cross-correlated slave GCP positions of an offset tracking grid.
+ * <p>
+ * Each grid cell is either not yet computed, computed but invalid, or holds the slave GCP position found by
+ * cross-correlation. The store is identified by a key describing the master/slave pair, the grid spacing and
+ * the registration parameters, so that it can be persisted and reused when only post-processing parameters
+ * (averaging, hole filling, maximum velocity, resampling) change.
+ * <p>
+ * Cells are claimed before they are computed so that concurrent tiles never correlate the same GCP twice.
+ */
+public class GCPOffsetStore {
+
+    private static final int MAGIC = 0x4F545243; // "OTRC"
+    private static final int VERSION = 1;
+
+    private static final byte NOT_COMPUTED = 0;
+    private static final byte IN_PROGRESS = 1;
+    private static final byte INVALID = 2;
+    private static final byte VALID = 3;
+
+    private final String key;
+    private final int rows;
+    private final int cols;
+    private final byte[] state;
+    private final double[] slvGCPx;
+    private final double[] slvGCPy;
+    private int numComputed = 0;
+    private boolean modified = false;
+
+    public GCPOffsetStore(final String key, final int rows, final int cols) {
+        this.key = key;
+        this.rows = rows;
+        this.cols = cols;
+        this.state = new byte[rows * cols];
+        this.slvGCPx = new double[rows * cols];
+        this.slvGCPy = new double[rows * cols];
+    }
+
+    public int getNumRows() {
+        return rows;
+    }
+
+    public int getNumCols() {
+        return cols;
+    }
+
+    /**
+     * Claims a cell for computation.
+     *
+     * @return true if the caller should compute the cell, false if it is computed or being computed elsewhere
+     */
+    public synchronized boolean claim(final int i, final int j) {
+        final int k = i * cols + j;
+        if (state[k] != NOT_COMPUTED) {
+            return false;
+        }
+        state[k] = IN_PROGRESS;
+        return true;
+    }
+
+    /**
+     * Releases a claimed cell without a result, e.g. after cancellation, so that it can be claimed again.
+     */
+    public synchronized void release(final int i, final int j) {
+        final int k = i * cols + j;
+        if (state[k] == IN_PROGRESS) {
+            state[k] = NOT_COMPUTED;
+            notifyAll();
+        }
+    }
+
+    public synchronized void setValid(final int i, final int j, final double x, final double y) {
+        final int k = i * cols + j;
+        slvGCPx[k] = x;
+        slvGCPy[k] = y;
+        setState(k, VALID);
+    }
+
+    public synchronized void setInvalid(final int i, final int j) {
+        setState(i * cols + j, INVALID);
+    }
+
+    private void setState(final int k, final byte newState) {
+        if (state[k] == NOT_COMPUTED || state[k] == IN_PROGRESS) {
+            numComputed++;
+        }
+        state[k] = newState;
+        modified = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits until all cells of the given window are computed by whichever thread claimed them.
+     */
+    public synchronized void awaitComputed(final int i0, final int iN, final int j0, final int jN)
+            throws InterruptedException {
+        for (int i = i0; i <= iN; i++) {
+            for (int j = j0; j <= jN; j++) {
+                final int k = i * cols + j;
+                while (state[k] == IN_PROGRESS) {
+                    wait();
+                }
+            }
+        }
+    }
+
+    public synchronized boolean isValid(final int i, final int j) {
+        return state[i * cols + j] == VALID;
+    }
+
+    public synchronized double getSlaveX(final int i, final int j) {
+        return slvGCPx[i * cols + j];
+    }
+
+    public synchronized double getSlaveY(final int i, final int j) {
+        return slvGCPy[i * cols + j];
+    }
+
+    public synchronized boolean isComplete() {
+        return numComputed == state.length;
+    }
+
+    /**
+     * Copies the valid flags and slave positions of a window into the given arrays in one locked pass.
+     *
+     * @param valid output valid flags, indexed [i - i0][j - j0]
+     * @param x     output slave x positions
+     * @param y     output slave y positions
+     */
+    public synchronized void getWindow(final int i0, final int j0, final boolean[][] valid,
+                                       final double[][] x, final double[][] y) {
+        for (int i = 0; i < valid.length; i++) {
+            final int rowOffset = (i0 + i) * cols + j0;
+            for (int j = 0; j < valid[i].length; j++) {
+                final int k = rowOffset + j;
+                valid[i][j] = state[k] == VALID;
+                x[i][j] = slvGCPx[k];
+                y[i][j] = slvGCPy[k];
+            }
+        }
+    }
+
+    /**
+     * Loads a previously saved store. If the file does not exist or belongs to a different key or grid,
+     * an empty store is returned.
+     */
+    public static GCPOffsetStore load(final File file, final String key, final int rows, final int cols) {
+
+        final GCPOffsetStore store = new GCPOffsetStore(key, rows, cols);
+        if (!file.exists()) {
+            return store;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF()) ||
+                    in.readInt() != rows || in.readInt() != cols) {
+                return store;
+            }
+
+            for (int k = 0; k < store.state.length; k++) {
+                final byte s = in.readByte();
+                if (s == VALID) {
+                    store.slvGCPx[k] = in.readDouble();
+                    store.slvGCPy[k] = in.readDouble();
+                }
+                if (s == VALID || s == INVALID) {
+                    store.state[k] = s;
+                    store.numComputed++;
+                }
+            }
+        } catch (IOException e) {
+            SystemUtils.LOG.warning("Unable to read GCP offsets from " + file + ": " + e.getMessage());
+            return new GCPOffsetStore(key, rows, cols);
+        }
+        return store;
+    }
+
+    /**
+     * Saves the computed cells if anything changed since the store was loaded or last saved.
+     * Cells still being computed are saved as not computed.
+     */
+    public synchronized void save(final File file) throws IOException {
+
+        if (!modified) {
+            return;
+        }
+
+        final File folder = file.getParentFile();
+        if (folder != null && !folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Unable to create folder " + folder);
+        }
+
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeInt(rows);
+            out.writeInt(cols);
+
+            for (int k = 0; k < state.length; k++) {
+                final byte s = state[k] == IN_PROGRESS ? NOT_COMPUTED : state[k];
+                out.writeByte(s);
+                if (s == VALID) {
+                    out.writeDouble(slvGCPx[k]);
+                    out.writeDouble(slvGCPy[k]);
+                }
+            }
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        modified = false;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_2D;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Goldstein adaptive filter of one square complex imagette.
+ * <p>
+ * The imagette is held in a flat row-major buffer of interleaved (Q, I) pairs, which is transformed in place by a
+ * 2-D FFT plan created once. The spectrum is weighted by its box-smoothed magnitude raised to the power alpha and
+ * transformed back without scaling. A filter is not thread safe; use one per thread.
+ */
+final class GoldsteinFilter {
+
+    private final int size;
+    private final int halfWindowSize;
+    private final double alpha;
+
+    private final DoubleFFT_2D fft;
+    private final double[] data;
+    private final boolean[] mask;
+    private final double[] pwrSpec;
+    private final double[] rowSum;
+    private final double[] rowCnt;
+    private final double[] fltSpec;
+
+    GoldsteinFilter(final int size, final int halfWindowSize, final double alpha) {
+        this.size = size;
+        this.halfWindowSize = halfWindowSize;
+        this.alpha = alpha;
+
+        final int n = size * size;
+        fft = new DoubleFFT_2D(size, size);
+        data = new double[2 * n];
+        mask = new boolean[n];
+        pwrSpec = new double[n];
+        rowSum = new double[n];
+        rowCnt = new double[n];
+        fltSpec = new double[n];
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the imagette buffer, element (r, c) has Q at [2 * (r * size + c)] and I at [2 * (r * size + c) + 1]
+     */
+    double[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the valid pixel mask of the imagette, row-major
+     */
+    boolean[] getMask() {
+        return mask;
+    }
+
+    /**
+     * Filters the imagette in place.
+     *
+     * @param noDataValue power spectrum values equal to this are excluded from the smoothing window
+     */
+    void filter(final double noDataValue) {
+
+        fft.complexForward(data);
+
+        final int n = size * size;
+        for (int k = 0; k < n; k++) {
+            final double re = data[2 * k];
+            final double im = data[2 * k + 1];
+            pwrSpec[k] = Math.sqrt(re * re + im * im);
+        }
+
+        getFilteredPowerSpectrum(noDataValue);
+
+        for (int k = 0; k < n; k++) {
+            data[2 * k] *= fltSpec[k];
+            data[2 * k + 1] *= fltSpec[k];
+        }
+
+        fft.complexInverse(data, false);
+    }
+
+    /**
+     * Box smoothing of the power spectrum with the window clipped at the spectrum border, computed as a
+     * horizontal pass followed by a vertical pass over the sums and counts of valid values.
+     */
+    private void getFilteredPowerSpectrum(final double noDataValue) {
+
+        for (int r = 0; r < size; r++) {
+            final int rowOffset = r * size;
+            for (int c = 0; c < size; c++) {
+                final int iMin = Math.max(0, c - halfWindowSize);
+                final int iMax = Math.min(size - 1, c + halfWindowSize);
+                double sum = 0;
+                int cnt = 0;
+                for (int i = iMin; i <= iMax; i++) {
+                    final double p = pwrSpec[rowOffset + i];
+                    if (p != noDataValue) {
+                        sum += p;
+                        cnt++;
+                    }
+                }
+                rowSum[rowOffset + c] = sum;
+                rowCnt[rowOffset + c] = cnt;
+            }
+        }
+
+        for (int r = 0; r < size; r++) {
+            final int jMin = Math.max(0, r - halfWindowSize);
+            final int jMax = Math.min(size - 1, r + halfWindowSize);
+            for (int c = 0; c < size; c++) {
+                double sum = 0;
+                double cnt = 0;
+                for (int j = jMin; j <= jMax; j++) {
+                    sum += rowSum[j * size + c];
+                    cnt += rowCnt[j * size + c];
+                }
+                fltSpec[r * size + c] = cnt != 0 ? FastMath.pow(sum / cnt, alpha) : 0;
+            }
+        }
+    }
+}
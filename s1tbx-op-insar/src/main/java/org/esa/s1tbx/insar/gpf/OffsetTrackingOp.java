@@ -21,7 +21,6 @@ import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
 import org.esa.s1tbx.insar.gpf.coregistration.CrossCorrelationOp;
 import org.esa.snap.core.datamodel.*;
-import org.esa.snap.core.dataop.downloadable.StatusProgressMonitor;
 import org.esa.snap.core.dataop.resamp.Resampling;
 import org.esa.snap.core.dataop.resamp.ResamplingFactory;
 import org.esa.snap.core.gpf.Operator;
@@ -39,7 +38,6 @@ import org.esa.snap.engine_utilities.datamodel.Unit;
 import org.esa.snap.engine_utilities.eo.GeoUtils;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.StackUtils;
-import org.esa.snap.engine_utilities.gpf.ThreadManager;
 import org.esa.snap.engine_utilities.gpf.TileIndex;
 import org.esa.snap.engine_utilities.util.VectorUtils;
 import org.geotools.feature.DefaultFeatureCollection;
@@ -52,6 +50,8 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -135,6 +135,10 @@ public class OffsetTrackingOp extends Operator {
     @Parameter(label = "ROI Vector", defaultValue = "")
     private String roiVector = "";
 
+    @Parameter(description = "Keep the cross-correlated GCP offsets so that re-runs with different post-processing " +
+            "parameters do not recompute them", defaultValue = "true", label = "Cache GCP Offsets")
+    private boolean cacheOffsets = true;
+
     private boolean outputDebuggingBands = false;
 
     private int cHalfWindowWidth = 0;
@@ -156,12 +160,17 @@ public class OffsetTrackingOp extends Operator {
     private double rangeSpacing = 0.0;
     private double azimuthSpacing = 0.0;
     private double maxOffset = 0.0;
-    private boolean velocityAvailable = false;
+    private volatile boolean velocityAvailable = false;
     private VelocityData velocityData = null;
+    private GCPOffsetStore offsetStore = null;
+    private File offsetStoreFile = null;
+    private String mstFirstLineTimeStr = null;
+    private String slvFirstLineTimeStr = null;
     private Resampling selectedResampling = null;
     private MetadataElement mstAbsRoot = null;
 
     private final static double invalidIndex = -9999.0;
+    private final static String OFFSET_CACHE_FOLDER = "offset_tracking";
     private final static String PRODUCT_SUFFIX = "_Vel";
     private final static String VELOCITY = "Velocity";
     private final static String POINTS = "Points";
@@ -235,6 +244,12 @@ public class OffsetTrackingOp extends Operator {
 
             windFeatureType = createFeatureType();
 
+            createOffsetStore();
+
+            if (offsetStore.isComplete()) {
+                publishVelocity();
+            }
+
         } catch (Throwable e) {
             OperatorUtils.catchOperatorException(getId(), e);
         }
@@ -259,15 +274,15 @@ public class OffsetTrackingOp extends Operator {
 
         final MetadataElement slvAbsRoot = AbstractMetadata.getSlaveMetadata(sourceProduct.getMetadataRoot()).getElementAt(0);
 
-        final double mstFirstLineTime = AbstractMetadata.parseUTC(
-                mstAbsRoot.getAttributeString(AbstractMetadata.first_line_time)).getMJD(); // in days
+        mstFirstLineTimeStr = mstAbsRoot.getAttributeString(AbstractMetadata.first_line_time);
+        final double mstFirstLineTime = AbstractMetadata.parseUTC(mstFirstLineTimeStr).getMJD(); // in days
 
         rangeSpacing = AbstractMetadata.getAttributeDouble(mstAbsRoot, AbstractMetadata.range_spacing);
 
         azimuthSpacing = AbstractMetadata.getAttributeDouble(mstAbsRoot, AbstractMetadata.azimuth_spacing);
 
-        final double slvFirstLineTime = AbstractMetadata.parseUTC(
-                slvAbsRoot.getAttributeString(AbstractMetadata.first_line_time)).getMJD(); // in days
+        slvFirstLineTimeStr = slvAbsRoot.getAttributeString(AbstractMetadata.first_line_time);
+        final double slvFirstLineTime = AbstractMetadata.parseUTC(slvFirstLineTimeStr).getMJD(); // in days
 
         acquisitionTimeInterval = Math.abs(slvFirstLineTime - mstFirstLineTime); // in days
 
@@ -374,6 +389,27 @@ public class OffsetTrackingOp extends Operator {
         }
     }
 
+    /**
+     * Create the store of raw GCP offsets. The store is keyed by the master/slave pair, the grid and the
+     * registration parameters only, so post-processing parameters can change without invalidating it.
+     */
+    private void createOffsetStore() {
+
+        final String key = sourceProduct.getName() + '|' + masterBand.getName() + '|' + slaveBand.getName() + '|' +
+                mstFirstLineTimeStr + '|' + slvFirstLineTimeStr + '|' + sourceImageWidth + 'x' + sourceImageHeight +
+                '|' + gridAzimuthSpacing + 'x' + gridRangeSpacing + '|' + registrationWindowWidth + 'x' +
+                registrationWindowHeight + '|' + xCorrThreshold + '|' + roiVector;
+
+        if (cacheOffsets) {
+            final String fileName = sourceProduct.getName().replaceAll("[^A-Za-z0-9_.-]", "_") + '_' +
+                    Integer.toHexString(key.hashCode()) + ".gcp";
+            offsetStoreFile = new File(new File(SystemUtils.getCacheDir(), OFFSET_CACHE_FOLDER), fileName);
+            offsetStore = GCPOffsetStore.load(offsetStoreFile, key, numGCPsPerAzLine, numGCPsPerRgLine);
+        } else {
+            offsetStore = new GCPOffsetStore(key, numGCPsPerAzLine, numGCPsPerRgLine);
+        }
+    }
+
     /**
      * Update metadata in the target product.
      */
@@ -409,7 +445,7 @@ public class OffsetTrackingOp extends Operator {
                 return;
 
             if (!velocityAvailable) {
-                computeVelocity();
+                computeVelocity(targetRectangle);
             }
 
             Tile tgtRangeShiftTile = null;
@@ -510,31 +546,80 @@ public class OffsetTrackingOp extends Operator {
         }
     }
 
-    private synchronized void computeVelocity() {
+    @Override
+    public void dispose() {
+        saveOffsetStore();
+        super.dispose();
+    }
 
-        if (velocityAvailable) return;
+    private void saveOffsetStore() {
+        if (offsetStoreFile != null && offsetStore != null) {
+            try {
+                offsetStore.save(offsetStoreFile);
+            } catch (IOException e) {
+                SystemUtils.LOG.warning("Unable to save GCP offsets to " + offsetStoreFile + ": " + e.getMessage());
+            }
+        }
+    }
 
-        computeSlaveGCPs();
+    /**
+     * Compute the GCP velocities needed by the given target rectangle. Only the GCPs within reach of the
+     * resampling kernel and the averaging and hole filling windows are cross-correlated.
+     */
+    private void computeVelocity(final Rectangle targetRectangle) throws InterruptedException {
 
-        computeGCPOffsets();
+        final int kernelMargin = Math.max(1, selectedResampling.getKernelSize());
+        final int postMargin = (spatialAverage ? halfAvgWindowSize : 0) + (fillHoles ? radius : 0);
 
-        if (spatialAverage) {
-            averageOffsets();
-        }
+        final int[] outWindow = getGridWindow(targetRectangle, kernelMargin);
+        final int[] rawWindow = {Math.max(outWindow[0] - postMargin, 0),
+                Math.min(outWindow[1] + postMargin, numGCPsPerAzLine - 1),
+                Math.max(outWindow[2] - postMargin, 0),
+                Math.min(outWindow[3] + postMargin, numGCPsPerRgLine - 1)};
 
-        if (fillHoles) {
-            fillHoles();
+        computeSlaveGCPs(rawWindow);
+
+        postProcessOffsets(rawWindow, outWindow);
+
+        if (offsetStore.isComplete()) {
+            publishVelocity();
         }
+    }
 
-        computeGCPVelocities();
+    /**
+     * Post-process the whole grid once all raw offsets are available and add the velocity vectors and GCPs
+     * to the target product.
+     */
+    private synchronized void publishVelocity() {
+
+        if (velocityAvailable) return;
+
+        final int[] fullWindow = {0, numGCPsPerAzLine - 1, 0, numGCPsPerRgLine - 1};
+        postProcessOffsets(fullWindow, fullWindow);
 
         AddVelocitiesAsVectors();
 
         writeGCPsToMetadata();
 
+        saveOffsetStore();
+
         velocityAvailable = true;
     }
 
+    /**
+     * @return the GCP grid window {i0, iN, j0, jN} covering the rectangle plus margin, clipped to the grid
+     */
+    private int[] getGridWindow(final Rectangle rectangle, final int margin) {
+
+        final int i0 = (int) Math.floor((double) (rectangle.y - halfSpacingY) / spacingY) - margin;
+        final int iN = (int) Math.floor((double) (rectangle.y + rectangle.height - 1 - halfSpacingY) / spacingY) + 1 + margin;
+        final int j0 = (int) Math.floor((double) (rectangle.x - halfSpacingX) / spacingX) - margin;
+        final int jN = (int) Math.floor((double) (rectangle.x + rectangle.width - 1 - halfSpacingX) / spacingX) + 1 + margin;
+
+        return new int[]{Math.max(i0, 0), Math.min(iN, numGCPsPerAzLine - 1),
+                Math.max(j0, 0), Math.min(jN, numGCPsPerRgLine - 1)};
+    }
+
     private static class GCPData {
         final PixelPos mGCP;
         final int i, j;
@@ -546,311 +631,186 @@ public class OffsetTrackingOp extends Operator {
         }
     }
 
-    private void computeSlaveGCPs() {
-
-        try {
-            final List<GCPData> gcpList = new ArrayList<>();
-            for (int i = 0; i < numGCPsPerAzLine; i++) {
-                for (int j = 0; j < numGCPsPerRgLine; j++) {
-
-                    final PixelPos mGCP = new PixelPos(velocityData.mstGCPx[i][j], velocityData.mstGCPy[i][j]);
-                    if (!checkGCPValidity(mGCP)) {
-                        continue;
-                    }
+    /**
+     * Cross-correlate the GCPs of the window that are not in the offset store yet. GCPs claimed by other
+     * tiles are awaited rather than computed again.
+     */
+    private void computeSlaveGCPs(final int[] window) throws InterruptedException {
 
-                    gcpList.add(new GCPData(mGCP, i, j));
+        final List<GCPData> gcpList = new ArrayList<>();
+        for (int i = window[0]; i <= window[1]; i++) {
+            for (int j = window[2]; j <= window[3]; j++) {
+                if (!offsetStore.claim(i, j)) {
+                    continue;
                 }
-            }
-
-            final StatusProgressMonitor status = new StatusProgressMonitor(StatusProgressMonitor.TYPE.SUBTASK);
-            status.beginTask("Computing slave GCPs... ", gcpList.size());
-
-            final ThreadManager threadManager = new ThreadManager();
 
-            for (GCPData gcpData : gcpList) {
-                checkForCancellation();
-
-                final Thread worker = new Thread() {
-                    @Override
-                    public void run() {
-                        final PixelPos sGCP = new PixelPos(gcpData.mGCP.x, gcpData.mGCP.y);
-                        boolean getSlaveGCP = getOffsets(gcpData.mGCP, sGCP);
-                        if (getSlaveGCP) {
-                            saveSlaveGCP(sGCP);
-                        }
-                    }
+                final PixelPos mGCP = new PixelPos(velocityData.mstGCPx[i][j], velocityData.mstGCPy[i][j]);
+                if (!checkGCPValidity(mGCP)) {
+                    offsetStore.setInvalid(i, j);
+                    continue;
+                }
 
-                    private synchronized void saveSlaveGCP(final PixelPos sGCP) {
-                        velocityData.slvGCPx[gcpData.i][gcpData.j] = sGCP.x;
-                        velocityData.slvGCPy[gcpData.i][gcpData.j] = sGCP.y;
-                    }
-                };
-                threadManager.add(worker);
-                status.worked(1);
+                gcpList.add(new GCPData(mGCP, i, j));
             }
-            status.done();
-            threadManager.finish();
-
-        } catch (Throwable e) {
-            OperatorUtils.catchOperatorException("computeGCPsByXCorrelation", e);
         }
-    }
 
-    private void computeGCPOffsets() {
-
-        final StatusProgressMonitor status = new StatusProgressMonitor(StatusProgressMonitor.TYPE.SUBTASK);
-        status.beginTask("Compute Offsets... ", numGCPsPerAzLine * numGCPsPerRgLine);
-
-        final ThreadManager threadManager = new ThreadManager();
+        int k = 0;
         try {
-            for (int i = 0; i < numGCPsPerAzLine; i++) {
-                for (int j = 0; j < numGCPsPerRgLine; j++) {
-                    checkForCancellation();
-                    final int iIdx = i;
-                    final int jIdx = j;
-
-                    if (velocityData.slvGCPx[i][j] == invalidIndex || velocityData.slvGCPy[i][j] == invalidIndex) {
-                        continue;
-                    }
-
-                    final Thread worker = new Thread() {
-                        @Override
-                        public void run() {
-
-                            final double xShift =
-                                    (velocityData.mstGCPx[iIdx][jIdx] - velocityData.slvGCPx[iIdx][jIdx]) * rangeSpacing;
-
-                            final double yShift =
-                                    (velocityData.mstGCPy[iIdx][jIdx] - velocityData.slvGCPy[iIdx][jIdx]) * azimuthSpacing;
-
-                            final double offset = Math.sqrt(xShift * xShift + yShift * yShift);
-
-                            if (offset <= maxOffset) {
-                                saveOffset(xShift, yShift);
-                            } else { // outliers
-                                synchronized (velocityData.slvGCPx) {
-                                    velocityData.slvGCPx[iIdx][jIdx] = invalidIndex;
-                                    velocityData.slvGCPy[iIdx][jIdx] = invalidIndex;
-                                }
-                            }
-                        }
+            for (; k < gcpList.size(); k++) {
+                checkForCancellation();
 
-                        private synchronized void saveOffset(final double xShift, final double yShift) {
-                            velocityData.rangeShift[iIdx][jIdx] = xShift;
-                            velocityData.azimuthShift[iIdx][jIdx] = yShift;
-                        }
-                    };
-                    threadManager.add(worker);
-                    status.worked(1);
+                final GCPData gcpData = gcpList.get(k);
+                final PixelPos sGCP = new PixelPos(gcpData.mGCP.x, gcpData.mGCP.y);
+                if (getOffsets(gcpData.mGCP, sGCP)) {
+                    offsetStore.setValid(gcpData.i, gcpData.j, sGCP.x, sGCP.y);
+                } else {
+                    offsetStore.setInvalid(gcpData.i, gcpData.j);
                 }
             }
-            status.done();
-            threadManager.finish();
-
-        } catch (Throwable e) {
-            OperatorUtils.catchOperatorException("computeGCPOffsets", e);
+        } finally {
+            // give back whatever could not be computed so that another tile can claim it
+            for (; k < gcpList.size(); k++) {
+                offsetStore.release(gcpList.get(k).i, gcpList.get(k).j);
+            }
         }
-    }
 
-    private void averageOffsets() {
+        offsetStore.awaitComputed(window[0], window[1], window[2], window[3]);
+    }
 
-        final StatusProgressMonitor status = new StatusProgressMonitor(StatusProgressMonitor.TYPE.SUBTASK);
-        status.beginTask("Average Offsets... ", numGCPsPerAzLine * numGCPsPerRgLine);
+    /**
+     * Derive offsets, spatial averages, filled holes and velocities from the raw GCP offsets of rawWindow and
+     * write the results of outWindow into the velocity data. The raw window must extend the output window by
+     * the averaging and hole filling radii. Each stage reads only the results of the previous stage so the
+     * output does not depend on the order in which tiles are computed.
+     */
+    private void postProcessOffsets(final int[] rawWindow, final int[] outWindow) {
+
+        final int i0 = rawWindow[0];
+        final int j0 = rawWindow[2];
+        final int rows = rawWindow[1] - i0 + 1;
+        final int cols = rawWindow[3] - j0 + 1;
+
+        final boolean[][] valid = new boolean[rows][cols];
+        final double[][] slvX = new double[rows][cols];
+        final double[][] slvY = new double[rows][cols];
+        offsetStore.getWindow(i0, j0, valid, slvX, slvY);
+
+        // offsets, rejecting outliers
+        double[][] rgShift = new double[rows][cols];
+        double[][] azShift = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (!valid[i][j]) {
+                    continue;
+                }
 
-        final ThreadManager threadManager = new ThreadManager();
-        try {
-            for (int i = 0; i < numGCPsPerAzLine; i++) {
-                for (int j = 0; j < numGCPsPerRgLine; j++) {
-                    checkForCancellation();
-                    final int iIdx = i;
-                    final int jIdx = j;
+                final double xShift = (velocityData.mstGCPx[i0 + i][j0 + j] - slvX[i][j]) * rangeSpacing;
+                final double yShift = (velocityData.mstGCPy[i0 + i][j0 + j] - slvY[i][j]) * azimuthSpacing;
+                if (Math.sqrt(xShift * xShift + yShift * yShift) <= maxOffset) {
+                    rgShift[i][j] = xShift;
+                    azShift[i][j] = yShift;
+                } else { // outliers
+                    valid[i][j] = false;
+                }
+            }
+        }
 
-                    if (velocityData.slvGCPx[i][j] == invalidIndex || velocityData.slvGCPy[i][j] == invalidIndex) {
+        if (spatialAverage) {
+            final double[][] avgRgShift = new double[rows][cols];
+            final double[][] avgAzShift = new double[rows][cols];
+            for (int i = 0; i < rows; i++) {
+                final int ii0 = Math.max(i - halfAvgWindowSize, 0);
+                final int iiN = Math.min(i + halfAvgWindowSize, rows - 1);
+                for (int j = 0; j < cols; j++) {
+                    if (!valid[i][j]) {
                         continue;
                     }
 
-                    final Thread worker = new Thread() {
-                        @Override
-                        public void run() {
-
-                            final int i0 = Math.max(iIdx - halfAvgWindowSize, 0);
-                            final int iN = Math.min(iIdx + halfAvgWindowSize, numGCPsPerAzLine - 1);
-                            final int j0 = Math.max(jIdx - halfAvgWindowSize, 0);
-                            final int jN = Math.min(jIdx + halfAvgWindowSize, numGCPsPerRgLine - 1);
-
-                            int count = 0;
-                            double rangeShiftSum = 0.0, azimuthShiftSum = 0.0;
-                            for (int ii = i0; ii <= iN; ii++) {
-                                for (int jj = j0; jj <= jN; jj++) {
-                                    if (velocityData.slvGCPx[ii][jj] != invalidIndex &&
-                                            velocityData.slvGCPy[ii][jj] != invalidIndex) {
-
-                                        rangeShiftSum += velocityData.rangeShift[ii][jj];
-                                        azimuthShiftSum += velocityData.azimuthShift[ii][jj];
-                                        count++;
-                                    }
-                                }
-                            }
-
-                            if (count > 0) {
-                                final double xShift = rangeShiftSum / count;
-
-                                final double yShift = azimuthShiftSum / count;
-
-                                final double slvGCPx = velocityData.mstGCPx[iIdx][jIdx] - xShift / rangeSpacing;
-
-                                final double slvGCPy = velocityData.mstGCPy[iIdx][jIdx] - yShift / azimuthSpacing;
-
-                                saveOffset(xShift, yShift, slvGCPx, slvGCPy);
+                    final int jj0 = Math.max(j - halfAvgWindowSize, 0);
+                    final int jjN = Math.min(j + halfAvgWindowSize, cols - 1);
+
+                    int count = 0;
+                    double rangeShiftSum = 0.0, azimuthShiftSum = 0.0;
+                    for (int ii = ii0; ii <= iiN; ii++) {
+                        for (int jj = jj0; jj <= jjN; jj++) {
+                            if (valid[ii][jj]) {
+                                rangeShiftSum += rgShift[ii][jj];
+                                azimuthShiftSum += azShift[ii][jj];
+                                count++;
                             }
                         }
+                    }
 
-                        private synchronized void saveOffset(
-                                final double xShift, final double yShift, final double slvGCPx, final double slvGCPy) {
-                            velocityData.rangeShift[iIdx][jIdx] = xShift;
-                            velocityData.azimuthShift[iIdx][jIdx] = yShift;
-                            velocityData.slvGCPx[iIdx][jIdx] = slvGCPx;
-                            velocityData.slvGCPy[iIdx][jIdx] = slvGCPy;
-                        }
-                    };
-                    threadManager.add(worker);
-                    status.worked(1);
+                    avgRgShift[i][j] = rangeShiftSum / count;
+                    avgAzShift[i][j] = azimuthShiftSum / count;
                 }
             }
-            status.done();
-            threadManager.finish();
-
-        } catch (Throwable e) {
-            OperatorUtils.catchOperatorException("averageOffsets", e);
+            rgShift = avgRgShift;
+            azShift = avgAzShift;
         }
-    }
-
-    private void fillHoles() {
-
-        final StatusProgressMonitor status = new StatusProgressMonitor(StatusProgressMonitor.TYPE.SUBTASK);
-        status.beginTask("Fill Holes... ", numGCPsPerAzLine * numGCPsPerRgLine);
-
-        final ThreadManager threadManager = new ThreadManager();
-        try {
-            final java.util.List<int[]> holeList = new ArrayList<>();
-            for (int i = 0; i < numGCPsPerAzLine; i++) {
-                for (int j = 0; j < numGCPsPerRgLine; j++) {
-                    if (velocityData.slvGCPx[i][j] == invalidIndex || velocityData.slvGCPy[i][j] == invalidIndex) {
-                        holeList.add(new int[]{i, j});
-                    }
-                }
-            }
-
-            for (int k = 0; k < holeList.size(); k++) {
-                checkForCancellation();
-                final int iIdx = holeList.get(k)[0];
-                final int jIdx = holeList.get(k)[1];
-
-                final Thread worker = new Thread() {
-                    @Override
-                    public void run() {
-
-                        final int i0 = Math.max(iIdx - radius, 0);
-                        final int iN = Math.min(iIdx + radius, numGCPsPerAzLine - 1);
-                        final int j0 = Math.max(jIdx - radius, 0);
-                        final int jN = Math.min(jIdx + radius, numGCPsPerRgLine - 1);
-
-                        double xShiftMean = 0.0, yShiftMean = 0.0, totalWeight = 0.0;
-                        for (int ii = i0; ii <= iN; ii++) {
-                            for (int jj = j0; jj <= jN; jj++) {
-                                if (!inList(ii, jj)) {
-
-                                    final double w = 1.0 / Math.max(Math.abs(ii - iIdx), Math.abs(jj - jIdx));
-
-                                    xShiftMean += w * velocityData.rangeShift[ii][jj];
-
-                                    yShiftMean += w * velocityData.azimuthShift[ii][jj];
 
-                                    totalWeight += w;
-                                }
-                            }
-                        }
-
-                        if (totalWeight != 0.0) {
-                            xShiftMean /= totalWeight;
-                            yShiftMean /= totalWeight;
-
-                            final double slvGCPx = velocityData.mstGCPx[iIdx][jIdx] - xShiftMean / rangeSpacing;
-                            final double slvGCPy = velocityData.mstGCPy[iIdx][jIdx] - yShiftMean / azimuthSpacing;
-
-                            saveOffset(xShiftMean, yShiftMean, slvGCPx, slvGCPy);
-                        }
+        boolean[][] filled = valid;
+        if (fillHoles) {
+            filled = new boolean[rows][cols];
+            for (int i = 0; i < rows; i++) {
+                final int ii0 = Math.max(i - radius, 0);
+                final int iiN = Math.min(i + radius, rows - 1);
+                for (int j = 0; j < cols; j++) {
+                    if (valid[i][j]) {
+                        filled[i][j] = true;
+                        continue;
                     }
 
-                    private boolean inList(final int ii, final int jj) {
-
-                        for (int[] aHoleList : holeList) {
-                            if (aHoleList[0] == ii && aHoleList[1] == jj) {
-                                return true;
+                    final int jj0 = Math.max(j - radius, 0);
+                    final int jjN = Math.min(j + radius, cols - 1);
+
+                    double xShiftMean = 0.0, yShiftMean = 0.0, totalWeight = 0.0;
+                    for (int ii = ii0; ii <= iiN; ii++) {
+                        for (int jj = jj0; jj <= jjN; jj++) {
+                            if (valid[ii][jj]) {
+                                final double w = 1.0 / Math.max(Math.abs(ii - i), Math.abs(jj - j));
+                                xShiftMean += w * rgShift[ii][jj];
+                                yShiftMean += w * azShift[ii][jj];
+                                totalWeight += w;
                             }
                         }
-                        return false;
                     }
 
-                    private synchronized void saveOffset(
-                            final double xShift, final double yShift, final double slvGCPx, final double slvGCPy) {
-                        velocityData.rangeShift[iIdx][jIdx] = xShift;
-                        velocityData.azimuthShift[iIdx][jIdx] = yShift;
-                        velocityData.slvGCPx[iIdx][jIdx] = slvGCPx;
-                        velocityData.slvGCPy[iIdx][jIdx] = slvGCPy;
+                    if (totalWeight != 0.0) {
+                        rgShift[i][j] = xShiftMean / totalWeight;
+                        azShift[i][j] = yShiftMean / totalWeight;
+                        filled[i][j] = true;
                     }
-                };
-                threadManager.add(worker);
-                status.worked(1);
+                }
             }
-            status.done();
-            threadManager.finish();
-
-        } catch (Throwable e) {
-            OperatorUtils.catchOperatorException("fillHoles", e);
         }
-    }
-
-    private void computeGCPVelocities() {
-
-        final StatusProgressMonitor status = new StatusProgressMonitor(StatusProgressMonitor.TYPE.SUBTASK);
-        status.beginTask("Compute Velocities... ", numGCPsPerAzLine * numGCPsPerRgLine);
-
-        final ThreadManager threadManager = new ThreadManager();
-        try {
-            for (int i = 0; i < numGCPsPerAzLine; i++) {
-                for (int j = 0; j < numGCPsPerRgLine; j++) {
-                    checkForCancellation();
-                    final int iIdx = i;
-                    final int jIdx = j;
 
-                    if (velocityData.slvGCPx[i][j] == invalidIndex || velocityData.slvGCPy[i][j] == invalidIndex) {
-                        continue;
+        final boolean derivedPositions = spatialAverage || fillHoles;
+        for (int gi = outWindow[0]; gi <= outWindow[1]; gi++) {
+            final int i = gi - i0;
+            for (int gj = outWindow[2]; gj <= outWindow[3]; gj++) {
+                final int j = gj - j0;
+                if (filled[i][j]) {
+                    final double xShift = rgShift[i][j];
+                    final double yShift = azShift[i][j];
+                    velocityData.rangeShift[gi][gj] = xShift;
+                    velocityData.azimuthShift[gi][gj] = yShift;
+                    velocityData.velocity[gi][gj] = Math.sqrt(xShift * xShift + yShift * yShift) / acquisitionTimeInterval;
+                    if (derivedPositions) {
+                        velocityData.slvGCPx[gi][gj] = velocityData.mstGCPx[gi][gj] - xShift / rangeSpacing;
+                        velocityData.slvGCPy[gi][gj] = velocityData.mstGCPy[gi][gj] - yShift / azimuthSpacing;
+                    } else {
+                        velocityData.slvGCPx[gi][gj] = slvX[i][j];
+                        velocityData.slvGCPy[gi][gj] = slvY[i][j];
                     }
-
-                    final Thread worker = new Thread() {
-                        @Override
-                        public void run() {
-
-                            final double xShift = velocityData.rangeShift[iIdx][jIdx];
-                            final double yShift = velocityData.azimuthShift[iIdx][jIdx];
-                            final double v = Math.sqrt(xShift * xShift + yShift * yShift) / acquisitionTimeInterval;
-                            saveVelocity(v);
-                        }
-
-                        private synchronized void saveVelocity(final double v) {
-                            velocityData.velocity[iIdx][jIdx] = v;
-                        }
-                    };
-                    threadManager.add(worker);
-                    status.worked(1);
+                } else {
+                    velocityData.rangeShift[gi][gj] = 0.0;
+                    velocityData.azimuthShift[gi][gj] = 0.0;
+                    velocityData.velocity[gi][gj] = 0.0;
+                    velocityData.slvGCPx[gi][gj] = invalidIndex;
+                    velocityData.slvGCPy[gi][gj] = invalidIndex;
                 }
             }
-            status.done();
-            threadManager.finish();
-
-        } catch (Throwable e) {
-            OperatorUtils.catchOperatorException("computeGCPVelocities", e);
         }
     }
 
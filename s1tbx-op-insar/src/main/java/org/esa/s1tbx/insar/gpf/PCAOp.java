@@ -21,7 +21,6 @@ import com.bc.ceres.core.ProgressMonitor;
 import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.core.datamodel.ProductData;
-import org.esa.snap.core.datamodel.VirtualBand;
 import org.esa.snap.core.dataop.downloadable.StatusProgressMonitor;
 import org.esa.snap.core.gpf.Operator;
 import org.esa.snap.core.gpf.OperatorException;
@@ -87,16 +86,11 @@ public class PCAOp extends Operator {
     private Boolean subtractMeanImage = false;
 
     private boolean statsCalculated = false;
-    private int numOfPixels = 0;        // total number of pixel values
     private int numOfSourceBands = 0;   // number of user selected bands
-    private double[] sum = null;        // summation of pixel values for each band
-    private double[][] sumCross = null; // summation of the dot product of each band and the master band
-    private double[] mean = null;       // mean of pixel values for each band
-    private double[][] meanCross = null;// mean of the dot product of each band and the master band
+    private double[][] covariance = null; // covariance matrix of all bands
 
     public static final String EIGENVALUE_THRESHOLD = "Eigenvalue Threshold";
     public static final String NUMBER_EIGENVALUES = "Number of Eigenvalues";
-    private static final String meanImageBandName = "Mean_Image";
 
     private double totalEigenvalues; // summation of all eigenvalues
 
@@ -147,20 +141,7 @@ public class PCAOp extends Operator {
      */
     private void setInitialValues() {
 
-        mean = new double[numOfSourceBands];
-        meanCross = new double[numOfSourceBands][numOfSourceBands];
-        sum = new double[numOfSourceBands];
-        sumCross = new double[numOfSourceBands][numOfSourceBands];
-        for (int i = 0; i < numOfSourceBands; i++) {
-            sum[i] = 0.0;
-            mean[i] = 0.0;
-            for (int j = 0; j < numOfSourceBands; j++) {
-                sumCross[i][j] = 0.0;
-                meanCross[i][j] = 0.0;
-            }
-        }
-
-        numOfPixels = sourceProduct.getSceneRasterWidth() * sourceProduct.getSceneRasterHeight();
+        covariance = new double[numOfSourceBands][numOfSourceBands];
     }
 
     /**
@@ -225,48 +206,6 @@ public class PCAOp extends Operator {
             targetBand.setUnit(unit);
             targetProduct.addBand(targetBand);
         }
-
-        if (subtractMeanImage) {
-            createMeanImageVirtualBand(sourceProduct, sourceBandNames, meanImageBandName);
-        }
-    }
-
-    /**
-     * Create mean image as a virtual band from user selected bands.
-     *
-     * @param sourceProduct     The source product.
-     * @param sourceBandNames   The user selected band names.
-     * @param meanImageBandName The mean image band name.
-     */
-    private static void createMeanImageVirtualBand(final Product sourceProduct,
-                                                   final String[] sourceBandNames, final String meanImageBandName) {
-
-        if (sourceProduct.getBand(meanImageBandName) != null) {
-            return;
-        }
-
-        boolean isFirstBand = true;
-        String unit = "";
-        String expression = "( ";
-        for (String bandName : sourceBandNames) {
-            if (isFirstBand) {
-                expression += bandName;
-                unit = sourceProduct.getBand(bandName).getUnit();
-                isFirstBand = false;
-            } else {
-                expression += " + " + bandName;
-            }
-        }
-        expression += " ) / " + sourceBandNames.length;
-
-        final VirtualBand band = new VirtualBand(meanImageBandName,
-                ProductData.TYPE_FLOAT32,
-                sourceProduct.getSceneRasterWidth(),
-                sourceProduct.getSceneRasterHeight(),
-                expression);
-        band.setUnit(unit);
-        band.setDescription("Mean image");
-        sourceProduct.addBand(band);
     }
 
     /**
@@ -339,9 +278,9 @@ public class PCAOp extends Operator {
         final Dimension tileSize = new Dimension(256, 256);
         final Rectangle[] tileRectangles = getAllTileRectangles(sourceProduct, tileSize);
 
-        processStatistics(tileRectangles);
+        final CovarianceAccumulator[] tileStatistics = processStatistics(tileRectangles);
 
-        processMin(tileRectangles);
+        processMin(tileRectangles, tileStatistics);
 
         statsCalculated = true;
     }
@@ -379,44 +318,35 @@ public class PCAOp extends Operator {
         return rectangles;
     }
 
-    private void processStatistics(final Rectangle[] tileRectangles) {
+    /**
+     * Accumulate the mean and covariance of all bands in a single pass. Every tile is reduced into its own
+     * accumulator so the workers never share state; the accumulators are merged once all workers are done.
+     * The band values are accumulated as read; subtracting the mean image is applied to the covariance.
+     *
+     * @param tileRectangles the tiles of the image
+     * @return the statistics of each tile
+     */
+    private CovarianceAccumulator[] processStatistics(final Rectangle[] tileRectangles) {
         final StatusProgressMonitor status = new StatusProgressMonitor(StatusProgressMonitor.TYPE.SUBTASK);
         status.beginTask("Computing Statistics... ", tileRectangles.length);
 
+        final CovarianceAccumulator[] tileStatistics = new CovarianceAccumulator[tileRectangles.length];
         final ThreadManager threadManager = new ThreadManager();
 
         try {
-            for (final Rectangle rectangle : tileRectangles) {
+            for (int t = 0; t < tileRectangles.length; t++) {
+                final int tileIdx = t;
 
                 Thread worker = new Thread() {
-                    final ProductData[] bandsRawSamples = new ProductData[numOfSourceBands];
-                    final double[] tileSum = new double[numOfSourceBands];
-                    final double[][] tileSumCross = new double[numOfSourceBands][numOfSourceBands];
 
                     @Override
                     public void run() {
-                        for (int i = 0; i < numOfSourceBands; i++) {
-                            bandsRawSamples[i] =
-                                    getSourceTile(sourceProduct.getBand(sourceBandNames[i]), rectangle).getRawSamples();
-                        }
+                        final Rectangle rectangle = tileRectangles[tileIdx];
+                        final double[][] tileValues = getTileValues(rectangle);
 
-                        if (subtractMeanImage) {
-
-                            final ProductData meanBandRawSamples =
-                                    getSourceTile(sourceProduct.getBand(meanImageBandName), rectangle).getRawSamples();
-
-                            computeTileStatisticsWithMeanImageSubstract(numOfSourceBands,
-                                    bandsRawSamples, meanBandRawSamples, tileSum, tileSumCross);
-
-                        } else {
-
-                            computeTileStatisticsWithoutMeanImageSubstract(numOfSourceBands,
-                                    bandsRawSamples, tileSum, tileSumCross);
-                        }
-
-                        synchronized (sum) {
-                            computeImageStatistics(tileSum, tileSumCross);
-                        }
+                        final CovarianceAccumulator accumulator = new CovarianceAccumulator(numOfSourceBands);
+                        accumulator.accumulate(tileValues, rectangle.width * rectangle.height);
+                        tileStatistics[tileIdx] = accumulator;
                     }
                 };
                 threadManager.add(worker);
@@ -425,53 +355,136 @@ public class PCAOp extends Operator {
             }
             threadManager.finish();
 
-            completeStatistics();
+            final CovarianceAccumulator imageStatistics = new CovarianceAccumulator(numOfSourceBands);
+            for (CovarianceAccumulator accumulator : tileStatistics) {
+                imageStatistics.merge(accumulator);
+            }
+            covariance = imageStatistics.getCovariance();
+            if (subtractMeanImage) {
+                covariance = subtractMeanImage(covariance);
+            }
 
         } catch (Throwable e) {
             throw new OperatorException(e);
         } finally {
             status.done();
         }
+        return tileStatistics;
     }
 
-    private void processMin(final Rectangle[] tileRectangles) {
+    /**
+     * Covariance of the band values minus the mean image. The mean image is the linear map 11'x/n of the band
+     * vector x, so the band values minus the mean image are Px with P = I - 11'/n, whose covariance is PCP'.
+     *
+     * @param covariance the covariance C of the band values
+     * @return the covariance PCP'
+     */
+    static double[][] subtractMeanImage(final double[][] covariance) {
+
+        final int n = covariance.length;
+        final double[] rowMean = new double[n];
+        double totalMean = 0.0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                rowMean[i] += covariance[i][j];
+            }
+            rowMean[i] /= n;
+            totalMean += rowMean[i];
+        }
+        totalMean /= n;
+
+        // C is symmetric, so the column means equal the row means
+        final double[][] result = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                result[i][j] = covariance[i][j] - rowMean[i] - rowMean[j] + totalMean;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute the minimum of each PCA image. The per-band extremes gathered in the statistics pass bound the
+     * minimum projection of every tile, so only tiles that may hold a value below the best known minimum are
+     * read again.
+     *
+     * @param tileRectangles the tiles of the image
+     * @param tileStatistics the statistics of each tile
+     */
+    private void processMin(final Rectangle[] tileRectangles, final CovarianceAccumulator[] tileStatistics) {
+
+        initializeMin();
+
+        final double[][] pcVectors = new double[numPCA][numOfSourceBands];
+        for (int i = 0; i < numPCA; i++) {
+            for (int j = 0; j < numOfSourceBands; j++) {
+                pcVectors[i][j] = eigenVectorMatrices[j][i];
+            }
+        }
+
+        // the projections of actual samples give an achievable minimum. The statistics are of the band values as
+        // read, which the PCA images project, also when the mean image is subtracted from the covariance
+        for (CovarianceAccumulator accumulator : tileStatistics) {
+            if (accumulator.getCount() == 0) {
+                continue;
+            }
+            for (int i = 0; i < numPCA; i++) {
+                final double ub = accumulator.getProjectionUpperBound(pcVectors[i]);
+                if (ub < minPCA[i]) {
+                    minPCA[i] = ub;
+                }
+            }
+        }
+
+        final List<Rectangle> candidateTiles = new ArrayList<>();
+        for (int t = 0; t < tileRectangles.length; t++) {
+            if (tileStatistics[t].getCount() == 0) {
+                continue;
+            }
+            for (int i = 0; i < numPCA; i++) {
+                if (tileStatistics[t].getProjectionLowerBound(pcVectors[i]) < minPCA[i]) {
+                    candidateTiles.add(tileRectangles[t]);
+                    break;
+                }
+            }
+        }
+
+        if (candidateTiles.isEmpty()) {
+            return;
+        }
+
         final StatusProgressMonitor status = new StatusProgressMonitor(StatusProgressMonitor.TYPE.SUBTASK);
-        status.beginTask("Computing Min... ", tileRectangles.length);
+        status.beginTask("Computing Min... ", candidateTiles.size());
 
+        final double[][] tileMinPCA = new double[candidateTiles.size()][];
         final ThreadManager threadManager = new ThreadManager();
 
         try {
-            initializeMin();
+            for (int t = 0; t < candidateTiles.size(); t++) {
+                final int tileIdx = t;
 
-            for (final Rectangle rectangle : tileRectangles) {
                 Thread worker = new Thread() {
-                    final double[] tileMinPCA = new double[numOfSourceBands];
-                    final ProductData[] bandsRawSamples = new ProductData[numOfSourceBands];
 
                     @Override
                     public void run() {
-                        for (int i = 0; i < numOfSourceBands; i++) {
-                            bandsRawSamples[i] =
-                                    getSourceTile(sourceProduct.getBand(sourceBandNames[i]), rectangle).getRawSamples();
-                        }
-                        final int n = bandsRawSamples[0].getNumElems();
+                        final Rectangle rectangle = candidateTiles.get(tileIdx);
+                        final double[][] tileValues = getTileValues(rectangle);
+                        final int n = rectangle.width * rectangle.height;
 
-                        Arrays.fill(tileMinPCA, Double.MAX_VALUE);
+                        final double[] tileMin = new double[numPCA];
+                        Arrays.fill(tileMin, Double.MAX_VALUE);
 
                         for (int i = 0; i < numPCA; i++) {
                             for (int k = 0; k < n; k++) {
                                 double vPCA = 0.0;
                                 for (int j = 0; j < numOfSourceBands; j++) {
-                                    vPCA += bandsRawSamples[j].getElemDoubleAt(k) * eigenVectorMatrices[j][i];
+                                    vPCA += tileValues[j][k] * eigenVectorMatrices[j][i];
                                 }
-                                if (vPCA < tileMinPCA[i])
-                                    tileMinPCA[i] = vPCA;
+                                if (vPCA < tileMin[i])
+                                    tileMin[i] = vPCA;
                             }
                         }
-
-                        synchronized (minPCA) {
-                            computePCAMin(tileMinPCA);
-                        }
+                        tileMinPCA[tileIdx] = tileMin;
                     }
                 };
                 threadManager.add(worker);
@@ -481,6 +494,10 @@ public class PCAOp extends Operator {
 
             threadManager.finish();
 
+            for (double[] tileMin : tileMinPCA) {
+                computePCAMin(tileMin);
+            }
+
         } catch (Throwable e) {
             throw new OperatorException(e);
         } finally {
@@ -489,122 +506,23 @@ public class PCAOp extends Operator {
     }
 
     /**
-     * Compute summation and cross-summation for all bands for a given tile.
+     * Get the values of all selected bands for a tile.
      *
-     * @param numOfSourceBands numnber of bands
-     * @param bandsRawSamples  The raw data for all bands for the given tile.
-     * @param tileSum          The summation for all bands for the given tile.
-     * @param tileSumCross     The cross-summation for all bands for the given tile.
+     * @param rectangle the tile rectangle
+     * @return values[band][k] in tile raster order
      */
-    private static void computeTileStatisticsWithoutMeanImageSubstract(final int numOfSourceBands,
-                                                                       final ProductData[] bandsRawSamples, final double[] tileSum, final double[][] tileSumCross) {
-
-        Arrays.fill(tileSum, 0.0);
-        final int n = bandsRawSamples[0].getNumElems();
+    private double[][] getTileValues(final Rectangle rectangle) {
 
-        double vi, vj;
+        final int n = rectangle.width * rectangle.height;
+        final double[][] values = new double[numOfSourceBands][n];
         for (int i = 0; i < numOfSourceBands; i++) {
-            Arrays.fill(tileSumCross[i], 0.0);
-
-            for (int j = 0; j <= i; j++) {
-
-                //System.out.println("i = " + i + ", j = " + j);
-                if (j < i) {
-
-                    for (int k = 0; k < n; k++) {
-                        vi = bandsRawSamples[i].getElemDoubleAt(k);
-                        vj = bandsRawSamples[j].getElemDoubleAt(k);
-                        tileSumCross[i][j] += vi * vj;
-                    }
-
-                } else { // j == i
-
-                    for (int k = 0; k < n; k++) {
-                        vi = bandsRawSamples[i].getElemDoubleAt(k);
-                        tileSum[i] += vi;
-                        tileSumCross[i][j] += vi * vi;
-                    }
-                }
-            }
-        }
-    }
-
-    /**
-     * Compute summation and cross-summation for all bands for a given tile with mean image substracted.
-     *
-     * @param numOfSourceBands   numnber of bands
-     * @param bandsRawSamples    The raw data for all bands for the given tile.
-     * @param meanBandRawSamples The raw data for the band of mean image for the given tile.
-     * @param tileSum            The summation for all bands for the given tile.
-     * @param tileSumCross       The cross-summation for all bands for the given tile.
-     */
-    private static void computeTileStatisticsWithMeanImageSubstract(
-            final int numOfSourceBands,
-            final ProductData[] bandsRawSamples, final ProductData meanBandRawSamples,
-            final double[] tileSum, final double[][] tileSumCross) {
-
-        Arrays.fill(tileSum, 0.0);
-        final int n = bandsRawSamples[0].getNumElems();
-
-        double vi, vj, vm;
-        for (int i = 0; i < numOfSourceBands; i++) {
-            Arrays.fill(tileSumCross[i], 0.0);
-
-            for (int j = 0; j <= i; j++) {
-
-                //System.out.println("i = " + i + ", j = " + j);
-                if (j < i) {
-
-                    for (int k = 0; k < n; k++) {
-                        vm = meanBandRawSamples.getElemDoubleAt(k);
-                        vi = bandsRawSamples[i].getElemDoubleAt(k) - vm;
-                        vj = bandsRawSamples[j].getElemDoubleAt(k) - vm;
-                        tileSumCross[i][j] += vi * vj;
-                    }
-
-                } else { // j == i
-
-                    for (int k = 0; k < n; k++) {
-                        vm = meanBandRawSamples.getElemDoubleAt(k);
-                        vi = bandsRawSamples[i].getElemDoubleAt(k) - vm;
-                        tileSum[i] += vi;
-                        tileSumCross[i][j] += vi * vi;
-                    }
-                }
-            }
-        }
-    }
-
-    /**
-     * Compute summation and cross-summation for the whole image.
-     *
-     * @param tileSum      The summation computed for each tile.
-     * @param tileSumCross The cross-summation computed for each tile.
-     */
-    private void computeImageStatistics(final double[] tileSum, final double[][] tileSumCross) {
-
-        for (int i = 0; i < numOfSourceBands; i++) {
-            for (int j = 0; j <= i; j++) {
-                if (j < i) {
-                    sumCross[i][j] += tileSumCross[i][j];
-                } else { // j == i
-                    sum[i] += tileSum[i];
-                    sumCross[i][j] += tileSumCross[i][j];
-                }
-            }
-        }
-    }
-
-    private void completeStatistics() {
-        for (int i = 0; i < numOfSourceBands; i++) {
-            mean[i] = sum[i] / numOfPixels;
-            for (int j = 0; j <= i; j++) {
-                meanCross[i][j] = sumCross[i][j] / numOfPixels;
-                if (j != i) {
-                    meanCross[j][i] = meanCross[i][j];
-                }
+            final ProductData rawSamples =
+                    getSourceTile(sourceProduct.getBand(sourceBandNames[i]), rectangle).getRawSamples();
+            for (int k = 0; k < n; k++) {
+                values[i][k] = rawSamples.getElemDoubleAt(k);
             }
         }
+        return values;
     }
 
     /////////////
@@ -644,14 +562,7 @@ public class PCAOp extends Operator {
         eigenVectorMatrices = new double[numOfSourceBands][numOfSourceBands];
         eigenValues = new double[numOfSourceBands];
 
-        final double[][] cov = new double[numOfSourceBands][numOfSourceBands];
-        for (int i = 0; i < numOfSourceBands; i++) {
-            for (int j = 0; j < numOfSourceBands; j++) {
-                cov[i][j] = meanCross[i][j] - mean[i] * mean[j];
-            }
-        }
-
-        final Matrix Cov = new Matrix(cov);
+        final Matrix Cov = new Matrix(covariance);
         final SingularValueDecomposition Svd = Cov.svd(); // Cov = USV'
         final Matrix S = Svd.getS();
         final Matrix U = Svd.getU();
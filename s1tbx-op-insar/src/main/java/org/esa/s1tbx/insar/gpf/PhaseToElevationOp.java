@@ -41,6 +41,7 @@ import org.esa.snap.engine_utilities.datamodel.Unit;
 import org.esa.snap.engine_utilities.eo.Constants;
 import org.esa.snap.engine_utilities.gpf.InputProductValidator;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
+import org.esa.snap.engine_utilities.gpf.ThreadManager;
 import org.esa.snap.engine_utilities.gpf.TileIndex;
 import org.esa.snap.engine_utilities.util.Maths;
 import org.jlinda.core.Baseline;
@@ -48,9 +49,11 @@ import org.jlinda.core.Orbit;
 import org.jlinda.core.SLCImage;
 
 import java.awt.*;
+import java.awt.image.RenderedImage;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -91,8 +94,8 @@ public final class PhaseToElevationOp extends Operator {
 
     private int sourceImageWidth = 0;
     private int sourceImageHeight = 0;
-    private boolean isElevationModelAvailable = false;
-    private boolean refHeightPhaseComputed = false;
+    private volatile boolean isElevationModelAvailable = false;
+    private volatile boolean refHeightPhaseComputed = false;
 
     private double waveNumber = 0.0;
     private double refHeight = 0.0;
@@ -108,6 +111,9 @@ public final class PhaseToElevationOp extends Operator {
     private Band unwrappedPhaseBand;
     private static final String PRODUCT_SUFFIX = "_Hgt";
 
+    // node spacing in pixels of the height sensitivity grid of a tile
+    private static final int ALPHA_GRID_STEP = 8;
+
     /**
      * Initializes this operator and sets the one and only target product.
      * <p>The target product can be either defined by a field of type {@link Product}
@@ -304,26 +310,38 @@ public final class PhaseToElevationOp extends Operator {
             final int y0 = targetRectangle.y;
             final int w = targetRectangle.width;
             final int h = targetRectangle.height;
-            // System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
 
-            final int xc = sourceImageWidth / 2;
-            double phase, slantRange, incidenceAngle, bn, bp, alpha, height, flatAngle;
+            // the height sensitivity varies slowly over the tile, evaluate it on a coarse grid only
+            final BilinearGrid alphaGrid = new BilinearGrid(targetRectangle, ALPHA_GRID_STEP);
+            final int[] xNodes = alphaGrid.getXNodes();
+            final int[] yNodes = alphaGrid.getYNodes();
+            final double[] nodeLines = new double[yNodes.length];
+            for (int r = 0; r < yNodes.length; r++) {
+                nodeLines[r] = yNodes[r];
+            }
+            final double[] nodePixels = new double[xNodes.length];
+            for (int c = 0; c < xNodes.length; c++) {
+                nodePixels[c] = xNodes[c];
+            }
+            final double[] bperp = new double[yNodes.length * xNodes.length];
+            final double[] bpar = new double[yNodes.length * xNodes.length];
+            baseline.getBaselineGrid(nodeLines, nodePixels, 0, bperp, bpar, null, null, null);
+
+            for (int r = 0; r < yNodes.length; r++) {
+                for (int c = 0; c < xNodes.length; c++) {
+                    final int k = r * xNodes.length + c;
+                    alphaGrid.setValue(r, c, computeAlpha(xNodes[c], yNodes[r], bperp[k], bpar[k]));
+                }
+            }
+
+            final double[] alpha = new double[w];
             for (int y = y0; y < y0 + h; y++) {
                 srcIndex.calculateStride(y);
                 trgIndex.calculateStride(y);
+                alphaGrid.interpolateRow(y, alpha);
                 for (int x = x0; x < x0 + w; x++) {
-
-                    phase = sourceData.getElemDoubleAt(srcIndex.getIndex(x));
-                    slantRange = slantRangeTimeTPG.getPixelDouble(x, y) / Constants.oneBillion * Constants.halfLightSpeed;
-                    incidenceAngle = incidenceAngleTPG.getPixelDouble(x, y) * MathUtils.DTOR;
-                    bn = baseline.getBperp(y, x);
-                    bp = baseline.getBpar(y, x);
-                    flatAngle = lookAngles[x] - lookAngles[xc];
-                    alpha = -slantRange * FastMath.sin(incidenceAngle) /
-                            (2 * waveNumber * (bp * FastMath.sin(flatAngle) + bn * FastMath.cos(flatAngle)));
-//                  alpha = -slantRange*FastMath.sin(incidenceAngle)/(2*waveNumber*bn);
-                    height = refHeight + alpha * (phase - refPhase);
-                    targetData.setElemDoubleAt(trgIndex.getIndex(x), height);
+                    final double phase = sourceData.getElemDoubleAt(srcIndex.getIndex(x));
+                    targetData.setElemDoubleAt(trgIndex.getIndex(x), refHeight + alpha[x - x0] * (phase - refPhase));
                 }
             }
 
@@ -376,20 +394,50 @@ public final class PhaseToElevationOp extends Operator {
 
         computeLookAngles();
 
-        // get initial 100x100 seeds and compute their slopes
+        // get initial 100x100 seeds and compute their slopes, the rows of seeds concurrently
         final int seedGridSize = 100;
         final int slopeCalRadius = 4;
         final int seedGridResY = (sourceImageHeight - 1 - 2 * slopeCalRadius) / (seedGridSize - 1);
         final int seedGridResX = (sourceImageWidth - 1 - 2 * slopeCalRadius) / (seedGridSize - 1);
-        List<SeedRecord> seedList = new ArrayList<>(seedGridSize * seedGridSize);
+        final SeedRecord[][] seedGrid = new SeedRecord[seedGridSize][seedGridSize];
+        final Throwable[] error = new Throwable[1];
+        final ThreadManager threadManager = new ThreadManager();
 
         for (int r = 0; r < seedGridSize; r++) {
-            final int y = r * seedGridResY + slopeCalRadius;
-            for (int c = 0; c < seedGridSize; c++) {
-                final int x = c * seedGridResX + slopeCalRadius;
-                final Double h = getElevation(x, y);
-                if (!h.equals(demNoDataValue) && h > 0.0) {
-                    SeedRecord seed = new SeedRecord(x, y, h, computeSlope(x, y, slopeCalRadius));
+            final int row = r;
+            final Thread worker = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        final int y = row * seedGridResY + slopeCalRadius;
+                        for (int c = 0; c < seedGridSize; c++) {
+                            final int x = c * seedGridResX + slopeCalRadius;
+                            final Double h = getElevation(x, y);
+                            if (!h.equals(demNoDataValue) && h > 0.0) {
+                                seedGrid[row][c] = new SeedRecord(x, y, h, computeSlope(x, y, slopeCalRadius));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (error) {
+                            error[0] = e;
+                        }
+                    }
+                }
+            };
+
+            threadManager.add(worker);
+        }
+        threadManager.finish();
+
+        if (error[0] != null) {
+            throw new OperatorException(error[0]);
+        }
+
+        final List<SeedRecord> seedList = new ArrayList<>(seedGridSize * seedGridSize);
+        for (SeedRecord[] seedRow : seedGrid) {
+            for (SeedRecord seed : seedRow) {
+                if (seed != null) {
                     seedList.add(seed);
                 }
             }
@@ -417,29 +465,14 @@ public final class PhaseToElevationOp extends Operator {
         }
 
         // get unwrapped phases for seeds in the final seed list
-        final double[] phaseList = new double[numSeeds];
-        for (int i = 0; i < numSeeds; i++) {
-            SeedRecord seed = finalSeedList[i];
-            final Rectangle srcRect = new Rectangle(seed.x, seed.y, 1, 1);
-            final Tile sourceTile = getSourceTile(unwrappedPhaseBand, srcRect);
-            phaseList[i] = sourceTile.getDataBuffer().getElemDoubleAt(sourceTile.getDataBufferIndex(seed.x, seed.y));
-        }
+        final double[] phaseList = getSeedPhases(unwrappedPhaseBand, finalSeedList, numSeeds);
 
         // Compute reference (elevation, phase) using least square method
-        final int xc = sourceImageWidth / 2;
-        double phase, slantRange, incidenceAngle, bn, bp, alpha, flatAngle;
-        double a = 0.0, b = 0.0, c = 0.0, d = 0.0, e = 0.0, f = 0.0;
+        double a = 0.0, b = 0.0, c, d, e = 0.0, f = 0.0;
         for (int i = 0; i < numSeeds; i++) {
-            SeedRecord seed = finalSeedList[i];
-            phase = phaseList[i];
-            slantRange = slantRangeTimeTPG.getPixelDouble(seed.x, seed.y) / Constants.oneBillion * Constants.halfLightSpeed;
-            incidenceAngle = incidenceAngleTPG.getPixelDouble(seed.x, seed.y) * MathUtils.DTOR;
-            bn = baseline.getBperp(seed.y, seed.x);
-            bp = baseline.getBpar(seed.y, seed.x);
-            flatAngle = lookAngles[seed.x] - lookAngles[xc];
-            alpha = -slantRange * FastMath.sin(incidenceAngle) /
-                    (2 * waveNumber * (bp * FastMath.sin(flatAngle) + bn * FastMath.cos(flatAngle)));
-//            alpha = -slantRange*Math.sin(incidenceAngle)/(2*waveNumber*bn);
+            final SeedRecord seed = finalSeedList[i];
+            final double phase = phaseList[i];
+            final double alpha = computeAlpha(seed.x, seed.y);
             a += -alpha * alpha;
             b += alpha;
             e += alpha * (seed.height - alpha * phase);
@@ -454,6 +487,64 @@ public final class PhaseToElevationOp extends Operator {
         refHeightPhaseComputed = true;
     }
 
+    /**
+     * Reads the unwrapped phases of the seeds with one source tile request per source image tile holding seeds.
+     */
+    private double[] getSeedPhases(final Band unwrappedPhaseBand, final SeedRecord[] seeds, final int numSeeds) {
+
+        final RenderedImage image = unwrappedPhaseBand.getSourceImage();
+        final int tileWidth = image.getTileWidth();
+        final int tileHeight = image.getTileHeight();
+
+        final Map<Point, List<Integer>> seedsPerTile = new LinkedHashMap<>();
+        for (int i = 0; i < numSeeds; i++) {
+            final Point tileIndex = new Point(seeds[i].x / tileWidth, seeds[i].y / tileHeight);
+            List<Integer> tileSeeds = seedsPerTile.get(tileIndex);
+            if (tileSeeds == null) {
+                tileSeeds = new ArrayList<>();
+                seedsPerTile.put(tileIndex, tileSeeds);
+            }
+            tileSeeds.add(i);
+        }
+
+        final double[] phaseList = new double[numSeeds];
+        for (List<Integer> tileSeeds : seedsPerTile.values()) {
+            final SeedRecord first = seeds[tileSeeds.get(0)];
+            final Rectangle srcRect = new Rectangle(first.x, first.y, 1, 1);
+            for (int i : tileSeeds) {
+                srcRect.add(new Rectangle(seeds[i].x, seeds[i].y, 1, 1));
+            }
+
+            final Tile sourceTile = getSourceTile(unwrappedPhaseBand, srcRect);
+            final ProductData sourceData = sourceTile.getDataBuffer();
+            for (int i : tileSeeds) {
+                phaseList[i] = sourceData.getElemDoubleAt(sourceTile.getDataBufferIndex(seeds[i].x, seeds[i].y));
+            }
+        }
+        return phaseList;
+    }
+
+    /**
+     * Computes the height change per radian of unwrapped phase at a pixel.
+     */
+    private double computeAlpha(final int x, final int y) throws Exception {
+        return computeAlpha(x, y, baseline.getBperp(y, x), baseline.getBpar(y, x));
+    }
+
+    /**
+     * Computes the height change per radian of unwrapped phase at a pixel, given the baseline there.
+     */
+    private double computeAlpha(final int x, final int y, final double bn, final double bp) {
+
+        final int xc = sourceImageWidth / 2;
+        final double slantRange = slantRangeTimeTPG.getPixelDouble(x, y) / Constants.oneBillion * Constants.halfLightSpeed;
+        final double incidenceAngle = incidenceAngleTPG.getPixelDouble(x, y) * MathUtils.DTOR;
+        final double flatAngle = lookAngles[x] - lookAngles[xc];
+        return -slantRange * FastMath.sin(incidenceAngle) /
+                (2 * waveNumber * (bp * FastMath.sin(flatAngle) + bn * FastMath.cos(flatAngle)));
+//      return -slantRange*FastMath.sin(incidenceAngle)/(2*waveNumber*bn);
+    }
+
     private synchronized void computeLookAngles() {
 
         double[] senPos = new double[3];
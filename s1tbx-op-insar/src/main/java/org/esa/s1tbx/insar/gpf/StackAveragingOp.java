@@ -15,22 +15,30 @@
  */
 package org.esa.s1tbx.insar.gpf;
 
+import com.bc.ceres.core.ProgressMonitor;
 import org.esa.snap.core.datamodel.*;
 import org.esa.snap.core.gpf.Operator;
 import org.esa.snap.core.gpf.OperatorException;
 import org.esa.snap.core.gpf.OperatorSpi;
+import org.esa.snap.core.gpf.Tile;
 import org.esa.snap.core.gpf.annotations.OperatorMetadata;
 import org.esa.snap.core.gpf.annotations.Parameter;
 import org.esa.snap.core.gpf.annotations.SourceProduct;
 import org.esa.snap.core.gpf.annotations.TargetProduct;
 import org.esa.snap.core.util.ProductUtils;
 import org.esa.snap.engine_utilities.datamodel.AbstractMetadata;
+import org.esa.snap.engine_utilities.datamodel.Unit;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.StackUtils;
+import org.esa.snap.engine_utilities.gpf.TileIndex;
 
+import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -44,16 +52,27 @@ import java.util.Set;
         description = "Averaging multi-temporal images")
 public class StackAveragingOp extends Operator {
 
+    private static final String MEAN_AVERAGE = "Mean Average";
+    private static final String MINIMUM = "Minimum";
+    private static final String MAXIMUM = "Maximum";
+    private static final String STANDARD_DEVIATION = "Standard Deviation";
+    private static final String COEFFICIENT_OF_VARIATION = "Coefficient of Variation";
+
     @SourceProduct
     private Product sourceProduct;
     @TargetProduct
     private Product targetProduct;
 
-    @Parameter(valueSet = {"Mean Average", "Minimum", "Maximum", "Standard Deviation", "Coefficient of Variation"},
-            defaultValue = "Mean Average", label = "Statistic")
-    private String statistic = "Mean Average";
+    @Parameter(valueSet = {MEAN_AVERAGE, MINIMUM, MAXIMUM, STANDARD_DEVIATION, COEFFICIENT_OF_VARIATION},
+            defaultValue = MEAN_AVERAGE, label = "Statistic")
+    private String statistic = MEAN_AVERAGE;
+
+    @Parameter(description = "For complex products average the intensity rather than i and q", defaultValue = "false",
+            label = "Output Intensity")
+    private Boolean outputIntensity = false;
 
     private BandInfo[] nameGroups;
+    private final Map<String, StackGroup> targetBandToStackGroup = new HashMap<>();
 
     /**
      * Initializes this operator and sets the one and only target product.
@@ -80,32 +99,39 @@ public class StackAveragingOp extends Operator {
 
             nameGroups = getBandGroupNames();
 
+            // with intensity averaging the i bands give the intensity, the q bands and intensity groups are dropped
+            final Set<String> skippedGroups = new HashSet<>();
+            if (outputIntensity) {
+                for (BandInfo bandInfo : nameGroups) {
+                    if (!bandInfo.isVirtual && isComplexGroup(bandInfo.name)) {
+                        skippedGroups.add(getComplexGroupName("q", bandInfo.name));
+                        skippedGroups.add(getComplexGroupName("Intensity", bandInfo.name));
+                    }
+                }
+            }
+
             for (BandInfo bandInfo : nameGroups) {
+                if (skippedGroups.contains(bandInfo.name)) {
+                    continue;
+                }
                 if (bandInfo.isVirtual) {
                     // add virtual intensity bands
                     addOriginalVirtualBands(bandInfo.name);
                 } else {
                     final String name_prefix = bandInfo.name;
                     final Band[] sourceBands = getSourceBands(name_prefix);
-                    final String unit = sourceBands[0].getUnit();
                     final double nodatavalue = sourceBands[0].getNoDataValue();
 
-                    switch (statistic) {
-                        case "Mean Average":
-                            addVirtualBand("average", name_prefix, mean(sourceBands), unit, nodatavalue);
-                            break;
-                        case "Minimum":
-                            addVirtualBand("min", name_prefix, min(sourceBands), unit, nodatavalue);
-                            break;
-                        case "Maximum":
-                            addVirtualBand("max", name_prefix, max(sourceBands), unit, nodatavalue);
-                            break;
-                        case "Standard Deviation":
-                            addVirtualBand("stddev", name_prefix, stddev(sourceBands), unit, nodatavalue);
-                            break;
-                        case "Coefficient of Variation":
-                            addVirtualBand("coefVar", name_prefix, coefVar(sourceBands), unit, nodatavalue);
-                            break;
+                    if (outputIntensity && isComplexGroup(name_prefix)) {
+                        final Band[] sourceBandsQ = getSourceBands(getComplexGroupName("q", name_prefix));
+                        if (sourceBandsQ.length != sourceBands.length) {
+                            throw new OperatorException("I and Q bands should be in pairs");
+                        }
+                        addTargetBand(getComplexGroupName("Intensity", name_prefix),
+                                new StackGroup(sourceBands, sourceBandsQ), Unit.INTENSITY, nodatavalue);
+                    } else {
+                        addTargetBand(name_prefix, new StackGroup(sourceBands, null),
+                                sourceBands[0].getUnit(), nodatavalue);
                     }
                 }
             }
@@ -116,15 +142,99 @@ public class StackAveragingOp extends Operator {
         }
     }
 
+    /**
+     * Called by the framework in order to compute a tile for the given target band.
+     * <p>The default implementation throws a runtime exception with the message "not implemented".</p>
+     *
+     * @param targetBand The target band.
+     * @param targetTile The current tile associated with the target band to be computed.
+     * @param pm         A progress monitor which should be used to determine computation cancelation requests.
+     * @throws OperatorException If an error occurs during computation of the target raster.
+     */
     @Override
-    public void dispose() {
-        for (BandInfo bandInfo : nameGroups) {
-            final Band srcBand = sourceProduct.getBand(bandInfo.name);
-            if (srcBand != null) {
-                sourceProduct.removeBand(srcBand);
+    public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+
+        try {
+            final Rectangle targetRectangle = targetTile.getRectangle();
+            final int x0 = targetRectangle.x;
+            final int y0 = targetRectangle.y;
+            final int w = targetRectangle.width;
+            final int h = targetRectangle.height;
+
+            final StackGroup group = targetBandToStackGroup.get(targetBand.getName());
+            final StackStatistics statistics = new StackStatistics(w * h, statistic.equals(COEFFICIENT_OF_VARIATION));
+            final double[] samples = new double[w * h];
+            final double[] samplesQ = group.sourceBandsQ != null ? new double[w * h] : null;
+
+            // each source band is read once and reduced into the statistics of all its pixels
+            for (int b = 0; b < group.sourceBands.length; b++) {
+                checkForCancellation();
+
+                getSamples(group.sourceBands[b], targetRectangle, samples);
+                if (samplesQ != null) {
+                    getSamples(group.sourceBandsQ[b], targetRectangle, samplesQ);
+                    for (int i = 0; i < samples.length; i++) {
+                        samples[i] = samples[i] * samples[i] + samplesQ[i] * samplesQ[i];
+                    }
+                }
+                statistics.accumulate(samples);
+            }
+
+            final ProductData trgData = targetTile.getDataBuffer();
+            final TileIndex trgIndex = new TileIndex(targetTile);
+            final double noDataValue = targetBand.getNoDataValue();
+            int i = 0;
+            for (int y = y0; y < y0 + h; y++) {
+                trgIndex.calculateStride(y);
+                for (int x = x0; x < x0 + w; x++) {
+                    trgData.setElemDoubleAt(trgIndex.getIndex(x), getStatistic(statistics, i, noDataValue));
+                    i++;
+                }
             }
+
+        } catch (Throwable e) {
+            OperatorUtils.catchOperatorException(getId(), e);
+        }
+    }
+
+    /**
+     * Reads the samples of a source band, with NaN for no-data samples.
+     */
+    private void getSamples(final Band sourceBand, final Rectangle rectangle, final double[] samples) {
+
+        final Tile sourceTile = getSourceTile(sourceBand, rectangle);
+        final ProductData srcData = sourceTile.getDataBuffer();
+        final TileIndex srcIndex = new TileIndex(sourceTile);
+        final boolean noDataValueUsed = sourceBand.isNoDataValueUsed();
+        final double noDataValue = sourceBand.getNoDataValue();
+
+        int i = 0;
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            srcIndex.calculateStride(y);
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                final double v = srcData.getElemDoubleAt(srcIndex.getIndex(x));
+                samples[i++] = noDataValueUsed && v == noDataValue ? Double.NaN : v;
+            }
+        }
+    }
+
+    private double getStatistic(final StackStatistics statistics, final int i, final double noDataValue) {
+
+        if (statistics.getCount(i) == 0) {
+            return noDataValue;
+        }
+        switch (statistic) {
+            case MINIMUM:
+                return statistics.getMin(i);
+            case MAXIMUM:
+                return statistics.getMax(i);
+            case STANDARD_DEVIATION:
+                return statistics.getStdDev(i);
+            case COEFFICIENT_OF_VARIATION:
+                return statistics.getCoefVar(i);
+            default:
+                return statistics.getMean(i);
         }
-        sourceProduct.setModified(false);
     }
 
     private static void updateMetadata(final Product targetProduct) {
@@ -159,25 +269,42 @@ public class StackAveragingOp extends Operator {
         return bandList.toArray(new Band[bandList.size()]);
     }
 
-    private void addVirtualBand(final String operation, final String name_prefix, final String expression,
-                                final String unit, final double nodatavalue) {
-        final VirtualBand virtBand = new VirtualBand(name_prefix,
+    private static boolean isComplexGroup(final String name) {
+        return name.startsWith("i_");
+    }
+
+    private static String getComplexGroupName(final String prefix, final String iGroupName) {
+        return prefix + iGroupName.substring(1);
+    }
+
+    private void addTargetBand(final String name, final StackGroup group, final String unit,
+                               final double nodatavalue) {
+        final Band targetBand = new Band(name,
                 ProductData.TYPE_FLOAT32,
                 sourceProduct.getSceneRasterWidth(),
-                sourceProduct.getSceneRasterHeight(),
-                expression);
-        virtBand.setUnit(unit);
-        virtBand.setDescription(name_prefix + ' ' + operation + ' ' + unit);
-        virtBand.setNoDataValueUsed(true);
-        virtBand.setNoDataValue(nodatavalue);
-
-        final Band srcBand = sourceProduct.getBand(virtBand.getName());
-        if (srcBand != null) {
-            sourceProduct.removeBand(srcBand);
-        }
-        sourceProduct.addBand(virtBand);
+                sourceProduct.getSceneRasterHeight());
+        targetBand.setUnit(unit);
+        targetBand.setDescription(name + ' ' + getOperationName() + ' ' + unit);
+        targetBand.setNoDataValueUsed(true);
+        targetBand.setNoDataValue(nodatavalue);
+        targetProduct.addBand(targetBand);
+
+        targetBandToStackGroup.put(name, group);
+    }
 
-        ProductUtils.copyBand(name_prefix, sourceProduct, targetProduct, true);
+    private String getOperationName() {
+        switch (statistic) {
+            case MINIMUM:
+                return "min";
+            case MAXIMUM:
+                return "max";
+            case STANDARD_DEVIATION:
+                return "stddev";
+            case COEFFICIENT_OF_VARIATION:
+                return "coefVar";
+            default:
+                return "average";
+        }
     }
 
     private void addOriginalVirtualBands(final String trgBandName) {
@@ -223,100 +350,28 @@ public class StackAveragingOp extends Operator {
         return false;
     }
 
-    private static String mean(final Band[] sourceBands) {
-        final StringBuilder expression = new StringBuilder("( ");
-        int cnt = 0;
-        for (Band band : sourceBands) {
-            if (cnt > 0)
-                expression.append(" + ");
-            expression.append(band.getName());
-            ++cnt;
-        }
-        expression.append(") / ");
-        expression.append(sourceBands.length);
-
-        return expression.toString();
-    }
-
-    private static String min(final Band[] sourceBands) {
-        final StringBuilder expression = new StringBuilder("min( ");
-        int cnt = 0;
-        for (Band band : sourceBands) {
-            if (cnt > 0) {
-                expression.append(", ");
-                if (cnt < sourceBands.length - 1)
-                    expression.append("min( ");
-            }
-            expression.append(band.getName());
-            ++cnt;
-        }
-        for (int i = 0; i < sourceBands.length - 1; ++i) {
-            expression.append(')');
-        }
-
-        return expression.toString();
-    }
-
-    private static String max(final Band[] sourceBands) {
-        final StringBuilder expression = new StringBuilder("max( ");
-        int cnt = 0;
-        for (Band band : sourceBands) {
-            if (cnt > 0) {
-                expression.append(", ");
-                if (cnt < sourceBands.length - 1)
-                    expression.append("max( ");
-            }
-            expression.append(band.getName());
-            ++cnt;
-        }
-        for (int i = 0; i < sourceBands.length - 1; ++i) {
-            expression.append(')');
-        }
-
-        return expression.toString();
+    /**
+     * The function is for unit test only.
+     *
+     * @param statistic       The statistic computed over the stack
+     * @param outputIntensity True to average the intensity of complex stacks rather than i and q
+     */
+    public void setTestParameters(final String statistic, final boolean outputIntensity) {
+        this.statistic = statistic;
+        this.outputIntensity = outputIntensity;
     }
 
-    private static String mean2(final Band[] sourceBands) {
-        final StringBuilder expression = new StringBuilder("( ");
-        int cnt = 0;
-        for (Band band : sourceBands) {
-            if (cnt > 0)
-                expression.append(" + ");
-            expression.append("sq(");
-            expression.append(band.getName());
-            expression.append(')');
-            ++cnt;
-        }
-        expression.append(") / ");
-        expression.append(sourceBands.length);
-
-        return expression.toString();
-    }
+    /**
+     * The source bands of a target band, and for intensity averaging the matching q bands.
+     */
+    private static class StackGroup {
+        final Band[] sourceBands;
+        final Band[] sourceBandsQ;
 
-    private static String mean4(final Band[] sourceBands) {
-        final StringBuilder expression = new StringBuilder("( ");
-        int cnt = 0;
-        for (Band band : sourceBands) {
-            if (cnt > 0)
-                expression.append(" + ");
-            expression.append("pow(");
-            expression.append(band.getName());
-            expression.append(", 4)");
-            ++cnt;
+        StackGroup(final Band[] sourceBands, final Band[] sourceBandsQ) {
+            this.sourceBands = sourceBands;
+            this.sourceBandsQ = sourceBandsQ;
         }
-        expression.append(") / ");
-        expression.append(sourceBands.length);
-
-        return expression.toString();
-    }
-
-    private static String stddev(final Band[] sourceBands) {
-        return "sqrt( " + mean2(sourceBands) + " - " + "sq(" + mean(sourceBands) + "))";
-    }
-
-    private static String coefVar(final Band[] sourceBands) {
-        final String m2 = mean2(sourceBands);
-        return "sqrt( " + mean4(sourceBands) + " - " + "sq(" + m2 + ")) / " + m2;
     }
 
     private static class BandInfo {
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf;
+
+import java.util.Arrays;
+
+/**
+ * Per pixel statistics over the images of a stack, accumulated one image at a time with Welford's algorithm.
+ * <p>
+ * For every pixel the accumulator keeps the number of valid samples, their minimum and maximum, and the running mean
+ * and sum of squared deviations of the samples and of the squared samples. The standard deviation is that of the
+ * samples and the coefficient of variation is that of the squared samples, both as population statistics.
+ * <p>
+ * An accumulator is not thread safe.
+ */
+final class StackStatistics {
+
+    private final int size;
+    private final boolean squares;
+    private final int[] count;
+    private final double[] mean;
+    private final double[] m2;
+    private final double[] min;
+    private final double[] max;
+    private final double[] meanSq;
+    private final double[] m2Sq;
+
+    /**
+     * @param size    the number of pixels
+     * @param squares true to also accumulate the statistics of the squared samples, for the coefficient of variation
+     */
+    StackStatistics(final int size, final boolean squares) {
+        this.size = size;
+        this.squares = squares;
+        this.count = new int[size];
+        this.mean = new double[size];
+        this.m2 = new double[size];
+        this.min = new double[size];
+        this.max = new double[size];
+        this.meanSq = squares ? new double[size] : null;
+        this.m2Sq = squares ? new double[size] : null;
+        Arrays.fill(min, Double.MAX_VALUE);
+        Arrays.fill(max, -Double.MAX_VALUE);
+    }
+
+    /**
+     * Adds the samples of one image.
+     *
+     * @param samples the samples of the pixels, NaN for no-data samples
+     */
+    void accumulate(final double[] samples) {
+
+        for (int i = 0; i < size; i++) {
+            final double v = samples[i];
+            if (Double.isNaN(v)) {
+                continue;
+            }
+
+            final int n = ++count[i];
+            final double delta = v - mean[i];
+            mean[i] += delta / n;
+            m2[i] += delta * (v - mean[i]);
+
+            if (v < min[i]) {
+                min[i] = v;
+            }
+            if (v > max[i]) {
+                max[i] = v;
+            }
+
+            if (squares) {
+                final double sq = v * v;
+                final double deltaSq = sq - meanSq[i];
+                meanSq[i] += deltaSq / n;
+                m2Sq[i] += deltaSq * (sq - meanSq[i]);
+            }
+        }
+    }
+
+    /**
+     * @param i the pixel
+     * @return the number of valid samples of the pixel
+     */
+    int getCount(final int i) {
+        return count[i];
+    }
+
+    double getMean(final int i) {
+        return mean[i];
+    }
+
+    double getMin(final int i) {
+        return min[i];
+    }
+
+    double getMax(final int i) {
+        return max[i];
+    }
+
+    double getStdDev(final int i) {
+        return Math.sqrt(m2[i] / count[i]);
+    }
+
+    double getCoefVar(final int i) {
+        return Math.sqrt(m2Sq[i] / count[i]) / meanSq[i];
+    }
+}
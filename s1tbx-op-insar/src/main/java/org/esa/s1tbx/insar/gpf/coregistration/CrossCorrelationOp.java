@@ -17,7 +17,6 @@ package org.esa.s1tbx.insar.gpf.coregistration;
 
 import com.bc.ceres.core.ProgressMonitor;
 import org.apache.commons.math3.util.FastMath;
-import org.esa.s1tbx.insar.gpf.support.JAIFunctions;
 import org.esa.snap.core.datamodel.*;
 import org.esa.snap.core.dataop.dem.ElevationModel;
 import org.esa.snap.core.dataop.dem.ElevationModelDescriptor;
@@ -47,11 +46,10 @@ import org.jblas.ComplexDoubleMatrix;
 import org.jlinda.core.coregistration.utils.CoregistrationUtils;
 import org.jlinda.core.utils.TileUtilsDoris;
 
-import javax.media.jai.PlanarImage;
-import javax.media.jai.RasterFactory;
 import java.awt.*;
-import java.awt.image.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -526,8 +524,6 @@ public class CrossCorrelationOp extends Operator {
                 determiningImageOffset(slaveBand1, slaveBand2, offset);
             }
 
-            final ThreadManager threadManager = new ThreadManager();
-
             //final ProcessTimeMonitor timeMonitor = new ProcessTimeMonitor();
             //timeMonitor.start();
 
@@ -535,28 +531,42 @@ public class CrossCorrelationOp extends Operator {
             final StatusProgressMonitor status = new StatusProgressMonitor(StatusProgressMonitor.TYPE.SUBTASK);
             status.beginTask("Cross Correlating " + bandCountStr + ' ' + slaveBand1.getName() + "... ", numberOfMasterGCPs);
 
+            final List<Placemark> validMasterGCPs = new ArrayList<>(numberOfMasterGCPs);
             for (int i = 0; i < numberOfMasterGCPs; ++i) {
-                checkForCancellation();
-
                 final Placemark mPin = masterGcpGroup.get(i);
+                if (checkMasterGCPValidity(mPin) && checkSlaveGCPValidity(new PixelPos(
+                        mPin.getPixelPos().x + offset[0], mPin.getPixelPos().y + offset[1]))) {
+                    validMasterGCPs.add(mPin);
+                } else {
+                    status.worked(1);
+                }
+            }
 
-                if (checkMasterGCPValidity(mPin)) {
+            // process the GCPs in one batch per worker so that FFT plans and buffers are reused
+            final int numBatches = Math.max(1, Math.min(validMasterGCPs.size(),
+                                                        Runtime.getRuntime().availableProcessors()));
+            final ThreadManager threadManager = new ThreadManager();
 
-                    final GeoPos mGCPGeoPos = mPin.getGeoPos();
-                    final PixelPos mGCPPixelPos = mPin.getPixelPos();
-                    final PixelPos sGCPPixelPos = new PixelPos(mPin.getPixelPos().x + offset[0],
-                                                               mPin.getPixelPos().y + offset[1]);
-                    if (!checkSlaveGCPValidity(sGCPPixelPos)) {
-                        //System.out.println("GCP(" + i + ") is outside slave image.");
-                        continue;
-                    }
+            for (int b = 0; b < numBatches; ++b) {
+                checkForCancellation();
 
-                    final Thread worker = new Thread() {
+                final int batch = b;
+                final Thread worker = new Thread() {
 
-                        @Override
-                        public void run() {
-                            //System.out.println("Running "+mPin.getName());
-                            boolean getSlaveGCP = getCoarseSlaveGCPPosition(slaveBand1, slaveBand2, mGCPPixelPos, sGCPPixelPos);
+                    @Override
+                    public void run() {
+                        final CrossCorrelator correlator = new CrossCorrelator(
+                                cWindowWidth, cWindowHeight, rowUpSamplingFactor, colUpSamplingFactor);
+
+                        for (int i = batch; i < validMasterGCPs.size(); i += numBatches) {
+                            final Placemark mPin = validMasterGCPs.get(i);
+                            final GeoPos mGCPGeoPos = mPin.getGeoPos();
+                            final PixelPos mGCPPixelPos = mPin.getPixelPos();
+                            final PixelPos sGCPPixelPos = new PixelPos(mPin.getPixelPos().x + offset[0],
+                                                                       mPin.getPixelPos().y + offset[1]);
+
+                            boolean getSlaveGCP = getCoarseSlaveGCPPosition(
+                                    slaveBand1, slaveBand2, mGCPPixelPos, sGCPPixelPos, correlator);
 
                             if (getSlaveGCP && complexCoregistration && applyFineRegistration) {
                                 if (inSAROptimized) {
@@ -578,23 +588,20 @@ public class CrossCorrelationOp extends Operator {
                                         tgtGeoCoding);
 
                                 addPlacemark(sPin);
-                                //System.out.println("final "+mPin.getName()+" = " + "(" + sGCPPixelPos.x + "," + sGCPPixelPos.y + ")");
-                                //System.out.println();
-
-                            } //else {
-                            //System.out.println("GCP(" + mPin.getName() + ") is invalid.");
-                            //}
+                            }
+                            status.worked(1);
                         }
+                    }
 
-                        private synchronized void addPlacemark(final Placemark pin) {
+                    private void addPlacemark(final Placemark pin) {
+                        synchronized (targetGCPGroup) {
                             targetGCPGroup.add(pin);
                         }
+                    }
 
-                    };
+                };
 
-                    threadManager.add(worker);
-                }
-                status.worked(1);
+                threadManager.add(worker);
             }
 
             threadManager.finish();
@@ -717,22 +724,12 @@ public class CrossCorrelationOp extends Operator {
             }
 
             // correlate master and slave imagettes
-            final RenderedImage masterImage = createRenderedImage(mI, windowWidth, windowHeight);
-            final PlanarImage masterSpectrum = JAIFunctions.dft(masterImage);
-
-            final RenderedImage slaveImage = createRenderedImage(sI, windowWidth, windowHeight);
-            final PlanarImage slaveSpectrum = JAIFunctions.dft(slaveImage);
-            final PlanarImage conjugateSlaveSpectrum = JAIFunctions.conjugate(slaveSpectrum);
-
-            final PlanarImage crossSpectrum = JAIFunctions.multiplyComplex(masterSpectrum, conjugateSlaveSpectrum);
-            final PlanarImage correlatedImage = JAIFunctions.idft(crossSpectrum);
-            final PlanarImage crossCorrelatedImage = JAIFunctions.magnitude(correlatedImage);
+            final CrossCorrelator correlator = new CrossCorrelator(windowWidth, windowHeight, 1, 1);
+            final double[] real = correlator.correlate(mI, sI);
 
             // compute offset
-            final int w = crossCorrelatedImage.getWidth();
-            final int h = crossCorrelatedImage.getHeight();
-            final Raster idftData = crossCorrelatedImage.getData();
-            final double[] real = idftData.getSamples(0, 0, w, h, 0, (double[]) null);
+            final int w = correlator.getSurfaceWidth();
+            final int h = correlator.getSurfaceHeight();
 
             int peakRow = 0;
             int peakCol = 0;
@@ -921,7 +918,8 @@ public class CrossCorrelationOp extends Operator {
     }
 
     private boolean getCoarseSlaveGCPPosition(final Band slaveBand, final Band slaveBand2,
-                                              final PixelPos mGCPPixelPos, final PixelPos sGCPPixelPos) {
+                                              final PixelPos mGCPPixelPos, final PixelPos sGCPPixelPos,
+                                              final CrossCorrelator correlator) {
 
         try {
             final double[] mI = new double[cWindowWidth * cWindowHeight];
@@ -933,6 +931,7 @@ public class CrossCorrelationOp extends Operator {
             }
             //System.out.println("Master imagette:");
             //outputRealImage(mI);
+            correlator.setMasterImagette(mI);
 
             double rowShift = gcpTolerance + 1;
             double colShift = gcpTolerance + 1;
@@ -956,7 +955,7 @@ public class CrossCorrelationOp extends Operator {
                 //outputRealImage(sI);
 
                 final double[] shift = {0, 0};
-                if (!getSlaveGCPShift(shift, mI, sI)) {
+                if (!getSlaveGCPShift(shift, correlator, sI)) {
                     return false;
                 }
 
@@ -1122,60 +1121,13 @@ public class CrossCorrelationOp extends Operator {
         return false;
     }
 
-    private boolean getSlaveGCPShift(final double[] shift, final double[] mI, final double[] sI) {
+    private boolean getSlaveGCPShift(final double[] shift, final CrossCorrelator correlator, final double[] sI) {
         try {
-            // perform cross correlation
-            final PlanarImage crossCorrelatedImage = computeCrossCorrelatedImage(mI, sI);
-
-            // check peak validity
-            /*
-            final double mean = getMean(crossCorrelatedImage);
-            if (Double.compare(mean, 0.0) == 0) {
-                return false;
-            }
-
-            double max = getMax(crossCorrelatedImage);
-            double qualityParam = max / mean;
-            if (qualityParam <= qualityThreshold) {
-                return false;
-            }
-            */
+            // perform cross correlation against the cached master spectrum
+            correlator.correlate(sI);
 
             // get peak shift: row and col
-            final int w = crossCorrelatedImage.getWidth();
-            final int h = crossCorrelatedImage.getHeight();
-
-            final Raster idftData = crossCorrelatedImage.getData();
-            final double[] real = idftData.getSamples(0, 0, w, h, 0, (double[]) null);
-            //System.out.println("Cross correlated imagette:");
-            //outputRealImage(real);
-
-            int peakRow = 0;
-            int peakCol = 0;
-            double peak = real[0];
-            for (int r = 0; r < h; r++) {
-                for (int c = 0; c < w; c++) {
-                    final int k = r * w + c;
-                    if (real[k] > peak) {
-                        peak = real[k];
-                        peakRow = r;
-                        peakCol = c;
-                    }
-                }
-            }
-            //System.out.println("peak = " + peak + " at (" + peakRow + ", " + peakCol + ")");
-
-            if (peakRow <= h / 2) {
-                shift[0] = (double) (-peakRow) / (double) rowUpSamplingFactor;
-            } else {
-                shift[0] = (double) (h - peakRow) / (double) rowUpSamplingFactor;
-            }
-
-            if (peakCol <= w / 2) {
-                shift[1] = (double) (-peakCol) / (double) colUpSamplingFactor;
-            } else {
-                shift[1] = (double) (w - peakCol) / (double) colUpSamplingFactor;
-            }
+            correlator.getPeakShift(shift);
 
             return true;
         } catch (Throwable t) {
@@ -1184,54 +1136,6 @@ public class CrossCorrelationOp extends Operator {
         }
     }
 
-    private PlanarImage computeCrossCorrelatedImage(final double[] mI, final double[] sI) {
-
-        // get master imagette spectrum
-        final RenderedImage masterImage = createRenderedImage(mI, cWindowWidth, cWindowHeight);
-        final PlanarImage masterSpectrum = JAIFunctions.dft(masterImage);
-        //System.out.println("Master spectrum:");
-        //outputComplexImage(masterSpectrum);
-
-        // get slave imagette spectrum
-        final RenderedImage slaveImage = createRenderedImage(sI, cWindowWidth, cWindowHeight);
-        final PlanarImage slaveSpectrum = JAIFunctions.dft(slaveImage);
-        //System.out.println("Slave spectrum:");
-        //outputComplexImage(slaveSpectrum);
-
-        // get conjugate slave spectrum
-        final PlanarImage conjugateSlaveSpectrum = JAIFunctions.conjugate(slaveSpectrum);
-        //System.out.println("Conjugate slave spectrum:");
-        //outputComplexImage(conjugateSlaveSpectrum);
-
-        // multiply master spectrum and conjugate slave spectrum
-        final PlanarImage crossSpectrum = JAIFunctions.multiplyComplex(masterSpectrum, conjugateSlaveSpectrum);
-        //System.out.println("Cross spectrum:");
-        //outputComplexImage(crossSpectrum);
-
-        // upsampling cross spectrum
-        final RenderedImage upsampledCrossSpectrum = JAIFunctions.upsampling(crossSpectrum,
-                                                                             rowUpSamplingFactor, colUpSamplingFactor);
-
-        // perform IDF on the cross spectrum
-        final PlanarImage correlatedImage = JAIFunctions.idft(upsampledCrossSpectrum);
-        //System.out.println("Correlated image:");
-        //outputComplexImage(correlatedImage);
-
-        // compute the magnitude of the cross correlated image
-        return JAIFunctions.magnitude(correlatedImage);
-    }
-
-    private static RenderedImage createRenderedImage(final double[] array, final int w, final int h) {
-
-        // create rendered image with dimension being width by height
-        final SampleModel sampleModel = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_DOUBLE, w, h, 1);
-        final ColorModel colourModel = PlanarImage.createColorModel(sampleModel);
-        final DataBufferDouble dataBuffer = new DataBufferDouble(array, array.length);
-        final WritableRaster raster = RasterFactory.createWritableRaster(sampleModel, dataBuffer, new Point(0, 0));
-
-        return new BufferedImage(colourModel, raster, false, null);
-    }
-
     // This function is for debugging only.
     private static void outputRealImage(final double[] I) {
 
@@ -1241,26 +1145,6 @@ public class CrossCorrelationOp extends Operator {
         System.out.println();
     }
 
-    // This function is for debugging only.
-    private static void outputComplexImage(final PlanarImage image) {
-
-        final int w = image.getWidth();
-        final int h = image.getHeight();
-        final Raster dftData = image.getData();
-        final double[] real = dftData.getSamples(0, 0, w, h, 0, (double[]) null);
-        final double[] imag = dftData.getSamples(0, 0, w, h, 1, (double[]) null);
-        System.out.println("Real part:");
-        for (double v : real) {
-            System.out.print(v + ", ");
-        }
-        System.out.println();
-        System.out.println("Imaginary part:");
-        for (double v : imag) {
-            System.out.print(v + ", ");
-        }
-        System.out.println();
-    }
-
     /**
      * The function is for unit test only.
      *
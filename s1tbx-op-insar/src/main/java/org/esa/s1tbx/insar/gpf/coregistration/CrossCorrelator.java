@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf.coregistration;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_2D;
+
+import java.util.Arrays;
+
+/**
+ * FFT based cross-correlation of real imagettes on primitive arrays.
+ * <p>
+ * The master and slave spectra are computed with a cached 2-D FFT plan, the cross spectrum is formed in place
+ * directly inside the zero padded up-sampling buffer and transformed back with a second cached plan. The peak
+ * of the correlation magnitude is refined to sub-pixel accuracy with a parabolic fit.
+ * <p>
+ * An instance owns its plans and work buffers and is therefore not thread safe. Use one instance per worker
+ * and reuse it for all GCPs processed by that worker.
+ */
+public final class CrossCorrelator {
+
+    private final int width;
+    private final int height;
+    private final int rowUpSamplingFactor;
+    private final int colUpSamplingFactor;
+    private final int upWidth;
+    private final int upHeight;
+
+    private final DoubleFFT_2D fft;
+    private final DoubleFFT_2D upFft;
+
+    private final double[] masterSpectrum;
+    private final double[] slaveSpectrum;
+    private final double[] upSpectrum;
+    private final double[] surface;
+
+    /**
+     * @param width               imagette width, must be power of 2
+     * @param height              imagette height, must be power of 2
+     * @param rowUpSamplingFactor up-sampling factor of the correlation surface in row direction
+     * @param colUpSamplingFactor up-sampling factor of the correlation surface in column direction
+     */
+    public CrossCorrelator(final int width, final int height,
+                           final int rowUpSamplingFactor, final int colUpSamplingFactor) {
+        this.width = width;
+        this.height = height;
+        this.rowUpSamplingFactor = rowUpSamplingFactor;
+        this.colUpSamplingFactor = colUpSamplingFactor;
+        this.upWidth = width * colUpSamplingFactor;
+        this.upHeight = height * rowUpSamplingFactor;
+
+        fft = new DoubleFFT_2D(height, width);
+        upFft = (upWidth == width && upHeight == height) ? fft : new DoubleFFT_2D(upHeight, upWidth);
+
+        masterSpectrum = new double[2 * width * height];
+        slaveSpectrum = new double[2 * width * height];
+        upSpectrum = new double[2 * upWidth * upHeight];
+        surface = new double[upWidth * upHeight];
+    }
+
+    public int getSurfaceWidth() {
+        return upWidth;
+    }
+
+    public int getSurfaceHeight() {
+        return upHeight;
+    }
+
+    /**
+     * Computes and keeps the spectrum of the master imagette so that it can be correlated with several slave
+     * imagettes without being transformed again.
+     *
+     * @param mI master imagette, row major, width * height samples
+     */
+    public void setMasterImagette(final double[] mI) {
+        System.arraycopy(mI, 0, masterSpectrum, 0, width * height);
+        fft.realForwardFull(masterSpectrum);
+    }
+
+    /**
+     * Cross-correlates the given master and slave imagettes.
+     *
+     * @param mI master imagette
+     * @param sI slave imagette
+     * @return the correlation magnitude surface, valid until the next call
+     */
+    public double[] correlate(final double[] mI, final double[] sI) {
+        setMasterImagette(mI);
+        return correlate(sI);
+    }
+
+    /**
+     * Cross-correlates the slave imagette with the current master imagette.
+     *
+     * @param sI slave imagette, row major, width * height samples
+     * @return the correlation magnitude surface of size getSurfaceWidth() * getSurfaceHeight(),
+     * valid until the next call
+     */
+    public double[] correlate(final double[] sI) {
+
+        System.arraycopy(sI, 0, slaveSpectrum, 0, width * height);
+        fft.realForwardFull(slaveSpectrum);
+
+        // multiply master spectrum with the conjugate slave spectrum and place the product directly into the
+        // zero padded up-sampling buffer: positive frequencies stay at the start, negative ones move to the end
+        Arrays.fill(upSpectrum, 0.0);
+        final int halfW = width / 2;
+        final int halfH = height / 2;
+        for (int r = 0; r < height; r++) {
+            final int ur = r < halfH ? r : r - height + upHeight;
+            final int srcRow = 2 * r * width;
+            final int dstRow = 2 * ur * upWidth;
+            for (int c = 0; c < width; c++) {
+                final int uc = c < halfW ? c : c - width + upWidth;
+                final int s = srcRow + 2 * c;
+                final int d = dstRow + 2 * uc;
+                final double mRe = masterSpectrum[s];
+                final double mIm = masterSpectrum[s + 1];
+                final double sRe = slaveSpectrum[s];
+                final double sIm = slaveSpectrum[s + 1];
+                upSpectrum[d] = mRe * sRe + mIm * sIm;
+                upSpectrum[d + 1] = mIm * sRe - mRe * sIm;
+            }
+        }
+
+        upFft.complexInverse(upSpectrum, true);
+
+        for (int i = 0, k = 0; i < surface.length; i++, k += 2) {
+            final double re = upSpectrum[k];
+            final double im = upSpectrum[k + 1];
+            surface[i] = Math.sqrt(re * re + im * im);
+        }
+        return surface;
+    }
+
+    /**
+     * Locates the peak of the last correlation surface and converts it to the shift of the slave imagette
+     * in original pixels.
+     *
+     * @param shift output: shift[0] row shift, shift[1] column shift
+     */
+    public void getPeakShift(final double[] shift) {
+
+        int peakRow = 0;
+        int peakCol = 0;
+        double peak = surface[0];
+        for (int r = 0; r < upHeight; r++) {
+            final int rowOffset = r * upWidth;
+            for (int c = 0; c < upWidth; c++) {
+                final double v = surface[rowOffset + c];
+                if (v > peak) {
+                    peak = v;
+                    peakRow = r;
+                    peakCol = c;
+                }
+            }
+        }
+
+        // the surface is periodic so the neighbours of a border peak wrap around
+        final int rowAbove = (peakRow + upHeight - 1) % upHeight;
+        final int rowBelow = (peakRow + 1) % upHeight;
+        final int colLeft = (peakCol + upWidth - 1) % upWidth;
+        final int colRight = (peakCol + 1) % upWidth;
+
+        final double dRow = parabolicOffset(surface[rowAbove * upWidth + peakCol], peak,
+                                            surface[rowBelow * upWidth + peakCol]);
+        final double dCol = parabolicOffset(surface[peakRow * upWidth + colLeft], peak,
+                                            surface[peakRow * upWidth + colRight]);
+
+        shift[0] = toShift(peakRow, dRow, upHeight) / rowUpSamplingFactor;
+        shift[1] = toShift(peakCol, dCol, upWidth) / colUpSamplingFactor;
+    }
+
+    private static double toShift(final int peakIndex, final double subPixelOffset, final int size) {
+        if (peakIndex <= size / 2) {
+            return -(peakIndex + subPixelOffset);
+        }
+        return size - (peakIndex + subPixelOffset);
+    }
+
+    /**
+     * Vertex of the parabola through three equally spaced samples, relative to the centre sample.
+     */
+    static double parabolicOffset(final double prev, final double centre, final double next) {
+        final double denom = prev - 2.0 * centre + next;
+        if (denom >= 0.0) {
+            return 0.0;
+        }
+        final double offset = 0.5 * (prev - next) / denom;
+        return Math.max(-0.5, Math.min(0.5, offset));
+    }
+}
@@ -52,6 +52,8 @@ public class WarpData implements PolynomialModel {
     private double colResidualStd = 0;
     private double colResidualMean = 0;
 
+    private final List<Iteration> iterations = new ArrayList<>();
+
     public WarpData(ProductNodeGroup<Placemark> slaveGCPGroup) {
         for (int i = 0; i < slaveGCPGroup.getNodeCount(); ++i) {
             slaveGCPList.add(slaveGCPGroup.get(i));
@@ -188,15 +190,30 @@ public class WarpData implements PolynomialModel {
             final ProductNodeGroup<Placemark> masterGCPGroup, final int maxIterations, final float rmsThreshold,
             final boolean appendFlag) {
 
-        boolean append;
+        computeWARPPolynomialFromGCPs(warpPolynomialOrder, masterGCPGroup, maxIterations, rmsThreshold);
+
+        writeCoRegistrationInfo(sourceProduct, warpPolynomialOrder, appendFlag, srcBand.getName());
+    }
+
+    /**
+     * Compute the WARP polynomial, iteratively eliminating the GCPs with the largest residuals. The state of each
+     * iteration is kept for {@link #writeCoRegistrationInfo}, so that fits of several bands can run concurrently and
+     * have their residuals written afterwards in band order.
+     *
+     * @param warpPolynomialOrder The WARP polynimal order.
+     * @param masterGCPGroup      The master GCPs.
+     * @param maxIterations       The maximum number of iterations.
+     * @param rmsThreshold        The RMS threshold for eliminating GCPs.
+     */
+    public void computeWARPPolynomialFromGCPs(final int warpPolynomialOrder,
+                                              final ProductNodeGroup<Placemark> masterGCPGroup,
+                                              final int maxIterations, final float rmsThreshold) {
+
+        iterations.clear();
         float threshold = 0.0f;
         for (int iter = 0; iter < maxIterations; iter++) {
 
-            if (iter == 0) {
-                append = appendFlag;
-            } else {
-                append = true;
-
+            if (iter > 0) {
                 if (iter < maxIterations - 1 && rmsMean > rmsThreshold) {
                     threshold = (float) (rmsMean + rmsStd);
                 } else {
@@ -210,8 +227,7 @@ public class WarpData implements PolynomialModel {
 
             computeWARPPolynomial(warpPolynomialOrder, masterGCPGroup);
 
-            outputCoRegistrationInfo(
-                    sourceProduct, warpPolynomialOrder, this, append, threshold, iter, srcBand.getName());
+            iterations.add(new Iteration(this, threshold));
 
             if (notEnoughGCPs || iter > 0 && threshold <= rmsThreshold) {
                 break;
@@ -219,6 +235,22 @@ public class WarpData implements PolynomialModel {
         }
     }
 
+    /**
+     * Output the co-registration information of each iteration of the last fit to the residuals file.
+     *
+     * @param sourceProduct       The source product.
+     * @param warpPolynomialOrder The order of Warp polinomial.
+     * @param appendFlag          Boolean flag indicating if the first iteration is appended to the file.
+     * @param bandName            the band name
+     */
+    public void writeCoRegistrationInfo(final Product sourceProduct, final int warpPolynomialOrder,
+                                        final boolean appendFlag, final String bandName) {
+        for (int iter = 0; iter < iterations.size(); iter++) {
+            outputCoRegistrationInfo(sourceProduct, warpPolynomialOrder, iterations.get(iter),
+                                     appendFlag || iter > 0, iter, bandName);
+        }
+    }
+
     /**
      * Compute WARP polynomial function using master and slave GCP pairs.
      *
@@ -434,16 +466,15 @@ public class WarpData implements PolynomialModel {
      *
      * @param sourceProduct       The source product.
      * @param warpPolynomialOrder The order of Warp polinomial.
-     * @param warpData            Stores the warp information per band.
+     * @param warpData            The warp information of one iteration.
      * @param appendFlag          Boolean flag indicating if the information is output to file in appending mode.
-     * @param threshold           The threshold for elinimating GCPs.
      * @param parseIndex          Index for parsing GCPs.
      * @param bandName            the band name
      * @throws OperatorException The exceptions.
      */
     private static void outputCoRegistrationInfo(final Product sourceProduct, final int warpPolynomialOrder,
-                                                final WarpData warpData, final boolean appendFlag,
-                                                final float threshold, final int parseIndex, final String bandName)
+                                                final Iteration warpData, final boolean appendFlag,
+                                                final int parseIndex, final String bandName)
             throws OperatorException {
 
         final File residualFile = getResidualsFile(sourceProduct);
@@ -483,7 +514,7 @@ public class WarpData implements PolynomialModel {
 
             if (appendFlag) {
                 p.println();
-                p.format("RMS Threshold: %5.3f", threshold);
+                p.format("RMS Threshold: %5.3f", warpData.threshold);
                 p.println();
             }
 
@@ -549,6 +580,47 @@ public class WarpData implements PolynomialModel {
         }
     }
 
+    /**
+     * The results of one iteration of the WARP fit. The arrays are replaced, not modified, by later iterations.
+     */
+    private static final class Iteration {
+        final float threshold;
+        final boolean notEnoughGCPs;
+        final int numValidGCPs;
+        final double[] xCoef;
+        final double[] yCoef;
+        final float[] masterGCPCoords;
+        final float[] slaveGCPCoords;
+        final float[] rms;
+        final float[] rowResiduals;
+        final float[] colResiduals;
+        final double rmsMean;
+        final double rmsStd;
+        final double rowResidualMean;
+        final double rowResidualStd;
+        final double colResidualMean;
+        final double colResidualStd;
+
+        Iteration(final WarpData warpData, final float threshold) {
+            this.threshold = threshold;
+            this.notEnoughGCPs = warpData.notEnoughGCPs;
+            this.numValidGCPs = warpData.numValidGCPs;
+            this.xCoef = warpData.xCoef;
+            this.yCoef = warpData.yCoef;
+            this.masterGCPCoords = warpData.masterGCPCoords;
+            this.slaveGCPCoords = warpData.slaveGCPCoords;
+            this.rms = warpData.rms;
+            this.rowResiduals = warpData.rowResiduals;
+            this.colResiduals = warpData.colResiduals;
+            this.rmsMean = warpData.rmsMean;
+            this.rmsStd = warpData.rmsStd;
+            this.rowResidualMean = warpData.rowResidualMean;
+            this.rowResidualStd = warpData.rowResidualStd;
+            this.colResidualMean = warpData.colResidualMean;
+            this.colResidualStd = warpData.colResidualStd;
+        }
+    }
+
     private static File getResidualsFile(final Product sourceProduct) {
         final String fileName = sourceProduct.getName() + "_residual.txt";
         return new File(ResourceUtils.getReportFolder(), fileName);
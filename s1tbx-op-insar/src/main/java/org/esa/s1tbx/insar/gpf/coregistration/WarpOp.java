@@ -16,7 +16,6 @@
 package org.esa.s1tbx.insar.gpf.coregistration;
 
 import com.bc.ceres.core.ProgressMonitor;
-import org.esa.s1tbx.insar.gpf.support.JAIFunctions;
 import org.esa.snap.core.datamodel.*;
 import org.esa.snap.core.dataop.dem.ElevationModel;
 import org.esa.snap.core.dataop.dem.ElevationModelDescriptor;
@@ -40,6 +39,7 @@ import org.esa.snap.engine_utilities.eo.Constants;
 import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.gpf.ReaderUtils;
 import org.esa.snap.engine_utilities.gpf.StackUtils;
+import org.esa.snap.engine_utilities.gpf.ThreadManager;
 import org.esa.snap.engine_utilities.util.ResourceUtils;
 import org.jlinda.core.Orbit;
 import org.jlinda.core.SLCImage;
@@ -49,9 +49,8 @@ import org.jlinda.core.coregistration.SimpleLUT;
 
 import javax.media.jai.Interpolation;
 import javax.media.jai.InterpolationTable;
-import javax.media.jai.RenderedOp;
+import javax.media.jai.WarpPolynomial;
 import java.awt.*;
-import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -126,13 +125,14 @@ public class WarpOp extends Operator {
 
     private Interpolation interp;
     private InterpolationTable interpTable;
+    private WarpResampler resampler;
 
     @Parameter(description = "Show the Residuals file in a text viewer", defaultValue = "false", label = "Show Residuals")
     private Boolean openResidualsFile;
 
     private Band masterBand;
     private boolean complexCoregistration;
-    private boolean warpDataAvailable;
+    private volatile boolean warpDataAvailable;
 
     public static final String NEAREST_NEIGHBOR = "Nearest-neighbor interpolation";
     public static final String BILINEAR = "Bilinear interpolation";
@@ -242,6 +242,8 @@ public class WarpOp extends Operator {
                     interp = Interpolation.getInstance(Interpolation.INTERP_BILINEAR);
                     break;
             }
+            resampler = new WarpResampler(interp != null ? interp : interpTable,
+                                          sourceProduct.getSceneRasterWidth(), sourceProduct.getSceneRasterHeight());
 
             final MetadataElement absRoot = AbstractMetadata.getAbstractedMetadata(sourceProduct);
             if (absRoot != null) {
@@ -409,22 +411,17 @@ public class WarpOp extends Operator {
     }
 
     /**
-     * Called by the framework in order to compute a tile for the given target band.
+     * Called by the framework in order to compute the stack of tiles for the given target bands.
      * <p>The default implementation throws a runtime exception with the message "not implemented".</p>
      *
-     * @param targetBand The target band.
-     * @param targetTile The current tile associated with the target band to be computed.
-     * @param pm         A progress monitor which should be used to determine computation cancelation requests.
-     * @throws OperatorException If an error occurs during computation of the target raster.
+     * @param targetTiles     The current tiles to be computed for each target band.
+     * @param targetRectangle The area in pixel coordinates to be computed (same for all rasters in <code>targetRasters</code>).
+     * @param pm              A progress monitor which should be used to determine computation cancelation requests.
+     * @throws OperatorException if an error occurs during computation of the target rasters.
      */
     @Override
-    public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        final Rectangle targetRectangle = targetTile.getRectangle();
-        final int x0 = targetRectangle.x;
-        final int y0 = targetRectangle.y;
-        final int w = targetRectangle.width;
-        final int h = targetRectangle.height;
-        //System.out.println("WARPOperator: x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetRectangle, ProgressMonitor pm)
+            throws OperatorException {
 
         try {
             if (!warpDataAvailable) {
@@ -435,33 +432,49 @@ public class WarpOp extends Operator {
                 getWarpData(targetRectangle);
             }
 
-            final Band srcBand = sourceRasterMap.get(targetBand);
-            if (srcBand == null)
-                return;
-            Band realSrcBand = complexSrcMap.get(srcBand);
-            if (realSrcBand == null)
-                realSrcBand = srcBand;
+            // the source positions of a tile are shared by all bands warped with the same polynomial
+            final Map<PolynomialModel, WarpResampler.Grid> gridMap = new HashMap<>(10);
 
-            // create source image
-            final Tile sourceRaster = getSourceTile(srcBand, targetRectangle);
+            for (Map.Entry<Band, Tile> entry : targetTiles.entrySet()) {
+                checkForCancellation();
 
-            if (pm.isCanceled())
-                return;
+                final Band srcBand = sourceRasterMap.get(entry.getKey());
+                if (srcBand == null)
+                    continue;
+                Band realSrcBand = complexSrcMap.get(srcBand);
+                if (realSrcBand == null)
+                    realSrcBand = srcBand;
 
-            final PolynomialModel warpData = warpDataMap.get(realSrcBand);
-            if (!warpData.isValid())
-                return;
+                final PolynomialModel warpData = warpDataMap.get(realSrcBand);
+                if (warpData == null || !warpData.isValid())
+                    continue;
 
-            final RenderedImage srcImage = sourceRaster.getRasterDataNode().getSourceImage();
+                final Tile targetTile = entry.getValue();
+                final WarpPolynomial warp = warpData.getJAIWarp();
+                if (warp == null) {
+                    // no need to warp, images are already perfectly aligned
+                    final Tile sourceRaster = getSourceTile(srcBand, targetRectangle);
+                    targetTile.setRawSamples(ProductData.createInstance(
+                            getSourceSamples(sourceRaster, targetRectangle)));
+                    continue;
+                }
 
-            // get warped image
-            final RenderedOp warpedImage = JAIFunctions.createWarpImage(warpData.getJAIWarp(), srcImage,
-                                                                        interp, interpTable);
+                WarpResampler.Grid grid = gridMap.get(warpData);
+                if (grid == null) {
+                    grid = WarpResampler.createGrid(warp, targetRectangle);
+                    gridMap.put(warpData, grid);
+                }
 
-            // copy warped image data to target
-            final float[] dataArray = warpedImage.getData(targetRectangle).getSamples(x0, y0, w, h, 0, (float[]) null);
+                final float[] dataArray = new float[targetRectangle.width * targetRectangle.height];
+                final Rectangle sourceRectangle = resampler.getSourceRectangle(grid);
+                if (sourceRectangle != null) {
+                    final Tile sourceRaster = getSourceTile(srcBand, sourceRectangle);
+                    resampler.resample(getSourceSamples(sourceRaster, sourceRectangle), sourceRectangle,
+                                       grid, dataArray);
+                }
 
-            targetTile.setRawSamples(ProductData.createInstance(dataArray));
+                targetTile.setRawSamples(ProductData.createInstance(dataArray));
+            }
 
         } catch (Throwable e) {
             OperatorUtils.catchOperatorException(getId(), e);
@@ -470,6 +483,26 @@ public class WarpOp extends Operator {
         }
     }
 
+    /**
+     * Gets the raw samples of a source tile as floats.
+     *
+     * @param sourceRaster The source tile.
+     * @param rectangle    The region of the tile.
+     * @return The samples of the region, row-major.
+     */
+    private static float[] getSourceSamples(final Tile sourceRaster, final Rectangle rectangle) {
+        final ProductData srcData = sourceRaster.getDataBuffer();
+        final float[] samples = new float[rectangle.width * rectangle.height];
+        int k = 0;
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; ++y) {
+            final int offset = sourceRaster.getDataBufferIndex(rectangle.x, y);
+            for (int x = 0; x < rectangle.width; ++x) {
+                samples[k++] = srcData.getElemFloatAt(offset + x);
+            }
+        }
+        return samples;
+    }
+
     private synchronized void createDEM() throws IOException {
 
         final Resampling resampling = ResamplingFactory.createResampling(ResamplingFactory.BILINEAR_INTERPOLATION_NAME);
@@ -504,18 +537,9 @@ public class WarpOp extends Operator {
         final ProductNodeGroup<Placemark> masterGCPGroup = GCPManager.instance().getGcpGroup(masterBand);
         final org.jlinda.core.Window masterWindow = new org.jlinda.core.Window(0, sourceProduct.getSceneRasterHeight(), 0, sourceProduct.getSceneRasterWidth());
 
-        // setup master metadata
-        SLCImage masterMeta = null;
-        Orbit masterOrbit = null;
-        if (demRefinement) {
-            final MetadataElement absRoot = AbstractMetadata.getAbstractedMetadata(targetProduct);
-            masterMeta = new SLCImage(absRoot, targetProduct);
-            masterOrbit = new Orbit(absRoot, ORBIT_INTERP_DEGREE);
-        }
-
-        // for all slave bands or band pairs compute a warp
-        boolean appendFlag = false;
-        int slaveMetaCnt = 0;
+        // for all slave bands or band pairs find the GCPs
+        final List<Band> slaveBands = new ArrayList<>();
+        final List<ProductNodeGroup<Placemark>> slaveGCPGroups = new ArrayList<>();
         final Band[] sourceBands = sourceProduct.getBands();
         for (int i = 0; i < sourceBands.length; i++) {
 
@@ -542,79 +566,68 @@ public class WarpOp extends Operator {
                 }
             }
 
-            if (inSAROptimized) {
-                final CPM cpm = new CPM(warpPolynomialOrder, maxIterations, cpmWtestCriticalValue,
-                                        masterWindow, masterGCPGroup, slaveGCPGroup);
-                warpDataMap.put(srcBand, cpm);
-
-                final int nodeCount = slaveGCPGroup.getNodeCount();
-                if (nodeCount < 3) {
-                    cpm.noRedundancy = true;
-                    continue;
-                }
-
-                // setup slave metadata
-                if (demRefinement && !cpm.noRedundancy) {
-
-                    // get height for corresponding points
-                    double[] heightArray = new double[nodeCount];
-                    final List<Placemark> slaveGCPList = new ArrayList<>();
-
-                    for (int j = 0; j < nodeCount; j++) {
+            slaveBands.add(srcBand);
+            slaveGCPGroups.add(slaveGCPGroup);
+        }
 
-                        // work only with windows that survived threshold for this slave
-                        slaveGCPList.add(slaveGCPGroup.get(j));
-                        final Placemark sPin = slaveGCPList.get(j);
-                        final Placemark mPin = masterGCPGroup.get(sPin.getName());
-                        final PixelPos mGCPPos = mPin.getPixelPos();
+        // the warps of the slave bands are independent, fit them with their outlier rejection concurrently
+        final PolynomialModel[] warps = new PolynomialModel[slaveBands.size()];
+        final Throwable[] error = new Throwable[1];
+        final ThreadManager threadManager = new ThreadManager();
 
-                        double[] phiLamPoint = masterOrbit.lph2ell(mGCPPos.y, mGCPPos.x, 0, masterMeta);
-                        PixelPos demIndexPoint = dem.getIndex(new GeoPos((phiLamPoint[0] * org.jlinda.core.Constants.RTOD), (phiLamPoint[1] * org.jlinda.core.Constants.RTOD)));
+        for (int i = 0; i < warps.length; i++) {
+            checkForCancellation();
 
-                        double height = dem.getSample(demIndexPoint.x, demIndexPoint.y);
+            final int index = i;
+            final Thread worker = new Thread() {
 
-                        if (Double.isNaN(height)) {
-                            height = demNoDataValue;
+                @Override
+                public void run() {
+                    try {
+                        if (inSAROptimized) {
+                            warps[index] = computeCPM(masterGCPGroup, slaveGCPGroups.get(index), masterWindow);
+                        } else {
+                            warps[index] = computeWarpData(masterGCPGroup, slaveGCPGroups.get(index));
+                        }
+                    } catch (Throwable e) {
+                        synchronized (error) {
+                            error[0] = e;
                         }
-
-                        heightArray[j] = height;
                     }
-
-                    final MetadataElement slaveRoot = targetProduct.getMetadataRoot().getElement(AbstractMetadata.SLAVE_METADATA_ROOT).getElementAt(slaveMetaCnt);
-                    final SLCImage slaveMeta = new SLCImage(slaveRoot, targetProduct);
-                    final Orbit slaveOrbit = new Orbit(slaveRoot, ORBIT_INTERP_DEGREE);
-                    cpm.setDemNoDataValue(demNoDataValue);
-                    cpm.setUpDEMRefinement(masterMeta, masterOrbit, slaveMeta, slaveOrbit, heightArray);
-                    cpm.setUpDemOffset();
                 }
+            };
 
-                cpm.computeCPM();
-                cpm.computeEstimationStats();
-                cpm.wrapJaiWarpPolynomial();
+            threadManager.add(worker);
+        }
+        threadManager.finish();
 
+        if (error[0] != null) {
+            throw new OperatorException(error[0]);
+        }
+
+        // record the warps in band order
+        boolean appendFlag = false;
+        for (int i = 0; i < warps.length; i++) {
+            final Band srcBand = slaveBands.get(i);
+            warpDataMap.put(srcBand, warps[i]);
+
+            if (inSAROptimized) {
+                final CPM cpm = (CPM) warps[i];
                 if (cpm.noRedundancy) {
                     continue;
                 }
 
-                if (!appendFlag) {
-                    appendFlag = true;
-                }
-
                 //outputCoRegistrationInfo(sourceProduct, warpPolynomialOrder, cpm, appendFlag, srcBand.getName());
 
                 addSlaveGCPs(cpm, srcBand.getName());
             } else {
 
-                final WarpData warpData = new WarpData(slaveGCPGroup);
-                warpDataMap.put(srcBand, warpData);
-
-                if (slaveGCPGroup.getNodeCount() < 3) {
-                    warpData.setInValid();
+                final WarpData warpData = (WarpData) warps[i];
+                if (slaveGCPGroups.get(i).getNodeCount() < 3) {
                     continue;
                 }
 
-                warpData.computeWARPPolynomialFromGCPs(sourceProduct, srcBand, warpPolynomialOrder, masterGCPGroup,
-                                                       maxIterations, rmsThreshold, appendFlag);
+                warpData.writeCoRegistrationInfo(sourceProduct, warpPolynomialOrder, appendFlag, srcBand.getName());
 
                 if (!warpData.isValid()) {
                     continue;
@@ -650,6 +663,97 @@ public class WarpOp extends Operator {
         warpDataAvailable = true;
     }
 
+    /**
+     * Fit the coregistration polynomial model of a slave band, refined by the DEM if selected.
+     *
+     * @param masterGCPGroup The master GCPs.
+     * @param slaveGCPGroup  The slave GCPs.
+     * @param masterWindow   The master image extent for normalization.
+     * @return The fitted model.
+     * @throws Exception The exceptions.
+     */
+    private CPM computeCPM(final ProductNodeGroup<Placemark> masterGCPGroup,
+                           final ProductNodeGroup<Placemark> slaveGCPGroup,
+                           final org.jlinda.core.Window masterWindow) throws Exception {
+
+        final CPM cpm = new CPM(warpPolynomialOrder, maxIterations, cpmWtestCriticalValue,
+                                masterWindow, masterGCPGroup, slaveGCPGroup);
+
+        final int nodeCount = slaveGCPGroup.getNodeCount();
+        if (nodeCount < 3) {
+            cpm.noRedundancy = true;
+            return cpm;
+        }
+
+        // setup slave metadata
+        if (demRefinement && !cpm.noRedundancy) {
+
+            // setup master metadata, per fit as the orbits are not shared between threads
+            final MetadataElement absRoot = AbstractMetadata.getAbstractedMetadata(targetProduct);
+            final SLCImage masterMeta = new SLCImage(absRoot, targetProduct);
+            final Orbit masterOrbit = new Orbit(absRoot, ORBIT_INTERP_DEGREE);
+
+            // get height for corresponding points
+            double[] heightArray = new double[nodeCount];
+            final List<Placemark> slaveGCPList = new ArrayList<>();
+
+            for (int j = 0; j < nodeCount; j++) {
+
+                // work only with windows that survived threshold for this slave
+                slaveGCPList.add(slaveGCPGroup.get(j));
+                final Placemark sPin = slaveGCPList.get(j);
+                final Placemark mPin = masterGCPGroup.get(sPin.getName());
+                final PixelPos mGCPPos = mPin.getPixelPos();
+
+                double[] phiLamPoint = masterOrbit.lph2ell(mGCPPos.y, mGCPPos.x, 0, masterMeta);
+                PixelPos demIndexPoint = dem.getIndex(new GeoPos((phiLamPoint[0] * org.jlinda.core.Constants.RTOD), (phiLamPoint[1] * org.jlinda.core.Constants.RTOD)));
+
+                double height = dem.getSample(demIndexPoint.x, demIndexPoint.y);
+
+                if (Double.isNaN(height)) {
+                    height = demNoDataValue;
+                }
+
+                heightArray[j] = height;
+            }
+
+            final MetadataElement slaveRoot = targetProduct.getMetadataRoot().getElement(AbstractMetadata.SLAVE_METADATA_ROOT).getElementAt(0);
+            final SLCImage slaveMeta = new SLCImage(slaveRoot, targetProduct);
+            final Orbit slaveOrbit = new Orbit(slaveRoot, ORBIT_INTERP_DEGREE);
+            cpm.setDemNoDataValue(demNoDataValue);
+            cpm.setUpDEMRefinement(masterMeta, masterOrbit, slaveMeta, slaveOrbit, heightArray);
+            cpm.setUpDemOffset();
+        }
+
+        cpm.computeCPM();
+        cpm.computeEstimationStats();
+        cpm.wrapJaiWarpPolynomial();
+
+        return cpm;
+    }
+
+    /**
+     * Fit the warp polynomial of a slave band. The residuals are written afterwards, in band order.
+     *
+     * @param masterGCPGroup The master GCPs.
+     * @param slaveGCPGroup  The slave GCPs.
+     * @return The fitted warp.
+     */
+    private WarpData computeWarpData(final ProductNodeGroup<Placemark> masterGCPGroup,
+                                     final ProductNodeGroup<Placemark> slaveGCPGroup) {
+
+        final WarpData warpData = new WarpData(slaveGCPGroup);
+
+        if (slaveGCPGroup.getNodeCount() < 3) {
+            warpData.setInValid();
+            return warpData;
+        }
+
+        warpData.computeWARPPolynomialFromGCPs(warpPolynomialOrder, masterGCPGroup, maxIterations, rmsThreshold);
+
+        return warpData;
+    }
+
     private void writeWarpDataToMetadata() {
         final MetadataElement absRoot = AbstractMetadata.getAbstractedMetadata(targetProduct);
         final Set<Band> bandSet = warpDataMap.keySet();
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf.coregistration;
+
+import javax.media.jai.Interpolation;
+import javax.media.jai.InterpolationBilinear;
+import javax.media.jai.InterpolationNearest;
+import javax.media.jai.InterpolationTable;
+import javax.media.jai.WarpPolynomial;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Warps a target tile from a slave image with a warp polynomial, as the JAI "warp" operation does, on primitive
+ * arrays.
+ * <p>
+ * The source position of every target pixel is computed once per tile into a {@link Grid}, which is shared by all
+ * bands warped with the same polynomial. The interpolation kernels are those of the JAI interpolation: nearest
+ * neighbour, bilinear, or the kernel table of an {@link InterpolationTable} (including bicubic) indexed by the
+ * quantised sub-pixel position. Target pixels of which the kernel is not entirely inside the source image are set to
+ * zero, the JAI background value.
+ */
+final class WarpResampler {
+
+    private enum Kernel {NEAREST, BILINEAR, TABLE}
+
+    private final Kernel kernel;
+    private final int imageWidth;
+    private final int imageHeight;
+    private final int kernelWidth;
+    private final int kernelHeight;
+    private final int leftPadding;
+    private final int topPadding;
+    private final int subsampleBitsH;
+    private final int subsampleBitsV;
+    private final float[] tableH;
+    private final float[] tableV;
+
+    /**
+     * @param interpolation the JAI interpolation
+     * @param imageWidth    the source image width
+     * @param imageHeight   the source image height
+     */
+    WarpResampler(final Interpolation interpolation, final int imageWidth, final int imageHeight) {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+
+        if (interpolation instanceof InterpolationTable) {
+            final InterpolationTable table = (InterpolationTable) interpolation;
+            kernel = Kernel.TABLE;
+            tableH = table.getHorizontalTableDataFloat();
+            tableV = table.getVerticalTableDataFloat();
+            subsampleBitsH = table.getSubsampleBitsH();
+            subsampleBitsV = table.getSubsampleBitsV();
+        } else if (interpolation instanceof InterpolationBilinear) {
+            kernel = Kernel.BILINEAR;
+            tableH = tableV = null;
+            subsampleBitsH = subsampleBitsV = 0;
+        } else if (interpolation instanceof InterpolationNearest) {
+            kernel = Kernel.NEAREST;
+            tableH = tableV = null;
+            subsampleBitsH = subsampleBitsV = 0;
+        } else {
+            throw new IllegalArgumentException("Unsupported interpolation " + interpolation.getClass().getName());
+        }
+        kernelWidth = interpolation.getWidth();
+        kernelHeight = interpolation.getHeight();
+        leftPadding = interpolation.getLeftPadding();
+        topPadding = interpolation.getTopPadding();
+    }
+
+    /**
+     * Source positions of the pixels of a target tile, row-major.
+     */
+    static final class Grid {
+        final Rectangle rectangle;
+        final double[] x;
+        final double[] y;
+
+        private Grid(final Rectangle rectangle) {
+            this.rectangle = rectangle;
+            this.x = new double[rectangle.width * rectangle.height];
+            this.y = new double[rectangle.width * rectangle.height];
+        }
+    }
+
+    /**
+     * Computes the source positions of a target tile as JAI maps destination pixels: the polynomial is evaluated at
+     * the pixel centre, (x + 0.5, y + 0.5) scaled by the pre-scale factors, and the result is scaled by the
+     * post-scale factors and shifted back by half a pixel. For each row the polynomial is reduced to a polynomial in
+     * x, evaluated with Horner's scheme.
+     *
+     * @param warp      the warp polynomial
+     * @param rectangle the target tile rectangle
+     * @return the source position grid
+     */
+    static Grid createGrid(final WarpPolynomial warp, final Rectangle rectangle) {
+
+        final Grid grid = new Grid(rectangle);
+
+        final float[] xCoeffs = warp.getXCoeffs();
+        final float[] yCoeffs = warp.getYCoeffs();
+        final int degree = warp.getDegree();
+        final double preScaleX = warp.getPreScaleX();
+        final double preScaleY = warp.getPreScaleY();
+        final double postScaleX = warp.getPostScaleX();
+        final double postScaleY = warp.getPostScaleY();
+
+        final double[] ax = new double[degree + 1];
+        final double[] ay = new double[degree + 1];
+        final double[] vPows = new double[degree + 1];
+
+        int k = 0;
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; ++y) {
+            final double v = (y + 0.5) * preScaleY;
+            vPows[0] = 1.0;
+            for (int i = 1; i <= degree; ++i) {
+                vPows[i] = vPows[i - 1] * v;
+            }
+
+            // coefficients are ordered 1, x, y, x^2, xy, y^2, x^3, ...
+            Arrays.fill(ax, 0.0);
+            Arrays.fill(ay, 0.0);
+            int c = 0;
+            for (int n = 0; n <= degree; ++n) {
+                for (int ny = 0; ny <= n; ++ny) {
+                    ax[n - ny] += xCoeffs[c] * vPows[ny];
+                    ay[n - ny] += yCoeffs[c] * vPows[ny];
+                    ++c;
+                }
+            }
+
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; ++x) {
+                final double u = (x + 0.5) * preScaleX;
+                double sx = ax[degree];
+                double sy = ay[degree];
+                for (int i = degree - 1; i >= 0; --i) {
+                    sx = sx * u + ax[i];
+                    sy = sy * u + ay[i];
+                }
+                grid.x[k] = sx * postScaleX - 0.5;
+                grid.y[k] = sy * postScaleY - 0.5;
+                ++k;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Gets the source image region read by the interpolation of a grid.
+     *
+     * @param grid the source position grid
+     * @return the region, or null if no target pixel has its kernel inside the source image
+     */
+    Rectangle getSourceRectangle(final Grid grid) {
+
+        double xMin = Double.MAX_VALUE, xMax = -Double.MAX_VALUE;
+        double yMin = Double.MAX_VALUE, yMax = -Double.MAX_VALUE;
+        for (int i = 0; i < grid.x.length; ++i) {
+            xMin = Math.min(xMin, grid.x[i]);
+            xMax = Math.max(xMax, grid.x[i]);
+            yMin = Math.min(yMin, grid.y[i]);
+            yMax = Math.max(yMax, grid.y[i]);
+        }
+
+        final int x0 = Math.max(0, firstSample(xMin, leftPadding));
+        final int y0 = Math.max(0, firstSample(yMin, topPadding));
+        final int x1 = Math.min(imageWidth, firstSample(xMax, leftPadding) + kernelWidth);
+        final int y1 = Math.min(imageHeight, firstSample(yMax, topPadding) + kernelHeight);
+        if (x0 >= x1 || y0 >= y1) {
+            return null;
+        }
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    private int firstSample(final double position, final int padding) {
+        if (kernel == Kernel.NEAREST) {
+            return (int) Math.floor(position + 0.5);
+        }
+        return (int) Math.floor(position) - padding;
+    }
+
+    /**
+     * Interpolates the target tile.
+     *
+     * @param src     the source samples of the region given by {@link #getSourceRectangle}, row-major
+     * @param srcRect the source region
+     * @param grid    the source position grid of the target tile
+     * @param dst     the target tile samples, row-major
+     */
+    void resample(final float[] src, final Rectangle srcRect, final Grid grid, final float[] dst) {
+
+        final int sx0 = srcRect.x;
+        final int sy0 = srcRect.y;
+        final int sw = srcRect.width;
+        final int xLimit = imageWidth - kernelWidth;
+        final int yLimit = imageHeight - kernelHeight;
+
+        for (int i = 0; i < dst.length; ++i) {
+            final double x = grid.x[i];
+            final double y = grid.y[i];
+
+            switch (kernel) {
+                case NEAREST: {
+                    final int xi = (int) Math.floor(x + 0.5);
+                    final int yi = (int) Math.floor(y + 0.5);
+                    if (xi < 0 || xi > xLimit || yi < 0 || yi > yLimit) {
+                        dst[i] = 0.0f;
+                    } else {
+                        dst[i] = src[(yi - sy0) * sw + xi - sx0];
+                    }
+                    break;
+                }
+                case BILINEAR: {
+                    final int xi = (int) Math.floor(x);
+                    final int yi = (int) Math.floor(y);
+                    if (xi < 0 || xi > xLimit || yi < 0 || yi > yLimit) {
+                        dst[i] = 0.0f;
+                    } else {
+                        final float xFrac = (float) (x - xi);
+                        final float yFrac = (float) (y - yi);
+                        final int k = (yi - sy0) * sw + xi - sx0;
+                        final float s0 = (src[k + 1] - src[k]) * xFrac + src[k];
+                        final float s1 = (src[k + sw + 1] - src[k + sw]) * xFrac + src[k + sw];
+                        dst[i] = (s1 - s0) * yFrac + s0;
+                    }
+                    break;
+                }
+                default: {
+                    final int xi = (int) Math.floor(x);
+                    final int yi = (int) Math.floor(y);
+                    final int xs = xi - leftPadding;
+                    final int ys = yi - topPadding;
+                    if (xs < 0 || xs > xLimit || ys < 0 || ys > yLimit) {
+                        dst[i] = 0.0f;
+                    } else {
+                        // sub-pixel position quantised from a float fraction, as JAI does
+                        final int hOffset = (int) ((float) (x - xi) * (1 << subsampleBitsH)) * kernelWidth;
+                        final int vOffset = (int) ((float) (y - yi) * (1 << subsampleBitsV)) * kernelHeight;
+                        int k = (ys - sy0) * sw + xs - sx0;
+                        double sum = 0.0;
+                        for (int r = 0; r < kernelHeight; ++r) {
+                            double s = 0.0;
+                            for (int c = 0; c < kernelWidth; ++c) {
+                                s += tableH[hOffset + c] * src[k + c];
+                            }
+                            sum += s * tableV[vOffset + r];
+                            k += sw;
+                        }
+                        dst[i] = (float) sum;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+}
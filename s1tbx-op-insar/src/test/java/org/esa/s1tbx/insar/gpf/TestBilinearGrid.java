@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for BilinearGrid.
+ */
+public class TestBilinearGrid {
+
+    @Test
+    public void testBilinearFunctionIsReproduced() {
+        final Rectangle rectangle = new Rectangle(100, 40, 37, 21);
+        final double[] values = interpolate(rectangle, 8, (x, y) -> 3.0 + 0.5 * x - 0.25 * y + 1.0e-3 * x * y);
+
+        for (int y = 0; y < rectangle.height; y++) {
+            for (int x = 0; x < rectangle.width; x++) {
+                final int ix = rectangle.x + x, iy = rectangle.y + y;
+                assertEquals(3.0 + 0.5 * ix - 0.25 * iy + 1.0e-3 * ix * iy, values[y * rectangle.width + x], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testHeightSensitivity() {
+        // slant range times sin(incidence) over a perpendicular baseline varying across a 25000 pixel swath
+        final Function alpha = (x, y) -> {
+            final double slantRange = 800000.0 + 2.3 * x;
+            final double incidence = Math.toRadians(30.0 + 16.0 * x / 25000.0 - 1.0e-9 * x * x);
+            final double bperp = 120.0 + 1.0e-3 * x + 2.0e-4 * y + 1.0e-9 * x * x;
+            return -slantRange * Math.sin(incidence) / (2.0 * 113.0 * bperp);
+        };
+
+        final Rectangle rectangle = new Rectangle(12000, 3000, 512, 512);
+        final double[] values = interpolate(rectangle, 8, alpha);
+
+        // height errors below a millimetre for 100 radians of unwrapped phase
+        for (int y = 0; y < rectangle.height; y++) {
+            for (int x = 0; x < rectangle.width; x++) {
+                final double expected = alpha.value(rectangle.x + x, rectangle.y + y);
+                assertEquals(expected * 100.0, values[y * rectangle.width + x] * 100.0, 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void testSingleRowAndColumn() {
+        final Rectangle rectangle = new Rectangle(5, 7, 1, 1);
+        final double[] values = interpolate(rectangle, 8, (x, y) -> x * 10.0 + y);
+        assertEquals(57.0, values[0], 0.0);
+    }
+
+    @Test
+    public void testNodesAreExact() {
+        final Rectangle rectangle = new Rectangle(0, 0, 33, 17);
+        final Function function = (x, y) -> Math.sin(0.3 * x) * Math.cos(0.2 * y);
+        final double[] values = interpolate(rectangle, 8, function);
+
+        final BilinearGrid grid = new BilinearGrid(rectangle, 8);
+        for (int y : grid.getYNodes()) {
+            for (int x : grid.getXNodes()) {
+                assertEquals(function.value(x, y), values[y * rectangle.width + x], 1e-12);
+            }
+        }
+    }
+
+    private interface Function {
+        double value(int x, int y);
+    }
+
+    private static double[] interpolate(final Rectangle rectangle, final int step, final Function function) {
+        final BilinearGrid grid = new BilinearGrid(rectangle, step);
+        final int[] xNodes = grid.getXNodes();
+        final int[] yNodes = grid.getYNodes();
+        for (int r = 0; r < yNodes.length; r++) {
+            for (int c = 0; c < xNodes.length; c++) {
+                grid.setValue(r, c, function.value(xNodes[c], yNodes[r]));
+            }
+        }
+
+        final double[] values = new double[rectangle.width * rectangle.height];
+        final double[] row = new double[rectangle.width];
+        for (int y = 0; y < rectangle.height; y++) {
+            grid.interpolateRow(rectangle.y + y, row);
+            System.arraycopy(row, 0, values, y * rectangle.width, rectangle.width);
+        }
+        return values;
+    }
+}
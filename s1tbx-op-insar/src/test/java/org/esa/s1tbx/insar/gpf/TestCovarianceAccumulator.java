@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2014 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for CovarianceAccumulator.
+ */
+public class TestCovarianceAccumulator {
+
+    private static final int numBands = 3;
+    private static final int n = 1000;
+
+    @Test
+    public void testMergedBlocksMatchDirectComputation() {
+        final double[][] values = createSamples();
+
+        // accumulate in uneven blocks and merge
+        final CovarianceAccumulator a = new CovarianceAccumulator(numBands);
+        final CovarianceAccumulator b = new CovarianceAccumulator(numBands);
+        a.accumulate(subset(values, 0, 137), 137);
+        a.accumulate(subset(values, 137, 600), 463);
+        b.accumulate(subset(values, 600, n), n - 600);
+        a.merge(b);
+
+        final double[] mean = new double[numBands];
+        for (int i = 0; i < numBands; i++) {
+            for (int k = 0; k < n; k++) {
+                mean[i] += values[i][k];
+            }
+            mean[i] /= n;
+        }
+
+        assertEquals(n, a.getCount());
+        final double[] accMean = a.getMean();
+        final double[][] accCov = a.getCovariance();
+        for (int i = 0; i < numBands; i++) {
+            assertEquals(mean[i], accMean[i], 1e-9);
+            for (int j = 0; j < numBands; j++) {
+                double cov = 0.0;
+                for (int k = 0; k < n; k++) {
+                    cov += (values[i][k] - mean[i]) * (values[j][k] - mean[j]);
+                }
+                assertEquals(cov / n, accCov[i][j], 1e-9 * Math.abs(cov / n) + 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testProjectionBounds() {
+        final double[][] values = createSamples();
+        final CovarianceAccumulator acc = new CovarianceAccumulator(numBands);
+        acc.accumulate(values, n);
+
+        final double[] vector = {0.6, -0.3, 0.74};
+        double minProjection = Double.MAX_VALUE;
+        for (int k = 0; k < n; k++) {
+            double p = 0.0;
+            for (int j = 0; j < numBands; j++) {
+                p += values[j][k] * vector[j];
+            }
+            minProjection = Math.min(minProjection, p);
+        }
+
+        assertTrue(acc.getProjectionLowerBound(vector) <= minProjection);
+        assertTrue(acc.getProjectionUpperBound(vector) >= minProjection);
+    }
+
+    @Test
+    public void testSubtractMeanImage() {
+        final double[][] values = createSamples();
+        final CovarianceAccumulator acc = new CovarianceAccumulator(numBands);
+        acc.accumulate(values, n);
+
+        // band values minus the mean over the bands of each sample
+        final double[][] centred = new double[numBands][n];
+        for (int k = 0; k < n; k++) {
+            double meanImage = 0.0;
+            for (int j = 0; j < numBands; j++) {
+                meanImage += values[j][k];
+            }
+            meanImage /= numBands;
+            for (int j = 0; j < numBands; j++) {
+                centred[j][k] = values[j][k] - meanImage;
+            }
+        }
+        final CovarianceAccumulator centredAcc = new CovarianceAccumulator(numBands);
+        centredAcc.accumulate(centred, n);
+
+        final double[][] expected = centredAcc.getCovariance();
+        final double[][] actual = PCAOp.subtractMeanImage(acc.getCovariance());
+        for (int i = 0; i < numBands; i++) {
+            for (int j = 0; j < numBands; j++) {
+                assertEquals(expected[i][j], actual[i][j], 1e-9 * Math.abs(expected[i][j]) + 1e-9);
+            }
+        }
+    }
+
+    private static double[][] createSamples() {
+        final Random random = new Random(42);
+        final double[][] values = new double[numBands][n];
+        for (int k = 0; k < n; k++) {
+            final double common = random.nextGaussian();
+            values[0][k] = 1.0e6 + 100.0 * common + random.nextGaussian();
+            values[1][k] = 5.0e5 - 50.0 * common + 2.0 * random.nextGaussian();
+            values[2][k] = 3.0 * random.nextGaussian();
+        }
+        return values;
+    }
+
+    private static double[][] subset(final double[][] values, final int start, final int end) {
+        final double[][] sub = new double[values.length][end - start];
+        for (int i = 0; i < values.length; i++) {
+            System.arraycopy(values[i], start, sub[i], 0, end - start);
+        }
+        return sub;
+    }
+}
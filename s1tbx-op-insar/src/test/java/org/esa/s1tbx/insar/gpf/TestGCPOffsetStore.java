@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for GCPOffsetStore.
+ */
+public class TestGCPOffsetStore {
+
+    @Test
+    public void testClaimAndRelease() {
+        final GCPOffsetStore store = new GCPOffsetStore("key", 2, 3);
+
+        assertTrue(store.claim(0, 1));
+        assertFalse(store.claim(0, 1));
+        store.release(0, 1);
+        assertTrue(store.claim(0, 1));
+
+        store.setValid(0, 1, 10.5, 20.25);
+        assertFalse(store.claim(0, 1));
+        assertTrue(store.isValid(0, 1));
+        assertEquals(10.5, store.getSlaveX(0, 1), 0.0);
+        assertEquals(20.25, store.getSlaveY(0, 1), 0.0);
+        assertFalse(store.isComplete());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        final File file = File.createTempFile("offsets", ".gcp");
+        file.deleteOnExit();
+
+        final GCPOffsetStore store = new GCPOffsetStore("mst|slv|40x40", 2, 2);
+        store.setValid(0, 0, 1.0, 2.0);
+        store.setInvalid(0, 1);
+        store.setValid(1, 0, 3.0, 4.0);
+        store.claim(1, 1);
+        store.save(file);
+
+        final GCPOffsetStore loaded = GCPOffsetStore.load(file, "mst|slv|40x40", 2, 2);
+        assertTrue(loaded.isValid(0, 0));
+        assertFalse(loaded.isValid(0, 1));
+        assertEquals(3.0, loaded.getSlaveX(1, 0), 0.0);
+        assertEquals(4.0, loaded.getSlaveY(1, 0), 0.0);
+
+        // the cell in progress was not saved and can be computed again
+        assertFalse(loaded.isComplete());
+        assertTrue(loaded.claim(1, 1));
+        assertFalse(loaded.claim(0, 1));
+
+        // a different key or grid does not reuse the offsets
+        assertTrue(GCPOffsetStore.load(file, "mst|slv|20x20", 2, 2).claim(0, 0));
+        assertTrue(GCPOffsetStore.load(file, "mst|slv|40x40", 3, 2).claim(0, 0));
+    }
+}
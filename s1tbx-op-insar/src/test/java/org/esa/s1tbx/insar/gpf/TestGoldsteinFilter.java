@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares GoldsteinFilter with the row/column implementation it replaced.
+ */
+public class TestGoldsteinFilter {
+
+    private static final int SIZE = 32;
+
+    @Test
+    public void testFringePatternMatchesRowColumnFilter() {
+        for (int halfWindowSize = 1; halfWindowSize <= 3; halfWindowSize++) {
+            compare(halfWindowSize, 1.0, 0.0);
+            compare(halfWindowSize, 0.5, 0.0);
+        }
+    }
+
+    private static void compare(final int halfWindowSize, final double alpha, final double noDataValue) {
+
+        final double[][][] window = createFringes(7);
+        final double[][] I = window[0];
+        final double[][] Q = window[1];
+
+        final GoldsteinFilter filter = new GoldsteinFilter(SIZE, halfWindowSize, alpha);
+        final double[] data = filter.getData();
+        setWindow(data, I, Q);
+        filter.filter(noDataValue);
+
+        referenceFilter(I, Q, alpha, halfWindowSize, noDataValue);
+
+        double maxAmplitude = 0;
+        for (int r = 0; r < SIZE; r++) {
+            for (int c = 0; c < SIZE; c++) {
+                maxAmplitude = Math.max(maxAmplitude, Math.hypot(I[r][c], Q[r][c]));
+            }
+        }
+        final double tolerance = 1e-6 * maxAmplitude;
+        for (int r = 0; r < SIZE; r++) {
+            for (int c = 0; c < SIZE; c++) {
+                assertEquals(Q[r][c], data[2 * (r * SIZE + c)], tolerance);
+                assertEquals(I[r][c], data[2 * (r * SIZE + c) + 1], tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void testReusedFilterMatchesNewFilter() {
+        // the operator keeps one filter per thread and loads every window into the same buffers
+        final int halfWindowSize = 2;
+        final double alpha = 0.7;
+        final GoldsteinFilter reused = new GoldsteinFilter(SIZE, halfWindowSize, alpha);
+
+        // an empty window, of which the whole power spectrum is no data, between fringe windows
+        final double[][][][] windows = {
+                createFringes(7), new double[2][SIZE][SIZE], createFringes(8), createFringes(9)
+        };
+        for (double[][][] window : windows) {
+            setWindow(reused.getData(), window[0], window[1]);
+            reused.filter(0.0);
+
+            final GoldsteinFilter fresh = new GoldsteinFilter(SIZE, halfWindowSize, alpha);
+            setWindow(fresh.getData(), window[0], window[1]);
+            fresh.filter(0.0);
+
+            assertArrayEquals(fresh.getData(), reused.getData(), 0.0);
+        }
+    }
+
+    private static void setWindow(final double[] data, final double[][] I, final double[][] Q) {
+        for (int r = 0; r < SIZE; r++) {
+            for (int c = 0; c < SIZE; c++) {
+                data[2 * (r * SIZE + c)] = Q[r][c];
+                data[2 * (r * SIZE + c) + 1] = I[r][c];
+            }
+        }
+    }
+
+    /**
+     * @return the I and Q samples of noisy fringes
+     */
+    private static double[][][] createFringes(final long seed) {
+        final double[][] I = new double[SIZE][SIZE];
+        final double[][] Q = new double[SIZE][SIZE];
+        final Random random = new Random(seed);
+        for (int r = 0; r < SIZE; r++) {
+            for (int c = 0; c < SIZE; c++) {
+                final double phase = 2.0 * Math.PI * (0.11 * c + 0.07 * r + 0.002 * r * c) + 0.8 * random.nextGaussian();
+                final double amplitude = 1.0 + 0.2 * random.nextDouble();
+                I[r][c] = amplitude * Math.cos(phase);
+                Q[r][c] = amplitude * Math.sin(phase);
+            }
+        }
+        return new double[][][]{I, Q};
+    }
+
+    /**
+     * The filter as computed by GoldsteinFilterOp before the flat 2-D transform.
+     */
+    private static void referenceFilter(final double[][] I, final double[][] Q, final double alpha,
+                                        final int halfWindowSize, final double noDataValue) {
+
+        final double[][] specI = new double[SIZE][SIZE];
+        final double[][] specQ = new double[SIZE][SIZE];
+        final double[][] pwrSpec = new double[SIZE][SIZE];
+        final double[][] fltSpec = new double[SIZE][SIZE];
+
+        transform(Q, I, specQ, specI, false, null);
+
+        for (int r = 0; r < SIZE; r++) {
+            for (int c = 0; c < SIZE; c++) {
+                pwrSpec[r][c] = Math.sqrt(specI[r][c] * specI[r][c] + specQ[r][c] * specQ[r][c]);
+            }
+        }
+
+        for (int r = 0; r < SIZE; r++) {
+            final int jMin = Math.max(0, r - halfWindowSize);
+            final int jMax = Math.min(SIZE - 1, r + halfWindowSize);
+            for (int c = 0; c < SIZE; c++) {
+                double sum = 0;
+                int k = 0;
+                final int iMin = Math.max(0, c - halfWindowSize);
+                final int iMax = Math.min(SIZE - 1, c + halfWindowSize);
+                for (int j = jMin; j <= jMax; j++) {
+                    for (int i = iMin; i <= iMax; i++) {
+                        if (pwrSpec[j][i] != noDataValue) {
+                            sum += pwrSpec[j][i];
+                            k++;
+                        }
+                    }
+                }
+                fltSpec[r][c] = k != 0 ? FastMath.pow(sum / k, alpha) : 0;
+            }
+        }
+
+        transform(specQ, specI, Q, I, true, fltSpec);
+    }
+
+    /**
+     * Row/column complex transform of re + i * im, forward rows then columns, or inverse (unscaled) columns then
+     * rows of the spectrum weighted by the given filter.
+     */
+    private static void transform(final double[][] re, final double[][] im, final double[][] outRe,
+                                  final double[][] outIm, final boolean inverse, final double[][] weight) {
+
+        final DoubleFFT_1D fft = new DoubleFFT_1D(SIZE);
+        final double[][] tmpRe = new double[SIZE][SIZE];
+        final double[][] tmpIm = new double[SIZE][SIZE];
+        final double[] array = new double[2 * SIZE];
+
+        for (int pass = 0; pass < 2; pass++) {
+            final boolean rows = (pass == 0) != inverse;
+            final double[][] srcRe = pass == 0 ? re : tmpRe;
+            final double[][] srcIm = pass == 0 ? im : tmpIm;
+            final double[][] dstRe = pass == 0 ? tmpRe : outRe;
+            final double[][] dstIm = pass == 0 ? tmpIm : outIm;
+            for (int a = 0; a < SIZE; a++) {
+                for (int b = 0; b < SIZE; b++) {
+                    final int r = rows ? a : b;
+                    final int c = rows ? b : a;
+                    final double w = pass == 0 && weight != null ? weight[r][c] : 1.0;
+                    array[2 * b] = srcRe[r][c] * w;
+                    array[2 * b + 1] = srcIm[r][c] * w;
+                }
+                if (inverse) {
+                    fft.complexInverse(array, false);
+                } else {
+                    fft.complexForward(array);
+                }
+                for (int b = 0; b < SIZE; b++) {
+                    final int r = rows ? a : b;
+                    final int c = rows ? b : a;
+                    dstRe[r][c] = array[2 * b];
+                    dstIm[r][c] = array[2 * b + 1];
+                }
+            }
+        }
+    }
+}
@@ -15,15 +15,24 @@
  */
 package org.esa.s1tbx.insar.gpf;
 
+import com.bc.ceres.core.ProgressMonitor;
 import org.esa.s1tbx.commons.test.TestData;
+import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.datamodel.VirtualBand;
 import org.esa.snap.core.gpf.OperatorSpi;
+import org.esa.snap.engine_utilities.datamodel.Unit;
 import org.esa.snap.engine_utilities.util.TestUtils;
 import org.junit.Test;
 
 import java.io.File;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit test for Calibration Operator.
@@ -36,6 +45,60 @@ public class TestStackAveragingOp {
 
     private final static OperatorSpi spi = new StackAveragingOp.Spi();
 
+    private static final int W = 3;
+    private static final int H = 2;
+    private static final float NO_DATA = -1.0f;
+    private static final String[] DATES = {"_mst_01Jan2010", "_slv1_13Jan2010", "_slv2_25Jan2010"};
+
+    @Test
+    public void testMeanExcludesNoData() throws Exception {
+        // the 4th pixel is no-data in every image
+        final float[] expected = {3.0f, 5.0f, 4.0f, NO_DATA, 4.0f, 7.0f};
+        final Product targetProduct = process(createAmplitudeStack(), "Mean Average", false);
+
+        final Band band = targetProduct.getBand("Amplitude_VV");
+        assertNotNull(band);
+        assertTrue(band.isNoDataValueUsed());
+        assertEquals(NO_DATA, band.getNoDataValue(), 0.0);
+        assertArrayEquals(expected, readPixels(band), 1e-6f);
+    }
+
+    @Test
+    public void testMinimumExcludesNoData() throws Exception {
+        final float[] expected = {1.0f, 5.0f, 4.0f, NO_DATA, 2.0f, 7.0f};
+        final Product targetProduct = process(createAmplitudeStack(), "Minimum", false);
+
+        assertArrayEquals(expected, readPixels(targetProduct.getBand("Amplitude_VV")), 1e-6f);
+    }
+
+    @Test
+    public void testComplexStackAveragesIAndQ() throws Exception {
+        final Product targetProduct = process(createComplexStack(), "Mean Average", false);
+
+        assertArrayEquals(new String[]{"i_VV", "q_VV", "Intensity_VV"}, targetProduct.getBandNames());
+        assertArrayEquals(new float[]{2.0f, 1.0f, 2.0f, 3.0f, 2.5f, 0.0f},
+                          readPixels(targetProduct.getBand("i_VV")), 1e-6f);
+        assertArrayEquals(new float[]{2.0f, 1.5f, 1.0f, 2.0f, 1.5f, 1.0f},
+                          readPixels(targetProduct.getBand("q_VV")), 1e-6f);
+
+        // the intensity of the averaged i and q
+        final Band intensityBand = targetProduct.getBand("Intensity_VV");
+        assertTrue(intensityBand instanceof VirtualBand);
+        assertEquals("i_VV * i_VV + q_VV * q_VV", ((VirtualBand) intensityBand).getExpression());
+    }
+
+    @Test
+    public void testComplexStackOutputIntensity() throws Exception {
+        final Product targetProduct = process(createComplexStack(), "Mean Average", true);
+
+        // the q and intensity groups are replaced by the average of i*i + q*q
+        assertArrayEquals(new String[]{"Intensity_VV"}, targetProduct.getBandNames());
+        final Band band = targetProduct.getBand("Intensity_VV");
+        assertEquals(Unit.INTENSITY, band.getUnit());
+        assertFalse(band instanceof VirtualBand);
+        assertArrayEquals(new float[]{13.0f, 4.5f, 7.0f, 15.0f, 9.0f, 2.0f}, readPixels(band), 1e-6f);
+    }
+
     @Test
     public void testProcessingIMS() throws Exception {
         processFile(TestData.inputStackIMS);
@@ -67,4 +130,69 @@ public class TestStackAveragingOp {
         TestUtils.comparePixels(targetProduct, targetProduct.getBandAt(0).getName(), expected);
     }
 
+    private static Product process(final Product sourceProduct, final String statistic,
+                                   final boolean outputIntensity) {
+        final StackAveragingOp op = (StackAveragingOp) spi.createOperator();
+        assertNotNull(op);
+        op.setSourceProduct(sourceProduct);
+        op.setTestParameters(statistic, outputIntensity);
+
+        // get targetProduct: execute initialize()
+        return op.getTargetProduct();
+    }
+
+    private static float[] readPixels(final Band band) throws Exception {
+        // readPixels: execute computeTile()
+        final float[] values = new float[W * H];
+        band.readPixels(0, 0, W, H, values, ProgressMonitor.NULL);
+        return values;
+    }
+
+    /**
+     * Three amplitude images of 3x2 pixels with -1 as no-data value.
+     */
+    private static Product createAmplitudeStack() {
+        final float[][] values = {
+                {1, NO_DATA, 4, NO_DATA, 2, 7},
+                {3, 5, NO_DATA, NO_DATA, 4, 7},
+                {5, NO_DATA, NO_DATA, NO_DATA, 6, 7}
+        };
+
+        final Product product = TestUtils.createProduct("type", W, H);
+        for (int d = 0; d < DATES.length; d++) {
+            final Band band = addBand(product, "Amplitude_VV" + DATES[d], Unit.AMPLITUDE, values[d]);
+            band.setNoDataValue(NO_DATA);
+            band.setNoDataValueUsed(true);
+        }
+        return product;
+    }
+
+    /**
+     * Two complex images of 3x2 pixels with their intensity virtual bands.
+     */
+    private static Product createComplexStack() {
+        final float[][] iValues = {{1, 2, 3, 4, 2, 1}, {3, 0, 1, 2, 3, -1}};
+        final float[][] qValues = {{0, 1, 2, 3, 1, 1}, {4, 2, 0, 1, 2, 1}};
+
+        final Product product = TestUtils.createProduct("type", W, H);
+        for (int d = 0; d < iValues.length; d++) {
+            final String iName = "i_VV" + DATES[d];
+            final String qName = "q_VV" + DATES[d];
+            addBand(product, iName, Unit.REAL, iValues[d]);
+            addBand(product, qName, Unit.IMAGINARY, qValues[d]);
+
+            final VirtualBand intensityBand = new VirtualBand("Intensity_VV" + DATES[d], ProductData.TYPE_FLOAT32,
+                                                              W, H, iName + " * " + iName + " + " + qName + " * " + qName);
+            intensityBand.setUnit(Unit.INTENSITY);
+            product.addBand(intensityBand);
+        }
+        return product;
+    }
+
+    private static Band addBand(final Product product, final String name, final String unit, final float[] values) {
+        final Band band = product.addBand(name, ProductData.TYPE_FLOAT32);
+        band.setUnit(unit);
+        band.setData(ProductData.createInstance(values));
+        return band;
+    }
 }
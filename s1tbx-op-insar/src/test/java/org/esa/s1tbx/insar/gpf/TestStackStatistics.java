@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares StackStatistics with the band maths expressions previously used by StackAveragingOp.
+ */
+public class TestStackStatistics {
+
+    private static final int numImages = 200;
+    private static final int numPixels = 50;
+
+    @Test
+    public void testExpressionStatistics() {
+        final Random random = new Random(11);
+        final double[][] stack = new double[numImages][numPixels];
+        for (int b = 0; b < numImages; b++) {
+            for (int i = 0; i < numPixels; i++) {
+                stack[b][i] = 100.0 + i + 30.0 * random.nextDouble();
+            }
+        }
+
+        final StackStatistics statistics = new StackStatistics(numPixels, true);
+        for (double[] image : stack) {
+            statistics.accumulate(image);
+        }
+
+        for (int i = 0; i < numPixels; i++) {
+            double mean = 0.0, mean2 = 0.0, mean4 = 0.0;
+            double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            for (int b = 0; b < numImages; b++) {
+                final double v = stack[b][i];
+                mean += v;
+                mean2 += v * v;
+                mean4 += Math.pow(v, 4);
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            mean /= numImages;
+            mean2 /= numImages;
+            mean4 /= numImages;
+
+            assertEquals(numImages, statistics.getCount(i));
+            assertEquals(mean, statistics.getMean(i), 1e-6 * mean);
+            assertEquals(min, statistics.getMin(i), 0.0);
+            assertEquals(max, statistics.getMax(i), 0.0);
+
+            // "sqrt(mean2 - sq(mean))" and "sqrt(mean4 - sq(mean2)) / mean2" in float tolerance
+            final double stddev = Math.sqrt(mean2 - mean * mean);
+            final double coefVar = Math.sqrt(mean4 - mean2 * mean2) / mean2;
+            assertEquals(stddev, statistics.getStdDev(i), 1e-6 * mean);
+            assertEquals(coefVar, statistics.getCoefVar(i), 1e-6);
+        }
+    }
+
+    @Test
+    public void testNoData() {
+        final StackStatistics statistics = new StackStatistics(3, false);
+        statistics.accumulate(new double[]{1.0, Double.NaN, Double.NaN});
+        statistics.accumulate(new double[]{3.0, 5.0, Double.NaN});
+        statistics.accumulate(new double[]{Double.NaN, 7.0, Double.NaN});
+
+        assertEquals(2, statistics.getCount(0));
+        assertEquals(2.0, statistics.getMean(0), 0.0);
+        assertEquals(1.0, statistics.getStdDev(0), 1e-12);
+        assertEquals(1.0, statistics.getMin(0), 0.0);
+        assertEquals(3.0, statistics.getMax(0), 0.0);
+
+        assertEquals(2, statistics.getCount(1));
+        assertEquals(6.0, statistics.getMean(1), 0.0);
+
+        assertEquals(0, statistics.getCount(2));
+    }
+}
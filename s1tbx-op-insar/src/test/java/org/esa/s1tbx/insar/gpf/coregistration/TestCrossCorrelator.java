@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf.coregistration;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for CrossCorrelator.
+ */
+public class TestCrossCorrelator {
+
+    @Test
+    public void testIntegerShift() {
+        final int w = 32, h = 32;
+        final double[] mI = createGaussian(w, h, 16, 16);
+        final double[] sI = createGaussian(w, h, 19, 14);
+
+        final CrossCorrelator correlator = new CrossCorrelator(w, h, 2, 2);
+        correlator.correlate(mI, sI);
+
+        final double[] shift = new double[2];
+        correlator.getPeakShift(shift);
+        assertEquals(3.0, shift[0], 0.05);
+        assertEquals(-2.0, shift[1], 0.05);
+    }
+
+    @Test
+    public void testSubPixelShift() {
+        final int w = 32, h = 32;
+        final double[] mI = createGaussian(w, h, 16, 16);
+        final double[] sI = createGaussian(w, h, 17.3, 14.6);
+
+        final CrossCorrelator correlator = new CrossCorrelator(w, h, 4, 4);
+        correlator.setMasterImagette(mI);
+
+        // master spectrum is reused for repeated slave correlations
+        for (int i = 0; i < 2; ++i) {
+            correlator.correlate(sI);
+            final double[] shift = new double[2];
+            correlator.getPeakShift(shift);
+            assertEquals(1.3, shift[0], 0.05);
+            assertEquals(-1.4, shift[1], 0.05);
+        }
+    }
+
+    @Test
+    public void testParabolicOffset() {
+        assertEquals(0.0, CrossCorrelator.parabolicOffset(1.0, 2.0, 1.0), 1e-12);
+        assertEquals(0.25, CrossCorrelator.parabolicOffset(0.0, 1.5, 1.0), 1e-12);
+        assertEquals(0.0, CrossCorrelator.parabolicOffset(2.0, 1.0, 2.0), 1e-12);
+    }
+
+    private static double[] createGaussian(final int w, final int h, final double cy, final double cx) {
+        final double[] array = new double[w * h];
+        for (int r = 0; r < h; r++) {
+            for (int c = 0; c < w; c++) {
+                final double dy = r - cy;
+                final double dx = c - cx;
+                array[r * w + c] = Math.exp(-(dx * dx + dy * dy) / 8.0);
+            }
+        }
+        return array;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.insar.gpf.coregistration;
+
+import org.junit.Test;
+
+import javax.media.jai.Interpolation;
+import javax.media.jai.WarpGeneralPolynomial;
+import javax.media.jai.WarpPolynomial;
+import java.awt.Rectangle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Compares WarpResampler with the positions of the JAI warp polynomial and the JAI interpolation of the samples
+ * around them.
+ */
+public class TestWarpResampler {
+
+    private static final int IMAGE_WIDTH = 300;
+    private static final int IMAGE_HEIGHT = 200;
+
+    // slave = master shifted by (3.3, -2.7) pixels with a slight scale and rotation
+    private static final WarpPolynomial WARP = new WarpGeneralPolynomial(
+            new float[]{3.3f, 1.0002f, 0.0003f, 1.0e-7f, -2.0e-7f, 1.5e-7f},
+            new float[]{-2.7f, -0.0004f, 0.9998f, -1.0e-7f, 2.0e-7f, 0.5e-7f});
+
+    @Test
+    public void testGrid() {
+        final Rectangle rectangle = new Rectangle(120, 64, 50, 40);
+        final WarpResampler.Grid grid = WarpResampler.createGrid(WARP, rectangle);
+        final float[] positions = WARP.warpRect(rectangle.x, rectangle.y, rectangle.width, rectangle.height, null);
+
+        for (int i = 0; i < rectangle.width * rectangle.height; i++) {
+            assertEquals(positions[2 * i], grid.x[i], 1e-3);
+            assertEquals(positions[2 * i + 1], grid.y[i], 1e-3);
+        }
+    }
+
+    @Test
+    public void testNearest() {
+        compare(Interpolation.getInstance(Interpolation.INTERP_NEAREST));
+    }
+
+    @Test
+    public void testBilinear() {
+        compare(Interpolation.getInstance(Interpolation.INTERP_BILINEAR));
+    }
+
+    @Test
+    public void testBicubic() {
+        compare(Interpolation.getInstance(Interpolation.INTERP_BICUBIC));
+    }
+
+    @Test
+    public void testOutsideImage() {
+        final WarpResampler resampler = new WarpResampler(
+                Interpolation.getInstance(Interpolation.INTERP_BICUBIC), IMAGE_WIDTH, IMAGE_HEIGHT);
+        final WarpPolynomial farAway = new WarpGeneralPolynomial(
+                new float[]{1000f, 1f, 0f}, new float[]{0f, 0f, 1f});
+        final WarpResampler.Grid grid = WarpResampler.createGrid(farAway, new Rectangle(0, 0, 16, 16));
+        assertNull(resampler.getSourceRectangle(grid));
+    }
+
+    private static void compare(final Interpolation interp) {
+
+        final float[] image = new float[IMAGE_WIDTH * IMAGE_HEIGHT];
+        for (int y = 0; y < IMAGE_HEIGHT; y++) {
+            for (int x = 0; x < IMAGE_WIDTH; x++) {
+                image[y * IMAGE_WIDTH + x] = (float) (100.0 * Math.sin(0.37 * x) * Math.cos(0.23 * y) + 0.5 * x);
+            }
+        }
+
+        final WarpResampler resampler = new WarpResampler(interp, IMAGE_WIDTH, IMAGE_HEIGHT);
+
+        // an interior tile and a tile at the image corner
+        final Rectangle[] rectangles = {new Rectangle(100, 80, 64, 48), new Rectangle(0, 0, 32, 32)};
+        for (Rectangle rectangle : rectangles) {
+            final WarpResampler.Grid grid = WarpResampler.createGrid(WARP, rectangle);
+            final Rectangle srcRect = resampler.getSourceRectangle(grid);
+
+            final float[] src = new float[srcRect.width * srcRect.height];
+            for (int y = 0; y < srcRect.height; y++) {
+                System.arraycopy(image, (srcRect.y + y) * IMAGE_WIDTH + srcRect.x, src, y * srcRect.width,
+                                 srcRect.width);
+            }
+
+            final float[] dst = new float[rectangle.width * rectangle.height];
+            resampler.resample(src, srcRect, grid, dst);
+
+            for (int i = 0; i < dst.length; i++) {
+                final float expected = referenceInterpolation(image, interp, grid.x[i], grid.y[i]);
+                assertEquals(expected, dst[i], 1e-4 * (1.0 + Math.abs(expected)));
+            }
+        }
+    }
+
+    /**
+     * The sample computed as by the JAI warp operation for a source position.
+     */
+    private static float referenceInterpolation(final float[] image, final Interpolation interp,
+                                                final double x, final double y) {
+
+        final int w = interp.getWidth();
+        final int h = interp.getHeight();
+        final int xint, yint;
+        if (w == 1) {
+            xint = (int) Math.floor(x + 0.5);
+            yint = (int) Math.floor(y + 0.5);
+        } else {
+            xint = (int) Math.floor(x);
+            yint = (int) Math.floor(y);
+        }
+        final int xs = xint - interp.getLeftPadding();
+        final int ys = yint - interp.getTopPadding();
+        if (xs < 0 || xs + w > IMAGE_WIDTH || ys < 0 || ys + h > IMAGE_HEIGHT) {
+            return 0.0f;
+        }
+
+        final float[][] samples = new float[h][w];
+        for (int j = 0; j < h; j++) {
+            for (int i = 0; i < w; i++) {
+                samples[j][i] = image[(ys + j) * IMAGE_WIDTH + xs + i];
+            }
+        }
+        return interp.interpolate(samples, (float) (x - xint), (float) (y - yint));
+    }
+}
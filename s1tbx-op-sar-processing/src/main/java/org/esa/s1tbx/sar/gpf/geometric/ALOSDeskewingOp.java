@@ -103,6 +103,8 @@ public class ALOSDeskewingOp extends Operator {
     private double radarWaveLength = 0.0;
     private SARGeocoding.Orbit orbit = null;
 
+    private ShiftTable shiftTable = null;
+
     private final HashMap<String, String[]> targetBandNameToSourceBandName = new HashMap<>();
 
     private final static double AngularVelocity = getAngularVelocity();
@@ -145,6 +147,8 @@ public class ALOSDeskewingOp extends Operator {
 
             computeShift();
 
+            computeShiftTables();
+
             updateTargetProductMetadata();
 
         } catch (Throwable e) {
@@ -270,8 +274,9 @@ public class ALOSDeskewingOp extends Operator {
             final int syMax = sy0 + sh;
             final int sxMax = sx0 + sw;
 
+            final int[] lineShift = new int[sw];
+
             final Set<Band> keySet = targetTiles.keySet();
-            double totalShift;
             for (Band targetBand : keySet) {
 
                 final Tile targetTile = targetTiles.get(targetBand);
@@ -283,22 +288,10 @@ public class ALOSDeskewingOp extends Operator {
 
                 for (int y = sy0; y < syMax; y++) {
                     srcIndex.calculateStride(y);
-                    final stateVector v = getOrbitStateVector(firstLineTime + y * lineTimeInterval);
+                    shiftTable.getLineShift(y, sx0, lineShift);
                     for (int x = sx0; x < sxMax; x++) {
 
-                        if (useMapreadyShiftOnly) {
-                            totalShift = FastMath.round(fracShift * x);
-                        } else if (useFAQShiftOnly) {
-                            totalShift = computeFAQShift(v, x);
-                        } else if (useBoth) {
-                            totalShift = computeFAQShift(v, x) + FastMath.round(fracShift * x);
-                        } else if (useHybrid) {
-                            totalShift = absShift + FastMath.round(fracShift * x);
-                        } else {
-                            throw new OperatorException("No method was selected for shift calculation");
-                        }
-
-                        final int newy = y + (int) totalShift;
+                        final int newy = y + lineShift[x - sx0];
                         if (newy >= ty0 && newy < tyMax) {
                             final int trgIdx = targetTile.getDataBufferIndex(x, newy);
                             trgDataBuffer.setElemFloatAt(trgIdx, srcDataBuffer.getElemFloatAt(srcIndex.getIndex(x)));
@@ -345,10 +338,35 @@ public class ALOSDeskewingOp extends Operator {
         return new Rectangle(sx0, sy0, sw, sh);
     }
 
+    /**
+     * Tabulate the deskewing shift of the source pixels.
+     */
+    private void computeShiftTables() {
+
+        shiftTable = ShiftTable.create(useMapreadyShiftOnly, useFAQShiftOnly, useBoth, useHybrid, fracShift, absShift,
+                dopplerCentroidCoefficientLists[0].coefficients, slantRangeToFirstPixel, rangeSpacing, azimuthSpacing,
+                radarWaveLength, orbit.sensorVelocity, sourceImageWidth);
+    }
+
     private double computeFAQShift(final stateVector v, final int x) throws Exception {
 
         final double slr = slantRangeToFirstPixel + x * rangeSpacing;
-        final double fd = getDopplerFrequency(x);
+        return computeFAQShift(v, slr, getDopplerFrequency(x), radarWaveLength, azimuthSpacing);
+    }
+
+    /**
+     * Compute the FAQ shift in lines of a pixel.
+     *
+     * @param v               The orbit state vector of the pixel line.
+     * @param slr             The slant range of the pixel.
+     * @param fd              The Doppler frequency of the pixel.
+     * @param radarWaveLength The radar wave length.
+     * @param azimuthSpacing  The azimuth pixel spacing.
+     * @return The shift.
+     */
+    static double computeFAQShift(final stateVector v, final double slr, final double fd,
+                                  final double radarWaveLength, final double azimuthSpacing) {
+
         final double vel = Math.sqrt(v.xVel * v.xVel + v.yVel * v.yVel + v.zVel * v.zVel);
         return slr * fd * radarWaveLength / (2.0 * vel * azimuthSpacing);
     }
@@ -477,9 +495,12 @@ public class ALOSDeskewingOp extends Operator {
 
     private double getDopplerFrequency(final int x) {
 
-        return dopplerCentroidCoefficientLists[0].coefficients[0] +
-                dopplerCentroidCoefficientLists[0].coefficients[1] * x +
-                dopplerCentroidCoefficientLists[0].coefficients[2] * x * x;
+        return getDopplerFrequency(dopplerCentroidCoefficientLists[0].coefficients, x);
+    }
+
+    static double getDopplerFrequency(final double[] coefficients, final int x) {
+
+        return coefficients[0] + coefficients[1] * x + coefficients[2] * x * x;
     }
 
     private void computeLookYawAngles(final stateVector v, final double slant, final double dopp, double[] lookYaw) {
@@ -698,6 +719,93 @@ public class ALOSDeskewingOp extends Operator {
         }
     }
 
+    /**
+     * Deskewing shift in lines of the source pixels, tabulated once per scene. The range dependent part is held per
+     * pixel and, for the FAQ shift, the velocity dependent part per line, from the sensor velocities of the orbit.
+     * The shift of a pixel is evaluated from the tables with the same operations as computed directly, without orbit
+     * interpolation.
+     */
+    static final class ShiftTable {
+
+        private final double[] rangeShift;
+        private final int[] rangeShiftLines;
+        private final double[] faqShiftNumerator;
+        private final double[] faqShiftDenominator;
+
+        private ShiftTable(final double[] rangeShift, final int[] rangeShiftLines,
+                           final double[] faqShiftNumerator, final double[] faqShiftDenominator) {
+            this.rangeShift = rangeShift;
+            this.rangeShiftLines = rangeShiftLines;
+            this.faqShiftNumerator = faqShiftNumerator;
+            this.faqShiftDenominator = faqShiftDenominator;
+        }
+
+        static ShiftTable create(final boolean useMapreadyShiftOnly, final boolean useFAQShiftOnly,
+                                 final boolean useBoth, final boolean useHybrid,
+                                 final double fracShift, final double absShift, final double[] dopplerCoefficients,
+                                 final double slantRangeToFirstPixel, final double rangeSpacing,
+                                 final double azimuthSpacing, final double radarWaveLength,
+                                 final PosVector[] sensorVelocity, final int width) {
+
+            final boolean useFAQShift = !useMapreadyShiftOnly && (useFAQShiftOnly || useBoth);
+
+            final double[] rangeShift = new double[width];
+            for (int x = 0; x < width; x++) {
+                if (useMapreadyShiftOnly) {
+                    rangeShift[x] = FastMath.round(fracShift * x);
+                } else if (useFAQShiftOnly) {
+                    rangeShift[x] = 0.0;
+                } else if (useBoth) {
+                    rangeShift[x] = FastMath.round(fracShift * x);
+                } else if (useHybrid) {
+                    rangeShift[x] = absShift + FastMath.round(fracShift * x);
+                }
+            }
+
+            if (!useFAQShift) {
+                final int[] rangeShiftLines = new int[width];
+                for (int x = 0; x < width; x++) {
+                    rangeShiftLines[x] = (int) rangeShift[x];
+                }
+                return new ShiftTable(rangeShift, rangeShiftLines, null, null);
+            }
+
+            final double[] faqShiftNumerator = new double[width];
+            for (int x = 0; x < width; x++) {
+                final double slr = slantRangeToFirstPixel + x * rangeSpacing;
+                faqShiftNumerator[x] = slr * getDopplerFrequency(dopplerCoefficients, x) * radarWaveLength;
+            }
+
+            final double[] faqShiftDenominator = new double[sensorVelocity.length];
+            for (int y = 0; y < sensorVelocity.length; y++) {
+                final PosVector v = sensorVelocity[y];
+                final double vel = Math.sqrt(v.x * v.x + v.y * v.y + v.z * v.z);
+                faqShiftDenominator[y] = 2.0 * vel * azimuthSpacing;
+            }
+            return new ShiftTable(rangeShift, null, faqShiftNumerator, faqShiftDenominator);
+        }
+
+        /**
+         * Get the deskewing shift in lines for consecutive pixels of a source line.
+         *
+         * @param y     The source line.
+         * @param x0    The first pixel.
+         * @param shift The shift per pixel, for shift.length pixels.
+         */
+        void getLineShift(final int y, final int x0, final int[] shift) {
+
+            if (faqShiftNumerator == null) {
+                System.arraycopy(rangeShiftLines, x0, shift, 0, shift.length);
+                return;
+            }
+
+            final double denominator = faqShiftDenominator[y];
+            for (int i = 0; i < shift.length; i++) {
+                final int x = x0 + i;
+                shift[i] = (int) (faqShiftNumerator[x] / denominator + rangeShift[x]);
+            }
+        }
+    }
 
     /**
      * The SPI is used to register this operator in the graph processing framework
@@ -0,0 +1,504 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.sar.gpf.geometric;
+
+import org.esa.s1tbx.insar.gpf.support.SARPosition;
+import org.esa.snap.core.datamodel.GeoCoding;
+import org.esa.snap.core.datamodel.GeoPos;
+import org.esa.snap.core.datamodel.PixelPos;
+import org.esa.snap.core.dataop.dem.ElevationModel;
+import org.esa.snap.engine_utilities.datamodel.PosVector;
+import org.esa.snap.engine_utilities.eo.GeoUtils;
+
+import java.awt.*;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
+/**
+ * Scene wide radar coding of a regular latitude/longitude DEM lattice.
+ * <p>
+ * Every lattice post holds its DEM elevation together with the azimuth index, range index, slant range and
+ * sensor position of its zero Doppler solution. Operators simulating the SAR image from the DEM therefore solve
+ * the Range-Doppler equations once per post, however many tiles the post is visited for, and read the heights
+ * of neighbouring posts for the local terrain geometry from the same lattice.
+ * <p>
+ * The lattice covers the scene and is built lazily in blocks the first time a tile needs them. Built blocks are
+ * softly referenced, so they are rebuilt rather than kept if memory runs short. The grid also provides a scene
+ * wide estimate of the terrain induced displacement between the geocoded and the radar coded position of a
+ * point, which bounds the source area contributing to a tile.
+ */
+public final class DEMRadarCodingGrid {
+
+    /**
+     * Solves the zero Doppler position of the earth point of the given position data. Implementations must
+     * be thread safe and must not restrict the solution to a tile.
+     */
+    public interface RadarCoder {
+        boolean getPosition(SARPosition.PositionData data);
+    }
+
+    /**
+     * Elevation of the terrain at a geodetic position, NaN where there is no data.
+     */
+    interface ElevationSource {
+        double getElevation(double lat, double lon) throws Exception;
+    }
+
+    private static final int BLOCK_SIZE = 128; // posts per block side
+    private static final int NUM_MARGIN_SAMPLES = 32; // samples per image side for the displacement estimate
+    private static final int MIN_MARGIN = 16; // pixels
+
+    private final ElevationSource elevationSource;
+    private final GeoCoding geoCoding;
+    private final RadarCoder radarCoder;
+    private final int sceneWidth;
+    private final int sceneHeight;
+
+    private final int margin;
+    private final double marginInDegrees;
+
+    private final double lat0;
+    private final double lon0;
+    private final double delLat;
+    private final double delLon;
+    private final int numLat;
+    private final int numLon;
+
+    private final int numBlockRows;
+    private final int numBlockCols;
+    private final Object[] blockLocks;
+    private final SoftReference<Block>[] blocks;
+
+    /**
+     * @param dem            the elevation model, or null to radar code the ellipsoid at a height of 1 m
+     * @param demNoDataValue the no data value of the elevation model
+     * @param geoCoding      the geocoding of the SAR image
+     * @param sceneWidth     the SAR image width
+     * @param sceneHeight    the SAR image height
+     * @param radarCoder     the zero Doppler solver of the SAR image
+     * @param latAnchor      latitude of any post of the lattice
+     * @param lonAnchor      longitude of any post of the lattice
+     * @param delLat         signed latitude step between lattice rows in degrees
+     * @param delLon         signed longitude step between lattice columns in degrees
+     */
+    public DEMRadarCodingGrid(final ElevationModel dem, final double demNoDataValue, final GeoCoding geoCoding,
+                              final int sceneWidth, final int sceneHeight, final RadarCoder radarCoder,
+                              final double latAnchor, final double lonAnchor,
+                              final double delLat, final double delLon) throws Exception {
+
+        this(getElevationSource(dem, demNoDataValue), geoCoding, sceneWidth, sceneHeight, radarCoder,
+             latAnchor, lonAnchor, delLat, delLon);
+    }
+
+    @SuppressWarnings("unchecked")
+    DEMRadarCodingGrid(final ElevationSource elevationSource, final GeoCoding geoCoding,
+                       final int sceneWidth, final int sceneHeight, final RadarCoder radarCoder,
+                       final double latAnchor, final double lonAnchor,
+                       final double delLat, final double delLon) throws Exception {
+
+        this.elevationSource = elevationSource;
+        this.geoCoding = geoCoding;
+        this.radarCoder = radarCoder;
+        this.sceneWidth = sceneWidth;
+        this.sceneHeight = sceneHeight;
+        this.delLat = delLat;
+        this.delLon = delLon;
+
+        final double[] latLonMinMax = new double[4];
+        computeGeoBoundary(new Rectangle(0, 0, sceneWidth, sceneHeight), latLonMinMax);
+
+        // degrees per pixel, overestimated so that the margin in degrees covers the margin in pixels
+        final double degreesPerPixel = Math.max(latLonMinMax[1] - latLonMinMax[0], latLonMinMax[3] - latLonMinMax[2]) /
+                Math.max(1, Math.min(sceneWidth, sceneHeight));
+
+        margin = computeTerrainDisplacementMargin();
+        marginInDegrees = margin * degreesPerPixel + 2.0 * Math.max(Math.abs(delLat), Math.abs(delLon));
+
+        final int[] latRange = getLatticeRange(latLonMinMax[0] - marginInDegrees, latLonMinMax[1] + marginInDegrees,
+                                               latAnchor, delLat);
+        final int[] lonRange = getLatticeRange(latLonMinMax[2] - marginInDegrees, latLonMinMax[3] + marginInDegrees,
+                                               lonAnchor, delLon);
+        lat0 = latAnchor + latRange[0] * delLat;
+        lon0 = lonAnchor + lonRange[0] * delLon;
+        numLat = latRange[1];
+        numLon = lonRange[1];
+
+        numBlockRows = (numLat + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        numBlockCols = (numLon + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blocks = new SoftReference[numBlockRows * numBlockCols];
+        blockLocks = new Object[blocks.length];
+        for (int k = 0; k < blockLocks.length; k++) {
+            blockLocks[k] = new Object();
+        }
+    }
+
+    /**
+     * @return first lattice index (relative to the anchor) and number of posts covering [min, max]
+     */
+    private static int[] getLatticeRange(final double min, final double max, final double anchor, final double step) {
+
+        final double kA = (min - anchor) / step;
+        final double kB = (max - anchor) / step;
+        final long k0 = step > 0 ? (long) Math.floor(kA) : (long) Math.floor(kB);
+        final long k1 = step > 0 ? (long) Math.ceil(kB) : (long) Math.ceil(kA);
+        return new int[]{(int) k0, (int) (k1 - k0 + 1)};
+    }
+
+    /**
+     * Maximum displacement in pixels between the geocoded and the radar coded position of the DEM surface,
+     * sampled over the whole scene, with a safety factor for terrain between the samples.
+     */
+    private int computeTerrainDisplacementMargin() throws Exception {
+
+        final SARPosition.PositionData data = new SARPosition.PositionData();
+        final PixelPos pixPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+
+        double maxDisplacement = 0.0;
+        for (int r = 0; r <= NUM_MARGIN_SAMPLES; r++) {
+            final int y = (int) ((long) r * (sceneHeight - 1) / NUM_MARGIN_SAMPLES);
+            for (int c = 0; c <= NUM_MARGIN_SAMPLES; c++) {
+                final int x = (int) ((long) c * (sceneWidth - 1) / NUM_MARGIN_SAMPLES);
+
+                pixPos.setLocation(x, y);
+                geoCoding.getGeoPos(pixPos, geoPos);
+                if (!geoPos.isValid()) {
+                    continue;
+                }
+
+                final double alt = getElevation(geoPos.lat, geoPos.lon);
+                if (Double.isNaN(alt)) {
+                    continue;
+                }
+
+                GeoUtils.geo2xyzWGS84(geoPos.lat, geoPos.lon, alt, data.earthPoint);
+                if (!radarCoder.getPosition(data)) {
+                    continue;
+                }
+
+                maxDisplacement = Math.max(maxDisplacement, Math.abs(data.azimuthIndex - y));
+                if (data.rangeIndex != -1) {
+                    maxDisplacement = Math.max(maxDisplacement, Math.abs(data.rangeIndex - x));
+                }
+            }
+        }
+
+        return (int) Math.ceil(1.2 * maxDisplacement) + MIN_MARGIN;
+    }
+
+    /**
+     * @return the number of pixels by which a tile must be extended in every direction to include all source
+     * pixels whose terrain may be radar coded into the tile
+     */
+    public int getMargin() {
+        return margin;
+    }
+
+    public double getLatitudeSpacing() {
+        return delLat;
+    }
+
+    public double getLongitudeSpacing() {
+        return delLon;
+    }
+
+    int getNumLatitudes() {
+        return numLat;
+    }
+
+    int getNumLongitudes() {
+        return numLon;
+    }
+
+    public double getLat(final int i) {
+        return lat0 + i * delLat;
+    }
+
+    public double getLon(final int j) {
+        final double lon = lon0 + j * delLon;
+        return lon >= 180.0 ? lon - 360.0 : lon;
+    }
+
+    private static ElevationSource getElevationSource(final ElevationModel dem, final double demNoDataValue) {
+
+        if (dem == null) {
+            return (lat, lon) -> 1.0;
+        }
+        return (lat, lon) -> {
+            final double alt = dem.getElevation(new GeoPos(lat, lon));
+            return alt == demNoDataValue ? Double.NaN : alt;
+        };
+    }
+
+    private double getElevation(final double lat, final double lon) throws Exception {
+        return elevationSource.getElevation(lat, lon);
+    }
+
+    private void computeGeoBoundary(final Rectangle rect, final double[] latLonMinMax) {
+
+        final int xMax = rect.x + rect.width - 1;
+        final int yMax = rect.y + rect.height - 1;
+        final PixelPos[] corners = {new PixelPos(rect.x, rect.y), new PixelPos(xMax, rect.y),
+                new PixelPos(rect.x, yMax), new PixelPos(xMax, yMax)};
+
+        latLonMinMax[0] = 90.0;
+        latLonMinMax[1] = -90.0;
+        latLonMinMax[2] = 180.0;
+        latLonMinMax[3] = -180.0;
+        for (PixelPos corner : corners) {
+            final GeoPos geoPos = geoCoding.getGeoPos(corner, null);
+            latLonMinMax[0] = Math.min(latLonMinMax[0], geoPos.lat);
+            latLonMinMax[1] = Math.max(latLonMinMax[1], geoPos.lat);
+            latLonMinMax[2] = Math.min(latLonMinMax[2], geoPos.lon);
+            latLonMinMax[3] = Math.max(latLonMinMax[3], geoPos.lon);
+        }
+    }
+
+    private Block getBlock(final int bi, final int bj) throws Exception {
+
+        final int k = bi * numBlockCols + bj;
+        synchronized (blockLocks[k]) {
+            final SoftReference<Block> ref = blocks[k];
+            Block block = ref != null ? ref.get() : null;
+            if (block == null) {
+                block = buildBlock(bi, bj);
+                blocks[k] = new SoftReference<>(block);
+            }
+            return block;
+        }
+    }
+
+    /**
+     * Clear the references to all built blocks, as the garbage collector would when memory runs short.
+     */
+    void clearBlocks() {
+        for (SoftReference<Block> ref : blocks) {
+            if (ref != null) {
+                ref.clear();
+            }
+        }
+    }
+
+    private Block buildBlock(final int bi, final int bj) throws Exception {
+
+        final int i0 = bi * BLOCK_SIZE;
+        final int j0 = bj * BLOCK_SIZE;
+        final int rows = Math.min(BLOCK_SIZE, numLat - i0);
+        final int cols = Math.min(BLOCK_SIZE, numLon - j0);
+        final Block block = new Block(i0, j0, rows, cols);
+        final SARPosition.PositionData data = new SARPosition.PositionData();
+
+        for (int r = 0; r < rows; r++) {
+            final double lat = getLat(i0 + r);
+            for (int c = 0; c < cols; c++) {
+                final int k = r * cols + c;
+                final double lon = getLon(j0 + c);
+
+                final double alt = getElevation(lat, lon);
+                block.elevation[k] = alt;
+                if (Double.isNaN(alt)) {
+                    continue;
+                }
+
+                GeoUtils.geo2xyzWGS84(lat, lon, alt, data.earthPoint);
+                if (!radarCoder.getPosition(data)) {
+                    continue;
+                }
+
+                block.azimuthIndex[k] = data.azimuthIndex;
+                block.rangeIndex[k] = data.rangeIndex;
+                block.slantRange[k] = data.slantRange;
+                block.sensorPos[3 * k] = data.sensorPos.x;
+                block.sensorPos[3 * k + 1] = data.sensorPos.y;
+                block.sensorPos[3 * k + 2] = data.sensorPos.z;
+
+                block.minAzimuthIndex = Math.min(block.minAzimuthIndex, data.azimuthIndex);
+                block.maxAzimuthIndex = Math.max(block.maxAzimuthIndex, data.azimuthIndex);
+                block.minRangeIndex = Math.min(block.minRangeIndex, data.rangeIndex);
+                block.maxRangeIndex = Math.max(block.maxRangeIndex, data.rangeIndex);
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Get the radar coded posts that may fall into the given tile. Only the blocks whose radar coded extent
+     * intersects the tile, extended by one pixel, are included, so the work done per tile is proportional to
+     * the tile area.
+     *
+     * @param rect the tile rectangle in SAR image pixels
+     * @return the window of posts, or null if no post is radar coded into the tile
+     */
+    public Window getWindow(final Rectangle rect) throws Exception {
+
+        final double[] latLonMinMax = new double[4];
+        computeGeoBoundary(rect, latLonMinMax);
+
+        final int[] iRange = getIndexRange(latLonMinMax[0] - marginInDegrees, latLonMinMax[1] + marginInDegrees,
+                                           lat0, delLat, numLat);
+        final int[] jRange = getIndexRange(latLonMinMax[2] - marginInDegrees, latLonMinMax[3] + marginInDegrees,
+                                           lon0, delLon, numLon);
+        if (iRange == null || jRange == null) {
+            return null;
+        }
+
+        final double xMin = rect.x - 1, xMax = rect.x + rect.width;
+        final double yMin = rect.y - 1, yMax = rect.y + rect.height;
+
+        int i0 = Integer.MAX_VALUE, i1 = -1, j0 = Integer.MAX_VALUE, j1 = -1;
+        for (int bi = iRange[0] / BLOCK_SIZE; bi <= iRange[1] / BLOCK_SIZE; bi++) {
+            for (int bj = jRange[0] / BLOCK_SIZE; bj <= jRange[1] / BLOCK_SIZE; bj++) {
+                final Block block = getBlock(bi, bj);
+                if (block.maxAzimuthIndex < yMin || block.minAzimuthIndex > yMax ||
+                        block.maxRangeIndex < xMin || block.minRangeIndex > xMax) {
+                    continue;
+                }
+                i0 = Math.min(i0, block.i0);
+                i1 = Math.max(i1, block.i0 + block.rows - 1);
+                j0 = Math.min(j0, block.j0);
+                j1 = Math.max(j1, block.j0 + block.cols - 1);
+            }
+        }
+        if (i1 < 0) {
+            return null;
+        }
+
+        // border of one post for the neighbours of the posts at the window edges
+        i0 = Math.max(i0 - 1, 0);
+        i1 = Math.min(i1 + 1, numLat - 1);
+        j0 = Math.max(j0 - 1, 0);
+        j1 = Math.min(j1 + 1, numLon - 1);
+
+        final Window window = new Window(i0, j0, i1 - i0 + 1, j1 - j0 + 1);
+        for (int bi = i0 / BLOCK_SIZE; bi <= i1 / BLOCK_SIZE; bi++) {
+            for (int bj = j0 / BLOCK_SIZE; bj <= j1 / BLOCK_SIZE; bj++) {
+                window.copyFrom(getBlock(bi, bj));
+            }
+        }
+        return window;
+    }
+
+    private static int[] getIndexRange(final double min, final double max, final double origin, final double step,
+                                       final int num) {
+
+        final double kA = (min - origin) / step;
+        final double kB = (max - origin) / step;
+        final int k0 = (int) Math.max(Math.floor(Math.min(kA, kB)), 0);
+        final int k1 = (int) Math.min(Math.ceil(Math.max(kA, kB)), num - 1);
+        return k0 <= k1 ? new int[]{k0, k1} : null;
+    }
+
+    private static final class Block {
+        final int i0, j0, rows, cols;
+        final double[] elevation;     // NaN where the DEM has no data
+        final double[] azimuthIndex;  // NaN where the post could not be radar coded
+        final double[] rangeIndex;
+        final double[] slantRange;
+        final double[] sensorPos;     // x, y, z per post
+        double minAzimuthIndex = Double.MAX_VALUE, maxAzimuthIndex = -Double.MAX_VALUE;
+        double minRangeIndex = Double.MAX_VALUE, maxRangeIndex = -Double.MAX_VALUE;
+
+        Block(final int i0, final int j0, final int rows, final int cols) {
+            this.i0 = i0;
+            this.j0 = j0;
+            this.rows = rows;
+            this.cols = cols;
+            elevation = new double[rows * cols];
+            azimuthIndex = new double[rows * cols];
+            rangeIndex = new double[rows * cols];
+            slantRange = new double[rows * cols];
+            sensorPos = new double[3 * rows * cols];
+            Arrays.fill(azimuthIndex, Double.NaN);
+        }
+    }
+
+    /**
+     * Rectangular window of lattice posts copied out of the grid for one tile. Posts are addressed with their
+     * lattice indices. The window has a border of one post, so every post not on the border has all eight
+     * neighbours.
+     */
+    public static final class Window {
+        public final int i0, j0, numRows, numCols;
+        private final double[] elevation;
+        private final double[] azimuthIndex;
+        private final double[] rangeIndex;
+        private final double[] slantRange;
+        private final double[] sensorPos;
+
+        Window(final int i0, final int j0, final int numRows, final int numCols) {
+            this.i0 = i0;
+            this.j0 = j0;
+            this.numRows = numRows;
+            this.numCols = numCols;
+            elevation = new double[numRows * numCols];
+            azimuthIndex = new double[numRows * numCols];
+            rangeIndex = new double[numRows * numCols];
+            slantRange = new double[numRows * numCols];
+            sensorPos = new double[3 * numRows * numCols];
+        }
+
+        private void copyFrom(final Block block) {
+            final int r0 = Math.max(i0, block.i0);
+            final int r1 = Math.min(i0 + numRows, block.i0 + block.rows);
+            final int c0 = Math.max(j0, block.j0);
+            final int c1 = Math.min(j0 + numCols, block.j0 + block.cols);
+            final int len = c1 - c0;
+            for (int i = r0; i < r1; i++) {
+                final int src = (i - block.i0) * block.cols + c0 - block.j0;
+                final int dst = (i - i0) * numCols + c0 - j0;
+                System.arraycopy(block.elevation, src, elevation, dst, len);
+                System.arraycopy(block.azimuthIndex, src, azimuthIndex, dst, len);
+                System.arraycopy(block.rangeIndex, src, rangeIndex, dst, len);
+                System.arraycopy(block.slantRange, src, slantRange, dst, len);
+                System.arraycopy(block.sensorPos, 3 * src, sensorPos, 3 * dst, 3 * len);
+            }
+        }
+
+        private int index(final int i, final int j) {
+            return (i - i0) * numCols + j - j0;
+        }
+
+        /**
+         * @return the DEM elevation or NaN if the DEM has no data at the post
+         */
+        public double getElevation(final int i, final int j) {
+            return elevation[index(i, j)];
+        }
+
+        public boolean isRadarCoded(final int i, final int j) {
+            return !Double.isNaN(azimuthIndex[index(i, j)]);
+        }
+
+        public double getAzimuthIndex(final int i, final int j) {
+            return azimuthIndex[index(i, j)];
+        }
+
+        public double getRangeIndex(final int i, final int j) {
+            return rangeIndex[index(i, j)];
+        }
+
+        public double getSlantRange(final int i, final int j) {
+            return slantRange[index(i, j)];
+        }
+
+        public void getSensorPosition(final int i, final int j, final PosVector sensorPosition) {
+            final int k = 3 * index(i, j);
+            sensorPosition.x = sensorPos[k];
+            sensorPosition.y = sensorPos[k + 1];
+            sensorPosition.z = sensorPos[k + 2];
+        }
+    }
+}
@@ -153,7 +153,7 @@ public final class SARSimulationOp extends Operator {
 
     private MetadataElement absRoot = null;
     private ElevationModel dem = null;
-    private GeoCoding targetGeoCoding = null;
+    private DEMRadarCodingGrid radarCodingGrid = null;
 
     private int sourceImageWidth = 0;
     private int sourceImageHeight = 0;
@@ -340,7 +340,6 @@ public final class SARSimulationOp extends Operator {
             }
         }
 
-        targetGeoCoding = targetProduct.getSceneGeoCoding();
     }
 
     private void addSelectedBands() {
@@ -414,70 +413,33 @@ public final class SARSimulationOp extends Operator {
         }
     }
 
-    private OverlapPercentage computeTileOverlapPercentage(final int x0, final int y0, final int w, final int h)
-            throws Exception {
-
-        final PixelPos pixPos = new PixelPos();
-        final GeoPos geoPos = new GeoPos();
-        final PosVector earthPoint = new PosVector();
-        final PosVector sensorPos = new PosVector();
-
-        double tileOverlapUp = 0.0, tileOverlapDown = 0.0, tileOverlapLeft = 0.0, tileOverlapRight = 0.0;
-        for (int y = y0; y < y0 + h; y += 20) {
-            for (int x = x0; x < x0 + w; x += 20) {
-                pixPos.setLocation(x, y);
-                targetGeoCoding.getGeoPos(pixPos, geoPos);
-                final double alt = dem.getElevation(geoPos);
-                GeoUtils.geo2xyzWGS84(geoPos.getLat(), geoPos.getLon(), alt, earthPoint);
-
-                final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(
-                        firstLineUTC, lineTimeInterval, wavelength, earthPoint, orbit.sensorPosition, orbit.sensorVelocity);
-
-                if (zeroDopplerTime == SARGeocoding.NonValidZeroDopplerTime) {
-                    continue;
-                }
-
-                double slantRange = SARGeocoding.computeSlantRange(zeroDopplerTime, orbit, earthPoint, sensorPos);
-
-                final double zeroDopplerTimeWithoutBias = zeroDopplerTime + slantRange / Constants.lightSpeedInMetersPerDay;
-
-                final int azimuthIndex = (int) ((zeroDopplerTimeWithoutBias - firstLineUTC) / lineTimeInterval + 0.5);
-
-                slantRange = SARGeocoding.computeSlantRange(zeroDopplerTimeWithoutBias, orbit, earthPoint, sensorPos);
-
-                double rangeIndex;
-                if (!srgrFlag) {
-                    rangeIndex = (slantRange - nearEdgeSlantRange) / rangeSpacing;
-                } else {
-                    rangeIndex = SARGeocoding.computeRangeIndex(
-                            srgrFlag, sourceImageWidth, firstLineUTC, lastLineUTC, rangeSpacing,
-                            zeroDopplerTimeWithoutBias, slantRange, nearEdgeSlantRange, srgrConvParams);
-                }
-
-                final double azTileOverlapPercentage = (azimuthIndex - y) / (double) h;
-                if (azTileOverlapPercentage > tileOverlapUp) {
-                    tileOverlapUp = azTileOverlapPercentage;
-                } else if (azTileOverlapPercentage < -tileOverlapDown) {
-                    tileOverlapDown = -azTileOverlapPercentage;
-                }
-
-                final double rgTileOverlapPercentage = (rangeIndex - x) / (double) w;
-                if (rangeIndex != -1) {
-                    if (rgTileOverlapPercentage > tileOverlapLeft) {
-                        tileOverlapLeft = rgTileOverlapPercentage;
-                    } else if (rgTileOverlapPercentage < -tileOverlapRight) {
-                        tileOverlapRight = -rgTileOverlapPercentage;
-                    }
-                }
-            }
+    /**
+     * Get the radar coded DEM lattice of the scene, traversed with the DEM sample interval.
+     *
+     * @throws Exception The exceptions.
+     */
+    private synchronized DEMRadarCodingGrid getRadarCodingGrid() throws Exception {
+
+        if (radarCodingGrid == null) {
+            final SARPosition sarPosition = new SARPosition(
+                    firstLineUTC,
+                    lastLineUTC,
+                    lineTimeInterval,
+                    wavelength,
+                    rangeSpacing,
+                    sourceImageWidth,
+                    srgrFlag,
+                    nearEdgeSlantRange,
+                    nearRangeOnLeft,
+                    orbit,
+                    srgrConvParams
+            );
+
+            radarCodingGrid = new DEMRadarCodingGrid(saveZeroHeightSimulation ? null : dem, demNoDataValue,
+                    sourceProduct.getSceneGeoCoding(), sourceImageWidth, sourceImageHeight, sarPosition::getPosition,
+                    0.0, 0.0, delLat, delLon);
         }
-
-        tileOverlapUp += 0.1;
-        tileOverlapDown += 0.1;
-        tileOverlapLeft += 0.1;
-        tileOverlapRight += 0.1;
-
-        return new OverlapPercentage(tileOverlapUp, tileOverlapDown, tileOverlapLeft, tileOverlapRight);
+        return radarCodingGrid;
     }
 
     /**
@@ -499,13 +461,13 @@ public final class SARSimulationOp extends Operator {
         final int h = targetRectangle.height;
         //System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
 
-        OverlapPercentage tileOverlapPercentage = null;
+        final DEMRadarCodingGrid grid;
         try {
             if (!isElevationModelAvailable) {
                 getElevationModel();
             }
 
-            tileOverlapPercentage = computeTileOverlapPercentage(x0, y0, w, h);
+            grid = getRadarCodingGrid();
         } catch (Exception e) {
             throw new OperatorException(e);
         }
@@ -529,10 +491,11 @@ public final class SARSimulationOp extends Operator {
             layoverShadowMaskBuffer = targetTiles.get(targetProduct.getBand(layoverShadowMaskBandName)).getDataBuffer();
         }
 
-        final int ymin = Math.max(y0 - (int) (h * tileOverlapPercentage.tileOverlapUp), 0);
-        final int ymax = Math.min(y0 + h + (int) (h * tileOverlapPercentage.tileOverlapDown), sourceImageHeight);
-        final int xmin = Math.max(x0 - (int) (w * tileOverlapPercentage.tileOverlapLeft), 0);
-        final int xmax = Math.min(x0 + w + (int) (w * tileOverlapPercentage.tileOverlapRight), sourceImageWidth);
+        final int margin = grid.getMargin();
+        final int ymin = Math.max(y0 - margin, 0);
+        final int ymax = Math.min(y0 + h + margin, sourceImageHeight);
+        final int xmin = Math.max(x0 - margin, 0);
+        final int xmax = Math.min(x0 + w + margin, sourceImageWidth);
 
         final SARPosition sarPosition = new SARPosition(
                 firstLineUTC,
@@ -558,19 +521,13 @@ public final class SARSimulationOp extends Operator {
 
         try {
             if (reGridMethod) {
-                final double[] latLonMinMax = new double[4];
-                computeImageGeoBoundary(xmin, xmax, ymin, ymax, latLonMinMax);
-
-                final double latMin = latLonMinMax[0];
-                final double latMax = latLonMinMax[1];
-                final double lonMin = latLonMinMax[2];
-                final double lonMax = latLonMinMax[3];
-                final int nLat = (int) ((latMax - latMin) / delLat) + 1;
-                final int nLon = (int) ((lonMax - lonMin) / delLon) + 1;
+                final DEMRadarCodingGrid.Window window = grid.getWindow(targetRectangle);
+                if (window == null) {
+                    return;
+                }
 
-                final double[][] tileDEM = new double[nLat + 1][nLon + 1];
+                final int nLon = window.numCols;
                 final double[][] neighbourDEM = new double[3][3];
-                Double alt;
 
                 if (saveLayoverShadowMask) {
                     slrs = new double[nLon];
@@ -579,8 +536,9 @@ public final class SARSimulationOp extends Operator {
                     savePixel = new boolean[nLon];
                 }
 
-                for (int i = 0; i < nLat; i++) {
-                    final double lat = latMin + i * delLat;
+                // posts on the window border only serve as neighbours
+                for (int i = window.i0 + 1; i < window.i0 + window.numRows - 1; i++) {
+                    final double lat = grid.getLat(i);
 
                     if (saveLayoverShadowMask) {
                         Arrays.fill(slrs, 0.0);
@@ -589,51 +547,34 @@ public final class SARSimulationOp extends Operator {
                         Arrays.fill(savePixel, Boolean.FALSE);
                     }
 
-                    for (int j = 0; j < nLon; j++) {
-                        double lon = lonMin + j * delLon;
-                        if (lon >= 180.0) {
-                            lon -= 360.0;
-                        }
-                        if (saveZeroHeightSimulation) {
-                            alt = 1.0;
-                        } else {
-                            geoPos.setLocation(lat, lon);
-                            alt = dem.getElevation(geoPos);
-                            if (alt.equals(demNoDataValue))
-                                continue;
-                        }
-                        tileDEM[i][j] = alt;
+                    for (int j = window.j0 + 1; j < window.j0 + nLon - 1; j++) {
+                        final int jj = j - window.j0;
+                        if (!window.isRadarCoded(i, j))
+                            continue;
 
-                        GeoUtils.geo2xyzWGS84(lat, lon, alt, posData.earthPoint);
-                        if (!sarPosition.getPosition(posData))
+                        posData.azimuthIndex = window.getAzimuthIndex(i, j);
+                        posData.rangeIndex = window.getRangeIndex(i, j);
+                        if (!(posData.azimuthIndex >= y0 - 1 && posData.azimuthIndex <= y0 + h &&
+                                posData.rangeIndex >= x0 - 1 && posData.rangeIndex <= x0 + w))
                             continue;
 
+                        final double lon = grid.getLon(j);
+                        final double alt = window.getElevation(i, j);
+                        posData.slantRange = window.getSlantRange(i, j);
+                        GeoUtils.geo2xyzWGS84(lat, lon, alt, posData.earthPoint);
+                        window.getSensorPosition(i, j, posData.sensorPos);
+
                         final LocalGeometry localGeometry = new LocalGeometry(
                                 lat, lon, delLat, delLon, posData.earthPoint, posData.sensorPos);
 
                         final double[] localIncidenceAngles = {SARGeocoding.NonValidIncidenceAngle,
                                 SARGeocoding.NonValidIncidenceAngle};
 
-                        int r = 0;
-                        for (int ii = Math.max(0, i - 1); ii <= i + 1; ++ii) {
-                            ii = Math.min(nLat, ii);
-                            int c = 0;
-                            double neighbourLat = latMin + ii * delLat;
-                            for (int jj = Math.max(0, j - 1); jj <= j + 1; ++jj) {
-                                jj = Math.min(nLon, jj);
-                                neighbourDEM[r][c] = tileDEM[ii][jj];
-                                if (neighbourDEM[r][c] == 0) {
-                                    if (saveZeroHeightSimulation) {
-                                        neighbourDEM[r][c] = 1;
-                                    } else {
-                                        geoPos.setLocation(neighbourLat, lonMin + jj * delLon);
-                                        neighbourDEM[r][c] = dem.getElevation(geoPos);
-                                    }
-                                    tileDEM[ii][jj] = neighbourDEM[r][c];
-                                }
-                                ++c;
+                        for (int r = 0; r < 3; ++r) {
+                            for (int c = 0; c < 3; ++c) {
+                                final double height = window.getElevation(i - 1 + r, j - 1 + c);
+                                neighbourDEM[r][c] = Double.isNaN(height) ? demNoDataValue : height;
                             }
-                            ++r;
                         }
 
                         SARGeocoding.computeLocalIncidenceAngle(
@@ -649,32 +590,31 @@ public final class SARSimulationOp extends Operator {
                         saveSimulatedData(
                                 posData.azimuthIndex, posData.rangeIndex, v, x0, y0, w, h, targetTile, masterBuffer);
 
-                        int idx = 0;
-                        if (saveDEM || saveLocalIncidenceAngle)
-                            idx = targetTile.getDataBufferIndex((int) posData.rangeIndex, (int) posData.azimuthIndex);
+                        final int rIndex = (int) posData.rangeIndex;
+                        final int aIndex = (int) posData.azimuthIndex;
+                        final boolean inTile = rIndex >= x0 && rIndex < x0 + w && aIndex >= y0 && aIndex < y0 + h;
 
-                        if (saveDEM && idx >= 0) {
-                            demBandBuffer.setElemDoubleAt(idx, alt);
+                        if (saveDEM && inTile) {
+                            demBandBuffer.setElemDoubleAt(targetTile.getDataBufferIndex(rIndex, aIndex), alt);
                         }
                         if (saveZeroHeightSimulation) {
                             saveSimulatedData(posData.azimuthIndex, posData.rangeIndex, 1, x0, y0, w, h, targetTile,
                                     zeroHeightBandBuffer);
                         }
-                        if (saveLocalIncidenceAngle && idx >= 0) {
-                            localIncidenceAngleBandBuffer.setElemDoubleAt(idx, localIncidenceAngles[1]);
+                        if (saveLocalIncidenceAngle && inTile) {
+                            localIncidenceAngleBandBuffer.setElemDoubleAt(
+                                    targetTile.getDataBufferIndex(rIndex, aIndex), localIncidenceAngles[1]);
                         }
 
                         if (saveLayoverShadowMask) {
-                            int rIndex = (int) posData.rangeIndex;
-                            int aIndex = (int) posData.azimuthIndex;
-                            if (rIndex >= x0 && rIndex < x0 + w && aIndex >= y0 && aIndex < y0 + h) {
-                                index[j] = targetTile.getDataBufferIndex(rIndex, aIndex);
-                                slrs[j] = posData.slantRange;
-                                elev[j] = computeElevationAngle(
+                            if (inTile) {
+                                index[jj] = targetTile.getDataBufferIndex(rIndex, aIndex);
+                                slrs[jj] = posData.slantRange;
+                                elev[jj] = computeElevationAngle(
                                         posData.slantRange, posData.earthPoint, posData.sensorPos);
-                                savePixel[j] = true;
+                                savePixel[jj] = true;
                             } else {
-                                savePixel[j] = false;
+                                savePixel[jj] = false;
                             }
                         }
                     }
@@ -1070,21 +1010,6 @@ public final class SARSimulationOp extends Operator {
         delLon = delLat;
     }
 
-    private static class OverlapPercentage {
-        final double tileOverlapUp;
-        final double tileOverlapDown;
-        final double tileOverlapLeft;
-        final double tileOverlapRight;
-
-        OverlapPercentage(final double tileOverlapUp, final double tileOverlapDown,
-                                 final double tileOverlapLeft, final double tileOverlapRight) {
-            this.tileOverlapUp = tileOverlapUp;
-            this.tileOverlapDown = tileOverlapDown;
-            this.tileOverlapLeft = tileOverlapLeft;
-            this.tileOverlapRight = tileOverlapRight;
-        }
-    }
-
     /**
      * The SPI is used to register this operator in the graph processing framework
      * via the SPI configuration file
@@ -37,6 +37,7 @@ import org.esa.snap.engine_utilities.gpf.OperatorUtils;
 import org.esa.snap.engine_utilities.util.Maths;
 
 import java.awt.*;
+import java.util.Arrays;
 
 /**
  * Slant Range to Ground Range Conversion.
@@ -86,9 +87,10 @@ public class SRGROp extends Operator {
     private int targetImageWidth;
     private int targetImageHeight;
 
-    private enum Interpolation {NEAREST_NEIGHBOR, LINEAR, CUBIC, CUBIC2, SINC}
+    enum Interpolation {NEAREST_NEIGHBOR, LINEAR, CUBIC, CUBIC2, SINC}
 
     private Interpolation interpMethod = Interpolation.LINEAR;
+    private ResamplingTable resamplingTable;
 
     public static final String nearestNeighbourStr = "Nearest-neighbor interpolation";
     public static final String linearStr = "Linear interpolation";
@@ -164,6 +166,9 @@ public class SRGROp extends Operator {
                     break;
             }
 
+            resamplingTable = ResamplingTable.create(interpMethod, warpPolynomialCoef, groundRangeSpacing,
+                    slantRangeSpacing, targetImageWidth, sourceImageWidth);
+
         } catch (Throwable e) {
             OperatorUtils.catchOperatorException(getId(), e);
         }
@@ -225,65 +230,17 @@ public class SRGROp extends Operator {
 
             final ProductData trgData = targetTile.getDataBuffer();
             final ProductData srcData = sourceRaster.getDataBuffer();
+            final int sx0 = sourceTileRectangle.x;
 
-            int p0 = 0, p1 = 0, p2 = 0, p3 = 0, p4 = 0;
-            double v0 = 0.0, v1 = 0.0, v2 = 0.0, v3 = 0.0, v4 = 0.0, v = 0.0;
-            double mu = 0.0;
-
-            for (int x = tx0; x < tx0 + tw; x++) {
-                final double p = getSlantRangePixelPosition((double) x);
-                if (interpMethod.equals(Interpolation.NEAREST_NEIGHBOR)) {
-                    p0 = Math.min((int) (p + 0.5), sourceImageWidth - 1);
-                } else if (interpMethod.equals(Interpolation.LINEAR)) {
-                    p0 = Math.min((int) p, sourceImageWidth - 2);
-                    p1 = p0 + 1;
-                    mu = p - p0;
-                } else if (interpMethod.equals(Interpolation.CUBIC) || interpMethod.equals(Interpolation.CUBIC2)) {
-                    p1 = Math.min((int) p, sourceImageWidth - 1);
-                    p0 = Math.max(p1 - 1, 0);
-                    p2 = Math.min(p1 + 1, sourceImageWidth - 1);
-                    p3 = Math.min(p1 + 2, sourceImageWidth - 1);
-                    mu = Math.min(p - p1, 1.0);
-                } else if (interpMethod.equals(Interpolation.SINC)) {
-                    p2 = Math.min((int) (p + 0.5), sourceImageWidth - 1);
-                    p0 = Math.max(p2 - 2, 0);
-                    p1 = Math.max(p2 - 1, 0);
-                    p3 = Math.min(p2 + 1, sourceImageWidth - 1);
-                    p4 = Math.min(p2 + 2, sourceImageWidth - 1);
-                    mu = p - p2;
-                }
-
-                for (int y = ty0; y < ty0 + th; y++) {
-                    if (interpMethod.equals(Interpolation.NEAREST_NEIGHBOR)) {
-                        v = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p0, y));
-                    } else if (interpMethod.equals(Interpolation.LINEAR)) {
-                        v0 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p0, y));
-                        v1 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p1, y));
-                        v = Maths.interpolationLinear(v0, v1, mu);
-                    } else if (interpMethod.equals(Interpolation.CUBIC)) {
-                        v0 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p0, y));
-                        v1 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p1, y));
-                        v2 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p2, y));
-                        v3 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p3, y));
-                        v = Maths.interpolationCubic(v0, v1, v2, v3, mu);
-                    } else if (interpMethod.equals(Interpolation.CUBIC2)) {
-                        v0 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p0, y));
-                        v1 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p1, y));
-                        v2 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p2, y));
-                        v3 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p3, y));
-                        v = Maths.interpolationCubic2(v0, v1, v2, v3, mu);
-                    } else if (interpMethod.equals(Interpolation.SINC)) {
-                        v0 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p0, y));
-                        v1 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p1, y));
-                        v2 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p2, y));
-                        v3 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p3, y));
-                        v4 = srcData.getElemDoubleAt(sourceRaster.getDataBufferIndex(p4, y));
-                        v = Maths.interpolationSinc(v0, v1, v2, v3, v4, mu);
-                    }
+            for (int y = ty0; y < ty0 + th; y++) {
+                final int srcOffset = sourceRaster.getDataBufferIndex(sx0, y) - sx0;
+                final int trgOffset = targetTile.getDataBufferIndex(tx0, y) - tx0;
+                for (int x = tx0; x < tx0 + tw; x++) {
+                    double v = resamplingTable.resample(srcData, srcOffset, x);
                     if (bandUnit == Unit.UnitType.INTENSITY) {
                         v = Math.max(v, 0.0);
                     }
-                    trgData.setElemDoubleAt(targetTile.getDataBufferIndex(x, y), v);
+                    trgData.setElemDoubleAt(trgOffset + x, v);
                 }
             }
         } catch (Throwable e) {
@@ -307,6 +264,20 @@ public class SRGROp extends Operator {
      * @return The pixel index in the slant range image
      */
     private double getSlantRangePixelPosition(double x) {
+        return getSlantRangePixelPosition(x, warpPolynomialCoef, groundRangeSpacing, slantRangeSpacing);
+    }
+
+    /**
+     * Get slant range pixel position given pixel index in the ground range image.
+     *
+     * @param x                  The pixel index in the ground range image.
+     * @param warpPolynomialCoef The WARP polynomial coefficients.
+     * @param groundRangeSpacing The ground range pixel spacing in m.
+     * @param slantRangeSpacing  The slant range pixel spacing in m.
+     * @return The pixel index in the slant range image
+     */
+    static double getSlantRangePixelPosition(final double x, final double[] warpPolynomialCoef,
+                                             final double groundRangeSpacing, final double slantRangeSpacing) {
 
         if (Double.compare(x, 0.0) == 0) {
             return 0.0;
@@ -314,7 +285,7 @@ public class SRGROp extends Operator {
 
         final double dg = groundRangeSpacing * x;
         double ds = 0.0;
-        for (int j = 0; j < warpPolynomialOrder + 1; j++) {
+        for (int j = 0; j < warpPolynomialCoef.length; j++) {
             ds += FastMath.pow(dg, (double) j) * warpPolynomialCoef[j];
         }
         return ds / slantRangeSpacing;
@@ -549,10 +520,24 @@ public class SRGROp extends Operator {
 
         final int y = sourceImageHeight / 2;
         computeGroundRangeDistanceArray(y);
+        warpPolynomialCoef = fitWarpPolynomial(groundRangeDistanceArray, slantRangeDistanceArray,
+                warpPolynomialOrder);
+    }
+
+    /**
+     * Fit the WARP polynomial from ground range to slant range distances.
+     *
+     * @param groundRangeDistanceArray Ground range distance from each selected range point to the 1st one.
+     * @param slantRangeDistanceArray  Slant range distance from each selected range point to the 1st one.
+     * @param warpPolynomialOrder      The polynomial order.
+     * @return The polynomial coefficients, constant term first.
+     */
+    static double[] fitWarpPolynomial(final double[] groundRangeDistanceArray,
+                                      final double[] slantRangeDistanceArray, final int warpPolynomialOrder) {
         final Matrix A = Maths.createVandermondeMatrix(groundRangeDistanceArray, warpPolynomialOrder);
-        final Matrix b = new Matrix(slantRangeDistanceArray, numRangePoints - 1);
+        final Matrix b = new Matrix(slantRangeDistanceArray, slantRangeDistanceArray.length);
         final Matrix x = A.solve(b);
-        warpPolynomialCoef = x.getColumnPackedCopy();
+        return x.getColumnPackedCopy();
     }
 
     /**
@@ -633,6 +618,154 @@ public class SRGROp extends Operator {
         return warpPolynomialCoef;
     }
 
+    /**
+     * Source columns and interpolation weights of every target column, taps per column, for one set of WARP
+     * polynomial coefficients.
+     */
+    static final class ResamplingTable {
+        private final Interpolation interpMethod;
+        private final double[] warpPolynomialCoef;
+        private final double groundRangeSpacing;
+        private final double slantRangeSpacing;
+        private final int targetImageWidth;
+        private final int sourceImageWidth;
+
+        private final int taps;
+        private final int[] indices;
+        private final double[] weights;
+
+        private ResamplingTable(final Interpolation interpMethod, final double[] warpPolynomialCoef,
+                                final double groundRangeSpacing, final double slantRangeSpacing,
+                                final int targetImageWidth, final int sourceImageWidth, final int taps) {
+            this.interpMethod = interpMethod;
+            this.warpPolynomialCoef = warpPolynomialCoef.clone();
+            this.groundRangeSpacing = groundRangeSpacing;
+            this.slantRangeSpacing = slantRangeSpacing;
+            this.targetImageWidth = targetImageWidth;
+            this.sourceImageWidth = sourceImageWidth;
+            this.taps = taps;
+            this.indices = new int[taps * targetImageWidth];
+            this.weights = new double[taps * targetImageWidth];
+        }
+
+        /**
+         * Compute for every target column the source columns and the weights of the interpolation kernel.
+         * The weight of each source sample is the kernel applied to a unit sample, as the kernels are linear.
+         */
+        static ResamplingTable create(final Interpolation interpMethod, final double[] warpPolynomialCoef,
+                                      final double groundRangeSpacing, final double slantRangeSpacing,
+                                      final int targetImageWidth, final int sourceImageWidth) {
+
+            final int taps;
+            switch (interpMethod) {
+                case NEAREST_NEIGHBOR:
+                    taps = 1;
+                    break;
+                case LINEAR:
+                    taps = 2;
+                    break;
+                case SINC:
+                    taps = 5;
+                    break;
+                default:
+                    taps = 4;
+            }
+
+            final ResamplingTable table = new ResamplingTable(interpMethod, warpPolynomialCoef, groundRangeSpacing,
+                    slantRangeSpacing, targetImageWidth, sourceImageWidth, taps);
+            final double[] unit = new double[taps];
+            for (int x = 0; x < targetImageWidth; x++) {
+                final double p = getSlantRangePixelPosition((double) x, warpPolynomialCoef, groundRangeSpacing,
+                        slantRangeSpacing);
+                final int[] idx = new int[taps];
+                double mu = 0.0;
+                switch (interpMethod) {
+                    case NEAREST_NEIGHBOR:
+                        idx[0] = Math.min((int) (p + 0.5), sourceImageWidth - 1);
+                        break;
+                    case LINEAR:
+                        idx[0] = Math.min((int) p, sourceImageWidth - 2);
+                        idx[1] = idx[0] + 1;
+                        mu = p - idx[0];
+                        break;
+                    case CUBIC:
+                    case CUBIC2:
+                        idx[1] = Math.min((int) p, sourceImageWidth - 1);
+                        idx[0] = Math.max(idx[1] - 1, 0);
+                        idx[2] = Math.min(idx[1] + 1, sourceImageWidth - 1);
+                        idx[3] = Math.min(idx[1] + 2, sourceImageWidth - 1);
+                        mu = Math.min(p - idx[1], 1.0);
+                        break;
+                    case SINC:
+                        idx[2] = Math.min((int) (p + 0.5), sourceImageWidth - 1);
+                        idx[0] = Math.max(idx[2] - 2, 0);
+                        idx[1] = Math.max(idx[2] - 1, 0);
+                        idx[3] = Math.min(idx[2] + 1, sourceImageWidth - 1);
+                        idx[4] = Math.min(idx[2] + 2, sourceImageWidth - 1);
+                        mu = p - idx[2];
+                        break;
+                }
+
+                for (int t = 0; t < taps; t++) {
+                    unit[t] = 1.0;
+                    final double w;
+                    switch (interpMethod) {
+                        case LINEAR:
+                            w = Maths.interpolationLinear(unit[0], unit[1], mu);
+                            break;
+                        case CUBIC:
+                            w = Maths.interpolationCubic(unit[0], unit[1], unit[2], unit[3], mu);
+                            break;
+                        case CUBIC2:
+                            w = Maths.interpolationCubic2(unit[0], unit[1], unit[2], unit[3], mu);
+                            break;
+                        case SINC:
+                            w = Maths.interpolationSinc(unit[0], unit[1], unit[2], unit[3], unit[4], mu);
+                            break;
+                        default:
+                            w = 1.0;
+                    }
+                    unit[t] = 0.0;
+                    table.indices[x * taps + t] = idx[t];
+                    table.weights[x * taps + t] = w;
+                }
+            }
+            return table;
+        }
+
+        /**
+         * Get the table for a set of WARP polynomial coefficients, e.g. of another range line.
+         *
+         * @param coefficients The WARP polynomial coefficients.
+         * @return This table if it was computed for the same coefficients, otherwise a new table.
+         */
+        ResamplingTable forCoefficients(final double[] coefficients) {
+            if (Arrays.equals(warpPolynomialCoef, coefficients)) {
+                return this;
+            }
+            return create(interpMethod, coefficients, groundRangeSpacing, slantRangeSpacing,
+                    targetImageWidth, sourceImageWidth);
+        }
+
+        /**
+         * Interpolate the value of a target column from a source line.
+         *
+         * @param srcData   The source samples.
+         * @param srcOffset The index in srcData of source column 0 of the line.
+         * @param x         The target column.
+         * @return The interpolated value.
+         */
+        double resample(final ProductData srcData, final int srcOffset, final int x) {
+            int k = x * taps;
+            double v = weights[k] * srcData.getElemDoubleAt(srcOffset + indices[k]);
+            for (int t = 1; t < taps; t++) {
+                k++;
+                v += weights[k] * srcData.getElemDoubleAt(srcOffset + indices[k]);
+            }
+            return v;
+        }
+    }
+
     /**
      * The SPI is used to register this operator in the graph processing framework
      * via the SPI configuration file
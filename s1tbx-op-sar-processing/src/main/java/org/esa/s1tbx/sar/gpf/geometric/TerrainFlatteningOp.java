@@ -19,6 +19,7 @@ import com.bc.ceres.core.ProgressMonitor;
 import org.apache.commons.math3.util.FastMath;
 import org.esa.s1tbx.commons.polsar.PolBandUtils;
 import org.esa.s1tbx.insar.gpf.support.SARGeocoding;
+import org.esa.s1tbx.insar.gpf.support.SARPosition;
 import org.esa.s1tbx.insar.gpf.support.SARUtils;
 import org.esa.snap.core.datamodel.*;
 import org.esa.snap.core.dataop.dem.ElevationModel;
@@ -95,7 +96,7 @@ public final class TerrainFlatteningOp extends Operator {
     private ElevationModel dem = null;
     private FileElevationModel fileElevationModel = null;
     private TiePointGrid incidenceAngleTPG = null;
-    private GeoCoding targetGeoCoding = null;
+    private DEMRadarCodingGrid radarCodingGrid = null;
 
     private int sourceImageWidth = 0;
     private int sourceImageHeight = 0;
@@ -327,8 +328,6 @@ public final class TerrainFlatteningOp extends Operator {
         if (externalDEMFile != null) {
             absTgt.setAttributeDouble("external DEM no data value", externalDEMNoDataValue);
         }
-
-        targetGeoCoding = targetProduct.getSceneGeoCoding();
     }
 
     /**
@@ -453,6 +452,7 @@ public final class TerrainFlatteningOp extends Operator {
             if (!isElevationModelAvailable) {
                 getElevationModel();
             }
+            final DEMRadarCodingGrid grid = getRadarCodingGrid();
 
             final int x0 = targetRectangle.x;
             final int y0 = targetRectangle.y;
@@ -460,8 +460,6 @@ public final class TerrainFlatteningOp extends Operator {
             final int h = targetRectangle.height;
             //System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
 
-            final OverlapPercentage tileOverlapPercentage = computeTileOverlapPercentage(x0, y0, w, h);
-
             final double[][] gamma0ReferenceArea = new double[h][w];
             double[][] sigma0ReferenceArea = null;
             if (outputSigma0) {
@@ -469,7 +467,7 @@ public final class TerrainFlatteningOp extends Operator {
             }
 
             final boolean validSimulation = generateSimulatedImage(
-                    x0, y0, w, h, tileOverlapPercentage, gamma0ReferenceArea, sigma0ReferenceArea);
+                    x0, y0, w, h, grid, gamma0ReferenceArea, sigma0ReferenceArea);
 
             if (!validSimulation) {
                 return;
@@ -493,131 +491,32 @@ public final class TerrainFlatteningOp extends Operator {
      * @param y0                  Y coordinate of the upper left corner pixel of given tile.
      * @param w                   Width of given tile.
      * @param h                   Height of given tile.
+     * @param grid                The radar coded DEM lattice of the scene.
      * @param gamma0ReferenceArea The simulated image for flattened gamma0 generation.
      * @param sigma0ReferenceArea The simulated image for flattened sigma0 generation.
      * @return Boolean flag indicating if the simulation is successful.
      */
     private boolean generateSimulatedImage(final int x0, final int y0, final int w, final int h,
-                                           final OverlapPercentage tileOverlapPercentage,
+                                           final DEMRadarCodingGrid grid,
                                            final double[][] gamma0ReferenceArea,
                                            final double[][] sigma0ReferenceArea) {
 
         try {
-            final int ymin = Math.max(y0 - (int) (h * tileOverlapPercentage.tileOverlapUp), 0);
-            final int ymax = Math.min(y0 + h + (int) (h * tileOverlapPercentage.tileOverlapDown), sourceImageHeight);
-            final int xmin = Math.max(x0 - (int) (w * tileOverlapPercentage.tileOverlapLeft), 0);
-            final int xmax = Math.min(x0 + w + (int) (w * tileOverlapPercentage.tileOverlapRight), sourceImageWidth);
-
             if (reGridMethod) {
-                final double[] latLonMinMax = new double[4];
-                computeImageGeoBoundary(xmin, xmax, ymin, ymax, latLonMinMax);
-
-                double delta = (double) dem.getDescriptor().getTileWidthInDegrees() /
-                        (double) dem.getDescriptor().getTileWidth();
-
-                final double extralat = 20 * delta;
-                final double extralon = 20 * delta;
-
-                double latMin = latLonMinMax[0] - extralat;
-                double latMax = latLonMinMax[1] + extralat;
-                double lonMin = latLonMinMax[2] - extralon;
-                double lonMax = latLonMinMax[3] + extralon;
-
-                final PixelPos upperLeft = dem.getIndex(new GeoPos(latMax, lonMin));
-                final PixelPos lowerRight = dem.getIndex(new GeoPos(latMin, lonMax));
-                final int latMaxIdx = (int) Math.floor(upperLeft.getY());
-                final int latMinIdx = (int) Math.ceil(lowerRight.getY());
-                final int lonMinIdx = (int) Math.floor(upperLeft.getX());
-                final int lonMaxIdx = (int) Math.ceil(lowerRight.getX());
-
-                final GeoPos gpUL = dem.getGeoPos(new PixelPos(lonMinIdx, latMaxIdx));
-                final GeoPos gpLR = dem.getGeoPos(new PixelPos(lonMaxIdx, latMinIdx));
-                latMin = gpLR.getLat();
-                latMax = gpUL.getLat();
-                lonMin = gpUL.getLon();
-                lonMax = gpLR.getLon();
-
-                delta /= overSamplingFactor;
-
-                final int nLat = (int)Math.round((latMax - latMin) / delta);
-                final int nLon = (int)Math.round((lonMax - lonMin) / delta);
-
-                final PositionData posData = new PositionData();
-                for (int i = 0; i < nLat; i++) {
-                    final double lat = latMax - i*delta;
-                    final double[] azimuthIndex = new double[nLon];
-                    final double[] rangeIndex = new double[nLon];
-                    final double[] gamma0Area = new double[nLon];
-                    final double[] elevationAngle = new double[nLon];
-                    final boolean[] savePixel = new boolean[nLon];
-                    double[] sigma0Area = null;
-                    if (outputSigma0) {
-                        sigma0Area = new double[nLon];
-                    }
-
-                    for (int j = 0; j < nLon; j++) {
-                        final double lon = lonMin + j*delta;
-                        final Double alt = dem.getElevation(new GeoPos(lat, lon));
-                        if (Double.isNaN(alt) || alt.equals(demNoDataValue))
-                            continue;
-
-                        if (!getPosition(lat, lon, alt, x0, y0, w, h, posData))
-                            continue;
-
-                        final LocalGeometry localGeometry = new LocalGeometry(lat, lon, delta, dem,
-                                posData.earthPoint, posData.sensorPos);
-
-                        gamma0Area[j] = computeGamma0Area(localGeometry, demNoDataValue, noDataValue);
-                        if (noDataValue.equals(gamma0Area[j]))
-                            continue;
-
-                        if (outputSigma0) {
-                            sigma0Area[j] = computeSigma0Area(localGeometry, demNoDataValue, noDataValue);
-                        }
-
-                        elevationAngle[j] = computeElevationAngle(posData.earthPoint, posData.sensorPos);
-                        rangeIndex[j] = posData.rangeIndex;
-                        azimuthIndex[j] = posData.azimuthIndex;
-                        savePixel[j] = rangeIndex[j] > x0 - 1 && rangeIndex[j] < x0 + w &&
-                                azimuthIndex[j] > y0 - 1 && azimuthIndex[j] < y0 + h;
-                    }
-
-                    if (orbitOnWest) {
-                        // traverse from near range to far range to detect shadowing area
-                        double maxElevAngle = 0.0;
-                        for (int jj = 0; jj < nLon; jj++) {
-                            if (savePixel[jj] && (!detectShadow || elevationAngle[jj] >= maxElevAngle)) {
-                                maxElevAngle = elevationAngle[jj];
-                                saveGamma0Area(x0, y0, w, h, gamma0Area[jj], azimuthIndex[jj], rangeIndex[jj],
-                                        gamma0ReferenceArea);
-
-                                if (outputSigma0) {
-                                    saveSigma0Area(x0, y0, w, h, sigma0Area[jj], azimuthIndex[jj], rangeIndex[jj],
-                                            sigma0ReferenceArea);
-                                }
-                            }
-                        }
-
-                    } else {
-                        // traverse from near range to far range to detect shadowing area
-                        double maxElevAngle = 0.0;
-                        for (int jj = nLon - 1; jj >= 0; --jj) {
-                            if (savePixel[jj] && (!detectShadow || elevationAngle[jj] >= maxElevAngle)) {
-                                maxElevAngle = elevationAngle[jj];
-                                saveGamma0Area(x0, y0, w, h, gamma0Area[jj], azimuthIndex[jj], rangeIndex[jj],
-                                        gamma0ReferenceArea);
-
-                                if (outputSigma0) {
-                                    saveSigma0Area(x0, y0, w, h, sigma0Area[jj], azimuthIndex[jj], rangeIndex[jj],
-                                            sigma0ReferenceArea);
-                                }
-                            }
-                        }
-                    }
+                final DEMRadarCodingGrid.Window window = grid.getWindow(new Rectangle(x0, y0, w, h));
+                if (window != null) {
+                    simulateOnGrid(x0, y0, w, h, grid, window, orbitOnWest, detectShadow, demNoDataValue,
+                            noDataValue, gamma0ReferenceArea, sigma0ReferenceArea);
                 }
 
             } else {
 
+                final int margin = grid.getMargin();
+                final int ymin = Math.max(y0 - margin, 0);
+                final int ymax = Math.min(y0 + h + margin, sourceImageHeight);
+                final int xmin = Math.max(x0 - margin, 0);
+                final int xmax = Math.min(x0 + w + margin, sourceImageWidth);
+
                 final int widthExt = xmax - xmin;
                 final int heightExt = ymax - ymin;
 
@@ -633,7 +532,7 @@ public final class TerrainFlatteningOp extends Operator {
                     return false;
                 }
 
-                final PositionData posData = new PositionData();
+                final SARPosition.PositionData posData = new SARPosition.PositionData();
                 final GeoPos geoPos = new GeoPos();
                 for (int y = ymin; y < ymax; y++) {
                     final int yy = y - ymin;
@@ -729,55 +628,142 @@ public final class TerrainFlatteningOp extends Operator {
         return true;
     }
 
-    private void computeImageGeoBoundary(final int xmin, final int xmax, final int ymin, final int ymax,
-                                         double[] latLonMinMax) throws Exception {
+    /**
+     * Simulate the reference areas of a tile from the posts of the radar coded DEM lattice.
+     *
+     * @param x0                  X coordinate of the upper left corner pixel of given tile.
+     * @param y0                  Y coordinate of the upper left corner pixel of given tile.
+     * @param w                   Width of given tile.
+     * @param h                   Height of given tile.
+     * @param grid                The radar coded DEM lattice of the scene.
+     * @param window              The posts of the lattice that may fall into the tile.
+     * @param orbitOnWest         Flag indicating if the orbit is west of the scene.
+     * @param detectShadow        Flag indicating if shadowed posts are excluded.
+     * @param demNoDataValue      The no data value of the DEM.
+     * @param noDataValue         The no data value of the reference areas.
+     * @param gamma0ReferenceArea The simulated image for flattened gamma0 generation.
+     * @param sigma0ReferenceArea The simulated image for flattened sigma0 generation, or null.
+     */
+    static void simulateOnGrid(final int x0, final int y0, final int w, final int h,
+                               final DEMRadarCodingGrid grid, final DEMRadarCodingGrid.Window window,
+                               final boolean orbitOnWest, final boolean detectShadow,
+                               final double demNoDataValue, final Double noDataValue,
+                               final double[][] gamma0ReferenceArea, final double[][] sigma0ReferenceArea) {
 
-        final GeoCoding geoCoding = sourceProduct.getSceneGeoCoding();
-        if (geoCoding == null) {
-            throw new OperatorException("Product does not contain a geocoding");
-        }
-        final GeoPos geoPosFirstNear = geoCoding.getGeoPos(new PixelPos(xmin, ymin), null);
-        final GeoPos geoPosFirstFar = geoCoding.getGeoPos(new PixelPos(xmax, ymin), null);
-        final GeoPos geoPosLastNear = geoCoding.getGeoPos(new PixelPos(xmin, ymax), null);
-        final GeoPos geoPosLastFar = geoCoding.getGeoPos(new PixelPos(xmax, ymax), null);
-
-        final double[] lats = {geoPosFirstNear.getLat(), geoPosFirstFar.getLat(), geoPosLastNear.getLat(), geoPosLastFar.getLat()};
-        final double[] lons = {geoPosFirstNear.getLon(), geoPosFirstFar.getLon(), geoPosLastNear.getLon(), geoPosLastFar.getLon()};
-        double latMin = 90.0;
-        double latMax = -90.0;
-        for (double lat : lats) {
-            if (lat < latMin) {
-                latMin = lat;
-            }
-            if (lat > latMax) {
-                latMax = lat;
+        final boolean outputSigma0 = sigma0ReferenceArea != null;
+
+        final double delta = -grid.getLatitudeSpacing();
+        final int nLon = window.numCols;
+        final PosVector earthPoint = new PosVector();
+        final PosVector sensorPos = new PosVector();
+
+        // posts on the window border only serve as neighbours
+        for (int i = window.i0 + 1; i < window.i0 + window.numRows - 1; i++) {
+            final double lat = grid.getLat(i);
+            final double[] azimuthIndex = new double[nLon];
+            final double[] rangeIndex = new double[nLon];
+            final double[] gamma0Area = new double[nLon];
+            final double[] elevationAngle = new double[nLon];
+            final boolean[] savePixel = new boolean[nLon];
+            double[] sigma0Area = null;
+            if (outputSigma0) {
+                sigma0Area = new double[nLon];
             }
-        }
 
-        double lonMin = 180.0;
-        double lonMax = -180.0;
-        for (double lon : lons) {
-            if (lon < lonMin) {
-                lonMin = lon;
+            for (int j = window.j0 + 1; j < window.j0 + nLon - 1; j++) {
+                final int jj = j - window.j0;
+                if (!window.isRadarCoded(i, j))
+                    continue;
+
+                final double az = window.getAzimuthIndex(i, j);
+                final double rg = window.getRangeIndex(i, j);
+                if (!(az >= y0 - 1 && az <= y0 + h && rg >= x0 - 1 && rg <= x0 + w))
+                    continue;
+
+                final double lon = grid.getLon(j);
+                GeoUtils.geo2xyzWGS84(lat, lon, window.getElevation(i, j), earthPoint);
+                window.getSensorPosition(i, j, sensorPos);
+
+                final LocalGeometry localGeometry = new LocalGeometry(lat, lon, delta,
+                        toDEMValue(window.getElevation(i, j), demNoDataValue),
+                        toDEMValue(window.getElevation(i + 1, j), demNoDataValue),
+                        toDEMValue(window.getElevation(i, j + 1), demNoDataValue),
+                        toDEMValue(window.getElevation(i + 1, j + 1), demNoDataValue),
+                        earthPoint, sensorPos);
+
+                gamma0Area[jj] = computeGamma0Area(localGeometry, demNoDataValue, noDataValue);
+                if (noDataValue.equals(gamma0Area[jj]))
+                    continue;
+
+                if (outputSigma0) {
+                    sigma0Area[jj] = computeSigma0Area(localGeometry, demNoDataValue, noDataValue);
+                }
+
+                elevationAngle[jj] = computeElevationAngle(earthPoint, sensorPos);
+                rangeIndex[jj] = rg;
+                azimuthIndex[jj] = az;
+                savePixel[jj] = rangeIndex[jj] > x0 - 1 && rangeIndex[jj] < x0 + w &&
+                        azimuthIndex[jj] > y0 - 1 && azimuthIndex[jj] < y0 + h;
             }
-            if (lon > lonMax) {
-                lonMax = lon;
+
+            if (orbitOnWest) {
+                // traverse from near range to far range to detect shadowing area
+                double maxElevAngle = 0.0;
+                for (int jj = 0; jj < nLon; jj++) {
+                    if (savePixel[jj] && (!detectShadow || elevationAngle[jj] >= maxElevAngle)) {
+                        maxElevAngle = elevationAngle[jj];
+                        saveGamma0Area(x0, y0, w, h, gamma0Area[jj], azimuthIndex[jj], rangeIndex[jj],
+                                gamma0ReferenceArea);
+
+                        if (outputSigma0) {
+                            saveSigma0Area(x0, y0, w, h, sigma0Area[jj], azimuthIndex[jj], rangeIndex[jj],
+                                    sigma0ReferenceArea);
+                        }
+                    }
+                }
+
+            } else {
+                // traverse from near range to far range to detect shadowing area
+                double maxElevAngle = 0.0;
+                for (int jj = nLon - 1; jj >= 0; --jj) {
+                    if (savePixel[jj] && (!detectShadow || elevationAngle[jj] >= maxElevAngle)) {
+                        maxElevAngle = elevationAngle[jj];
+                        saveGamma0Area(x0, y0, w, h, gamma0Area[jj], azimuthIndex[jj], rangeIndex[jj],
+                                gamma0ReferenceArea);
+
+                        if (outputSigma0) {
+                            saveSigma0Area(x0, y0, w, h, sigma0Area[jj], azimuthIndex[jj], rangeIndex[jj],
+                                    sigma0ReferenceArea);
+                        }
+                    }
+                }
             }
         }
-
-        latLonMinMax[0] = latMin;
-        latLonMinMax[1] = latMax;
-        latLonMinMax[2] = lonMin;
-        latLonMinMax[3] = lonMax;
     }
 
     //======================================
     private boolean getPosition(final double lat, final double lon, final double alt,
                                 final int x0, final int y0, final int w, final int h,
-                                final PositionData data) {
+                                final SARPosition.PositionData data) {
 
         GeoUtils.geo2xyzWGS84(lat, lon, alt, data.earthPoint);
 
+        if (!radarCode(data)) {
+            return false;
+        }
+
+        if (!(data.azimuthIndex >= y0 - 1 && data.azimuthIndex <= y0 + h)) {
+            return false;
+        }
+
+        return data.rangeIndex >= x0 - 1 && data.rangeIndex <= x0 + w;
+    }
+
+    /**
+     * Compute the azimuth index, range index, slant range and sensor position of the given earth point.
+     */
+    private boolean radarCode(final SARPosition.PositionData data) {
+
         final Double zeroDopplerTime = SARGeocoding.getZeroDopplerTime(
                 lineTimeInterval, wavelength, data.earthPoint, orbit);
 
@@ -789,10 +775,6 @@ public final class TerrainFlatteningOp extends Operator {
 
         data.azimuthIndex = (zeroDopplerTime - firstLineUTC) / lineTimeInterval;
 
-        if (!(data.azimuthIndex >= y0 - 1 && data.azimuthIndex <= y0 + h)) {
-            return false;
-        }
-
         if (!srgrFlag) {
             data.rangeIndex = (data.slantRange - nearEdgeSlantRange) / rangeSpacing;
         } else {
@@ -805,7 +787,11 @@ public final class TerrainFlatteningOp extends Operator {
             data.rangeIndex = sourceImageWidth - 1 - data.rangeIndex;
         }
 
-        return data.rangeIndex >= x0 - 1 && data.rangeIndex <= x0 + w;
+        return true;
+    }
+
+    private static double toDEMValue(final double elevation, final double demNoDataValue) {
+        return Double.isNaN(elevation) ? demNoDataValue : elevation;
     }
 
 
@@ -1024,49 +1010,24 @@ public final class TerrainFlatteningOp extends Operator {
         isElevationModelAvailable = true;
     }
 
-    private OverlapPercentage computeTileOverlapPercentage(final int x0, final int y0, final int w, final int h)
-            throws Exception {
-
-        final PixelPos pixPos = new PixelPos();
-        final GeoPos geoPos = new GeoPos();
-        PositionData posData = new PositionData();
-
-        double tileOverlapUp = 0.0, tileOverlapDown = 0.0, tileOverlapLeft = 0.0, tileOverlapRight = 0.0;
-        for (int y = y0; y < y0 + h; y += 20) {
-            for (int x = x0; x < x0 + w; x += 20) {
-                pixPos.setLocation(x, y);
-                targetGeoCoding.getGeoPos(pixPos, geoPos);
-                final double alt = dem.getElevation(geoPos);
-                if (noDataValue.equals(alt))
-                    continue;
-
-                if (!getPosition(geoPos.lat, geoPos.lon, alt, x0, y0, w, h, posData))
-                    continue;
+    /**
+     * Get the radar coded DEM lattice of the scene. The lattice is aligned with the DEM posts and oversampled
+     * by the re-grid oversampling factor.
+     *
+     * @throws Exception The exceptions.
+     */
+    private synchronized DEMRadarCodingGrid getRadarCodingGrid() throws Exception {
 
-                final double azTileOverlapPercentage = (posData.azimuthIndex - y) / (double) h;
-                if (azTileOverlapPercentage > tileOverlapUp) {
-                    tileOverlapUp = azTileOverlapPercentage;
-                } else if (azTileOverlapPercentage < -tileOverlapDown) {
-                    tileOverlapDown = -azTileOverlapPercentage;
-                }
+        if (radarCodingGrid == null) {
+            final double delta = (double) dem.getDescriptor().getTileWidthInDegrees() /
+                    (double) dem.getDescriptor().getTileWidth() / overSamplingFactor;
+            final GeoPos anchor = dem.getGeoPos(new PixelPos(0, 0));
 
-                final double rgTileOverlapPercentage = (posData.rangeIndex - x) / (double) w;
-                if (posData.rangeIndex != -1) {
-                    if (rgTileOverlapPercentage > tileOverlapLeft) {
-                        tileOverlapLeft = rgTileOverlapPercentage;
-                    } else if (rgTileOverlapPercentage < -tileOverlapRight) {
-                        tileOverlapRight = -rgTileOverlapPercentage;
-                    }
-                }
-            }
+            radarCodingGrid = new DEMRadarCodingGrid(dem, demNoDataValue, sourceProduct.getSceneGeoCoding(),
+                    sourceImageWidth, sourceImageHeight, this::radarCode, anchor.getLat(), anchor.getLon(),
+                    -delta, delta);
         }
-
-        tileOverlapUp += 0.1;
-        tileOverlapDown += 0.1;
-        tileOverlapLeft += 0.1;
-        tileOverlapRight += 0.1;
-
-        return new OverlapPercentage(tileOverlapUp, tileOverlapDown, tileOverlapLeft, tileOverlapRight);
+        return radarCodingGrid;
     }
 
     /**
@@ -1081,7 +1042,7 @@ public final class TerrainFlatteningOp extends Operator {
      * @param rangeIndex          Range pixel index for the illuminated area.
      * @param gamma0ReferenceArea Buffer for the simulated image.
      */
-    private static void saveGamma0Area(final int x0, final int y0, final int w, final int h, final double gamma0Area,
+    static void saveGamma0Area(final int x0, final int y0, final int w, final int h, final double gamma0Area,
                                        final double azimuthIndex, final double rangeIndex,
                                        final double[][] gamma0ReferenceArea) {
 
@@ -1112,7 +1073,7 @@ public final class TerrainFlatteningOp extends Operator {
         }
     }
 
-    private static void saveSigma0Area(final int x0, final int y0, final int w, final int h, final double sigma0Area,
+    static void saveSigma0Area(final int x0, final int y0, final int w, final int h, final double sigma0Area,
                                        final double azimuthIndex, final double rangeIndex,
                                        final double[][] sigma0ReferenceArea) {
 
@@ -1149,7 +1110,7 @@ public final class TerrainFlatteningOp extends Operator {
      * @param sensorPos  The coordinate for satellite position.
      * @return The elevation angle in degree.
      */
-    private static double computeElevationAngle(final PosVector earthPoint, final PosVector sensorPos) {
+    static double computeElevationAngle(final PosVector earthPoint, final PosVector sensorPos) {
 
         final double xDiff = sensorPos.x - earthPoint.x;
         final double yDiff = sensorPos.y - earthPoint.y;
@@ -1168,7 +1129,7 @@ public final class TerrainFlatteningOp extends Operator {
      * @param demNoDataValue Invalid DEM value.
      * @return The computed local illuminated area.
      */
-    private static double computeGamma0Area(
+    static double computeGamma0Area(
             final LocalGeometry lg, final Double demNoDataValue, final double noDataValue) {
 
         if (demNoDataValue.equals(lg.t00Height) || demNoDataValue.equals(lg.t01Height) ||
@@ -1221,7 +1182,7 @@ public final class TerrainFlatteningOp extends Operator {
                 Math.sqrt(h2 * (h2 - p11p01) * (h2 - p11p10) * (h2 - p10p01));
     }
 
-    private static double computeSigma0Area(
+    static double computeSigma0Area(
             final LocalGeometry lg, final Double demNoDataValue, final double noDataValue) {
 
         if (demNoDataValue.equals(lg.t00Height) || demNoDataValue.equals(lg.t01Height) ||
@@ -1316,53 +1277,32 @@ public final class TerrainFlatteningOp extends Operator {
             this.sensorPos = sensorPos;
         }
 
-        public LocalGeometry(final double lat, final double lon, final double del, final ElevationModel dem,
-                             final PosVector earthPoint, final PosVector sensorPos) throws Exception {
+        public LocalGeometry(final double lat, final double lon, final double del,
+                             final double t00Height, final double t01Height,
+                             final double t10Height, final double t11Height,
+                             final PosVector earthPoint, final PosVector sensorPos) {
 
             this.t00Lat = lat;
             this.t00Lon = lon;
-            this.t00Height = dem.getElevation(new GeoPos(t00Lat, t00Lon));
+            this.t00Height = t00Height;
 
             this.t01Lat = lat - del;
             this.t01Lon = lon;
-            this.t01Height = dem.getElevation(new GeoPos(t01Lat, t01Lon));
+            this.t01Height = t01Height;
 
             this.t10Lat = lat;
             this.t10Lon = lon + del;
-            this.t10Height = dem.getElevation(new GeoPos(t10Lat, t10Lon));
+            this.t10Height = t10Height;
 
             this.t11Lat = lat - del;
             this.t11Lon = lon + del;
-            this.t11Height = dem.getElevation(new GeoPos(t11Lat, t11Lon));
+            this.t11Height = t11Height;
 
             this.centerPoint = earthPoint;
             this.sensorPos = sensorPos;
         }
     }
 
-    private static class PositionData {
-        final PosVector earthPoint = new PosVector();
-        final PosVector sensorPos = new PosVector();
-        double azimuthIndex;
-        double rangeIndex;
-        double slantRange;
-    }
-
-    private static class OverlapPercentage {
-        final double tileOverlapUp;
-        final double tileOverlapDown;
-        final double tileOverlapLeft;
-        final double tileOverlapRight;
-
-        public OverlapPercentage(final double tileOverlapUp, final double tileOverlapDown,
-                                 final double tileOverlapLeft, final double tileOverlapRight) {
-            this.tileOverlapUp = tileOverlapUp;
-            this.tileOverlapDown = tileOverlapDown;
-            this.tileOverlapLeft = tileOverlapLeft;
-            this.tileOverlapRight = tileOverlapRight;
-        }
-    }
-
     /**
      * The SPI is used to register this operator in the graph processing framework
      * via the SPI configuration file
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2014 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.sar.gpf.geometric;
+
+import org.apache.commons.math3.util.FastMath;
+import org.esa.s1tbx.insar.gpf.support.SARGeocoding;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.engine_utilities.datamodel.OrbitStateVector;
+import org.esa.snap.engine_utilities.datamodel.PosVector;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the deskewing shift table with the per pixel shift previously computed by ALOSDeskewingOp.computeTileStack.
+ */
+public class TestALOSDeskewShiftTable {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 40;
+    private static final double SECONDS_IN_DAY = 86400.0;
+    private static final double FIRST_LINE_TIME = 5000.25;                   // MJD
+    private static final double LINE_TIME_INTERVAL = 0.05 / SECONDS_IN_DAY;  // day
+
+    private static final double ORBIT_RADIUS = 7070000.0;                    // m
+    private static final double ORBIT_RATE = 7500.0 / ORBIT_RADIUS;          // rad/s
+    private static final int NUM_ORBIT_VECTORS = 10;
+    private static final double ORBIT_VECTOR_INTERVAL = 10.0;                // s
+
+    private static final double[] DOPPLER_COEFFICIENTS = {123.4, -0.0371, 2.3e-5};
+    private static final double SLANT_RANGE_TO_FIRST_PIXEL = 850123.7;       // m
+    private static final double RANGE_SPACING = 9.368514;                    // m
+    private static final double AZIMUTH_SPACING = 3.179336;                  // m
+    private static final double RADAR_WAVE_LENGTH = 0.2360571;              // m
+    private static final double FRAC_SHIFT = -0.0123;
+    private static final double ABS_SHIFT = 3.7;
+
+    @Test
+    public void testMapreadyShift() {
+        compare(true, false, false, false);
+    }
+
+    @Test
+    public void testFAQShift() {
+        compare(false, true, false, false);
+    }
+
+    @Test
+    public void testBothShifts() {
+        compare(false, false, true, false);
+    }
+
+    @Test
+    public void testHybridShift() {
+        compare(false, false, false, true);
+    }
+
+    private static void compare(final boolean useMapreadyShiftOnly, final boolean useFAQShiftOnly,
+                                final boolean useBoth, final boolean useHybrid) {
+
+        final SARGeocoding.Orbit orbit = createOrbit();
+        final ALOSDeskewingOp.ShiftTable table = ALOSDeskewingOp.ShiftTable.create(
+                useMapreadyShiftOnly, useFAQShiftOnly, useBoth, useHybrid, FRAC_SHIFT, ABS_SHIFT, DOPPLER_COEFFICIENTS,
+                SLANT_RANGE_TO_FIRST_PIXEL, RANGE_SPACING, AZIMUTH_SPACING, RADAR_WAVE_LENGTH,
+                orbit.sensorVelocity, WIDTH);
+
+        final int[][] windows = {{0, WIDTH}, {37, 64}, {WIDTH - 5, 5}};
+        for (int y = 0; y < HEIGHT; y++) {
+            final ALOSDeskewingOp.stateVector v = getOrbitStateVector(orbit, FIRST_LINE_TIME + y * LINE_TIME_INTERVAL);
+            for (int[] window : windows) {
+                final int x0 = window[0];
+                final int[] shift = new int[window[1]];
+                table.getLineShift(y, x0, shift);
+                for (int i = 0; i < shift.length; i++) {
+                    final int x = x0 + i;
+                    final int expected = referenceShift(useMapreadyShiftOnly, useFAQShiftOnly, useBoth, useHybrid,
+                                                        v, x);
+                    assertEquals("y=" + y + " x=" + x, expected, shift[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Circular orbit in the x-y plane, with the state vectors bracketing the lines of the image.
+     */
+    private static SARGeocoding.Orbit createOrbit() {
+
+        final OrbitStateVector[] vectors = new OrbitStateVector[NUM_ORBIT_VECTORS];
+        final double t0 = FIRST_LINE_TIME - 4 * ORBIT_VECTOR_INTERVAL / SECONDS_IN_DAY;
+        for (int i = 0; i < NUM_ORBIT_VECTORS; i++) {
+            final double a = ORBIT_RATE * i * ORBIT_VECTOR_INTERVAL;
+            final double speed = ORBIT_RATE * ORBIT_RADIUS;
+            vectors[i] = new OrbitStateVector(new ProductData.UTC(t0 + i * ORBIT_VECTOR_INTERVAL / SECONDS_IN_DAY),
+                                              ORBIT_RADIUS * Math.cos(a), ORBIT_RADIUS * Math.sin(a), 0.0,
+                                              -speed * Math.sin(a), speed * Math.cos(a), 120.0 * Math.cos(a));
+        }
+        return new SARGeocoding.Orbit(vectors, FIRST_LINE_TIME, LINE_TIME_INTERVAL, HEIGHT);
+    }
+
+    private static ALOSDeskewingOp.stateVector getOrbitStateVector(final SARGeocoding.Orbit orbit, final double time) {
+
+        final PosVector pos = new PosVector();
+        final PosVector vel = new PosVector();
+        orbit.getPositionVelocity(time, pos, vel);
+        return new ALOSDeskewingOp.stateVector(time, pos.x, pos.y, pos.z, vel.x, vel.y, vel.z);
+    }
+
+    /**
+     * The shift of one source pixel as computed by ALOSDeskewingOp.computeTileStack before the shift table.
+     */
+    private static int referenceShift(final boolean useMapreadyShiftOnly, final boolean useFAQShiftOnly,
+                                      final boolean useBoth, final boolean useHybrid,
+                                      final ALOSDeskewingOp.stateVector v, final int x) {
+
+        final double slr = SLANT_RANGE_TO_FIRST_PIXEL + x * RANGE_SPACING;
+        final double fd = ALOSDeskewingOp.getDopplerFrequency(DOPPLER_COEFFICIENTS, x);
+        double shift = 0;
+        if (useMapreadyShiftOnly) {
+            shift = FastMath.round(FRAC_SHIFT * x);
+        } else if (useFAQShiftOnly) {
+            shift = ALOSDeskewingOp.computeFAQShift(v, slr, fd, RADAR_WAVE_LENGTH, AZIMUTH_SPACING);
+        } else if (useBoth) {
+            shift = ALOSDeskewingOp.computeFAQShift(v, slr, fd, RADAR_WAVE_LENGTH, AZIMUTH_SPACING) +
+                    FastMath.round(FRAC_SHIFT * x);
+        } else if (useHybrid) {
+            shift = ABS_SHIFT + FastMath.round(FRAC_SHIFT * x);
+        }
+        return (int) shift;
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.sar.gpf.geometric;
+
+import org.esa.s1tbx.insar.gpf.support.SARPosition;
+import org.esa.snap.core.datamodel.CrsGeoCoding;
+import org.esa.snap.core.datamodel.GeoCoding;
+import org.esa.snap.core.datamodel.GeoPos;
+import org.esa.snap.core.datamodel.PixelPos;
+import org.esa.snap.engine_utilities.datamodel.PosVector;
+import org.esa.snap.engine_utilities.eo.GeoUtils;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for DEMRadarCodingGrid on a synthetic scene: a geographic image geocoding, an analytic DEM with a
+ * hill and a no data hole, and a radar coder shifting posts in range in proportion to their height.
+ */
+public class TestDEMRadarCodingGrid {
+
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 100;
+    private static final double PIXEL_SPACING = 0.001; // degrees
+    private static final double LAT_NORTH = 45.0;
+    private static final double LON_WEST = 10.0;
+
+    private static final double DEM_ANCHOR_LAT = 46.00013; // posts off the pixel boundaries
+    private static final double DEM_ANCHOR_LON = 9.00029;
+    private static final double DEM_SPACING = 0.001; // degrees
+    private static final int OVERSAMPLING = 2;
+    private static final double DELTA = DEM_SPACING / OVERSAMPLING;
+
+    private static final double DEM_NO_DATA = -32768.0;
+    private static final Double NO_DATA = 0.0;
+    private static final double RANGE_SHIFT_PER_METRE = 0.01; // pixels
+
+    private static final Rectangle[] tiles = {new Rectangle(0, 0, 40, 40), new Rectangle(40, 40, 40, 40),
+            new Rectangle(80, 60, 40, 40), new Rectangle(100, 90, 20, 10), new Rectangle(0, 0, WIDTH, HEIGHT)};
+
+    private final GeoCoding geoCoding;
+    private final SyntheticRadarCoder radarCoder;
+
+    public TestDEMRadarCodingGrid() throws Exception {
+        geoCoding = new CrsGeoCoding(DefaultGeographicCRS.WGS84, WIDTH, HEIGHT, LON_WEST, LAT_NORTH,
+                                     PIXEL_SPACING, PIXEL_SPACING);
+        radarCoder = new SyntheticRadarCoder(geoCoding);
+    }
+
+    private DEMRadarCodingGrid createGrid() throws Exception {
+        return new DEMRadarCodingGrid(TestDEMRadarCodingGrid::getElevation, geoCoding, WIDTH, HEIGHT, radarCoder,
+                                      DEM_ANCHOR_LAT, DEM_ANCHOR_LON, -DELTA, DELTA);
+    }
+
+    /**
+     * Terrain of 20 m with a 300 m hill, and no data in a small box.
+     */
+    private static double getElevation(final double lat, final double lon) {
+        if (lat > 44.9107 && lat < 44.9193 && lon > 10.0213 && lon < 10.0287) {
+            return Double.NaN;
+        }
+        final double dLat = lat - 44.95;
+        final double dLon = lon - 10.06;
+        return 20.0 + 300.0 * Math.exp(-(dLat * dLat + dLon * dLon) / (2 * 0.02 * 0.02));
+    }
+
+    private static double getDEMValue(final double lat, final double lon) {
+        final double alt = getElevation(lat, lon);
+        return Double.isNaN(alt) ? DEM_NO_DATA : alt;
+    }
+
+    @Test
+    public void testLatticeCoversSceneAndMargin() throws Exception {
+        final DEMRadarCodingGrid grid = createGrid();
+
+        final SARPosition.PositionData data = new SARPosition.PositionData();
+        double maxDisplacement = 0.0;
+        for (int y = 0; y < HEIGHT; y += 9) {
+            for (int x = 0; x < WIDTH; x += 7) {
+                final GeoPos geoPos = geoCoding.getGeoPos(new PixelPos(x, y), null);
+                final double alt = getElevation(geoPos.lat, geoPos.lon);
+                if (Double.isNaN(alt)) {
+                    continue;
+                }
+                GeoUtils.geo2xyzWGS84(geoPos.lat, geoPos.lon, alt, data.earthPoint);
+                if (radarCoder.getPosition(data)) {
+                    maxDisplacement = Math.max(maxDisplacement, Math.abs(data.rangeIndex - x));
+                    maxDisplacement = Math.max(maxDisplacement, Math.abs(data.azimuthIndex - y));
+                }
+            }
+        }
+        final int margin = grid.getMargin();
+        assertTrue(maxDisplacement > 2.0);
+        assertTrue(margin >= 16 && margin > maxDisplacement);
+
+        final GeoPos upperLeft = geoCoding.getGeoPos(new PixelPos(0, 0), null);
+        final GeoPos lowerRight = geoCoding.getGeoPos(new PixelPos(WIDTH - 1, HEIGHT - 1), null);
+        final double marginInDegrees = margin * PIXEL_SPACING;
+        final int numLat = grid.getNumLatitudes();
+        final int numLon = grid.getNumLongitudes();
+        assertTrue(grid.getLat(0) >= upperLeft.lat + marginInDegrees);
+        assertTrue(grid.getLat(numLat - 1) <= lowerRight.lat - marginInDegrees);
+        assertTrue(grid.getLon(0) <= upperLeft.lon - marginInDegrees);
+        assertTrue(grid.getLon(numLon - 1) >= lowerRight.lon + marginInDegrees);
+
+        // the lattice is aligned with the anchor post
+        for (int i : new int[]{0, numLat - 1}) {
+            final double k = (grid.getLat(i) - DEM_ANCHOR_LAT) / DELTA;
+            assertEquals(Math.rint(k), k, 1e-6);
+        }
+        for (int j : new int[]{0, numLon - 1}) {
+            final double k = (grid.getLon(j) - DEM_ANCHOR_LON) / DELTA;
+            assertEquals(Math.rint(k), k, 1e-6);
+        }
+    }
+
+    @Test
+    public void testWindowContainsEveryPostRadarCodedIntoTile() throws Exception {
+        final DEMRadarCodingGrid grid = createGrid();
+        final int numLat = grid.getNumLatitudes();
+        final int numLon = grid.getNumLongitudes();
+
+        // radar code the whole lattice directly
+        final SARPosition.PositionData[][] posts = new SARPosition.PositionData[numLat][numLon];
+        for (int i = 0; i < numLat; i++) {
+            for (int j = 0; j < numLon; j++) {
+                final double alt = getElevation(grid.getLat(i), grid.getLon(j));
+                if (Double.isNaN(alt)) {
+                    continue;
+                }
+                final SARPosition.PositionData data = new SARPosition.PositionData();
+                GeoUtils.geo2xyzWGS84(grid.getLat(i), grid.getLon(j), alt, data.earthPoint);
+                if (radarCoder.getPosition(data)) {
+                    posts[i][j] = data;
+                }
+            }
+        }
+
+        final PosVector sensorPos = new PosVector();
+        for (Rectangle tile : tiles) {
+            final DEMRadarCodingGrid.Window window = grid.getWindow(tile);
+            assertNotNull(window);
+
+            int numPosts = 0;
+            for (int i = 0; i < numLat; i++) {
+                for (int j = 0; j < numLon; j++) {
+                    final SARPosition.PositionData data = posts[i][j];
+                    if (data == null || data.azimuthIndex < tile.y - 1 || data.azimuthIndex > tile.y + tile.height ||
+                            data.rangeIndex < tile.x - 1 || data.rangeIndex > tile.x + tile.width) {
+                        continue;
+                    }
+                    ++numPosts;
+
+                    // inside the border so that all neighbours are available
+                    assertTrue(i > window.i0 && i < window.i0 + window.numRows - 1);
+                    assertTrue(j > window.j0 && j < window.j0 + window.numCols - 1);
+
+                    assertTrue(window.isRadarCoded(i, j));
+                    assertEquals(data.azimuthIndex, window.getAzimuthIndex(i, j), 0.0);
+                    assertEquals(data.rangeIndex, window.getRangeIndex(i, j), 0.0);
+                    assertEquals(data.slantRange, window.getSlantRange(i, j), 0.0);
+                    window.getSensorPosition(i, j, sensorPos);
+                    assertEquals(data.sensorPos.x, sensorPos.x, 0.0);
+                    assertEquals(data.sensorPos.y, sensorPos.y, 0.0);
+                    assertEquals(data.sensorPos.z, sensorPos.z, 0.0);
+
+                    for (int di = -1; di <= 1; di++) {
+                        for (int dj = -1; dj <= 1; dj++) {
+                            assertEquals(getElevation(grid.getLat(i + di), grid.getLon(j + dj)),
+                                         window.getElevation(i + di, j + dj), 0.0);
+                        }
+                    }
+                }
+            }
+            assertTrue(numPosts > tile.width * tile.height);
+        }
+
+        assertNull(grid.getWindow(new Rectangle(5000, 5000, 40, 40)));
+    }
+
+    @Test
+    public void testNoDataPostsAreNotRadarCoded() throws Exception {
+        final DEMRadarCodingGrid grid = createGrid();
+        final DEMRadarCodingGrid.Window window = grid.getWindow(new Rectangle(15, 75, 20, 20));
+        assertNotNull(window);
+
+        int numNoData = 0;
+        for (int i = window.i0; i < window.i0 + window.numRows; i++) {
+            for (int j = window.j0; j < window.j0 + window.numCols; j++) {
+                if (Double.isNaN(getElevation(grid.getLat(i), grid.getLon(j)))) {
+                    ++numNoData;
+                    assertTrue(Double.isNaN(window.getElevation(i, j)));
+                    assertFalse(window.isRadarCoded(i, j));
+                } else {
+                    assertTrue(window.isRadarCoded(i, j));
+                }
+            }
+        }
+        assertTrue(numNoData > 0);
+    }
+
+    @Test
+    public void testBlocksAreBuiltOnceAndRebuiltWhenCleared() throws Exception {
+        final DEMRadarCodingGrid grid = createGrid();
+        final Rectangle tile = tiles[1];
+
+        final int numInitial = radarCoder.getNumPositions();
+        final DEMRadarCodingGrid.Window window = grid.getWindow(tile);
+        final int numBuilt = radarCoder.getNumPositions() - numInitial;
+        assertTrue(numBuilt > 0);
+
+        // built blocks are reused by every tile needing them
+        grid.getWindow(tile);
+        grid.getWindow(new Rectangle(tile.x + 1, tile.y + 1, tile.width - 2, tile.height - 2));
+        assertEquals(numBuilt, radarCoder.getNumPositions() - numInitial);
+
+        // cleared blocks are rebuilt with the same posts
+        grid.clearBlocks();
+        final DEMRadarCodingGrid.Window rebuilt = grid.getWindow(tile);
+        assertEquals(2 * numBuilt, radarCoder.getNumPositions() - numInitial);
+
+        assertEquals(window.i0, rebuilt.i0);
+        assertEquals(window.j0, rebuilt.j0);
+        assertEquals(window.numRows, rebuilt.numRows);
+        assertEquals(window.numCols, rebuilt.numCols);
+        for (int i = window.i0; i < window.i0 + window.numRows; i++) {
+            for (int j = window.j0; j < window.j0 + window.numCols; j++) {
+                assertEquals(window.getElevation(i, j), rebuilt.getElevation(i, j), 0.0);
+                assertEquals(window.getAzimuthIndex(i, j), rebuilt.getAzimuthIndex(i, j), 0.0);
+                assertEquals(window.getRangeIndex(i, j), rebuilt.getRangeIndex(i, j), 0.0);
+                assertEquals(window.getSlantRange(i, j), rebuilt.getSlantRange(i, j), 0.0);
+            }
+        }
+    }
+
+    /**
+     * The terrain flattening simulation on the grid must equal the simulation on a lattice set up per tile from
+     * the estimated tile overlap and radar coded with the solutions restricted to the tile.
+     */
+    @Test
+    public void testTerrainFlatteningSimulationMatchesPerTileLattice() throws Exception {
+        final DEMRadarCodingGrid grid = createGrid();
+
+        for (int y0 = 0; y0 < HEIGHT; y0 += 40) {
+            for (int x0 = 0; x0 < WIDTH; x0 += 40) {
+                final int w = Math.min(40, WIDTH - x0);
+                final int h = Math.min(40, HEIGHT - y0);
+
+                final double[][] gamma0 = new double[h][w];
+                final double[][] sigma0 = new double[h][w];
+                final DEMRadarCodingGrid.Window window = grid.getWindow(new Rectangle(x0, y0, w, h));
+                assertNotNull(window);
+                TerrainFlatteningOp.simulateOnGrid(x0, y0, w, h, grid, window, true, true, DEM_NO_DATA, NO_DATA,
+                                                   gamma0, sigma0);
+
+                final double[][] expectedGamma0 = new double[h][w];
+                final double[][] expectedSigma0 = new double[h][w];
+                simulateOnTileLattice(x0, y0, w, h, expectedGamma0, expectedSigma0);
+
+                int numSimulated = 0;
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        if (expectedGamma0[y][x] > 0.0) {
+                            ++numSimulated;
+                        }
+                        assertEquals(expectedGamma0[y][x], gamma0[y][x], 1e-6 * expectedGamma0[y][x] + 1e-9);
+                        assertEquals(expectedSigma0[y][x], sigma0[y][x], 1e-6 * expectedSigma0[y][x] + 1e-9);
+                    }
+                }
+                assertTrue(numSimulated > w * h / 2);
+            }
+        }
+    }
+
+    /**
+     * Simulation of a tile on a lattice covering the tile extended by the estimated overlap and 20 DEM posts,
+     * with the orbit on the west side and shadow detection.
+     */
+    private void simulateOnTileLattice(final int x0, final int y0, final int w, final int h,
+                                       final double[][] gamma0ReferenceArea, final double[][] sigma0ReferenceArea) {
+
+        final SARPosition.PositionData posData = new SARPosition.PositionData();
+
+        double overlapUp = 0.0, overlapDown = 0.0, overlapLeft = 0.0, overlapRight = 0.0;
+        for (int y = y0; y < y0 + h; y += 20) {
+            for (int x = x0; x < x0 + w; x += 20) {
+                final GeoPos geoPos = geoCoding.getGeoPos(new PixelPos(x, y), null);
+                final double alt = getElevation(geoPos.lat, geoPos.lon);
+                if (Double.isNaN(alt) || !getTilePosition(geoPos.lat, geoPos.lon, alt, x0, y0, w, h, posData)) {
+                    continue;
+                }
+                final double az = (posData.azimuthIndex - y) / (double) h;
+                if (az > overlapUp) {
+                    overlapUp = az;
+                } else if (az < -overlapDown) {
+                    overlapDown = -az;
+                }
+                final double rg = (posData.rangeIndex - x) / (double) w;
+                if (rg > overlapLeft) {
+                    overlapLeft = rg;
+                } else if (rg < -overlapRight) {
+                    overlapRight = -rg;
+                }
+            }
+        }
+
+        final int ymin = Math.max(y0 - (int) (h * (overlapUp + 0.1)), 0);
+        final int ymax = Math.min(y0 + h + (int) (h * (overlapDown + 0.1)), HEIGHT);
+        final int xmin = Math.max(x0 - (int) (w * (overlapLeft + 0.1)), 0);
+        final int xmax = Math.min(x0 + w + (int) (w * (overlapRight + 0.1)), WIDTH);
+
+        final GeoPos upperLeft = geoCoding.getGeoPos(new PixelPos(xmin, ymin), null);
+        final GeoPos lowerRight = geoCoding.getGeoPos(new PixelPos(xmax, ymax), null);
+        final double extra = 20 * DEM_SPACING;
+
+        // lattice aligned with the DEM posts
+        final int latMaxIdx = (int) Math.floor((DEM_ANCHOR_LAT - upperLeft.lat - extra) / DEM_SPACING);
+        final int latMinIdx = (int) Math.ceil((DEM_ANCHOR_LAT - lowerRight.lat + extra) / DEM_SPACING);
+        final int lonMinIdx = (int) Math.floor((upperLeft.lon - extra - DEM_ANCHOR_LON) / DEM_SPACING);
+        final int lonMaxIdx = (int) Math.ceil((lowerRight.lon + extra - DEM_ANCHOR_LON) / DEM_SPACING);
+        final double latMax = DEM_ANCHOR_LAT - latMaxIdx * DEM_SPACING;
+        final double latMin = DEM_ANCHOR_LAT - latMinIdx * DEM_SPACING;
+        final double lonMin = DEM_ANCHOR_LON + lonMinIdx * DEM_SPACING;
+        final double lonMax = DEM_ANCHOR_LON + lonMaxIdx * DEM_SPACING;
+
+        final int nLat = (int) Math.round((latMax - latMin) / DELTA);
+        final int nLon = (int) Math.round((lonMax - lonMin) / DELTA);
+
+        for (int i = 0; i < nLat; i++) {
+            final double lat = latMax - i * DELTA;
+            final double[] azimuthIndex = new double[nLon];
+            final double[] rangeIndex = new double[nLon];
+            final double[] gamma0Area = new double[nLon];
+            final double[] sigma0Area = new double[nLon];
+            final double[] elevationAngle = new double[nLon];
+            final boolean[] savePixel = new boolean[nLon];
+
+            for (int j = 0; j < nLon; j++) {
+                final double lon = lonMin + j * DELTA;
+                final double alt = getElevation(lat, lon);
+                if (Double.isNaN(alt) || !getTilePosition(lat, lon, alt, x0, y0, w, h, posData)) {
+                    continue;
+                }
+
+                final TerrainFlatteningOp.LocalGeometry localGeometry = new TerrainFlatteningOp.LocalGeometry(
+                        lat, lon, DELTA, getDEMValue(lat, lon), getDEMValue(lat - DELTA, lon),
+                        getDEMValue(lat, lon + DELTA), getDEMValue(lat - DELTA, lon + DELTA),
+                        posData.earthPoint, posData.sensorPos);
+
+                gamma0Area[j] = TerrainFlatteningOp.computeGamma0Area(localGeometry, DEM_NO_DATA, NO_DATA);
+                if (NO_DATA.equals(gamma0Area[j])) {
+                    continue;
+                }
+                sigma0Area[j] = TerrainFlatteningOp.computeSigma0Area(localGeometry, DEM_NO_DATA, NO_DATA);
+                elevationAngle[j] = TerrainFlatteningOp.computeElevationAngle(posData.earthPoint, posData.sensorPos);
+                rangeIndex[j] = posData.rangeIndex;
+                azimuthIndex[j] = posData.azimuthIndex;
+                savePixel[j] = rangeIndex[j] > x0 - 1 && rangeIndex[j] < x0 + w &&
+                        azimuthIndex[j] > y0 - 1 && azimuthIndex[j] < y0 + h;
+            }
+
+            double maxElevAngle = 0.0;
+            for (int j = 0; j < nLon; j++) {
+                if (savePixel[j] && elevationAngle[j] >= maxElevAngle) {
+                    maxElevAngle = elevationAngle[j];
+                    TerrainFlatteningOp.saveGamma0Area(x0, y0, w, h, gamma0Area[j], azimuthIndex[j], rangeIndex[j],
+                                                       gamma0ReferenceArea);
+                    TerrainFlatteningOp.saveSigma0Area(x0, y0, w, h, sigma0Area[j], azimuthIndex[j], rangeIndex[j],
+                                                       sigma0ReferenceArea);
+                }
+            }
+        }
+    }
+
+    private boolean getTilePosition(final double lat, final double lon, final double alt,
+                                    final int x0, final int y0, final int w, final int h,
+                                    final SARPosition.PositionData data) {
+
+        GeoUtils.geo2xyzWGS84(lat, lon, alt, data.earthPoint);
+        return radarCoder.getPosition(data) &&
+                data.azimuthIndex >= y0 - 1 && data.azimuthIndex <= y0 + h &&
+                data.rangeIndex >= x0 - 1 && data.rangeIndex <= x0 + w;
+    }
+
+    /**
+     * Radar codes a point to its geocoded pixel, shifted towards near range in proportion to its height, as seen
+     * from a sensor 700 km above the ground 3 degrees west of the scene.
+     */
+    private static final class SyntheticRadarCoder implements DEMRadarCodingGrid.RadarCoder {
+
+        private static final double SEMI_MAJOR_AXIS = 6378137.0;
+        private static final double ECCENTRICITY_SQUARED = 0.00669437999014;
+
+        private final GeoCoding geoCoding;
+        private final AtomicInteger numPositions = new AtomicInteger();
+
+        SyntheticRadarCoder(final GeoCoding geoCoding) {
+            this.geoCoding = geoCoding;
+        }
+
+        int getNumPositions() {
+            return numPositions.get();
+        }
+
+        @Override
+        public boolean getPosition(final SARPosition.PositionData data) {
+            numPositions.incrementAndGet();
+
+            final PosVector p = data.earthPoint;
+            final double rho = Math.sqrt(p.x * p.x + p.y * p.y);
+            final double lon = Math.atan2(p.y, p.x);
+            double lat = Math.atan2(p.z, rho * (1.0 - ECCENTRICITY_SQUARED));
+            double alt = 0.0;
+            for (int k = 0; k < 6; k++) {
+                final double sinLat = Math.sin(lat);
+                final double n = SEMI_MAJOR_AXIS / Math.sqrt(1.0 - ECCENTRICITY_SQUARED * sinLat * sinLat);
+                alt = rho / Math.cos(lat) - n;
+                lat = Math.atan2(p.z, rho * (1.0 - ECCENTRICITY_SQUARED * n / (n + alt)));
+            }
+
+            final PixelPos pixPos = geoCoding.getPixelPos(new GeoPos(Math.toDegrees(lat), Math.toDegrees(lon)), null);
+            if (!pixPos.isValid()) {
+                return false;
+            }
+            data.azimuthIndex = pixPos.y;
+            data.rangeIndex = pixPos.x - RANGE_SHIFT_PER_METRE * alt;
+
+            GeoUtils.geo2xyzWGS84(Math.toDegrees(lat), LON_WEST - 3.0, 700000.0, data.sensorPos);
+            final double dx = data.sensorPos.x - p.x;
+            final double dy = data.sensorPos.y - p.y;
+            final double dz = data.sensorPos.z - p.z;
+            data.slantRange = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            return true;
+        }
+    }
+}
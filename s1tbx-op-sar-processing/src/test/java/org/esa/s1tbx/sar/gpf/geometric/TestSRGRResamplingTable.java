@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2014 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.sar.gpf.geometric;
+
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.engine_utilities.util.Maths;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Compares the SRGR resampling table with the per pixel interpolation previously done by SRGROp.computeTile.
+ */
+public class TestSRGRResamplingTable {
+
+    private static final int SOURCE_WIDTH = 200;
+    private static final int HEIGHT = 12;
+    private static final int NUM_RANGE_POINTS = 20;
+    private static final int WARP_POLYNOMIAL_ORDER = 4;
+    private static final double SLANT_RANGE_SPACING = 7.8;   // m
+    private static final double NEAR_INCIDENCE_ANGLE = 23.0; // degree
+
+    // platform heights and near slant ranges of the two halves of the image along azimuth
+    private static final double[][] GEOMETRIES = {{790000.0, 850000.0}, {786000.0, 851500.0}};
+    private static final int CHANGE_LINE = 5;
+
+    @Test
+    public void testNearestNeighbour() {
+        compare(SRGROp.Interpolation.NEAREST_NEIGHBOR);
+    }
+
+    @Test
+    public void testLinear() {
+        compare(SRGROp.Interpolation.LINEAR);
+    }
+
+    @Test
+    public void testCubic() {
+        compare(SRGROp.Interpolation.CUBIC);
+    }
+
+    @Test
+    public void testCubic2() {
+        compare(SRGROp.Interpolation.CUBIC2);
+    }
+
+    @Test
+    public void testSinc() {
+        compare(SRGROp.Interpolation.SINC);
+    }
+
+    private static void compare(final SRGROp.Interpolation method) {
+
+        final double[] slantRangeDistanceArray = computeSlantRangeDistanceArray();
+        final double[][] coefficientSets = new double[GEOMETRIES.length][];
+        for (int i = 0; i < GEOMETRIES.length; i++) {
+            coefficientSets[i] = SRGROp.fitWarpPolynomial(computeGroundRangeDistanceArray(GEOMETRIES[i]),
+                                                          slantRangeDistanceArray, WARP_POLYNOMIAL_ORDER);
+        }
+
+        final double groundRangeSpacing = SLANT_RANGE_SPACING / Math.sin(Math.toRadians(NEAR_INCIDENCE_ANGLE));
+        final int targetWidth = (int) (computeGroundRangeDistanceArray(GEOMETRIES[0])[NUM_RANGE_POINTS - 2] /
+                groundRangeSpacing);
+
+        final Random random = new Random(5);
+        final ProductData srcData = ProductData.createInstance(ProductData.TYPE_FLOAT32, SOURCE_WIDTH * HEIGHT);
+        for (int i = 0; i < SOURCE_WIDTH * HEIGHT; i++) {
+            srcData.setElemDoubleAt(i, 1000.0 * random.nextDouble());
+        }
+
+        SRGROp.ResamplingTable table = SRGROp.ResamplingTable.create(method, coefficientSets[0], groundRangeSpacing,
+                                                                     SLANT_RANGE_SPACING, targetWidth, SOURCE_WIDTH);
+        for (int y = 0; y < HEIGHT; y++) {
+            final double[] coefficients = coefficientSets[y < CHANGE_LINE ? 0 : 1].clone();
+            final SRGROp.ResamplingTable lineTable = table.forCoefficients(coefficients);
+            if (y == CHANGE_LINE) {
+                assertNotSame(table, lineTable);
+            } else {
+                assertSame(table, lineTable);
+            }
+            table = lineTable;
+
+            for (int x = 0; x < targetWidth; x++) {
+                final double expected = referenceValue(method, srcData, y, x, coefficients, groundRangeSpacing);
+                final double actual = table.resample(srcData, y * SOURCE_WIDTH, x);
+                if (method == SRGROp.Interpolation.NEAREST_NEIGHBOR) {
+                    assertEquals(expected, actual, 0.0);
+                } else {
+                    // only the order of the final additions differs
+                    assertEquals(expected, actual, 1e-12 * 1000.0);
+                }
+            }
+        }
+    }
+
+    private static double[] computeSlantRangeDistanceArray() {
+        final double[] slantRangeDistanceArray = new double[NUM_RANGE_POINTS - 1];
+        final int pixelsBetweenPoints = SOURCE_WIDTH / NUM_RANGE_POINTS;
+        for (int i = 0; i < NUM_RANGE_POINTS - 1; i++) {
+            slantRangeDistanceArray[i] = SLANT_RANGE_SPACING * pixelsBetweenPoints * (i + 1);
+        }
+        return slantRangeDistanceArray;
+    }
+
+    /**
+     * Ground range distance from each selected range point to the 1st one over a flat earth, accumulated point to
+     * point as SRGROp.computeGroundRangeDistanceArray does.
+     */
+    private static double[] computeGroundRangeDistanceArray(final double[] geometry) {
+        final double height = geometry[0];
+        final double nearRange = geometry[1];
+        final int pixelsBetweenPoints = SOURCE_WIDTH / NUM_RANGE_POINTS;
+
+        final double[] groundRangeDistanceArray = new double[NUM_RANGE_POINTS - 1];
+        double g0 = Math.sqrt(nearRange * nearRange - height * height);
+        for (int i = 0; i < NUM_RANGE_POINTS - 1; i++) {
+            final double r = nearRange + SLANT_RANGE_SPACING * pixelsBetweenPoints * (i + 1);
+            final double g = Math.sqrt(r * r - height * height);
+            groundRangeDistanceArray[i] = (i == 0 ? 0.0 : groundRangeDistanceArray[i - 1]) + g - g0;
+            g0 = g;
+        }
+        return groundRangeDistanceArray;
+    }
+
+    /**
+     * The interpolation of one target pixel as computed by SRGROp.computeTile before the resampling table.
+     */
+    private static double referenceValue(final SRGROp.Interpolation method, final ProductData srcData,
+                                         final int y, final int x, final double[] warpPolynomialCoef,
+                                         final double groundRangeSpacing) {
+
+        final double p = SRGROp.getSlantRangePixelPosition((double) x, warpPolynomialCoef, groundRangeSpacing,
+                                                           SLANT_RANGE_SPACING);
+        final int offset = y * SOURCE_WIDTH;
+        int p0 = 0, p1 = 0, p2 = 0, p3 = 0, p4 = 0;
+        double mu = 0.0;
+        switch (method) {
+            case NEAREST_NEIGHBOR:
+                p0 = Math.min((int) (p + 0.5), SOURCE_WIDTH - 1);
+                return srcData.getElemDoubleAt(offset + p0);
+            case LINEAR:
+                p0 = Math.min((int) p, SOURCE_WIDTH - 2);
+                p1 = p0 + 1;
+                mu = p - p0;
+                return Maths.interpolationLinear(srcData.getElemDoubleAt(offset + p0),
+                                                 srcData.getElemDoubleAt(offset + p1), mu);
+            case CUBIC:
+            case CUBIC2:
+                p1 = Math.min((int) p, SOURCE_WIDTH - 1);
+                p0 = Math.max(p1 - 1, 0);
+                p2 = Math.min(p1 + 1, SOURCE_WIDTH - 1);
+                p3 = Math.min(p1 + 2, SOURCE_WIDTH - 1);
+                mu = Math.min(p - p1, 1.0);
+                final double v0 = srcData.getElemDoubleAt(offset + p0);
+                final double v1 = srcData.getElemDoubleAt(offset + p1);
+                final double v2 = srcData.getElemDoubleAt(offset + p2);
+                final double v3 = srcData.getElemDoubleAt(offset + p3);
+                return method == SRGROp.Interpolation.CUBIC ? Maths.interpolationCubic(v0, v1, v2, v3, mu) :
+                        Maths.interpolationCubic2(v0, v1, v2, v3, mu);
+            default:
+                p2 = Math.min((int) (p + 0.5), SOURCE_WIDTH - 1);
+                p0 = Math.max(p2 - 2, 0);
+                p1 = Math.max(p2 - 1, 0);
+                p3 = Math.min(p2 + 1, SOURCE_WIDTH - 1);
+                p4 = Math.min(p2 + 2, SOURCE_WIDTH - 1);
+                mu = p - p2;
+                return Maths.interpolationSinc(srcData.getElemDoubleAt(offset + p0),
+                                               srcData.getElemDoubleAt(offset + p1),
+                                               srcData.getElemDoubleAt(offset + p2),
+                                               srcData.getElemDoubleAt(offset + p3),
+                                               srcData.getElemDoubleAt(offset + p4), mu);
+        }
+    }
+}
@@ -54,7 +54,9 @@ import java.text.ParseException;
 import java.util.Calendar;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -82,6 +84,7 @@ public final class EAPPhaseCorrectionOp extends Operator {
     private File auxCalFile = null;
     private final HashMap<String, String[]> targetBandNameToSourceBandName = new HashMap<>(2);
     private final HashMap<String, EAPVector> swathPolToEAPVector = new HashMap<>();
+    private final Map<String, EAPCorrection> burstEAPCorrections = new ConcurrentHashMap<>();
     private boolean isSplitProduct = false;
 
     private final DateFormat dateFormat = ProductData.UTC.createDateFormat("yyyyMMdd-HHmmss");
@@ -437,48 +440,64 @@ public final class EAPPhaseCorrectionOp extends Operator {
 
 
     /**
-     * Called by the framework in order to compute a tile for the given target band.
+     * Called by the framework in order to compute the stack of tiles for the given target bands.
      * <p>The default implementation throws a runtime exception with the message "not implemented".</p>
      *
-     * @param targetBand The target band.
-     * @param targetTile The current tile associated with the target band to be computed.
-     * @param pm         A progress monitor which should be used to determine computation cancellation requests.
-     * @throws OperatorException If an error occurs during computation of the target raster.
+     * @param targetTiles     The current tiles to be computed for each target band.
+     * @param targetRectangle The area in pixel coordinates to be computed (same for all rasters in <code>targetRasters</code>).
+     * @param pm              A progress monitor which should be used to determine computation cancelation requests.
+     * @throws OperatorException if an error occurs during computation of the target rasters.
      */
     @Override
-    public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetRectangle, ProgressMonitor pm)
+            throws OperatorException {
 
         try {
-            final Rectangle targetRectangle = targetTile.getRectangle();
             final int tx0 = targetRectangle.x;
             final int ty0 = targetRectangle.y;
-            final int tw = targetRectangle.width;
-            final int th = targetRectangle.height;
-            final int tyMax = ty0 + th;
-            //System.out.println("tx0 = " + tx0 + ", ty0 = " + ty0 + ", tw = " + tw + ", th = " + th);
-
-            int subSwathIndex = 1;
-            if (!isSplitProduct) {
-                subSwathIndex = getSubSwathIndex(targetBand.getName());
-            }
 
-            final String polarization = getPolarization(targetBand.getName());
+            for (Band targetBand : targetProduct.getBands()) {
+                // the I and Q bands of a pair are computed together from the I band
+                final String[] srcBandNames = targetBandNameToSourceBandName.get(targetBand.getName());
+                if (srcBandNames == null || !srcBandNames[0].equals(targetBand.getName())) {
+                    continue;
+                }
 
-            for (int burstIndex = 0; burstIndex < subSwath[subSwathIndex - 1].numOfBursts; burstIndex++) {
-                final int firstLineIdx = burstIndex*subSwath[subSwathIndex - 1].linesPerBurst;
-                final int lastLineIdx = firstLineIdx + subSwath[subSwathIndex - 1].linesPerBurst - 1;
+                final Tile targetTileI = targetTiles.get(targetBand);
+                final Tile targetTileQ = targetTiles.get(targetProduct.getBand(srcBandNames[1]));
+                if (targetTileI == null || targetTileQ == null) {
+                    continue;
+                }
 
-                if (tyMax <= firstLineIdx || ty0 > lastLineIdx) {
+                // the sub-swath bands of a product may be narrower than the scene
+                final int tw = Math.min(tx0 + targetRectangle.width, targetBand.getRasterWidth()) - tx0;
+                final int tyMax = Math.min(ty0 + targetRectangle.height, targetBand.getRasterHeight());
+                if (tw <= 0 || tyMax <= ty0) {
                     continue;
                 }
 
-                final int nty0 = Math.max(ty0, firstLineIdx);
-                final int ntyMax = Math.min(tyMax, lastLineIdx + 1);
-                final int nth = ntyMax - nty0;
-                //System.out.println("burstIndex = " + burstIndex + ": ntx0 = " + tx0 + ", nty0 = " + nty0 + ", ntw = " + tw + ", nth = " + nth);
+                int subSwathIndex = 1;
+                if (!isSplitProduct) {
+                    subSwathIndex = getSubSwathIndex(targetBand.getName());
+                }
+
+                final String polarization = getPolarization(targetBand.getName());
+
+                for (int burstIndex = 0; burstIndex < subSwath[subSwathIndex - 1].numOfBursts; burstIndex++) {
+                    final int firstLineIdx = burstIndex*subSwath[subSwathIndex - 1].linesPerBurst;
+                    final int lastLineIdx = firstLineIdx + subSwath[subSwathIndex - 1].linesPerBurst - 1;
+
+                    if (tyMax <= firstLineIdx || ty0 > lastLineIdx) {
+                        continue;
+                    }
+
+                    final int nty0 = Math.max(ty0, firstLineIdx);
+                    final int ntyMax = Math.min(tyMax, lastLineIdx + 1);
+                    final int nth = ntyMax - nty0;
 
-                computeTileForOneBurst(
-                        subSwathIndex, burstIndex, polarization, tx0, nty0, tw, nth, targetBand, targetTile);
+                    computeTileForOneBurst(subSwathIndex, burstIndex, polarization, tx0, nty0, tw, nth,
+                            srcBandNames, targetTileI, targetTileQ);
+                }
             }
 
         } catch (Exception e) {
@@ -512,58 +531,100 @@ public final class EAPPhaseCorrectionOp extends Operator {
     }
 
     private void computeTileForOneBurst(final int subSwathIndex, final int burstIndex, final String polarization,
-                                        final int x0, final int y0, final int w, final int h, final Band targetBand,
-                                        final Tile targetTile) {
-
-        final double rollSteeringAngle = computeRollSteeringAngle(subSwathIndex, burstIndex);
+                                        final int x0, final int y0, final int w, final int h,
+                                        final String[] srcBandNames, final Tile targetTileI, final Tile targetTileQ) {
 
-        final Unit.UnitType tgtBandUnit = Unit.getUnitType(targetBand);
         final Rectangle sourceRectangle = new Rectangle(x0, y0, w, h);
-        final String[] srcBandNames = targetBandNameToSourceBandName.get(targetBand.getName());
         final Band sourceBandI = sourceProduct.getBand(srcBandNames[0]);
         final Band sourceBandQ = sourceProduct.getBand(srcBandNames[1]);
         final Tile sourceRasterI = getSourceTile(sourceBandI, sourceRectangle);
         final Tile sourceRasterQ = getSourceTile(sourceBandQ, sourceRectangle);
-        ProductData srcDataI = sourceRasterI.getDataBuffer();
-        ProductData srcDataQ = sourceRasterQ.getDataBuffer();
+        final ProductData srcDataI = sourceRasterI.getDataBuffer();
+        final ProductData srcDataQ = sourceRasterQ.getDataBuffer();
 
-        final ProductData tgtData = targetTile.getDataBuffer();
+        final ProductData tgtDataI = targetTileI.getDataBuffer();
+        final ProductData tgtDataQ = targetTileQ.getDataBuffer();
         final TileIndex srcIndex = new TileIndex(sourceRasterI);
-        final TileIndex trgIndex = new TileIndex(targetTile);
+        final TileIndex trgIndex = new TileIndex(targetTileI);
 
-        final String key = subSwath[subSwathIndex - 1].subSwathName + "_" + polarization;
-        final EAPVector eapVector = swathPolToEAPVector.get(key);
+        final EAPCorrection correction = getEAPCorrection(
+                subSwathIndex, burstIndex, polarization, sourceBandI.getRasterWidth());
 
         final int yMax = y0 + h;
         final int xMax = x0 + w;
-        int srcIdx;
-        final double[] eap = new double[2];
-        double val = targetBand.getNoDataValue();
         for (int y = y0; y < yMax; y++) {
             srcIndex.calculateStride(y);
             trgIndex.calculateStride(y);
 
             for (int x = x0; x < xMax; x++) {
-
-                final double slantRangeTime = su.getSlantRangeTime(x, subSwathIndex) * 2.0; // 1-way to 2-way
-                final double elevationAngle = computeElevationAngle(subSwathIndex, burstIndex, slantRangeTime);
-                if (elevationAngle == -1.0) {
+                if (!correction.valid[x]) {
                     continue;
                 }
 
-                computeEAP(elevationAngle, rollSteeringAngle, eapVector, eap);
+                // multiply by the conjugate of the normalised EAP
+                final int srcIdx = srcIndex.getIndex(x);
+                final int tgtIdx = trgIndex.getIndex(x);
+                final double i = srcDataI.getElemDoubleAt(srcIdx);
+                final double q = srcDataQ.getElemDoubleAt(srcIdx);
+                tgtDataI.setElemDoubleAt(tgtIdx, i * correction.re[x] + q * correction.im[x]);
+                tgtDataQ.setElemDoubleAt(tgtIdx, q * correction.re[x] - i * correction.im[x]);
+            }
+        }
+    }
 
-                srcIdx = srcIndex.getIndex(x);
-                if (tgtBandUnit == Unit.UnitType.REAL) {
-                    val = (srcDataI.getElemDoubleAt(srcIdx)*eap[0] + srcDataQ.getElemDoubleAt(srcIdx)*eap[1])
-                            / Math.sqrt(eap[0]*eap[0] + eap[1]*eap[1]);
-                } else if (tgtBandUnit == Unit.UnitType.IMAGINARY) {
-                    val = (srcDataQ.getElemDoubleAt(srcIdx)*eap[0] - srcDataI.getElemDoubleAt(srcIdx)*eap[1])
-                            / Math.sqrt(eap[0]*eap[0] + eap[1]*eap[1]);
-                }
-                tgtData.setElemDoubleAt(trgIndex.getIndex(x), val);
+    /**
+     * Gets the EAP correction of the columns of a burst, computed on first use.
+     */
+    private EAPCorrection getEAPCorrection(final int subSwathIndex, final int burstIndex, final String polarization,
+                                           final int width) {
+
+        final String key = subSwath[subSwathIndex - 1].subSwathName + "_" + polarization;
+        return burstEAPCorrections.computeIfAbsent(key + "_" + burstIndex, k -> {
+            final double[] slantRangeTimes = new double[width];
+            for (int x = 0; x < width; x++) {
+                slantRangeTimes[x] = su.getSlantRangeTime(x, subSwathIndex) * 2.0; // 1-way to 2-way
             }
+            return createEAPCorrection(slantRangeTimes,
+                    subSwath[subSwathIndex - 1].apSlantRangeTime[burstIndex],
+                    subSwath[subSwathIndex - 1].apElevationAngle[burstIndex],
+                    computeRollSteeringAngle(subSwathIndex, burstIndex),
+                    swathPolToEAPVector.get(key));
+        });
+    }
+
+    /**
+     * Computes the normalised EAP of the columns of a burst, interpolating the elevation angle from the antenna
+     * pattern slant range times and the EAP from the elevation angle.
+     *
+     * @param slantRangeTimes   the 2-way slant range time of each column
+     * @param apSlantRangeTime  the antenna pattern slant range times of the burst
+     * @param apElevationAngle  the antenna pattern elevation angles of the burst
+     * @param rollSteeringAngle the roll steering angle of the burst
+     * @param eapVector         the EAP of the sub-swath and polarisation
+     * @return the correction
+     */
+    static EAPCorrection createEAPCorrection(final double[] slantRangeTimes, final double[] apSlantRangeTime,
+                                             final double[] apElevationAngle, final double rollSteeringAngle,
+                                             final EAPVector eapVector) {
+
+        final int width = slantRangeTimes.length;
+        final EAPCorrection correction = new EAPCorrection(width);
+        final double[] eap = new double[2];
+        for (int x = 0; x < width; x++) {
+            final double elevationAngle = computeElevationAngle(
+                    apSlantRangeTime, apElevationAngle, slantRangeTimes[x]);
+            if (elevationAngle == -1.0) {
+                continue;
+            }
+
+            computeEAP(elevationAngle, rollSteeringAngle, eapVector, eap);
+
+            final double norm = Math.sqrt(eap[0]*eap[0] + eap[1]*eap[1]);
+            correction.re[x] = eap[0] / norm;
+            correction.im[x] = eap[1] / norm;
+            correction.valid[x] = true;
         }
+        return correction;
     }
 
     private double computeRollSteeringAngle(final int subSwathIndex, final int burstIndex) {
@@ -601,10 +662,8 @@ public final class EAPPhaseCorrectionOp extends Operator {
         return thetaRef + alphaRoll*(satelliteAltitude/1000.0 - hRef);
     }
 
-    private double computeElevationAngle(final int subSwathIndex, final int burstIndex, final double slantRangeTime) {
-
-        final double[] slantRangeTimeArray = subSwath[subSwathIndex - 1].apSlantRangeTime[burstIndex];
-        final double[] elevationAngleArray = subSwath[subSwathIndex - 1].apElevationAngle[burstIndex];
+    static double computeElevationAngle(final double[] slantRangeTimeArray, final double[] elevationAngleArray,
+                                        final double slantRangeTime) {
 
         if (slantRangeTime < slantRangeTimeArray[0] || slantRangeTime > slantRangeTimeArray[slantRangeTimeArray.length - 1]) {
             return -1.0;
@@ -631,8 +690,8 @@ public final class EAPPhaseCorrectionOp extends Operator {
         return (1 - lambda)*theta0 + lambda*theta1;
     }
 
-    private void computeEAP(final double elevationAngle, final double rollSteeringAngle,
-                            final EAPVector eapVector, final double[] eap) {
+    static void computeEAP(final double elevationAngle, final double rollSteeringAngle,
+                           final EAPVector eapVector, final double[] eap) {
 
         final int i0 = (int)((elevationAngle - rollSteeringAngle) / eapVector.elevationAngleIncrement +
                 (eapVector.count - 1) /2.0);
@@ -677,6 +736,21 @@ public final class EAPPhaseCorrectionOp extends Operator {
         }
     }
 
+    /**
+     * The normalised EAP of each column of a burst, by which the complex samples are corrected.
+     */
+    static final class EAPCorrection {
+        final double[] re;
+        final double[] im;
+        final boolean[] valid;
+
+        EAPCorrection(final int width) {
+            this.re = new double[width];
+            this.im = new double[width];
+            this.valid = new boolean[width];
+        }
+    }
+
 
     /**
      * The SPI is used to register this operator in the graph processing framework
@@ -51,6 +51,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 
 /**
  * Estimate range and azimuth offsets for each burst using cross-correlation with a 512x512 block in
@@ -125,8 +126,6 @@ public class SpectralDiversityOp extends Operator {
     private int fineWinAccX = 0;
     private int fineWinOvsFactor = 0;
 
-    private boolean isRangeOffsetAvailable = false;
-    private boolean isAzimuthOffsetAvailable = false;
     private Double noDataValue = -9999.0;
     private Sentinel1Utils su;
     private Sentinel1Utils.SubSwathInfo[] subSwath = null;
@@ -139,7 +138,8 @@ public class SpectralDiversityOp extends Operator {
     private Map<String, CplxContainer> masterMap = new HashMap<>();
     private Map<String, CplxContainer> slaveMap = new HashMap<>();
     private Map<String, ProductContainer> targetMap = new HashMap<>();
-    private Map<String, AzRgOffsets> targetOffsetMap = new HashMap<>();
+    private final Map<String, FutureTask<AzRgOffsets>> offsetTasks = new HashMap<>();
+    private ExecutorService esdExecutor = null;
 
     private static final int cohWin = 5; // window size for coherence calculation
     private static final int maxRangeShift = 1;
@@ -188,12 +188,7 @@ public class SpectralDiversityOp extends Operator {
                 swathIndexStr = subSwathNames[0].substring(2);
             }
 
-            if (useSuppliedShifts) {
-
-                isRangeOffsetAvailable = true;
-                isAzimuthOffsetAvailable = true;
-
-            } else {
+            if (!useSuppliedShifts) {
 
                 fineWinWidth = Integer.parseInt(fineWinWidthStr);
                 fineWinHeight = Integer.parseInt(fineWinHeightStr);
@@ -215,6 +210,10 @@ public class SpectralDiversityOp extends Operator {
             constructSourceMetadata();
             constructTargetMetadata();
             createTargetProduct();
+
+            if (!useSuppliedShifts) {
+                createOffsetEstimationTasks();
+            }
             //System.out.println("SpectralDiversityOp.initialize: targetProduct name = " + targetProduct.getName());
 
         } catch (Throwable e) {
@@ -436,11 +435,12 @@ public class SpectralDiversityOp extends Operator {
              throws OperatorException {
 
         try {
-            if (!isRangeOffsetAvailable) {
-                estimateRangeOffset();
-            }
-            if (!isAzimuthOffsetAvailable) {
-                estimateAzimuthOffset();
+            if (!useSuppliedShifts) {
+                // run the estimation of any master/slave pair not yet started by another tile in this thread,
+                // pairs already being estimated elsewhere are skipped and awaited below
+                for (FutureTask<AzRgOffsets> task : offsetTasks.values()) {
+                    task.run();
+                }
             }
 
             for (String key : targetMap.keySet()) {
@@ -451,7 +451,7 @@ public class SpectralDiversityOp extends Operator {
                     azOffset = overallAzimuthShift;
                     rgOffset = overallRangeShift;
                 } else {
-                    final AzRgOffsets azRgOffsets = targetOffsetMap.get(key);
+                    final AzRgOffsets azRgOffsets = getResult(offsetTasks.get(key));
                     azOffset = azRgOffsets.azOffset;
                     rgOffset = azRgOffsets.rgOffset;
                 }
@@ -464,112 +464,176 @@ public class SpectralDiversityOp extends Operator {
         }
     }
 
+    @Override
+    public synchronized void dispose() {
+        if (esdExecutor != null) {
+            esdExecutor.shutdownNow();
+            esdExecutor = null;
+        }
+        super.dispose();
+    }
+
     /**
-     * Estimate range and azimuth offset using cross-correlation.
+     * Create one offset estimation task per master/slave pair. The tasks are started by the first tile that
+     * needs them and their results are shared with all other tiles through the futures, so that tiles only
+     * wait for the pairs they are about to shift.
      */
-    private synchronized void estimateRangeOffset() {
+    private void createOffsetEstimationTasks() {
 
-        if (isRangeOffsetAvailable) {
-            return;
+        for (String key : targetMap.keySet()) {
+            offsetTasks.put(key, new FutureTask<>(() -> estimateOffsets(key)));
+        }
+    }
+
+    /**
+     * Pool shared by the burst and block estimations of all master/slave pairs. Idle threads time out so the
+     * pool does not outlive the estimation stage.
+     */
+    private synchronized ExecutorService getESDExecutor() {
+
+        if (esdExecutor == null) {
+            final int numThreads = Runtime.getRuntime().availableProcessors();
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads,
+                    30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        final Thread thread = new Thread(r, "ESD estimation");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            esdExecutor = executor;
+        }
+        return esdExecutor;
+    }
+
+    private static <T> T getResult(final Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : new OperatorException(cause);
         }
+    }
+
+    /**
+     * Estimate range and azimuth offset of one master/slave pair. The range offset of every burst and the
+     * azimuth shift of every overlap block are submitted to the shared pool at once and collected in order.
+     */
+    private AzRgOffsets estimateOffsets(final String key) throws Exception {
+
+        final ProductContainer container = targetMap.get(key);
+        final CplxContainer master = container.sourceMaster;
+        final CplxContainer slave = container.sourceSlave;
+        final String mstSlvTag = getMasterSlavePairTag(master, slave);
 
         // Each subswath can have its own number of bursts but we are dealing with only one subswath anyways
         final int numBursts = subSwath[subSwathIndex - 1].numOfBursts;
+        final int numOverlaps = numBursts - 1;
+        final ExecutorService executor = getESDExecutor();
 
-        final StatusProgressMonitor status = new StatusProgressMonitor(StatusProgressMonitor.TYPE.SUBTASK);
-        status.beginTask("Estimating range offsets... ", numBursts);
-
-        final ThreadManager threadManager = new ThreadManager();
+        final List<Future<double[]>> burstOffsets = new ArrayList<>(numBursts);
+        final List<Future<Double>> blockShifts = new ArrayList<>(numOverlaps * numBlocksPerOverlap);
         try {
-            // for each slave and pol combination
-            for (String key : targetMap.keySet()) {
-                final List<Double> azOffsetArray = new ArrayList<>(numBursts);
-                final List<Double> rgOffsetArray = new ArrayList<>(numBursts);
-                final List<Integer> burstIndexArray = new ArrayList<>(numBursts);
+            for (int i = 0; i < numBursts; i++) {
+                final int burstIndex = i;
+                burstOffsets.add(executor.submit(() -> {
+                    checkForCancellation();
+                    final double[] offset = new double[2]; // az/rg offset
+                    estimateAzRgOffsets(master.realBand, master.imagBand, slave.realBand, slave.imagBand,
+                            burstIndex, offset);
+                    return offset;
+                }));
+            }
 
-                final ProductContainer container = targetMap.get(key);
-                final CplxContainer master = container.sourceMaster;
-                final CplxContainer slave = container.sourceSlave;
+            final double spectralSeparation = computeSpectralSeparation();
+            for (int i = 0; i < numOverlaps; i++) {
+                final Rectangle overlapInBurstOneRectangle = new Rectangle();
+                final Rectangle overlapInBurstTwoRectangle = new Rectangle();
+                getOverlappedRectangles(i, overlapInBurstOneRectangle, overlapInBurstTwoRectangle);
 
-                for (int i = 0; i < numBursts; i++) {
-                    checkForCancellation();
-                    final int burstIndex = i;
+                for (int j = 0; j < numBlocksPerOverlap; j++) {
+                    final int blockIndex = j;
+                    blockShifts.add(executor.submit(() -> {
+                        checkForCancellation();
+                        return estimateBlockAzOffset(master, slave, overlapInBurstOneRectangle,
+                                overlapInBurstTwoRectangle, blockIndex, spectralSeparation);
+                    }));
+                }
+            }
 
-                    final Thread worker = new Thread() {
-                        @Override
-                        public void run() {
-                            try {
-                                final double[] offset = new double[2]; // az/rg offset
+            final double rgOffset = estimateRangeOffset(mstSlvTag, burstOffsets);
+            final double azOffset = estimateAzimuthOffset(mstSlvTag, blockShifts, numOverlaps);
+            return new AzRgOffsets(azOffset, rgOffset);
 
-                                estimateAzRgOffsets(master.realBand, master.imagBand, slave.realBand, slave.imagBand,
-                                        burstIndex, offset);
+        } catch (Exception e) {
+            for (Future<double[]> future : burstOffsets) {
+                future.cancel(true);
+            }
+            for (Future<Double> future : blockShifts) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+    }
 
-                                synchronized(azOffsetArray) {
-                                    azOffsetArray.add(offset[0]);
-                                    rgOffsetArray.add(offset[1]);
-                                    burstIndexArray.add(burstIndex);
-                                }
-                            } catch (Throwable e) {
-                                OperatorUtils.catchOperatorException("estimateOffset", e);
-                            }
-                        }
-                    };
-                    threadManager.add(worker);
-                    status.worked(1);
-                }
-                status.done();
-                threadManager.finish();
+    /**
+     * Average the range offsets estimated by cross-correlation for all bursts.
+     */
+    private double estimateRangeOffset(final String mstSlvTag, final List<Future<double[]>> burstOffsets)
+            throws Exception {
 
-                double sumAzOffset = 0.0;
-                double sumRgOffset = 0.0;
-                int count = 0;
-                for (int i = 0; i < azOffsetArray.size(); i++) {
-                    final double azShift = azOffsetArray.get(i);
-                    final double rgShift = rgOffsetArray.get(i);
+        final int numBursts = burstOffsets.size();
+        final List<Double> rgOffsetArray = new ArrayList<>(numBursts);
+        final List<Integer> burstIndexArray = new ArrayList<>(numBursts);
 
-                    SystemUtils.LOG.fine("RangeShiftOp: burst = " + burstIndexArray.get(i) + ", range offset = " + rgShift
-                            + ", azimuth offset = " + azShift);
+        final StatusProgressMonitor status = new StatusProgressMonitor(StatusProgressMonitor.TYPE.SUBTASK);
+        status.beginTask("Estimating range offsets... ", numBursts);
 
-                    if (noDataValue.equals(azShift) || noDataValue.equals(rgShift)) {
-                        continue;
-                    }
+        double sumRgOffset = 0.0;
+        int count = 0;
+        try {
+            for (int i = 0; i < numBursts; i++) {
+                final double[] offset = getResult(burstOffsets.get(i));
+                status.worked(1);
 
-                    if (Math.abs(rgShift) > maxRangeShift) {
-                        continue;
-                    }
+                final double azShift = offset[0];
+                final double rgShift = offset[1];
+                rgOffsetArray.add(rgShift);
+                burstIndexArray.add(i);
 
-                    sumAzOffset += azShift;
-                    sumRgOffset += rgShift;
-                    count++;
-                }
+                SystemUtils.LOG.fine("RangeShiftOp: burst = " + i + ", range offset = " + rgShift
+                        + ", azimuth offset = " + azShift);
 
-                double rgOffset;
-                if (count > 0) {
-                    rgOffset = sumRgOffset / (double)count;
-                } else {
-                    rgOffset = 0.0;
-                    SystemUtils.LOG.warning("RangeShiftOp: Cross-correlation failed for all bursts, set range shift to 0");
+                if (noDataValue.equals(azShift) || noDataValue.equals(rgShift)) {
+                    continue;
                 }
 
-                if (targetOffsetMap.get(key) == null) {
-                    targetOffsetMap.put(key, new AzRgOffsets(0.0, rgOffset));
-                } else {
-                    targetOffsetMap.get(key).setRgOffset(rgOffset);
+                if (Math.abs(rgShift) > maxRangeShift) {
+                    continue;
                 }
 
-                final String mstSlvTag = getMasterSlavePairTag(master, slave);
+                sumRgOffset += rgShift;
+                count++;
+            }
+        } finally {
+            status.done();
+        }
 
-                saveOverallRangeShift(mstSlvTag, rgOffset);
+        double rgOffset;
+        if (count > 0) {
+            rgOffset = sumRgOffset / (double)count;
+        } else {
+            rgOffset = 0.0;
+            SystemUtils.LOG.warning("RangeShiftOp: Cross-correlation failed for all bursts, set range shift to 0");
+        }
 
-                saveRangeShiftPerBurst(mstSlvTag, rgOffsetArray, burstIndexArray);
+        synchronized (this) {
+            saveOverallRangeShift(mstSlvTag, rgOffset);
 
-                SystemUtils.LOG.fine("RangeShiftOp: Overall range shift = " + rgOffset);
-            }
-        } catch (Throwable e) {
-            OperatorUtils.catchOperatorException("estimateOffset", e);
+            saveRangeShiftPerBurst(mstSlvTag, rgOffsetArray, burstIndexArray);
         }
 
-        isRangeOffsetAvailable = true;
+        SystemUtils.LOG.fine("RangeShiftOp: Overall range shift = " + rgOffset);
+        return rgOffset;
     }
 
     private void estimateAzRgOffsets(final Band mBandI, final Band mBandQ, final Band sBandI, final Band sBandQ,
@@ -633,15 +697,11 @@ public class SpectralDiversityOp extends Operator {
     }
 
     /**
-     * Estimate azimuth offset using ESD approach.
+     * Estimate azimuth offset using ESD approach from the block shifts of all burst overlaps.
      */
-    private synchronized void estimateAzimuthOffset() {
+    private double estimateAzimuthOffset(final String mstSlvTag, final List<Future<Double>> blockShifts,
+                                         final int numOverlaps) throws Exception {
 
-        if (isAzimuthOffsetAvailable) {
-            return;
-        }
-
-        final int numOverlaps = subSwath[subSwathIndex - 1].numOfBursts - 1;
         final int numShifts = numOverlaps * numBlocksPerOverlap;
 
         //SystemUtils.LOG.info("estimateAzimuthOffset numOverlaps = " + numOverlaps);
@@ -649,121 +709,91 @@ public class SpectralDiversityOp extends Operator {
         final StatusProgressMonitor status = new StatusProgressMonitor(StatusProgressMonitor.TYPE.SUBTASK);
         status.beginTask("Estimating azimuth offset... ", numShifts);
 
-        final ThreadManager threadManager = new ThreadManager();
+        final List<AzimuthShiftData> azShiftArray = new ArrayList<>(numShifts);
+        final double[][] shiftLUT = new double[numOverlaps][numBlocksPerOverlap];
         try {
-            for (String key : targetMap.keySet()) {
-
-                final ProductContainer container = targetMap.get(key);
-                final CplxContainer master = container.sourceMaster;
-                final CplxContainer slave = container.sourceSlave;
-
-                final Band mBandI = master.realBand;
-                final Band mBandQ = master.imagBand;
-                final Band sBandI = slave.realBand;
-                final Band sBandQ = slave.imagBand;
-
-                // todo Can this not be computed just once outside of loop? Does its value ever change?
-                final double spectralSeparation = computeSpectralSeparation();
-
-                final List<AzimuthShiftData> azShiftArray = new ArrayList<>(numShifts);
-                final double[][] shiftLUT = new double[numOverlaps][numBlocksPerOverlap];
-
-                for (int i = 0; i < numOverlaps; i++) {
-
-                    final Rectangle overlapInBurstOneRectangle =  new Rectangle();
-                    final Rectangle overlapInBurstTwoRectangle = new Rectangle();
-
-                    getOverlappedRectangles(i, overlapInBurstOneRectangle, overlapInBurstTwoRectangle);
-
-                    final double[][] coherence = computeCoherence(
-                            overlapInBurstOneRectangle, mBandI, mBandQ, sBandI, sBandQ, cohWin);
-
-                    final int w = overlapInBurstOneRectangle.width / numBlocksPerOverlap; // block width
-                    final int h = overlapInBurstOneRectangle.height;
-                    final int x0BurstOne = overlapInBurstOneRectangle.x;
-                    final int y0BurstOne = overlapInBurstOneRectangle.y;
-                    final int y0BurstTwo = overlapInBurstTwoRectangle.y;
-                    final int overlapIndex = i;
+            for (int i = 0; i < numOverlaps; i++) {
+                for (int j = 0; j < numBlocksPerOverlap; j++) {
+                    final double azShift = getResult(blockShifts.get(i * numBlocksPerOverlap + j));
+                    status.worked(1);
 
-                    for (int j = 0; j < numBlocksPerOverlap; j++) {
-                        checkForCancellation();
-                        final int x0 = x0BurstOne + j * w;
-                        final int blockIndex = j;
-
-                        final Thread worker = new Thread() {
-                            @Override
-                            public void run() {
-                                try {
-                                    final Rectangle blockInBurstOneRectangle = new Rectangle(x0, y0BurstOne, w, h);
-                                    final Rectangle blockInBurstTwoRectangle = new Rectangle(x0, y0BurstTwo, w, h);
-
-                                    final double[] blockCoherence = getBlockCoherence(blockIndex, w, h, coherence);
-
-                                    final double azShift = estimateAzOffsets(mBandI, mBandQ, sBandI, sBandQ, blockCoherence,
-                                            blockInBurstTwoRectangle, blockInBurstOneRectangle, spectralSeparation);
-
-                                    synchronized(azShiftArray) {
-                                        azShiftArray.add(new AzimuthShiftData(overlapIndex, blockIndex, azShift));
-                                        shiftLUT[overlapIndex][blockIndex] = azShift;
-                                    }
-                                } catch (Throwable e) {
-                                    OperatorUtils.catchOperatorException("estimateOffset", e);
-                                }
-                            }
-                        };
-                        threadManager.add(worker);
-                        status.worked(1);
-                    }
+                    azShiftArray.add(new AzimuthShiftData(i, j, azShift));
+                    shiftLUT[i][j] = azShift;
                 }
+            }
+        } finally {
+            status.done();
+        }
 
-                status.done();
-                threadManager.finish();
-
-                // todo The following simple average should be replaced by weighted average using coherence as weight
-                final double[] averagedAzShiftArray = new double[numOverlaps];
-                double totalOffset = 0.0;
-                for (int i = 0; i < numOverlaps; i++) {
-                    double sumAzOffset = 0.0;
-                    for (int j = 0; j < numShifts; j++) {
-                        if (azShiftArray.get(j).overlapIndex == i) {
-                            sumAzOffset += azShiftArray.get(j).shift;
-                        }
-                    }
-                    averagedAzShiftArray[i] = sumAzOffset / numBlocksPerOverlap;
-                    totalOffset += sumAzOffset;
+        // todo The following simple average should be replaced by weighted average using coherence as weight
+        final double[] averagedAzShiftArray = new double[numOverlaps];
+        double totalOffset = 0.0;
+        for (int i = 0; i < numOverlaps; i++) {
+            double sumAzOffset = 0.0;
+            for (int j = 0; j < numBlocksPerOverlap; j++) {
+                sumAzOffset += shiftLUT[i][j];
+            }
+            averagedAzShiftArray[i] = sumAzOffset / numBlocksPerOverlap;
+            totalOffset += sumAzOffset;
 
-                    SystemUtils.LOG.fine(
-                            "AzimuthShiftOp: overlap area = " + i + ", azimuth offset = " + averagedAzShiftArray[i]);
-                }
+            SystemUtils.LOG.fine(
+                    "AzimuthShiftOp: overlap area = " + i + ", azimuth offset = " + averagedAzShiftArray[i]);
+        }
 
-                final double azOffset = -totalOffset / numShifts;
-                SystemUtils.LOG.fine("AzimuthShiftOp: Overall azimuth shift = " + azOffset);
+        final double azOffset = -totalOffset / numShifts;
+        SystemUtils.LOG.fine("AzimuthShiftOp: Overall azimuth shift = " + azOffset);
 
-                if (targetOffsetMap.get(key) == null) {
-                    targetOffsetMap.put(key, new AzRgOffsets(azOffset, 0.0));
-                } else {
-                    targetOffsetMap.get(key).setAzOffset(azOffset);
-                }
+        synchronized (this) {
+            saveOverallAzimuthShift(mstSlvTag, azOffset);
 
-                final String mstSlvTag = getMasterSlavePairTag(master, slave);
+            saveAzimuthShiftPerOverlap(mstSlvTag, averagedAzShiftArray);
 
-                saveOverallAzimuthShift(mstSlvTag, azOffset);
+            saveAzimuthShiftPerBlock(mstSlvTag, azShiftArray);
+        }
 
-                saveAzimuthShiftPerOverlap(mstSlvTag, averagedAzShiftArray);
+        if (outputESDEstimationToFile) {
+            final String fileName = mstSlvTag + "_azimuth_shift.txt";
+            outputESDEstimationToFile(fileName, shiftLUT, -azOffset);
+        }
+        return azOffset;
+    }
 
-                saveAzimuthShiftPerBlock(mstSlvTag, azShiftArray);
+    /**
+     * Estimate the azimuth shift of one block of a burst overlap. Only the block and the coherence window
+     * margin of the neighbouring overlap columns are read, so concurrent blocks keep memory bounded.
+     */
+    private double estimateBlockAzOffset(final CplxContainer master, final CplxContainer slave,
+                                         final Rectangle overlapInBurstOneRectangle,
+                                         final Rectangle overlapInBurstTwoRectangle,
+                                         final int blockIndex, final double spectralSeparation) {
+
+        final Band mBandI = master.realBand;
+        final Band mBandQ = master.imagBand;
+        final Band sBandI = slave.realBand;
+        final Band sBandQ = slave.imagBand;
+
+        final int w = overlapInBurstOneRectangle.width / numBlocksPerOverlap; // block width
+        final int h = overlapInBurstOneRectangle.height;
+        final int x0BurstOne = overlapInBurstOneRectangle.x;
+        final int xMaxBurstOne = x0BurstOne + overlapInBurstOneRectangle.width;
+        final int y0BurstOne = overlapInBurstOneRectangle.y;
+        final int y0BurstTwo = overlapInBurstTwoRectangle.y;
+        final int x0 = x0BurstOne + blockIndex * w;
+
+        // the coherence window may reach into the neighbouring blocks but never beyond the overlap
+        final int halfWindowSize = cohWin / 2;
+        final int cohX0 = Math.max(x0 - halfWindowSize, x0BurstOne);
+        final int cohXMax = Math.min(x0 + w + halfWindowSize, xMaxBurstOne);
+        final Rectangle cohRectangle = new Rectangle(cohX0, y0BurstOne, cohXMax - cohX0, h);
 
-                if (outputESDEstimationToFile) {
-                    final String fileName = mstSlvTag + "_azimuth_shift.txt";
-                    outputESDEstimationToFile(fileName, shiftLUT, -azOffset);
-                }
-            }
+        final double[][] coherence = computeCoherence(cohRectangle, mBandI, mBandQ, sBandI, sBandQ, cohWin);
+        final double[] blockCoherence = getBlockCoherence(x0 - cohX0, w, h, coherence);
 
-        } catch (Throwable e) {
-            OperatorUtils.catchOperatorException("estimateAzimuthOffset", e);
-        }
+        final Rectangle blockInBurstOneRectangle = new Rectangle(x0, y0BurstOne, w, h);
+        final Rectangle blockInBurstTwoRectangle = new Rectangle(x0, y0BurstTwo, w, h);
 
-        isAzimuthOffsetAvailable = true;
+        return estimateAzOffsets(mBandI, mBandQ, sBandI, sBandQ, blockCoherence,
+                blockInBurstTwoRectangle, blockInBurstOneRectangle, spectralSeparation);
     }
 
     private double computeSpectralSeparation () {
@@ -834,13 +864,13 @@ public class SpectralDiversityOp extends Operator {
     }
 
     private static double[] getBlockCoherence(
-            final int blockIndex, final int blockWidth, final int blockHeight, final double[][] coherence) {
+            final int blockX0, final int blockWidth, final int blockHeight, final double[][] coherence) {
 
         final double[] blockCoherence = new double[blockWidth*blockHeight];
 
         for (int i = 0; i < blockCoherence.length; i++) {
             final int r = i / blockWidth;
-            final int c = blockIndex*blockWidth + i - r*blockWidth;
+            final int c = blockX0 + i - r*blockWidth;
             blockCoherence[i] = coherence[r][c];
         }
         return blockCoherence;
@@ -1343,21 +1373,13 @@ public class SpectralDiversityOp extends Operator {
     }
 
     private static class AzRgOffsets {
-        double azOffset;
-        double rgOffset;
+        final double azOffset;
+        final double rgOffset;
 
         public AzRgOffsets(final double azOffset, final double rgOffset) {
             this.azOffset = azOffset;
             this.rgOffset = rgOffset;
         }
-
-        public void setAzOffset(final double azOffset) {
-            this.azOffset = azOffset;
-        }
-
-        public void setRgOffset(final double rgOffset) {
-            this.rgOffset = rgOffset;
-        }
     }
 
     /**
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.sentinel1.gpf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the per column EAP correction of EAPPhaseCorrectionOp with the per pixel correction it replaces.
+ */
+public class TestEAPPhaseCorrection {
+
+    private static final int WIDTH = 500;
+    private static final double ROLL_STEERING_ANGLE = 29.45;
+
+    @Test
+    public void testCorrectedSamples() {
+        final double[] apSlantRangeTime = new double[12];
+        final double[] apElevationAngle = new double[12];
+        for (int i = 0; i < apSlantRangeTime.length; i++) {
+            apSlantRangeTime[i] = 5.3e-3 + i * 2.0e-5;
+            apElevationAngle[i] = 27.0 + i * 0.45 + 0.01 * i * i;
+        }
+
+        final int count = 401;
+        final double[] eap = new double[2 * count];
+        for (int i = 0; i < count; i++) {
+            eap[2 * i] = 1.0 + 0.2 * Math.cos(0.01 * i);
+            eap[2 * i + 1] = 0.3 * Math.sin(0.013 * i);
+        }
+        final EAPPhaseCorrectionOp.EAPVector eapVector = new EAPPhaseCorrectionOp.EAPVector("IW1", "VV", 0.05, eap);
+
+        // columns before and after the antenna pattern are not corrected
+        final double[] slantRangeTimes = new double[WIDTH];
+        for (int x = 0; x < WIDTH; x++) {
+            slantRangeTimes[x] = 5.29e-3 + x * 5.0e-7;
+        }
+
+        final EAPPhaseCorrectionOp.EAPCorrection correction = EAPPhaseCorrectionOp.createEAPCorrection(
+                slantRangeTimes, apSlantRangeTime, apElevationAngle, ROLL_STEERING_ANGLE, eapVector);
+
+        final double[] pixelEAP = new double[2];
+        for (int x = 0; x < WIDTH; x++) {
+            final double elevationAngle = EAPPhaseCorrectionOp.computeElevationAngle(
+                    apSlantRangeTime, apElevationAngle, slantRangeTimes[x]);
+            if (elevationAngle == -1.0) {
+                assertFalse(correction.valid[x]);
+                continue;
+            }
+            assertTrue(correction.valid[x]);
+
+            EAPPhaseCorrectionOp.computeEAP(elevationAngle, ROLL_STEERING_ANGLE, eapVector, pixelEAP);
+            final double norm = Math.sqrt(pixelEAP[0] * pixelEAP[0] + pixelEAP[1] * pixelEAP[1]);
+
+            final double i = 1234.0 - 3.0 * x;
+            final double q = -567.0 + 2.0 * x;
+            final float expectedI = (float) ((i * pixelEAP[0] + q * pixelEAP[1]) / norm);
+            final float expectedQ = (float) ((q * pixelEAP[0] - i * pixelEAP[1]) / norm);
+            assertEquals(expectedI, (float) (i * correction.re[x] + q * correction.im[x]), Math.ulp(expectedI));
+            assertEquals(expectedQ, (float) (q * correction.re[x] - i * correction.im[x]), Math.ulp(expectedQ));
+        }
+        assertFalse(correction.valid[0]);
+        assertFalse(correction.valid[WIDTH - 1]);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.utilities.gpf;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Spectral oversampling of a complex tile by zero padding of the column and row spectra.
+ * <p>
+ * The tile is held in a flat row-major buffer of interleaved (I, Q) samples with room for the oversampled number of
+ * rows. Rows are transformed in place; each column is transformed, zero padded within its own spectrum buffer and
+ * transformed back at the oversampled length. Oversampled rows are then produced one at a time from their zero
+ * padded spectra. FFT plans are cached by length and, with all work buffers, held per thread.
+ */
+final class Oversampler {
+
+    private final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+
+    /**
+     * Gets the buffer of the current thread for a tile. Element (x, y) has I at [2 * (y * width + x)] and Q at the
+     * next index.
+     *
+     * @param width              the source tile width
+     * @param oversampledHeight  the oversampled tile height
+     * @return a buffer of at least 2 * width * oversampledHeight elements
+     */
+    double[] getBuffer(final int width, final int oversampledHeight) {
+        return workspace.get().getData(2 * width * oversampledHeight);
+    }
+
+    /**
+     * Oversamples the columns of a tile in the buffer of the current thread.
+     *
+     * @param data              the tile buffer, the first height rows of which hold the source samples
+     * @param width             the source tile width
+     * @param height            the source tile height
+     * @param oversampledHeight the oversampled tile height
+     * @param splits            per column the number of leading column spectrum samples, the remaining samples are
+     *                          moved to the end of the oversampled spectrum
+     * @param splitOffset       index in splits of the first column
+     */
+    void oversampleColumns(final double[] data, final int width, final int height, final int oversampledHeight,
+                           final int[] splits, final int splitOffset) {
+
+        final Workspace ws = workspace.get();
+        final DoubleFFT_1D rowFFT = ws.getFFT(width);
+        final DoubleFFT_1D srcColFFT = ws.getFFT(height);
+        final DoubleFFT_1D tgtColFFT = ws.getFFT(oversampledHeight);
+        final double[] col = ws.getColumn(2 * oversampledHeight);
+
+        for (int y = 0; y < height; ++y) {
+            rowFFT.complexForward(data, 2 * y * width);
+        }
+
+        for (int x = 0; x < width; ++x) {
+            int k = 2 * x;
+            for (int y = 0; y < height; ++y) {
+                col[2 * y] = data[k];
+                col[2 * y + 1] = data[k + 1];
+                k += 2 * width;
+            }
+
+            srcColFFT.complexForward(col);
+
+            // zero padding between the low positive and the negative frequencies
+            final int d = splits[splitOffset + x];
+            final int tail = 2 * (oversampledHeight - height + d);
+            System.arraycopy(col, 2 * d, col, tail, 2 * (height - d));
+            Arrays.fill(col, 2 * d, tail, 0.0);
+
+            tgtColFFT.complexInverse(col, true);
+
+            k = 2 * x;
+            for (int y = 0; y < oversampledHeight; ++y) {
+                data[k] = col[2 * y];
+                data[k + 1] = col[2 * y + 1];
+                k += 2 * width;
+            }
+        }
+    }
+
+    /**
+     * Oversamples one row of a tile of which the columns have been oversampled.
+     *
+     * @param data             the tile buffer
+     * @param y                the row in the tile buffer
+     * @param width            the source tile width
+     * @param oversampledWidth the oversampled tile width
+     * @return a buffer of the current thread holding the 2 * oversampledWidth interleaved (I, Q) samples of the row
+     */
+    double[] oversampleRow(final double[] data, final int y, final int width, final int oversampledWidth) {
+
+        final Workspace ws = workspace.get();
+        final double[] row = ws.getRow(2 * oversampledWidth);
+
+        final int firstHalf = width / 2;
+        final int secondHalf = width - firstHalf;
+        final int offset = 2 * y * width;
+        final int tail = 2 * (oversampledWidth - secondHalf);
+        System.arraycopy(data, offset, row, 0, 2 * firstHalf);
+        Arrays.fill(row, 2 * firstHalf, tail, 0.0);
+        System.arraycopy(data, offset + 2 * firstHalf, row, tail, 2 * secondHalf);
+
+        ws.getFFT(oversampledWidth).complexInverse(row, true);
+        return row;
+    }
+
+    /**
+     * Per thread FFT plans and buffers, grown on demand.
+     */
+    private static final class Workspace {
+
+        private final Map<Integer, DoubleFFT_1D> plans = new HashMap<>();
+        private double[] data = new double[0];
+        private double[] column = new double[0];
+        private double[] row = new double[0];
+
+        DoubleFFT_1D getFFT(final int n) {
+            return plans.computeIfAbsent(n, DoubleFFT_1D::new);
+        }
+
+        double[] getData(final int size) {
+            if (data.length < size) {
+                data = new double[size];
+            }
+            return data;
+        }
+
+        double[] getColumn(final int size) {
+            if (column.length < size) {
+                column = new double[size];
+            }
+            return column;
+        }
+
+        double[] getRow(final int size) {
+            if (row.length < size) {
+                row = new double[size];
+            }
+            return row;
+        }
+    }
+}
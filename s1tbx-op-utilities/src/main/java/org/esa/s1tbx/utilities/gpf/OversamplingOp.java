@@ -16,7 +16,6 @@
 package org.esa.s1tbx.utilities.gpf;
 
 import com.bc.ceres.core.ProgressMonitor;
-import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
 import org.apache.commons.math3.util.FastMath;
 import org.esa.snap.core.datamodel.*;
 import org.esa.snap.core.gpf.Operator;
@@ -38,6 +37,7 @@ import org.esa.snap.engine_utilities.gpf.ReaderUtils;
 import java.awt.*;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Oversample
@@ -98,6 +98,10 @@ public class OversamplingOp extends Operator {
     private double[] dopplerCentroidFreq; // Doppler centroid frequencies for all columns in a range line
     private double widthRatioByHeightRatio;
 
+    private final Oversampler oversampler = new Oversampler();
+    private final Map<Integer, int[]> centredSplits = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> dopplerSplits = new ConcurrentHashMap<>();
+
     private static final double nsTOs = Constants.oneBillionth; // ns to s
     private static final String CEOS = "CEOS";
     private static final String ENVISAT = "ENVISAT";
@@ -549,60 +553,36 @@ public class OversamplingOp extends Operator {
         final int overSampledSourceTileWidth = (int) (widthRatio * sourceTileWidth + 0.5);
         final int overSampledSourceTileHeight = (int) (heightRatio * sourceTileHeight + 0.5);
 
-        final double[][] tmpI = new double[overSampledSourceTileHeight][sourceTileWidth];
-        final double[][] tmpQ = new double[overSampledSourceTileHeight][sourceTileWidth];
-
         final Band srcBand = sourceProduct.getBand(targetBandName);
         final Tile srcRaster = getSourceTile(srcBand, sourceTileRectangle);
         final ProductData srcData = srcRaster.getDataBuffer();
 
-        final double[] rowArray = new double[sourceTileWidth * 2];
-
-        // perform 1-D FFT on each row
-        final DoubleFFT_1D src_row_fft = new DoubleFFT_1D(sourceTileWidth);
-        for (int y = 0; y < sourceTileHeight; y++) {
-            getRowData(sy0 + y, sx0, sourceTileWidth, srcData, srcRaster, rowArray);
-            src_row_fft.complexForward(rowArray);
+        final double[] data = oversampler.getBuffer(sourceTileWidth, overSampledSourceTileHeight);
+        int k = 0;
+        for (int y = sy0; y < sy0 + sourceTileHeight; y++) {
+            final int index = srcRaster.getDataBufferIndex(sx0, y);
             for (int x = 0; x < sourceTileWidth; x++) {
-                tmpI[y][x] = rowArray[2 * x];
-                tmpQ[y][x] = rowArray[2 * x + 1];
+                data[k++] = srcData.getElemDoubleAt(index + x);
+                data[k++] = 0.0;
             }
         }
 
-        final int d = (int) (sourceTileHeight / 2 + 0.5);
-
-        final double[] colArray = new double[2 * sourceTileHeight];
-        final double[] zeroPaddedColSpec = new double[2 * overSampledSourceTileHeight];
-
-        // perform 1-D FFT, zero padding and IFFT on each column
-        final DoubleFFT_1D src_col_fft = new DoubleFFT_1D(sourceTileHeight);
-        final DoubleFFT_1D tgt_col_fft = new DoubleFFT_1D(overSampledSourceTileHeight);
-        for (int x = 0; x < sourceTileWidth; x++) {
-            getColData(x, sourceTileHeight, colArray, tmpI, tmpQ);
-            src_col_fft.complexForward(colArray);
-            paddingZeros(colArray, sourceTileHeight, overSampledSourceTileHeight, d, zeroPaddedColSpec);
-            tgt_col_fft.complexInverse(zeroPaddedColSpec, true);
-            saveOverSampledCol(zeroPaddedColSpec, x, overSampledSourceTileHeight, tmpI, tmpQ);
-        }
-
-        final double[] tgtRow = new double[overSampledSourceTileWidth * 2];
+        oversampler.oversampleColumns(data, sourceTileWidth, sourceTileHeight, overSampledSourceTileHeight,
+                getCentredSplits(sourceTileHeight), 0);
 
-        // perform 1-D IFFT on each row
-        final DoubleFFT_1D tgt_row_fft = new DoubleFFT_1D(overSampledSourceTileWidth);
-        int ySt = 0;
-        if (overlapInfo.topOverlapped) {
-            ySt = (int) (heightRatio * overlapInfo.numOfLinesOnTop);
-        }
-        int xSt = 0;
-        if (overlapInfo.leftOverlapped) {
-            xSt = (int) (widthRatio * overlapInfo.numOfLinesOnLeft);
-        }
+        final int ySt = overlapInfo.topOverlapped ? (int) (heightRatio * overlapInfo.numOfLinesOnTop) : 0;
+        final int xSt = overlapInfo.leftOverlapped ? (int) (widthRatio * overlapInfo.numOfLinesOnLeft) : 0;
 
         for (int y = 0; y < targetTileHeight; y++) {
-            getRowData(y + ySt, sourceTileWidth, overSampledSourceTileWidth, tgtRow, tmpI, tmpQ);
-            tgt_row_fft.complexInverse(tgtRow, true);
-            saveOverSampledComplexImage(tgtRow, ty0 + y, tx0, targetTileWidth, xSt,
-                    widthRatioByHeightRatio, tgtData, targetTile);
+            final double[] row = oversampler.oversampleRow(
+                    data, y + ySt, sourceTileWidth, overSampledSourceTileWidth);
+            final int index = targetTile.getDataBufferIndex(tx0, ty0 + y);
+            k = xSt * 2;
+            for (int x = 0; x < targetTileWidth; x++) {
+                final double i = row[k++];
+                final double q = row[k++];
+                tgtData.setElemDoubleAt(index + x, widthRatioByHeightRatio * Math.sqrt(i * i + q * q));
+            }
         }
     }
 
@@ -684,9 +664,6 @@ public class OversamplingOp extends Operator {
         final int overSampledSourceTileWidth = (int) (widthRatio * sourceTileWidth + 0.5);
         final int overSampledSourceTileHeight = (int) (heightRatio * sourceTileHeight + 0.5);
 
-        final double[][] tmpI = new double[overSampledSourceTileHeight][sourceTileWidth];
-        final double[][] tmpQ = new double[overSampledSourceTileHeight][sourceTileWidth];
-
         final Band iBand = sourceProduct.getBand(iBandName);
         final Band qBand = sourceProduct.getBand(qBandName);
 
@@ -696,162 +673,61 @@ public class OversamplingOp extends Operator {
         final ProductData iSrcData = iRaster.getDataBuffer();
         final ProductData qSrcData = qRaster.getDataBuffer();
 
-        final double[] rowArray = new double[sourceTileWidth * 2];
-
-        // perform 1-D FFT on each row
-        final DoubleFFT_1D src_row_fft = new DoubleFFT_1D(sourceTileWidth);
-        for (int y = 0; y < sourceTileHeight; y++) {
-            getRowData(sy0 + y, sx0, sourceTileWidth, iSrcData, qSrcData, iRaster, rowArray);
-            src_row_fft.complexForward(rowArray);
+        final double[] data = oversampler.getBuffer(sourceTileWidth, overSampledSourceTileHeight);
+        int k = 0;
+        for (int y = sy0; y < sy0 + sourceTileHeight; y++) {
+            final int index = iRaster.getDataBufferIndex(sx0, y);
             for (int x = 0; x < sourceTileWidth; x++) {
-                tmpI[y][x] = rowArray[2 * x];
-                tmpQ[y][x] = rowArray[2 * x + 1];
+                data[k++] = iSrcData.getElemDoubleAt(index + x);
+                data[k++] = qSrcData.getElemDoubleAt(index + x);
             }
         }
 
-        final double[] colArray = new double[2 * sourceTileHeight];
-        final double[] zeroPaddedColSpec = new double[2 * overSampledSourceTileHeight];
-
-        final int halfHeight = sourceTileHeight / 2;
-        final double heightByPRF = sourceTileHeight / prf;
-
-        // perform 1-D FFT, zero padding and IFFT on each column
-        final DoubleFFT_1D src_col_fft = new DoubleFFT_1D(sourceTileHeight);
-        final DoubleFFT_1D tgt_col_fft = new DoubleFFT_1D(overSampledSourceTileHeight);
-        for (int x = 0; x < sourceTileWidth; x++) {
-            getColData(x, sourceTileHeight, colArray, tmpI, tmpQ);
-            src_col_fft.complexForward(colArray);
-
-            final int idxFdc = (int) (dopplerCentroidFreq[sx0 + x] * heightByPRF + 0.5);
-            final int d = (idxFdc + halfHeight) % sourceTileHeight;
-
-            paddingZeros(colArray, sourceTileHeight, overSampledSourceTileHeight, d, zeroPaddedColSpec);
-            tgt_col_fft.complexInverse(zeroPaddedColSpec, true);
-            saveOverSampledCol(zeroPaddedColSpec, x, overSampledSourceTileHeight, tmpI, tmpQ);
-        }
-
-        final double[] tgtRow = new double[overSampledSourceTileWidth * 2];
+        oversampler.oversampleColumns(data, sourceTileWidth, sourceTileHeight, overSampledSourceTileHeight,
+                getDopplerSplits(sourceTileHeight), sx0);
 
-        // zero padding and perform 1-D IFFT on each row
-        final DoubleFFT_1D tgt_row_fft = new DoubleFFT_1D(overSampledSourceTileWidth);
-        int ySt = 0;
-        if (overlapInfo.topOverlapped) {
-            ySt = (int) (heightRatio * overlapInfo.numOfLinesOnTop);
-        }
-        int xSt = 0;
-        if (overlapInfo.leftOverlapped) {
-            xSt = (int) (widthRatio * overlapInfo.numOfLinesOnLeft);
-        }
+        final int ySt = overlapInfo.topOverlapped ? (int) (heightRatio * overlapInfo.numOfLinesOnTop) : 0;
+        final int xSt = overlapInfo.leftOverlapped ? (int) (widthRatio * overlapInfo.numOfLinesOnLeft) : 0;
 
         for (int y = 0; y < targetTileHeight; y++) {
-            getRowData(y + ySt, sourceTileWidth, overSampledSourceTileWidth, tgtRow, tmpI, tmpQ);
-            tgt_row_fft.complexInverse(tgtRow, true);
-            saveOverSampledComplexImage(tgtRow, ty0 + y, tx0, targetTileWidth, xSt, widthRatioByHeightRatio,
-                    iTgtData, qTgtData, iTargetTile);
-        }
-    }
-
-    private static void getRowData(final int sy, final int sx0, final int sw,
-                                   final ProductData srcData, final Tile srcRaster,
-                                   final double[] array) {
-
-        int k = 0;
-        final int length = sx0 + sw;
-        for (int sx = sx0; sx < length; ++sx) {
-            array[k++] = srcData.getElemDoubleAt(srcRaster.getDataBufferIndex(sx, sy));
-            array[k++] = 0.0;
-        }
-    }
-
-    private static void getRowData(final int sy, final int sx0, final int sw,
-                                   final ProductData iData, final ProductData qData,
-                                   final Tile iRaster, final double[] array) {
-
-        int index;
-        int k = 0;
-        final int length = sx0 + sw;
-        for (int sx = sx0; sx < length; ++sx) {
-            index = iRaster.getDataBufferIndex(sx, sy);
-            array[k++] = iData.getElemDoubleAt(index);
-            array[k++] = qData.getElemDoubleAt(index);
-        }
-    }
-
-    private static void getColData(final int x, final int sourceTileHeight, final double[] array,
-                                   final double[][] tmpI, final double[][] tmpQ) {
-
-        int k = 0;
-        for (int y = 0; y < sourceTileHeight; ++y) {
-            array[k++] = tmpI[y][x];
-            array[k++] = tmpQ[y][x];
-        }
-    }
-
-    private static void paddingZeros(final double[] colSpec, final int sourceTileHeight, final int targetTileHeight,
-                                     final int d, final double[] array) {
-
-        Arrays.fill(array, 0.0);
-        final int s1 = 0;
-        final int s2 = d * 2;
-        final int S1 = 0;
-        final int S2 = 2 * (targetTileHeight - sourceTileHeight + d);
-        System.arraycopy(colSpec, s1, array, S1, s2);
-        System.arraycopy(colSpec, s2, array, S2, (sourceTileHeight - d) * 2);
-    }
-
-    private static void saveOverSampledCol(final double[] overSampledCol, final int x, final int targetTileHeight,
-                                           final double[][] tmpI, final double[][] tmpQ) {
-
-        int k = 0;
-        for (int y = 0; y < targetTileHeight; ++y) {
-            tmpI[y][x] = overSampledCol[k++];
-            tmpQ[y][x] = overSampledCol[k++];
-        }
-    }
-
-    private static void getRowData(final int y, final int sourceTileWidth, final int targetTileWidth, final double[] array,
-                                   final double[][] tmpI, final double[][] tmpQ) {
-
-        Arrays.fill(array, 0.0);
-
-        final int firstHalfSourceTileWidth = (int) (sourceTileWidth / 2 + 0.5);
-        int k = 0;
-        for (int x = 0; x < firstHalfSourceTileWidth; ++x) {
-            array[k++] = tmpI[y][x];
-            array[k++] = tmpQ[y][x];
-        }
-
-        final int secondHalfSourceTileWidth = sourceTileWidth - firstHalfSourceTileWidth;
-        k = 2 * (targetTileWidth - secondHalfSourceTileWidth);
-        for (int x = firstHalfSourceTileWidth; x < sourceTileWidth; ++x) {
-            array[k++] = tmpI[y][x];
-            array[k++] = tmpQ[y][x];
+            final double[] row = oversampler.oversampleRow(
+                    data, y + ySt, sourceTileWidth, overSampledSourceTileWidth);
+            final int index = iTargetTile.getDataBufferIndex(tx0, ty0 + y);
+            k = xSt * 2;
+            for (int x = 0; x < targetTileWidth; x++) {
+                iTgtData.setElemDoubleAt(index + x, widthRatioByHeightRatio * row[k++]);
+                qTgtData.setElemDoubleAt(index + x, widthRatioByHeightRatio * row[k++]);
+            }
         }
     }
 
-    private static void saveOverSampledComplexImage(final double[] overSampledRow, final int ty, final int tx0,
-                                                    final int tw, final int xSt, final double widthRatioByHeightRatio,
-                                                    final ProductData tgtData, final Tile targetTile) {
-
-        int k = xSt * 2;
-        for (int tx = tx0; tx < tx0 + tw; ++tx) {
-            final double i = overSampledRow[k++];
-            final double q = overSampledRow[k++];
-            tgtData.setElemDoubleAt(targetTile.getDataBufferIndex(tx, ty),
-                    widthRatioByHeightRatio * Math.sqrt(i * i + q * q));
-        }
+    /**
+     * Spectrum split of every image column for the given source tile height: the zero padding is inserted half way
+     * through the column spectrum.
+     */
+    private int[] getCentredSplits(final int sourceTileHeight) {
+        return centredSplits.computeIfAbsent(sourceTileHeight, h -> {
+            final int[] splits = new int[sourceImageWidth];
+            Arrays.fill(splits, h / 2);
+            return splits;
+        });
     }
 
-    private static void saveOverSampledComplexImage(final double[] overSampledRow, final int ty, final int tx0,
-                                                    final int tw, final int xSt, final double widthRatioByHeightRatio,
-                                                    final ProductData iData, final ProductData qData, final Tile iTargetTile) {
-
-        int k = xSt * 2;
-        for (int tx = tx0; tx < tx0 + tw; ++tx) {
-            final int index = iTargetTile.getDataBufferIndex(tx, ty);
-            iData.setElemDoubleAt(index, widthRatioByHeightRatio * overSampledRow[k++]);
-            qData.setElemDoubleAt(index, widthRatioByHeightRatio * overSampledRow[k++]);
-        }
+    /**
+     * Spectrum split of every image column for the given source tile height: the zero padding is inserted half way
+     * through the column spectrum centred on the Doppler centroid frequency of the column.
+     */
+    private int[] getDopplerSplits(final int sourceTileHeight) {
+        return dopplerSplits.computeIfAbsent(sourceTileHeight, h -> {
+            final int halfHeight = h / 2;
+            final double heightByPRF = h / prf;
+            final int[] splits = new int[sourceImageWidth];
+            for (int x = 0; x < sourceImageWidth; x++) {
+                final int idxFdc = (int) (dopplerCentroidFreq[x] * heightByPRF + 0.5);
+                splits[x] = (idxFdc + halfHeight) % h;
+            }
+            return splits;
+        });
     }
 
     private static class OverlapInfo {
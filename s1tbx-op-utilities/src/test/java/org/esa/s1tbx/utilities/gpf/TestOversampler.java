@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.s1tbx.utilities.gpf;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares Oversampler with the per tile row and column transforms previously used by OversamplingOp.
+ */
+public class TestOversampler {
+
+    private static final double EPS = 1e-12;
+
+    @Test
+    public void testRealImage() {
+        compare(12, 6, 2.0, 2.0, false);
+        compare(17, 9, 1.5, 2.5, false);
+    }
+
+    @Test
+    public void testComplexImage() {
+        compare(12, 6, 2.0, 2.0, true);
+        compare(17, 9, 1.5, 2.5, true);
+        compare(32, 20, 3.0, 1.0, true);
+    }
+
+    private static void compare(final int w, final int h, final double widthRatio, final double heightRatio,
+                                final boolean complex) {
+
+        final int ow = (int) (widthRatio * w + 0.5);
+        final int oh = (int) (heightRatio * h + 0.5);
+
+        final Random random = new Random(w * 31 + h);
+        final double[][] srcI = new double[h][w];
+        final double[][] srcQ = new double[h][w];
+        final int[] splits = new int[w + 3];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                srcI[y][x] = 100.0 * random.nextDouble();
+                srcQ[y][x] = complex ? 100.0 * random.nextGaussian() : 0.0;
+            }
+        }
+        for (int x = 0; x < splits.length; x++) {
+            splits[x] = complex ? random.nextInt(h) : h / 2;
+        }
+
+        final double[][] expected = referenceOversample(srcI, srcQ, w, h, ow, oh, splits, 3);
+        final double[][] actual = oversample(new Oversampler(), srcI, srcQ, w, h, ow, oh, splits);
+        for (int y = 0; y < oh; y++) {
+            for (int n = 0; n < 2 * ow; n++) {
+                assertEquals(expected[y][n], actual[y][n], EPS * 100.0 * w * h);
+            }
+        }
+    }
+
+    @Test
+    public void testBuffersAreHeldPerThread() throws Exception {
+        final Oversampler oversampler = new Oversampler();
+
+        final double[] buffer = oversampler.getBuffer(17, 23);
+        assertTrue(buffer.length >= 2 * 17 * 23);
+        // a smaller tile takes the same buffer, a larger one grows it
+        assertSame(buffer, oversampler.getBuffer(12, 12));
+        final double[] grown = oversampler.getBuffer(32, 60);
+        assertTrue(grown.length >= 2 * 32 * 60);
+        assertSame(grown, oversampler.getBuffer(17, 23));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertNotSame(grown, executor.submit(() -> oversampler.getBuffer(17, 23)).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTilesAfterLargerTiles() {
+        // the buffers of the current thread keep the samples of the previous, larger tiles
+        final Oversampler reused = new Oversampler();
+        final int[][] tiles = {{32, 20}, {12, 6}, {17, 9}, {32, 20}, {5, 3}};
+        for (int[] tile : tiles) {
+            final int w = tile[0], h = tile[1];
+            final int ow = 2 * w + 1, oh = 3 * h;
+            final Random random = new Random(w * 31 + h);
+            final double[][] srcI = new double[h][w];
+            final double[][] srcQ = new double[h][w];
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    srcI[y][x] = 100.0 * random.nextGaussian();
+                    srcQ[y][x] = 100.0 * random.nextGaussian();
+                }
+            }
+            final int[] splits = new int[w + 3];
+            for (int x = 0; x < splits.length; x++) {
+                splits[x] = random.nextInt(h);
+            }
+
+            final double[][] expected = oversample(new Oversampler(), srcI, srcQ, w, h, ow, oh, splits);
+            final double[][] actual = oversample(reused, srcI, srcQ, w, h, ow, oh, splits);
+            for (int y = 0; y < oh; y++) {
+                assertArrayEquals(expected[y], actual[y], 0.0);
+            }
+        }
+    }
+
+    /**
+     * Oversamples a tile the way OversamplingOp does, from a buffer that is not cleared.
+     *
+     * @return the oversampled rows, copied out of the row buffer of the current thread
+     */
+    private static double[][] oversample(final Oversampler oversampler, final double[][] srcI, final double[][] srcQ,
+                                         final int w, final int h, final int ow, final int oh, final int[] splits) {
+        final double[] data = oversampler.getBuffer(w, oh);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                data[2 * (y * w + x)] = srcI[y][x];
+                data[2 * (y * w + x) + 1] = srcQ[y][x];
+            }
+        }
+        oversampler.oversampleColumns(data, w, h, oh, splits, 3);
+
+        final double[][] rows = new double[oh][];
+        for (int y = 0; y < oh; y++) {
+            rows[y] = Arrays.copyOf(oversampler.oversampleRow(data, y, w, ow), 2 * ow);
+        }
+        return rows;
+    }
+
+    /**
+     * The oversampling as computed by OversamplingOp before the flat buffers.
+     */
+    private static double[][] referenceOversample(final double[][] srcI, final double[][] srcQ,
+                                                  final int sw, final int sh, final int ow, final int oh,
+                                                  final int[] splits, final int splitOffset) {
+
+        final double[][] tmpI = new double[oh][sw];
+        final double[][] tmpQ = new double[oh][sw];
+
+        final double[] rowArray = new double[sw * 2];
+        final DoubleFFT_1D srcRowFFT = new DoubleFFT_1D(sw);
+        for (int y = 0; y < sh; y++) {
+            for (int x = 0; x < sw; x++) {
+                rowArray[2 * x] = srcI[y][x];
+                rowArray[2 * x + 1] = srcQ[y][x];
+            }
+            srcRowFFT.complexForward(rowArray);
+            for (int x = 0; x < sw; x++) {
+                tmpI[y][x] = rowArray[2 * x];
+                tmpQ[y][x] = rowArray[2 * x + 1];
+            }
+        }
+
+        final double[] colArray = new double[2 * sh];
+        final double[] zeroPaddedColSpec = new double[2 * oh];
+        final DoubleFFT_1D srcColFFT = new DoubleFFT_1D(sh);
+        final DoubleFFT_1D tgtColFFT = new DoubleFFT_1D(oh);
+        for (int x = 0; x < sw; x++) {
+            for (int y = 0; y < sh; y++) {
+                colArray[2 * y] = tmpI[y][x];
+                colArray[2 * y + 1] = tmpQ[y][x];
+            }
+            srcColFFT.complexForward(colArray);
+
+            final int d = splits[splitOffset + x];
+            Arrays.fill(zeroPaddedColSpec, 0.0);
+            System.arraycopy(colArray, 0, zeroPaddedColSpec, 0, d * 2);
+            System.arraycopy(colArray, d * 2, zeroPaddedColSpec, 2 * (oh - sh + d), (sh - d) * 2);
+
+            tgtColFFT.complexInverse(zeroPaddedColSpec, true);
+            for (int y = 0; y < oh; y++) {
+                tmpI[y][x] = zeroPaddedColSpec[2 * y];
+                tmpQ[y][x] = zeroPaddedColSpec[2 * y + 1];
+            }
+        }
+
+        final double[][] out = new double[oh][2 * ow];
+        final DoubleFFT_1D tgtRowFFT = new DoubleFFT_1D(ow);
+        final int firstHalf = (int) (sw / 2 + 0.5);
+        for (int y = 0; y < oh; y++) {
+            final double[] array = out[y];
+            int k = 0;
+            for (int x = 0; x < firstHalf; ++x) {
+                array[k++] = tmpI[y][x];
+                array[k++] = tmpQ[y][x];
+            }
+            k = 2 * (ow - (sw - firstHalf));
+            for (int x = firstHalf; x < sw; ++x) {
+                array[k++] = tmpI[y][x];
+                array[k++] = tmpQ[y][x];
+            }
+            tgtRowFFT.complexInverse(array, true);
+        }
+        return out;
+    }
+}